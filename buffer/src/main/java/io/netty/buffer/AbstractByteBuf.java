@@ -24,6 +24,7 @@ import io.netty.util.ResourceLeakDetectorFactory;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.SWARUtil;
 import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
@@ -51,6 +52,10 @@ public abstract class AbstractByteBuf extends ByteBuf {
     static final boolean checkAccessible; // accessed from CompositeByteBuf
     private static final String PROP_CHECK_BOUNDS = "io.netty.buffer.checkBounds";
     private static final boolean checkBounds;
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final byte LINE_FEED = '\n';
+    private static final long CR_PATTERN = SWARUtil.compilePattern(CARRIAGE_RETURN);
+    private static final long LF_PATTERN = SWARUtil.compilePattern(LINE_FEED);
 
     static {
         if (SystemPropertyUtil.contains(PROP_CHECK_ACCESSIBLE)) {
@@ -1262,13 +1267,42 @@ public abstract class AbstractByteBuf extends ByteBuf {
             return -1;
         }
         checkIndex(fromIndex, toIndex - fromIndex);
+        return firstIndexOf0(fromIndex, toIndex, value);
+    }
 
-        for (int i = fromIndex; i < toIndex; i ++) {
-            if (_getByte(i) == value) {
-                return i;
+    // The bounds must have been checked by the caller.
+    private int firstIndexOf0(int start, int end, byte value) {
+        // Compare 8 bytes at once, see SWARUtil.
+        final long pattern = SWARUtil.compilePattern(value);
+        for (; end - start >= 8; start += 8) {
+            long result = SWARUtil.applyPattern(_getLongLE(start), pattern);
+            if (result != 0) {
+                return start + SWARUtil.getIndex(result, false);
+            }
+        }
+        for (; start < end; ++start) {
+            if (_getByte(start) == value) {
+                return start;
             }
         }
+        return -1;
+    }
 
+    // The bounds must have been checked by the caller.
+    private int firstIndexOfCrLf0(int start, int end) {
+        for (; end - start >= 8; start += 8) {
+            long word = _getLongLE(start);
+            long result = SWARUtil.applyPattern(word, CR_PATTERN) | SWARUtil.applyPattern(word, LF_PATTERN);
+            if (result != 0) {
+                return start + SWARUtil.getIndex(result, false);
+            }
+        }
+        for (; start < end; ++start) {
+            byte b = _getByte(start);
+            if (b == CARRIAGE_RETURN || b == LINE_FEED) {
+                return start;
+            }
+        }
         return -1;
     }
 
@@ -1332,6 +1366,18 @@ public abstract class AbstractByteBuf extends ByteBuf {
     }
 
     int forEachByteAsc0(int start, int end, ByteProcessor processor) throws Exception {
+        // Fast paths for the most commonly used processors, which scan 8 bytes at once instead of calling the
+        // processor for every byte.
+        if (processor == ByteProcessor.FIND_LF) {
+            return firstIndexOf0(start, end, LINE_FEED);
+        }
+        if (processor == ByteProcessor.FIND_CRLF) {
+            return firstIndexOfCrLf0(start, end);
+        }
+        if (processor == ByteProcessor.FIND_NUL) {
+            return firstIndexOf0(start, end, (byte) 0);
+        }
+
         for (; start < end; ++start) {
             if (!processor.process(_getByte(start))) {
                 return start;
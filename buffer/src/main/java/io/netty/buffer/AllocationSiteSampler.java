@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.PlatformDependent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * Captures the call site of 1 in N allocations and aggregates them per site, so the code responsible for most of the
+ * allocations of an arena can be found without paying the cost of a stack trace on every allocation.
+ */
+final class AllocationSiteSampler {
+
+    static final String OTHER_SITE = "<other>";
+
+    // Frames of these classes belong to the allocator itself and so are skipped when looking for the call site.
+    private static final Set<String> ALLOCATOR_CLASSES = new HashSet<String>(Arrays.asList(
+            AllocationSiteSampler.class.getName(),
+            PoolArena.class.getName(),
+            PoolThreadCache.class.getName(),
+            PooledByteBufAllocator.class.getName(),
+            AbstractByteBufAllocator.class.getName(),
+            AbstractByteBuf.class.getName(),
+            PooledByteBuf.class.getName(),
+            PooledHeapByteBuf.class.getName(),
+            PooledUnsafeHeapByteBuf.class.getName(),
+            PooledDirectByteBuf.class.getName(),
+            PooledUnsafeDirectByteBuf.class.getName()));
+
+    private final ConcurrentMap<String, Site> sites = PlatformDependent.newConcurrentHashMap();
+    private final int sampleInterval;
+    private final int maxSites;
+
+    AllocationSiteSampler(int sampleInterval, int maxSites) {
+        this.sampleInterval = checkPositive(sampleInterval, "sampleInterval");
+        this.maxSites = checkPositive(maxSites, "maxSites");
+    }
+
+    /**
+     * Record the call site of the current allocation if it is picked by the sampling.
+     */
+    void sample(int reqCapacity) {
+        if (sampleInterval == 1 || PlatformDependent.threadLocalRandom().nextInt(sampleInterval) == 0) {
+            record(callSite(new Throwable().getStackTrace()), reqCapacity);
+        }
+    }
+
+    void record(String site, int reqCapacity) {
+        Site s = sites.get(site);
+        if (s == null) {
+            // Bound the number of sites so a workload with many distinct call sites can not use up the memory.
+            if (sites.size() >= maxSites) {
+                site = OTHER_SITE;
+            }
+            s = new Site(site);
+            Site old = sites.putIfAbsent(site, s);
+            if (old != null) {
+                s = old;
+            }
+        }
+        s.samples.increment();
+        s.bytes.add(reqCapacity);
+    }
+
+    List<PoolAllocationSiteMetric> sites() {
+        List<PoolAllocationSiteMetric> metrics = new ArrayList<PoolAllocationSiteMetric>(sites.values());
+        return Collections.unmodifiableList(metrics);
+    }
+
+    static String callSite(StackTraceElement[] frames) {
+        for (StackTraceElement frame: frames) {
+            String className = frame.getClassName();
+            int idx = className.indexOf('$');
+            if (idx != -1) {
+                className = className.substring(0, idx);
+            }
+            if (!ALLOCATOR_CLASSES.contains(className)) {
+                return frame.toString();
+            }
+        }
+        return OTHER_SITE;
+    }
+
+    private static final class Site implements PoolAllocationSiteMetric {
+        private final String site;
+        final LongCounter samples = PlatformDependent.newLongCounter();
+        final LongCounter bytes = PlatformDependent.newLongCounter();
+
+        Site(String site) {
+            this.site = site;
+        }
+
+        @Override
+        public String site() {
+            return site;
+        }
+
+        @Override
+        public long numSamples() {
+            return samples.value();
+        }
+
+        @Override
+        public long sampledBytes() {
+            return bytes.value();
+        }
+
+        @Override
+        public String toString() {
+            return site + ": " + numSamples() + " samples, " + sampledBytes() + " bytes";
+        }
+    }
+}
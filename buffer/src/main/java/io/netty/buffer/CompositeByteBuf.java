@@ -55,8 +55,15 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     private final boolean direct;
     private final int maxNumComponents;
 
+    // The components are stored in components[componentsStart, componentsStart + componentCount). Free slots are
+    // kept on both sides so that components can be added and removed at either end without shifting the others.
+    private int componentsStart;
     private int componentCount;
     private Component[] components; // resized when needed
+    // The offsets stored in a Component are relative to offsetBase, which is moved instead of the components
+    // when bytes are added or removed in front of them. Offsets may overflow, so they are only ever compared
+    // after offsetBase has been subtracted.
+    private int offsetBase;
 
     private boolean freed;
 
@@ -293,10 +300,13 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
             addComp(cIndex, c);
             wasAdded = true;
-            if (readableBytes > 0 && cIndex < componentCount - 1) {
-                updateComponentOffsets(cIndex);
-            } else if (cIndex > 0) {
-                c.reposition(components[cIndex - 1].endOffset);
+            if (cIndex > 0) {
+                c.reposition(components[componentsStart + cIndex - 1].endOffset());
+            }
+            if (readableBytes > 0) {
+                // Make room for the new bytes, either by moving the components after it up or by moving
+                // the components in front of it and offsetBase down, so that adding at either end is O(1).
+                updateComponentOffsets(cIndex + 1);
             }
             if (increaseWriterIndex) {
                 writerIndex += readableBytes;
@@ -386,15 +396,15 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         try {
             checkComponentIndex(cIndex);
             shiftComps(cIndex, count); // will increase componentCount
-            int nextOffset = cIndex > 0 ? components[cIndex - 1].endOffset : 0;
+            int nextOffset = cIndex > 0 ? components[componentsStart + cIndex - 1].endOffset() : 0;
             for (ci = cIndex; arrOffset < len; arrOffset++, ci++) {
                 ByteBuf b = buffers[arrOffset];
                 if (b == null) {
                     break;
                 }
                 Component c = newComponent(ensureAccessible(b), nextOffset);
-                components[ci] = c;
-                nextOffset = c.endOffset;
+                components[componentsStart + ci] = c;
+                nextOffset = c.endOffset();
             }
             return this;
         } finally {
@@ -410,7 +420,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
                 updateComponentOffsets(ci); // only need to do this here for components after the added ones
             }
             if (increaseWriterIndex && ci > cIndex && ci <= componentCount) {
-                writerIndex += components[ci - 1].endOffset - components[cIndex].offset;
+                writerIndex += components[componentsStart + ci - 1].endOffset() -
+                        components[componentsStart + cIndex].offset();
             }
         }
     }
@@ -488,10 +499,10 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         final int writerIndexBefore = writerIndex;
         try {
             for (int cidx = from.toComponentIndex0(ridx), newOffset = capacity();; cidx++) {
-                final Component component = fromComponents[cidx];
-                final int compOffset = component.offset;
+                final Component component = fromComponents[from.componentsStart + cidx];
+                final int compOffset = component.offset();
                 final int fromIdx = Math.max(ridx, compOffset);
-                final int toIdx = Math.min(widx, component.endOffset);
+                final int toIdx = Math.min(widx, component.endOffset());
                 final int len = toIdx - fromIdx;
                 if (len > 0) { // skip empty components
                     addComp(componentCount, new Component(
@@ -517,7 +528,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
                     writerIndex = writerIndexBefore;
                 }
                 for (int cidx = componentCount - 1; cidx >= compCountBefore; cidx--) {
-                    components[cidx].free();
+                    components[componentsStart + cidx].free();
                     removeComp(cidx);
                 }
             }
@@ -562,9 +573,74 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     private void consolidateIfNeeded() {
         // Consolidate if the number of components will exceed the allowed maximum by the current
         // operation.
-        int size = componentCount;
-        if (size > maxNumComponents) {
-            consolidate0(0, size);
+        if (componentCount > maxNumComponents) {
+            removeEmptyComps();
+            int size = componentCount;
+            if (size > maxNumComponents) {
+                if (maxNumComponents <= size >> 1) {
+                    // At least half of the components have to go anyway, copy everything once.
+                    consolidate0(0, size);
+                } else {
+                    // Leave room for more components so the copies are not repeated on every addition.
+                    consolidateCheapestRuns(Math.max(1, maxNumComponents >> 2));
+                }
+            }
+        }
+    }
+
+    private void removeEmptyComps() {
+        // Empty components can be dropped without copying anything.
+        for (int i = componentCount - 1; i >= 0; i--) {
+            Component c = components[componentsStart + i];
+            if (c.length() == 0) {
+                c.free();
+                removeComp(i);
+            }
+        }
+    }
+
+    /**
+     * Merges runs of adjacent components until only {@code numComponents} are left, instead of copying all of
+     * them, so that appending to a buffer which is at its {@link #maxNumComponents()} does not copy all its
+     * content every time.
+     * <p>
+     * The runs are planned by repeatedly merging the adjacent pair whose merge is the cheapest, where the cost is
+     * the number of bytes copied weighted by the ratio of both sides. Preferring sides of a similar size makes
+     * the merged components grow geometrically like in a binary counter, so each byte is copied about log(n) times
+     * rather than once for every time the limit is exceeded. Each run is then copied into a single new component.
+     */
+    private void consolidateCheapestRuns(int numComponents) {
+        final Component[] comps = components;
+        final int start = componentsStart, size = componentCount;
+        final int[] runStarts = new int[size];
+        final int[] runLengths = new int[size];
+        for (int i = 0; i < size; i++) {
+            runStarts[i] = i;
+            runLengths[i] = comps[start + i].length();
+        }
+
+        for (int runs = size; runs > numComponents; runs--) {
+            int cheapest = 0;
+            long cheapestCost = Long.MAX_VALUE;
+            for (int i = 1; i < runs; i++) {
+                final int prevLength = runLengths[i - 1], length = runLengths[i];
+                // The ratio of both lengths is rounded to a power of two which is cheaper than a division.
+                final long cost = (long) (prevLength + length) << Integer.numberOfLeadingZeros(
+                        Math.min(prevLength, length)) - Integer.numberOfLeadingZeros(Math.max(prevLength, length));
+                if (cost < cheapestCost) {
+                    cheapestCost = cost;
+                    cheapest = i - 1;
+                }
+            }
+            runLengths[cheapest] += runLengths[cheapest + 1];
+            System.arraycopy(runStarts, cheapest + 2, runStarts, cheapest + 1, runs - cheapest - 2);
+            System.arraycopy(runLengths, cheapest + 2, runLengths, cheapest + 1, runs - cheapest - 2);
+        }
+
+        // Consolidate from the last run so the component indexes of the runs before it stay valid.
+        for (int i = numComponents - 1, runEnd = size; i >= 0; i--) {
+            consolidate0(runStarts[i], runEnd - runStarts[i]);
+            runEnd = runStarts[i];
         }
     }
 
@@ -587,17 +663,31 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         }
     }
 
+    /**
+     * Precondition is that the components before {@code cIndex} and the ones from {@code cIndex} on are each laid out
+     * without gaps. Closes the gap or overlap between both by moving whichever side has fewer components.
+     */
     private void updateComponentOffsets(int cIndex) {
-        int size = componentCount;
+        final int size = componentCount;
         if (size <= cIndex) {
             return;
         }
 
-        int nextIndex = cIndex > 0 ? components[cIndex - 1].endOffset : 0;
-        for (; cIndex < size; cIndex++) {
-            Component c = components[cIndex];
-            c.reposition(nextIndex);
-            nextIndex = c.endOffset;
+        final Component[] comps = components;
+        final int start = componentsStart;
+        final int delta = (cIndex > 0 ? comps[start + cIndex - 1].endOffset() : 0) - comps[start + cIndex].offset();
+        if (delta == 0) {
+            return;
+        }
+        if (cIndex < size - cIndex) {
+            for (int i = start, end = start + cIndex; i < end; i++) {
+                comps[i].move(-delta);
+            }
+            offsetBase -= delta;
+        } else {
+            for (int i = start + cIndex, end = start + size; i < end; i++) {
+                comps[i].move(delta);
+            }
         }
     }
 
@@ -608,7 +698,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      */
     public CompositeByteBuf removeComponent(int cIndex) {
         checkComponentIndex(cIndex);
-        Component comp = components[cIndex];
+        Component comp = components[componentsStart + cIndex];
         if (lastAccessed == comp) {
             lastAccessed = null;
         }
@@ -636,7 +726,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int endIndex = cIndex + numComponents;
         boolean needsUpdate = false;
         for (int i = cIndex; i < endIndex; ++i) {
-            Component c = components[i];
+            Component c = components[componentsStart + i];
             if (c.length() > 0) {
                 needsUpdate = true;
             }
@@ -666,19 +756,19 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return -1;
         }
         for (int i = toComponentIndex0(start), length = end - start; length > 0; i++) {
-            Component c = components[i];
-            if (c.offset == c.endOffset) {
+            Component c = components[componentsStart + i];
+            if (c.length() == 0) {
                 continue; // empty
             }
             ByteBuf s = c.buf;
             int localStart = c.idx(start);
-            int localLength = Math.min(length, c.endOffset - start);
+            int localLength = Math.min(length, c.endOffset() - start);
             // avoid additional checks in AbstractByteBuf case
             int result = s instanceof AbstractByteBuf
                 ? ((AbstractByteBuf) s).forEachByteAsc0(localStart, localStart + localLength, processor)
                 : s.forEachByte(localStart, localLength, processor);
             if (result != -1) {
-                return result - c.adjustment;
+                return result - c.idx(0);
             }
             start += localLength;
             length -= localLength;
@@ -692,8 +782,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return -1;
         }
         for (int i = toComponentIndex0(rStart), length = 1 + rStart - rEnd; length > 0; i--) {
-            Component c = components[i];
-            if (c.offset == c.endOffset) {
+            Component c = components[componentsStart + i];
+            if (c.length() == 0) {
                 continue; // empty
             }
             ByteBuf s = c.buf;
@@ -705,7 +795,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
                 : s.forEachByteDesc(localIndex, localLength, processor);
 
             if (result != -1) {
-                return result - c.adjustment;
+                return result - c.idx(0);
             }
             length -= localLength;
         }
@@ -724,9 +814,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int componentId = toComponentIndex0(offset);
         int bytesToSlice = length;
         // The first component
-        Component firstC = components[componentId];
+        Component firstC = components[componentsStart + componentId];
 
-        ByteBuf slice = firstC.buf.slice(firstC.idx(offset), Math.min(firstC.endOffset - offset, bytesToSlice));
+        ByteBuf slice = firstC.buf.slice(firstC.idx(offset), Math.min(firstC.endOffset() - offset, bytesToSlice));
         bytesToSlice -= slice.readableBytes();
 
         if (bytesToSlice == 0) {
@@ -738,8 +828,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         // Add all the slices until there is nothing more left and then return the List.
         do {
-            Component component = components[++componentId];
-            slice = component.buf.slice(component.idx(component.offset), Math.min(component.length(), bytesToSlice));
+            Component component = components[componentsStart + (++componentId)];
+            slice = component.buf.slice(component.idx(component.offset()), Math.min(component.length(), bytesToSlice));
             bytesToSlice -= slice.readableBytes();
             sliceList.add(slice);
         } while (bytesToSlice > 0);
@@ -754,7 +844,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return false;
         }
         for (int i = 0; i < size; i++) {
-           if (!components[i].buf.isDirect()) {
+           if (!components[componentsStart + i].buf.isDirect()) {
                return false;
            }
         }
@@ -767,7 +857,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         case 0:
             return true;
         case 1:
-            return components[0].buf.hasArray();
+            return components[componentsStart].buf.hasArray();
         default:
             return false;
         }
@@ -779,7 +869,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         case 0:
             return EmptyArrays.EMPTY_BYTES;
         case 1:
-            return components[0].buf.array();
+            return components[componentsStart].buf.array();
         default:
             throw new UnsupportedOperationException();
         }
@@ -791,7 +881,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         case 0:
             return 0;
         case 1:
-            Component c = components[0];
+            Component c = components[componentsStart];
             return c.idx(c.buf.arrayOffset());
         default:
             throw new UnsupportedOperationException();
@@ -804,7 +894,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         case 0:
             return Unpooled.EMPTY_BUFFER.hasMemoryAddress();
         case 1:
-            return components[0].buf.hasMemoryAddress();
+            return components[componentsStart].buf.hasMemoryAddress();
         default:
             return false;
         }
@@ -816,8 +906,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         case 0:
             return Unpooled.EMPTY_BUFFER.memoryAddress();
         case 1:
-            Component c = components[0];
-            return c.buf.memoryAddress() + c.adjustment;
+            Component c = components[componentsStart];
+            return c.buf.memoryAddress() + c.idx(0);
         default:
             throw new UnsupportedOperationException();
         }
@@ -826,7 +916,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     public int capacity() {
         int size = componentCount;
-        return size > 0 ? components[size - 1].endOffset : 0;
+        return size > 0 ? components[componentsStart + size - 1].endOffset() : 0;
     }
 
     @Override
@@ -847,11 +937,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             lastAccessed = null;
             int i = size - 1;
             for (int bytesToTrim = oldCapacity - newCapacity; i >= 0; i--) {
-                Component c = components[i];
+                Component c = components[componentsStart + i];
                 final int cLength = c.length();
                 if (bytesToTrim < cLength) {
                     // Trim the last component
-                    c.endOffset -= bytesToTrim;
+                    c.end -= bytesToTrim;
                     ByteBuf slice = c.slice;
                     if (slice != null) {
                         // We must replace the cached slice with a derived one to ensure that
@@ -908,22 +998,24 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     private int toComponentIndex0(int offset) {
         int size = componentCount;
+        // Compare against the raw fields as the JIT can not tell that all components share the same offsetBase.
+        final int base = offsetBase;
         if (offset == 0) { // fast-path zero offset
             for (int i = 0; i < size; i++) {
-                if (components[i].endOffset > 0) {
+                if (components[componentsStart + i].end - base > 0) {
                     return i;
                 }
             }
         }
         if (size <= 2) { // fast-path for 1 and 2 component count
-            return size == 1 || offset < components[0].endOffset ? 0 : 1;
+            return size == 1 || offset < components[componentsStart].end - base ? 0 : 1;
         }
         for (int low = 0, high = size; low <= high;) {
             int mid = low + high >>> 1;
-            Component c = components[mid];
-            if (offset >= c.endOffset) {
+            Component c = components[componentsStart + mid];
+            if (offset >= c.end - base) {
                 low = mid + 1;
-            } else if (offset < c.offset) {
+            } else if (offset < c.start - base) {
                 high = mid - 1;
             } else {
                 return mid;
@@ -935,7 +1027,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     public int toByteIndex(int cIndex) {
         checkComponentIndex(cIndex);
-        return components[cIndex].offset;
+        return components[componentsStart + cIndex].offset();
     }
 
     @Override
@@ -953,7 +1045,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected short _getShort(int index) {
         Component c = findComponent0(index);
-        if (index + 2 <= c.endOffset) {
+        if (index + 2 <= c.endOffset()) {
             return c.buf.getShort(c.idx(index));
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (short) ((_getByte(index) & 0xff) << 8 | _getByte(index + 1) & 0xff);
@@ -965,7 +1057,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected short _getShortLE(int index) {
         Component c = findComponent0(index);
-        if (index + 2 <= c.endOffset) {
+        if (index + 2 <= c.endOffset()) {
             return c.buf.getShortLE(c.idx(index));
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (short) (_getByte(index) & 0xff | (_getByte(index + 1) & 0xff) << 8);
@@ -977,7 +1069,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected int _getUnsignedMedium(int index) {
         Component c = findComponent0(index);
-        if (index + 3 <= c.endOffset) {
+        if (index + 3 <= c.endOffset()) {
             return c.buf.getUnsignedMedium(c.idx(index));
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (_getShort(index) & 0xffff) << 8 | _getByte(index + 2) & 0xff;
@@ -989,7 +1081,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected int _getUnsignedMediumLE(int index) {
         Component c = findComponent0(index);
-        if (index + 3 <= c.endOffset) {
+        if (index + 3 <= c.endOffset()) {
             return c.buf.getUnsignedMediumLE(c.idx(index));
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return _getShortLE(index) & 0xffff | (_getByte(index + 2) & 0xff) << 16;
@@ -1001,7 +1093,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected int _getInt(int index) {
         Component c = findComponent0(index);
-        if (index + 4 <= c.endOffset) {
+        if (index + 4 <= c.endOffset()) {
             return c.buf.getInt(c.idx(index));
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (_getShort(index) & 0xffff) << 16 | _getShort(index + 2) & 0xffff;
@@ -1013,7 +1105,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected int _getIntLE(int index) {
         Component c = findComponent0(index);
-        if (index + 4 <= c.endOffset) {
+        if (index + 4 <= c.endOffset()) {
             return c.buf.getIntLE(c.idx(index));
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return _getShortLE(index) & 0xffff | (_getShortLE(index + 2) & 0xffff) << 16;
@@ -1025,7 +1117,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected long _getLong(int index) {
         Component c = findComponent0(index);
-        if (index + 8 <= c.endOffset) {
+        if (index + 8 <= c.endOffset()) {
             return c.buf.getLong(c.idx(index));
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (_getInt(index) & 0xffffffffL) << 32 | _getInt(index + 4) & 0xffffffffL;
@@ -1037,7 +1129,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected long _getLongLE(int index) {
         Component c = findComponent0(index);
-        if (index + 8 <= c.endOffset) {
+        if (index + 8 <= c.endOffset()) {
             return c.buf.getLongLE(c.idx(index));
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return _getIntLE(index) & 0xffffffffL | (_getIntLE(index + 4) & 0xffffffffL) << 32;
@@ -1055,8 +1147,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         int i = toComponentIndex0(index);
         while (length > 0) {
-            Component c = components[i];
-            int localLength = Math.min(length, c.endOffset - index);
+            Component c = components[componentsStart + i];
+            int localLength = Math.min(length, c.endOffset() - index);
             c.buf.getBytes(c.idx(index), dst, dstIndex, localLength);
             index += localLength;
             dstIndex += localLength;
@@ -1079,8 +1171,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int i = toComponentIndex0(index);
         try {
             while (length > 0) {
-                Component c = components[i];
-                int localLength = Math.min(length, c.endOffset - index);
+                Component c = components[componentsStart + i];
+                int localLength = Math.min(length, c.endOffset() - index);
                 dst.limit(dst.position() + localLength);
                 c.buf.getBytes(c.idx(index), dst);
                 index += localLength;
@@ -1102,8 +1194,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         int i = toComponentIndex0(index);
         while (length > 0) {
-            Component c = components[i];
-            int localLength = Math.min(length, c.endOffset - index);
+            Component c = components[componentsStart + i];
+            int localLength = Math.min(length, c.endOffset() - index);
             c.buf.getBytes(c.idx(index), dst, dstIndex, localLength);
             index += localLength;
             dstIndex += localLength;
@@ -1156,8 +1248,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         int i = toComponentIndex0(index);
         while (length > 0) {
-            Component c = components[i];
-            int localLength = Math.min(length, c.endOffset - index);
+            Component c = components[componentsStart + i];
+            int localLength = Math.min(length, c.endOffset() - index);
             c.buf.getBytes(c.idx(index), out, localLength);
             index += localLength;
             length -= localLength;
@@ -1189,7 +1281,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected void _setShort(int index, int value) {
         Component c = findComponent0(index);
-        if (index + 2 <= c.endOffset) {
+        if (index + 2 <= c.endOffset()) {
             c.buf.setShort(c.idx(index), value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setByte(index, (byte) (value >>> 8));
@@ -1203,7 +1295,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected void _setShortLE(int index, int value) {
         Component c = findComponent0(index);
-        if (index + 2 <= c.endOffset) {
+        if (index + 2 <= c.endOffset()) {
             c.buf.setShortLE(c.idx(index), value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setByte(index, (byte) value);
@@ -1224,7 +1316,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected void _setMedium(int index, int value) {
         Component c = findComponent0(index);
-        if (index + 3 <= c.endOffset) {
+        if (index + 3 <= c.endOffset()) {
             c.buf.setMedium(c.idx(index), value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setShort(index, (short) (value >> 8));
@@ -1238,7 +1330,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected void _setMediumLE(int index, int value) {
         Component c = findComponent0(index);
-        if (index + 3 <= c.endOffset) {
+        if (index + 3 <= c.endOffset()) {
             c.buf.setMediumLE(c.idx(index), value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setShortLE(index, (short) value);
@@ -1259,7 +1351,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected void _setInt(int index, int value) {
         Component c = findComponent0(index);
-        if (index + 4 <= c.endOffset) {
+        if (index + 4 <= c.endOffset()) {
             c.buf.setInt(c.idx(index), value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setShort(index, (short) (value >>> 16));
@@ -1273,7 +1365,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected void _setIntLE(int index, int value) {
         Component c = findComponent0(index);
-        if (index + 4 <= c.endOffset) {
+        if (index + 4 <= c.endOffset()) {
             c.buf.setIntLE(c.idx(index), value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setShortLE(index, (short) value);
@@ -1294,7 +1386,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected void _setLong(int index, long value) {
         Component c = findComponent0(index);
-        if (index + 8 <= c.endOffset) {
+        if (index + 8 <= c.endOffset()) {
             c.buf.setLong(c.idx(index), value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setInt(index, (int) (value >>> 32));
@@ -1308,7 +1400,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected void _setLongLE(int index, long value) {
         Component c = findComponent0(index);
-        if (index + 8 <= c.endOffset) {
+        if (index + 8 <= c.endOffset()) {
             c.buf.setLongLE(c.idx(index), value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setIntLE(index, (int) value);
@@ -1328,8 +1420,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         int i = toComponentIndex0(index);
         while (length > 0) {
-            Component c = components[i];
-            int localLength = Math.min(length, c.endOffset - index);
+            Component c = components[componentsStart + i];
+            int localLength = Math.min(length, c.endOffset() - index);
             c.buf.setBytes(c.idx(index), src, srcIndex, localLength);
             index += localLength;
             srcIndex += localLength;
@@ -1352,8 +1444,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int i = toComponentIndex0(index);
         try {
             while (length > 0) {
-                Component c = components[i];
-                int localLength = Math.min(length, c.endOffset - index);
+                Component c = components[componentsStart + i];
+                int localLength = Math.min(length, c.endOffset() - index);
                 src.limit(src.position() + localLength);
                 c.buf.setBytes(c.idx(index), src);
                 index += localLength;
@@ -1375,8 +1467,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         int i = toComponentIndex0(index);
         while (length > 0) {
-            Component c = components[i];
-            int localLength = Math.min(length, c.endOffset - index);
+            Component c = components[componentsStart + i];
+            int localLength = Math.min(length, c.endOffset() - index);
             c.buf.setBytes(c.idx(index), src, srcIndex, localLength);
             index += localLength;
             srcIndex += localLength;
@@ -1396,8 +1488,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int i = toComponentIndex0(index);
         int readBytes = 0;
         do {
-            Component c = components[i];
-            int localLength = Math.min(length, c.endOffset - index);
+            Component c = components[componentsStart + i];
+            int localLength = Math.min(length, c.endOffset() - index);
             if (localLength == 0) {
                 // Skip empty buffer
                 i++;
@@ -1433,8 +1525,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int i = toComponentIndex0(index);
         int readBytes = 0;
         do {
-            Component c = components[i];
-            int localLength = Math.min(length, c.endOffset - index);
+            Component c = components[componentsStart + i];
+            int localLength = Math.min(length, c.endOffset() - index);
             if (localLength == 0) {
                 // Skip empty buffer
                 i++;
@@ -1475,8 +1567,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int i = toComponentIndex0(index);
         int readBytes = 0;
         do {
-            Component c = components[i];
-            int localLength = Math.min(length, c.endOffset - index);
+            Component c = components[componentsStart + i];
+            int localLength = Math.min(length, c.endOffset() - index);
             if (localLength == 0) {
                 // Skip empty buffer
                 i++;
@@ -1522,8 +1614,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int i = componentId;
 
         while (length > 0) {
-            Component c = components[i];
-            int localLength = Math.min(length, c.endOffset - index);
+            Component c = components[componentsStart + i];
+            int localLength = Math.min(length, c.endOffset() - index);
             c.buf.getBytes(c.idx(index), dst, dstIndex, localLength);
             index += localLength;
             dstIndex += localLength;
@@ -1542,7 +1634,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      */
     public ByteBuf component(int cIndex) {
         checkComponentIndex(cIndex);
-        return components[cIndex].duplicate();
+        return components[componentsStart + cIndex].duplicate();
     }
 
     /**
@@ -1563,7 +1655,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      */
     public ByteBuf internalComponent(int cIndex) {
         checkComponentIndex(cIndex);
-        return components[cIndex].slice();
+        return components[componentsStart + cIndex].slice();
     }
 
     /**
@@ -1581,7 +1673,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     private Component findComponent(int offset) {
         Component la = lastAccessed;
-        if (la != null && offset >= la.offset && offset < la.endOffset) {
+        if (la != null && offset >= la.start - offsetBase && offset < la.end - offsetBase) {
            ensureAccessible();
            return la;
         }
@@ -1591,19 +1683,20 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     private Component findComponent0(int offset) {
         Component la = lastAccessed;
-        if (la != null && offset >= la.offset && offset < la.endOffset) {
+        if (la != null && offset >= la.start - offsetBase && offset < la.end - offsetBase) {
            return la;
         }
         return findIt(offset);
     }
 
     private Component findIt(int offset) {
+        final int base = offsetBase;
         for (int low = 0, high = componentCount; low <= high;) {
             int mid = low + high >>> 1;
-            Component c = components[mid];
-            if (offset >= c.endOffset) {
+            Component c = components[componentsStart + mid];
+            if (offset >= c.end - base) {
                 low = mid + 1;
-            } else if (offset < c.offset) {
+            } else if (offset < c.start - base) {
                 high = mid - 1;
             } else {
                 lastAccessed = c;
@@ -1621,11 +1714,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         case 0:
             return 1;
         case 1:
-            return components[0].buf.nioBufferCount();
+            return components[componentsStart].buf.nioBufferCount();
         default:
             int count = 0;
             for (int i = 0; i < size; i++) {
-                count += components[i].buf.nioBufferCount();
+                count += components[componentsStart + i].buf.nioBufferCount();
             }
             return count;
         }
@@ -1637,7 +1730,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         case 0:
             return EMPTY_NIO_BUFFER;
         case 1:
-            return components[0].internalNioBuffer(index, length);
+            return components[componentsStart].internalNioBuffer(index, length);
         default:
             throw new UnsupportedOperationException();
         }
@@ -1651,7 +1744,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         case 0:
             return EMPTY_NIO_BUFFER;
         case 1:
-            Component c = components[0];
+            Component c = components[componentsStart];
             ByteBuf buf = c.buf;
             if (buf.nioBufferCount() == 1) {
                 return buf.nioBuffer(c.idx(index), length);
@@ -1684,9 +1777,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         try {
             int i = toComponentIndex0(index);
             while (length > 0) {
-                Component c = components[i];
+                Component c = components[componentsStart + i];
                 ByteBuf s = c.buf;
-                int localLength = Math.min(length, c.endOffset - index);
+                int localLength = Math.min(length, c.endOffset() - index);
                 switch (s.nioBufferCount()) {
                 case 0:
                     throw new UnsupportedOperationException();
@@ -1735,19 +1828,17 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         }
 
         final int endCIndex = cIndex + numComponents;
-        final int startOffset = cIndex != 0 ? components[cIndex].offset : 0;
-        final int capacity = components[endCIndex - 1].endOffset - startOffset;
+        final int startOffset = cIndex != 0 ? components[componentsStart + cIndex].offset() : 0;
+        final int capacity = components[componentsStart + endCIndex - 1].endOffset() - startOffset;
         final ByteBuf consolidated = allocBuffer(capacity);
 
         for (int i = cIndex; i < endCIndex; i ++) {
-            components[i].transferTo(consolidated);
+            components[componentsStart + i].transferTo(consolidated);
         }
         lastAccessed = null;
         removeCompRange(cIndex + 1, endCIndex);
-        components[cIndex] = newComponent(consolidated, 0);
-        if (cIndex != 0 || numComponents != componentCount) {
-            updateComponentOffsets(cIndex);
-        }
+        // The merged component covers the same bytes, so the other components stay where they are.
+        components[componentsStart + cIndex] = newComponent(consolidated, startOffset);
     }
 
     /**
@@ -1764,7 +1855,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int writerIndex = writerIndex();
         if (readerIndex == writerIndex && writerIndex == capacity()) {
             for (int i = 0, size = componentCount; i < size; i++) {
-                components[i].free();
+                components[componentsStart + i].free();
             }
             lastAccessed = null;
             clearComps();
@@ -1777,8 +1868,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int firstComponentId = 0;
         Component c = null;
         for (int size = componentCount; firstComponentId < size; firstComponentId++) {
-            c = components[firstComponentId];
-            if (c.endOffset > readerIndex) {
+            c = components[componentsStart + firstComponentId];
+            if (c.endOffset() > readerIndex) {
                 break;
             }
             c.free();
@@ -1787,13 +1878,13 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return this; // Nothing to discard
         }
         Component la = lastAccessed;
-        if (la != null && la.endOffset <= readerIndex) {
+        if (la != null && la.endOffset() <= readerIndex) {
             lastAccessed = null;
         }
         removeCompRange(0, firstComponentId);
 
         // Update indexes and markers.
-        int offset = c.offset;
+        int offset = c.offset();
         updateComponentOffsets(0);
         setIndex(readerIndex - offset, writerIndex - offset);
         adjustMarkers(offset);
@@ -1812,7 +1903,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int writerIndex = writerIndex();
         if (readerIndex == writerIndex && writerIndex == capacity()) {
             for (int i = 0, size = componentCount; i < size; i++) {
-                components[i].free();
+                components[componentsStart + i].free();
             }
             lastAccessed = null;
             clearComps();
@@ -1824,19 +1915,16 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int firstComponentId = 0;
         Component c = null;
         for (int size = componentCount; firstComponentId < size; firstComponentId++) {
-            c = components[firstComponentId];
-            if (c.endOffset > readerIndex) {
+            c = components[componentsStart + firstComponentId];
+            if (c.endOffset() > readerIndex) {
                 break;
             }
             c.free();
         }
 
         // Replace the first readable component with a new slice.
-        int trimmedBytes = readerIndex - c.offset;
-        c.offset = 0;
-        c.endOffset -= readerIndex;
-        c.srcAdjustment += readerIndex;
-        c.adjustment += readerIndex;
+        int trimmedBytes = readerIndex - c.offset();
+        c.start += trimmedBytes;
         ByteBuf slice = c.slice;
         if (slice != null) {
             // We must replace the cached slice with a derived one to ensure that
@@ -1844,7 +1932,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             c.slice = slice.slice(trimmedBytes, c.length());
         }
         Component la = lastAccessed;
-        if (la != null && la.endOffset <= readerIndex) {
+        if (la != null && la.endOffset() <= readerIndex) {
             lastAccessed = null;
         }
 
@@ -1868,59 +1956,74 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         return result + ", components=" + componentCount + ')';
     }
 
-    private static final class Component {
+    private final class Component {
         final ByteBuf srcBuf; // the originally added buffer
         final ByteBuf buf; // srcBuf unwrapped zero or more times
 
+        // The fields below are relative to offsetBase rather than to index 0 of this CompositeByteBuf, so that
+        // adding or removing bytes in front of a component does not require to update it.
         int srcAdjustment; // index of the start of this CompositeByteBuf relative to srcBuf
         int adjustment; // index of the start of this CompositeByteBuf relative to buf
 
-        int offset; // offset of this component within this CompositeByteBuf
-        int endOffset; // end offset of this component within this CompositeByteBuf
+        int start; // offset of this component
+        int end; // end offset of this component
 
         private ByteBuf slice; // cached slice, may be null
 
         Component(ByteBuf srcBuf, int srcOffset, ByteBuf buf, int bufOffset,
                 int offset, int len, ByteBuf slice) {
+            start = offsetBase + offset;
             this.srcBuf = srcBuf;
-            this.srcAdjustment = srcOffset - offset;
+            this.srcAdjustment = srcOffset - start;
             this.buf = buf;
-            this.adjustment = bufOffset - offset;
-            this.offset = offset;
-            this.endOffset = offset + len;
+            this.adjustment = bufOffset - start;
+            this.end = start + len;
             this.slice = slice;
         }
 
+        // offset of this component within this CompositeByteBuf
+        int offset() {
+            return start - offsetBase;
+        }
+
+        // end offset of this component within this CompositeByteBuf
+        int endOffset() {
+            return end - offsetBase;
+        }
+
         int srcIdx(int index) {
-            return index + srcAdjustment;
+            return index + offsetBase + srcAdjustment;
         }
 
         int idx(int index) {
-            return index + adjustment;
+            return index + offsetBase + adjustment;
         }
 
         int length() {
-            return endOffset - offset;
+            return end - start;
         }
 
         void reposition(int newOffset) {
-            int move = newOffset - offset;
-            endOffset += move;
-            srcAdjustment -= move;
-            adjustment -= move;
-            offset = newOffset;
+            move(newOffset - offset());
+        }
+
+        void move(int delta) {
+            start += delta;
+            end += delta;
+            srcAdjustment -= delta;
+            adjustment -= delta;
         }
 
         // copy then release
         void transferTo(ByteBuf dst) {
-            dst.writeBytes(buf, idx(offset), length());
+            dst.writeBytes(buf, start + adjustment, length());
             free();
         }
 
         ByteBuf slice() {
             ByteBuf s = slice;
             if (s == null) {
-                slice = s = srcBuf.slice(srcIdx(offset), length());
+                slice = s = srcBuf.slice(start + srcAdjustment, length());
             }
             return s;
         }
@@ -2243,7 +2346,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         // We're not using foreach to avoid creating an iterator.
         // see https://github.com/netty/netty/issues/2642
         for (int i = 0, size = componentCount; i < size; i++) {
-            components[i].free();
+            components[componentsStart + i].free();
         }
     }
 
@@ -2275,7 +2378,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
                 throw new NoSuchElementException();
             }
             try {
-                return components[index++].slice();
+                return components[componentsStart + index++].slice();
             } catch (IndexOutOfBoundsException e) {
                 throw new ConcurrentModificationException();
             }
@@ -2301,44 +2404,78 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         if (from >= to) {
             return;
         }
-        final int size = componentCount;
+        final int size = componentCount, start = componentsStart, count = to - from;
         assert from >= 0 && to <= size;
-        if (to < size) {
-            System.arraycopy(components, to, components, from, size - to);
+        if (from < size - to) {
+            // Fewer components in front of the range, move them up.
+            if (from > 0) {
+                System.arraycopy(components, start, components, start + count, from);
+            }
+            for (int i = start; i < start + count; i++) {
+                components[i] = null;
+            }
+            componentsStart = start + count;
+        } else {
+            if (to < size) {
+                System.arraycopy(components, start + to, components, start + from, size - to);
+            }
+            for (int i = start + size - count; i < start + size; i++) {
+                components[i] = null;
+            }
         }
-        int newSize = size - to + from;
-        for (int i = newSize; i < size; i++) {
-            components[i] = null;
+        componentCount = size - count;
+        if (componentCount == 0) {
+            componentsStart = 0;
+            offsetBase = 0;
         }
-        componentCount = newSize;
     }
 
     private void addComp(int i, Component c) {
         shiftComps(i, 1);
-        components[i] = c;
+        components[componentsStart + i] = c;
     }
 
     private void shiftComps(int i, int count) {
-        final int size = componentCount, newSize = size + count;
+        final int size = componentCount, newSize = size + count, start = componentsStart;
         assert i >= 0 && i <= size && count > 0;
-        if (newSize > components.length) {
-            // grow the array
-            int newArrSize = Math.max(size + (size >> 1), newSize);
-            Component[] newArr;
-            if (i == size) {
-                newArr = Arrays.copyOf(components, newArrSize, Component[].class);
+        // Only ever move the components on the shorter side of i, so that adding at either end is cheap.
+        final boolean front = i < size - i;
+        if (front && start >= count) {
+            if (i > 0) {
+                System.arraycopy(components, start, components, start - count, i);
+            }
+            componentsStart = start - count;
+        } else if (!front && components.length - start - size >= count) {
+            if (i < size) {
+                System.arraycopy(components, start + i, components, start + i + count, size - i);
+            }
+        } else {
+            // No room on that side. Recentre the components if that leaves enough free slots on both sides, e.g.
+            // when components are added at the end and removed from the start, or grow the array so it can be
+            // recentred next time.
+            final Component[] oldArr = components;
+            final Component[] newArr = newSize + (newSize >> 1) > oldArr.length ?
+                    new Component[newSize << 1] : oldArr;
+            final int free = newArr.length - newSize;
+            final int newStart = i == size ? Math.min(start, free >> 1) : free + 1 >> 1;
+            if (newArr != oldArr || newStart <= start) {
+                System.arraycopy(oldArr, start, newArr, newStart, i);
+                System.arraycopy(oldArr, start + i, newArr, newStart + i + count, size - i);
             } else {
-                newArr = new Component[newArrSize];
-                if (i > 0) {
-                    System.arraycopy(components, 0, newArr, 0, i);
+                // Moving up in place, the components after i must go first.
+                System.arraycopy(oldArr, start + i, newArr, newStart + i + count, size - i);
+                System.arraycopy(oldArr, start, newArr, newStart, i);
+            }
+            if (newArr == oldArr) {
+                for (int j = start; j < newStart; j++) {
+                    oldArr[j] = null;
                 }
-                if (i < size) {
-                    System.arraycopy(components, i, newArr, i + count, size - i);
+                for (int j = newStart + newSize; j < start + size; j++) {
+                    oldArr[j] = null;
                 }
             }
             components = newArr;
-        } else if (i < size) {
-            System.arraycopy(components, i, components, i + count, size - i);
+            componentsStart = newStart;
         }
         componentCount = newSize;
     }
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.internal.CurrentCpuProvider;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+/**
+ * Resolves the CPU the calling {@link Thread} is currently running on, which is used by the
+ * {@link PooledByteBufAllocator} to select an arena per CPU.
+ * <p>
+ * If {@code netty-transport-native-unix-common} is on the classpath and its native library was loaded (for example
+ * by the epoll transport) {@code sched_getcpu()} is used. Otherwise we fall back to a hash of the {@link Thread} id,
+ * which still spreads threads over all arenas but does not follow the thread if it is migrated to another CPU.
+ */
+final class CurrentCpu {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(CurrentCpu.class);
+
+    // How many calls fall back to the hash of the thread id before sched_getcpu() is called again if the native
+    // library was not loaded yet.
+    private static final int NATIVE_RETRY_CALLS = 4096;
+
+    // Only resolved once via reflection, the calls themselves are plain interface calls.
+    private static final CurrentCpuProvider NATIVE_CURRENT_CPU;
+    private static volatile boolean nativeCurrentCpu;
+    // Set once sched_getcpu() turned out to be unsupported or failed for another reason than the native library not
+    // being loaded yet.
+    private static volatile boolean nativeCurrentCpuUnsupported;
+    // Counts down the calls until sched_getcpu() is called again. Not synchronized, as a lost update only delays the
+    // next call a bit.
+    private static int nativeRetryCountdown;
+
+    static {
+        CurrentCpuProvider provider = null;
+        try {
+            Class<?> clazz = Class.forName("io.netty.channel.unix.NativeCurrentCpuProvider", true,
+                    CurrentCpu.class.getClassLoader());
+            provider = (CurrentCpuProvider) clazz.getDeclaredConstructor().newInstance();
+        } catch (Throwable cause) {
+            logger.debug("io.netty.channel.unix.NativeCurrentCpuProvider: unavailable", cause);
+        }
+        NATIVE_CURRENT_CPU = provider;
+        nativeCurrentCpu = provider != null;
+        nativeCurrentCpuUnsupported = provider == null;
+    }
+
+    private CurrentCpu() { }
+
+    /**
+     * Returns a non-negative index which identifies the CPU the calling {@link Thread} is running on.
+     */
+    static int currentCpu() {
+        if (nativeCurrentCpu || !nativeCurrentCpuUnsupported && --nativeRetryCountdown <= 0) {
+            int cpu = nativeCurrentCpu();
+            if (cpu >= 0) {
+                return cpu;
+            }
+        }
+        return hashedCpu(Thread.currentThread().getId());
+    }
+
+    private static int nativeCurrentCpu() {
+        try {
+            int cpu = NATIVE_CURRENT_CPU.currentCpu();
+            if (cpu >= 0) {
+                if (!nativeCurrentCpu) {
+                    // The native library was loaded in the meantime.
+                    nativeCurrentCpu = true;
+                }
+                return cpu;
+            }
+            // sched_getcpu() is not supported, don't try again.
+            nativeCurrentCpuUnsupported = true;
+        } catch (UnsatisfiedLinkError e) {
+            // The native library may still be loaded later on, for example once the epoll transport is used.
+            nativeRetryCountdown = NATIVE_RETRY_CALLS;
+        } catch (Throwable cause) {
+            logger.debug("Failed to call io.netty.channel.unix.NativeCurrentCpuProvider.currentCpu()", cause);
+            nativeCurrentCpuUnsupported = true;
+        }
+        nativeCurrentCpu = false;
+        return -1;
+    }
+
+    static int hashedCpu(long threadId) {
+        // Mix the bits so sequentially created threads do not end up on neighbouring arenas in lock-step.
+        long h = threadId * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int) h & Integer.MAX_VALUE;
+    }
+}
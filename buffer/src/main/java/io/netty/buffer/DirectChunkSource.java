@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.internal.UnstableApi;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Provides the memory that backs the chunks of the direct arenas of a {@link PooledByteBufAllocator}, for example
+ * to back them by huge pages. Huge allocations, which are not pooled, are not served by the {@link DirectChunkSource}.
+ */
+@UnstableApi
+public interface DirectChunkSource {
+
+    /**
+     * Returns the alignment in bytes the chunk size of the {@link PooledByteBufAllocator} must be a multiple of, or
+     * {@code 0} if there is no such requirement. If not {@code 0} the memory returned by {@link #allocate(int)} must
+     * be aligned to it as well, so no extra memory is allocated to satisfy the {@code directMemoryCacheAlignment}.
+     */
+    int chunkAlignment();
+
+    /**
+     * Allocates a new direct {@link ByteBuffer} with the given {@code capacity}. The returned buffer will only ever
+     * be released via {@link #free(ByteBuffer)}.
+     */
+    ByteBuffer allocate(int capacity);
+
+    /**
+     * Releases a {@link ByteBuffer} that was allocated by {@link #allocate(int)}.
+     */
+    void free(ByteBuffer buffer);
+}
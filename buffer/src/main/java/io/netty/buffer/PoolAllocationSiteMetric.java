@@ -0,0 +1,37 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+/**
+ * Metrics for a sampled allocation site of an arena.
+ */
+public interface PoolAllocationSiteMetric {
+
+    /**
+     * Return the stack frame outside of the allocator that issued the allocations.
+     */
+    String site();
+
+    /**
+     * Return the number of sampled allocations that were issued from this site.
+     */
+    long numSamples();
+
+    /**
+     * Return the sum of the capacities that were requested by the sampled allocations of this site.
+     */
+    long sampledBytes();
+}
@@ -22,6 +22,7 @@ import io.netty.util.internal.StringUtil;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -31,6 +32,7 @@ import static java.lang.Math.max;
 
 abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
     static final boolean HAS_UNSAFE = PlatformDependent.hasUnsafe();
+    private static final int MAX_ALLOCATION_SITES = 256;
 
     enum SizeClass {
         Small,
@@ -53,9 +55,15 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
 
     private final List<PoolChunkListMetric> chunkListMetrics;
 
+    // Histogram of the pooled allocations per sizeIdx, updated without holding any lock.
+    private final SizeClassCounter[] sizeClassCounters;
+    private final List<PoolSizeClassMetric> sizeClassMetrics;
+    // null if the sampling of allocation sites is disabled.
+    private final AllocationSiteSampler allocationSiteSampler;
+
     // Metrics for allocations and deallocations
-    private long allocationsNormal;
     // We need to use the LongCounter here as this is not guarded via synchronized block.
+    private final LongCounter allocationsNormal = PlatformDependent.newLongCounter();
     private final LongCounter allocationsSmall = PlatformDependent.newLongCounter();
     private final LongCounter allocationsHuge = PlatformDependent.newLongCounter();
     private final LongCounter activeBytesHuge = PlatformDependent.newLongCounter();
@@ -66,6 +74,10 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
     // We need to use the LongCounter here as this is not guarded via synchronized block.
     private final LongCounter deallocationsHuge = PlatformDependent.newLongCounter();
 
+    // Chunks that were destroyed because they were idle, see reclaimIdleChunks(...).
+    private long reclaimedChunks;
+    private long reclaimedBytes;
+
     // Number of thread caches backed by this arena.
     final AtomicInteger numThreadCaches = new AtomicInteger();
 
@@ -107,6 +119,15 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
         metrics.add(q075);
         metrics.add(q100);
         chunkListMetrics = Collections.unmodifiableList(metrics);
+
+        sizeClassCounters = new SizeClassCounter[nSizes];
+        for (int i = 0; i < sizeClassCounters.length; i++) {
+            sizeClassCounters[i] = new SizeClassCounter(i, sizeIdx2size(i));
+        }
+        sizeClassMetrics = Collections.<PoolSizeClassMetric>unmodifiableList(Arrays.asList(sizeClassCounters));
+        allocationSiteSampler = PooledByteBufAllocator.DEFAULT_ALLOCATION_SITE_SAMPLE_INTERVAL > 0 ?
+                new AllocationSiteSampler(PooledByteBufAllocator.DEFAULT_ALLOCATION_SITE_SAMPLE_INTERVAL,
+                        MAX_ALLOCATION_SITES) : null;
     }
 
     private PoolSubpage<T> newSubpagePoolHead() {
@@ -132,6 +153,13 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
     private void allocate(PoolThreadCache cache, PooledByteBuf<T> buf, final int reqCapacity) {
         final int sizeIdx = size2SizeIdx(reqCapacity);
 
+        if (sizeIdx < nSizes) {
+            sizeClassCounters[sizeIdx].record(reqCapacity);
+        }
+        if (allocationSiteSampler != null) {
+            allocationSiteSampler.sample(reqCapacity);
+        }
+
         if (sizeIdx <= smallMaxSizeIdx) {
             tcacheAllocateSmall(cache, buf, reqCapacity, sizeIdx);
         } else if (sizeIdx < nSizes) {
@@ -152,59 +180,102 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
             return;
         }
 
+        final PoolSubpage<T> head = smallSubpagePools[sizeIdx];
+
+        // Try the first subpage of the pool without holding the lock of the head. This only fails if the subpage
+        // became full or was destroyed concurrently.
+        PoolSubpage<T> s = head.next;
+        if (s != head && allocateFromSubpage(head, s, buf, reqCapacity, cache)) {
+            incSmallAllocation();
+            return;
+        }
+
         /**
          * Synchronize on the head. This is needed as {@link PoolChunk#allocateSubpage(int)} and
          * {@link PoolChunk#free(long)} may modify the doubly linked list as well.
          */
-        final PoolSubpage<T> head = smallSubpagePools[sizeIdx];
-        final boolean needsNormalAllocation;
+        boolean needsNormalAllocation = true;
         synchronized (head) {
-            final PoolSubpage<T> s = head.next;
-            needsNormalAllocation = s == head;
-            if (!needsNormalAllocation) {
-                assert s.doNotDestroy && s.elemSize == sizeIdx2size(sizeIdx);
-                long handle = s.allocate();
-                assert handle >= 0;
-                s.chunk.initBufWithSubpage(buf, null, handle, reqCapacity, cache);
+            s = head.next;
+            while (s != head) {
+                assert s.elemSize == sizeIdx2size(sizeIdx);
+                PoolSubpage<T> next = s.next;
+                if (allocateFromSubpage(head, s, buf, reqCapacity, cache)) {
+                    needsNormalAllocation = false;
+                    break;
+                }
+                // Subpages that became full concurrently are still in the pool, remove them.
+                s.removeFromPoolIfFull();
+                s = next;
             }
         }
 
         if (needsNormalAllocation) {
-            synchronized (this) {
-                allocateNormal(buf, reqCapacity, sizeIdx, cache);
-            }
+            allocateNormal(buf, reqCapacity, sizeIdx, cache);
         }
 
         incSmallAllocation();
     }
 
+    private static <T> boolean allocateFromSubpage(PoolSubpage<T> head, PoolSubpage<T> s, PooledByteBuf<T> buf,
+                                                   int reqCapacity, PoolThreadCache cache) {
+        long handle = s.allocate();
+        if (handle < 0) {
+            return false;
+        }
+        if (s.isFull()) {
+            synchronized (head) {
+                s.removeFromPoolIfFull();
+            }
+        }
+        s.chunk.initBufWithSubpage(buf, null, handle, reqCapacity, cache);
+        return true;
+    }
+
     private void tcacheAllocateNormal(PoolThreadCache cache, PooledByteBuf<T> buf, final int reqCapacity,
                                       final int sizeIdx) {
         if (cache.allocateNormal(this, buf, reqCapacity, sizeIdx)) {
             // was able to allocate out of the cache so move on
             return;
         }
-        synchronized (this) {
-            allocateNormal(buf, reqCapacity, sizeIdx, cache);
-            ++allocationsNormal;
-        }
+        allocateNormal(buf, reqCapacity, sizeIdx, cache);
+        allocationsNormal.increment();
     }
 
-    // Method must be called inside synchronized(this) { ... } block
     private void allocateNormal(PooledByteBuf<T> buf, int reqCapacity, int sizeIdx, PoolThreadCache threadCache) {
-        if (q050.allocate(buf, reqCapacity, sizeIdx, threadCache) ||
-            q025.allocate(buf, reqCapacity, sizeIdx, threadCache) ||
-            q000.allocate(buf, reqCapacity, sizeIdx, threadCache) ||
-            qInit.allocate(buf, reqCapacity, sizeIdx, threadCache) ||
-            q075.allocate(buf, reqCapacity, sizeIdx, threadCache)) {
-            return;
+        synchronized (this) {
+            if (allocateFromChunkLists(buf, reqCapacity, sizeIdx, threadCache)) {
+                return;
+            }
         }
 
-        // Add a new chunk.
+        // Creating a chunk is expensive as its memory has to be allocated (and may be zeroed), so do it without
+        // holding the lock of the arena which would otherwise stall all other threads using this arena.
         PoolChunk<T> c = newChunk(pageSize, nPSizes, pageShifts, chunkSize);
-        boolean success = c.allocate(buf, reqCapacity, sizeIdx, threadCache);
-        assert success;
-        qInit.add(c);
+        final boolean destroyChunk;
+        synchronized (this) {
+            // Another thread may have added a chunk in the meantime.
+            destroyChunk = allocateFromChunkLists(buf, reqCapacity, sizeIdx, threadCache);
+            if (!destroyChunk) {
+                // Add a new chunk.
+                boolean success = c.allocate(buf, reqCapacity, sizeIdx, threadCache);
+                assert success;
+                qInit.add(c);
+            }
+        }
+        if (destroyChunk) {
+            destroyChunk(c);
+        }
+    }
+
+    // Method must be called inside synchronized(this) { ... } block
+    private boolean allocateFromChunkLists(PooledByteBuf<T> buf, int reqCapacity, int sizeIdx,
+                                           PoolThreadCache threadCache) {
+        return q050.allocate(buf, reqCapacity, sizeIdx, threadCache) ||
+               q025.allocate(buf, reqCapacity, sizeIdx, threadCache) ||
+               q000.allocate(buf, reqCapacity, sizeIdx, threadCache) ||
+               qInit.allocate(buf, reqCapacity, sizeIdx, threadCache) ||
+               q075.allocate(buf, reqCapacity, sizeIdx, threadCache);
     }
 
     private void incSmallAllocation() {
@@ -265,6 +336,47 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
         }
     }
 
+    /**
+     * Destroys the {@link PoolChunk}s that were completely free for at least {@code maxIdleNanos}, while retaining at
+     * most {@code maxRetainedChunks} completely free chunks. Returns the number of bytes that were released.
+     */
+    long reclaimIdleChunks(long maxIdleNanos, int maxRetainedChunks) {
+        List<PoolChunk<T>> idleChunks = new ArrayList<PoolChunk<T>>(0);
+        long bytes = 0;
+        synchronized (this) {
+            // Completely free chunks are only ever found in qInit, as all other lists destroy or move a chunk
+            // before it becomes completely free.
+            qInit.removeIdleChunks(System.nanoTime(), maxIdleNanos, maxRetainedChunks, idleChunks);
+            if (idleChunks.isEmpty()) {
+                return 0;
+            }
+            for (PoolChunk<T> chunk: idleChunks) {
+                bytes += chunk.chunkSize();
+            }
+            reclaimedChunks += idleChunks.size();
+            reclaimedBytes += bytes;
+        }
+        for (PoolChunk<T> chunk: idleChunks) {
+            // destroyChunk not need to be called while holding the synchronized lock.
+            destroyChunk(chunk);
+        }
+        return bytes;
+    }
+
+    /**
+     * Return the number of chunks that were destroyed because they were idle.
+     */
+    synchronized long numReclaimedChunks() {
+        return reclaimedChunks;
+    }
+
+    /**
+     * Return the number of bytes that were released by destroying idle chunks.
+     */
+    synchronized long reclaimedBytes() {
+        return reclaimedBytes;
+    }
+
     PoolSubpage<T> findSubpagePoolHead(int sizeIdx) {
         return smallSubpagePools[sizeIdx];
     }
@@ -354,11 +466,7 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
 
     @Override
     public long numAllocations() {
-        final long allocsNormal;
-        synchronized (this) {
-            allocsNormal = allocationsNormal;
-        }
-        return allocationsSmall.value() + allocsNormal + allocationsHuge.value();
+        return allocationsSmall.value() + allocationsNormal.value() + allocationsHuge.value();
     }
 
     @Override
@@ -372,8 +480,8 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
     }
 
     @Override
-    public synchronized long numNormalAllocations() {
-        return allocationsNormal;
+    public long numNormalAllocations() {
+        return allocationsNormal.value();
     }
 
     @Override
@@ -412,10 +520,10 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
 
     @Override
     public  long numActiveAllocations() {
-        long val = allocationsSmall.value() + allocationsHuge.value()
+        long val = allocationsSmall.value() + allocationsNormal.value() + allocationsHuge.value()
                 - deallocationsHuge.value();
         synchronized (this) {
-            val += allocationsNormal - (deallocationsSmall + deallocationsNormal);
+            val -= deallocationsSmall + deallocationsNormal;
         }
         return max(val, 0);
     }
@@ -432,11 +540,7 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
 
     @Override
     public long numActiveNormalAllocations() {
-        final long val;
-        synchronized (this) {
-            val = allocationsNormal - deallocationsNormal;
-        }
-        return max(val, 0);
+        return max(numNormalAllocations() - numNormalDeallocations(), 0);
     }
 
     @Override
@@ -444,6 +548,19 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
         return max(numHugeAllocations() - numHugeDeallocations(), 0);
     }
 
+    @Override
+    public List<PoolSizeClassMetric> sizeClasses() {
+        return sizeClassMetrics;
+    }
+
+    @Override
+    public List<PoolAllocationSiteMetric> allocationSites() {
+        if (allocationSiteSampler == null) {
+            return Collections.emptyList();
+        }
+        return allocationSiteSampler.sites();
+    }
+
     @Override
     public long numActiveBytes() {
         long val = activeBytesHuge.value();
@@ -540,6 +657,58 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
         }
     }
 
+    private static final class SizeClassCounter implements PoolSizeClassMetric {
+        private final int sizeIdx;
+        private final int size;
+        private final LongCounter allocations = PlatformDependent.newLongCounter();
+        private final LongCounter requestedBytes = PlatformDependent.newLongCounter();
+
+        SizeClassCounter(int sizeIdx, int size) {
+            this.sizeIdx = sizeIdx;
+            this.size = size;
+        }
+
+        void record(int reqCapacity) {
+            allocations.increment();
+            requestedBytes.add(reqCapacity);
+        }
+
+        @Override
+        public int sizeIdx() {
+            return sizeIdx;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public long numAllocations() {
+            return allocations.value();
+        }
+
+        @Override
+        public long requestedBytes() {
+            return requestedBytes.value();
+        }
+
+        @Override
+        public long grantedBytes() {
+            return numAllocations() * size;
+        }
+
+        @Override
+        public String toString() {
+            return new StringBuilder(64)
+                    .append(sizeIdx).append(" (").append(size).append("): ")
+                    .append(numAllocations()).append(" allocations, ")
+                    .append(requestedBytes()).append(" requested bytes, ")
+                    .append(grantedBytes()).append(" granted bytes")
+                    .toString();
+        }
+    }
+
     static final class HeapArena extends PoolArena<byte[]> {
 
         HeapArena(PooledByteBufAllocator parent, int pageSize, int pageShifts,
@@ -590,10 +759,24 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
 
     static final class DirectArena extends PoolArena<ByteBuffer> {
 
+        // null if the default direct memory allocation should be used.
+        private final DirectChunkSource chunkSource;
+        // true if the memory of the chunkSource already satisfies the directMemoryCacheAlignment.
+        private final boolean chunkSourceAligned;
+
         DirectArena(PooledByteBufAllocator parent, int pageSize, int pageShifts,
                     int chunkSize, int directMemoryCacheAlignment) {
+            this(parent, pageSize, pageShifts, chunkSize, directMemoryCacheAlignment, null);
+        }
+
+        DirectArena(PooledByteBufAllocator parent, int pageSize, int pageShifts,
+                    int chunkSize, int directMemoryCacheAlignment, DirectChunkSource chunkSource) {
             super(parent, pageSize, pageShifts, chunkSize,
                   directMemoryCacheAlignment);
+            this.chunkSource = chunkSource;
+            int chunkAlignment = chunkSource == null ? 0 : chunkSource.chunkAlignment();
+            chunkSourceAligned = chunkAlignment > 0 && directMemoryCacheAlignment > 0 &&
+                    chunkAlignment % directMemoryCacheAlignment == 0;
         }
 
         @Override
@@ -616,18 +799,24 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
         @Override
         protected PoolChunk<ByteBuffer> newChunk(int pageSize, int maxPageIdx,
             int pageShifts, int chunkSize) {
-            if (directMemoryCacheAlignment == 0) {
+            if (directMemoryCacheAlignment == 0 || chunkSourceAligned) {
+                // Memory of the chunk source is already aligned, there is no need to grow the chunk, which could
+                // waste a whole huge page.
                 return new PoolChunk<ByteBuffer>(this,
-                        allocateDirect(chunkSize), pageSize, pageShifts,
+                        allocateChunkMemory(chunkSize), pageSize, pageShifts,
                         chunkSize, maxPageIdx, 0);
             }
-            final ByteBuffer memory = allocateDirect(chunkSize
+            final ByteBuffer memory = allocateChunkMemory(chunkSize
                     + directMemoryCacheAlignment);
             return new PoolChunk<ByteBuffer>(this, memory, pageSize,
                     pageShifts, chunkSize, maxPageIdx,
                     offsetCacheLine(memory));
         }
 
+        private ByteBuffer allocateChunkMemory(int capacity) {
+            return chunkSource == null ? allocateDirect(capacity) : chunkSource.allocate(capacity);
+        }
+
         @Override
         protected PoolChunk<ByteBuffer> newUnpooledChunk(int capacity) {
             if (directMemoryCacheAlignment == 0) {
@@ -647,7 +836,9 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
 
         @Override
         protected void destroyChunk(PoolChunk<ByteBuffer> chunk) {
-            if (PlatformDependent.useDirectBufferNoCleaner()) {
+            if (chunkSource != null && !chunk.unpooled) {
+                chunkSource.free(chunk.memory);
+            } else if (PlatformDependent.useDirectBufferNoCleaner()) {
                 PlatformDependent.freeDirectNoCleaner(chunk.memory);
             } else {
                 PlatformDependent.freeDirectBuffer(chunk.memory);
@@ -152,4 +152,16 @@ public interface PoolArenaMetric extends SizeClassesMetric {
      * Return the number of active bytes that are currently allocated by the arena.
      */
     long numActiveBytes();
+
+    /**
+     * Returns an unmodifiable {@link List} which holds a {@link PoolSizeClassMetric} for every size class of the
+     * arena, ordered by {@code sizeIdx}. Huge allocations are not part of any size class.
+     */
+    List<PoolSizeClassMetric> sizeClasses();
+
+    /**
+     * Returns an unmodifiable {@link List} which holds the {@link PoolAllocationSiteMetric}s of the sampled
+     * allocations. This list is empty unless {@code io.netty.allocator.allocationSiteSampleInterval} is set.
+     */
+    List<PoolAllocationSiteMetric> allocationSites();
 }
@@ -15,13 +15,9 @@
  */
 package io.netty.buffer;
 
-import io.netty.util.collection.IntObjectHashMap;
-import io.netty.util.collection.IntObjectMap;
-
 import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.Deque;
-import java.util.PriorityQueue;
 
 /**
  * Description of algorithm for PageRun/PoolSubpage allocation from PoolChunk
@@ -91,7 +87,7 @@ import java.util.PriorityQueue;
  *
  * runsAvail:
  * ----------
- * an array of {@link PriorityQueue}.
+ * an array of {@link LongPriorityQueue}.
  * Each queue manages same size of runs.
  * Runs are sorted by offset, so that we always allocate runs with smaller offset.
  *
@@ -120,8 +116,8 @@ import java.util.PriorityQueue;
  * Algorithm: [allocateSubpage(size)]
  * ----------
  * 1) find a not full subpage according to size.
- *    if it already exists just return, otherwise allocate a new PoolSubpage and call init()
- *    note that this subpage object is added to subpagesPool in the PoolArena when we init() it
+ *    if it already exists just return, otherwise allocate a new PoolSubpage and add it to the pool
+ *    note that this subpage object is added to subpagesPool in the PoolArena once its first element is allocated
  * 2) call subpage.allocate()
  *
  * Algorithm: [free(handle, length, nioBuffer)]
@@ -153,12 +149,12 @@ final class PoolChunk<T> implements PoolChunkMetric {
     /**
      * store the first page and last page of each avail run
      */
-    private final IntObjectMap<Long> runsAvailMap;
+    private final LongLongHashMap runsAvailMap;
 
     /**
      * manage all avail runs
      */
-    private final PriorityQueue<Long>[] runsAvail;
+    private final LongPriorityQueue[] runsAvail;
 
     /**
      * manage all subpages in this chunk
@@ -178,6 +174,11 @@ final class PoolChunk<T> implements PoolChunkMetric {
 
     int freeBytes;
 
+    // Set on every allocation and cleared by PoolChunkList.removeIdleChunks(...), which uses it together with
+    // idleSinceNanos to detect chunks that were completely free for a while. Both are guarded by the arena lock.
+    boolean touched;
+    long idleSinceNanos = -1;
+
     PoolChunkList<T> parent;
     PoolChunk<T> prev;
     PoolChunk<T> next;
@@ -197,7 +198,7 @@ final class PoolChunk<T> implements PoolChunkMetric {
         freeBytes = chunkSize;
 
         runsAvail = newRunsAvailqueueArray(maxPageIdx);
-        runsAvailMap = new IntObjectHashMap<Long>();
+        runsAvailMap = new LongLongHashMap(-1);
         subpages = new PoolSubpage[chunkSize >> pageShifts];
 
         //insert initial run, offset = 0, pages = chunkSize / pageSize
@@ -223,18 +224,17 @@ final class PoolChunk<T> implements PoolChunkMetric {
         cachedNioBuffers = null;
     }
 
-    @SuppressWarnings("unchecked")
-    private static PriorityQueue<Long>[] newRunsAvailqueueArray(int size) {
-        PriorityQueue<Long>[] queueArray = new PriorityQueue[size];
+    private static LongPriorityQueue[] newRunsAvailqueueArray(int size) {
+        LongPriorityQueue[] queueArray = new LongPriorityQueue[size];
         for (int i = 0; i < queueArray.length; i++) {
-            queueArray[i] = new PriorityQueue<Long>();
+            queueArray[i] = new LongPriorityQueue();
         }
         return queueArray;
     }
 
-    private void insertAvailRun(int runOffset, int pages, Long handle) {
+    private void insertAvailRun(int runOffset, int pages, long handle) {
         int pageIdxFloor = arena.pages2pageIdxFloor(pages);
-        PriorityQueue<Long> queue = runsAvail[pageIdxFloor];
+        LongPriorityQueue queue = runsAvail[pageIdxFloor];
         queue.offer(handle);
 
         //insert first page of run
@@ -245,18 +245,18 @@ final class PoolChunk<T> implements PoolChunkMetric {
         }
     }
 
-    private void insertAvailRun0(int runOffset, Long handle) {
-        Long pre = runsAvailMap.put(runOffset, handle);
-        assert pre == null;
+    private void insertAvailRun0(int runOffset, long handle) {
+        long pre = runsAvailMap.put(runOffset, handle);
+        assert pre == -1;
     }
 
     private void removeAvailRun(long handle) {
         int pageIdxFloor = arena.pages2pageIdxFloor(runPages(handle));
-        PriorityQueue<Long> queue = runsAvail[pageIdxFloor];
+        LongPriorityQueue queue = runsAvail[pageIdxFloor];
         removeAvailRun(queue, handle);
     }
 
-    private void removeAvailRun(PriorityQueue<Long> queue, long handle) {
+    private void removeAvailRun(LongPriorityQueue queue, long handle) {
         queue.remove(handle);
 
         int runOffset = runOffset(handle);
@@ -273,7 +273,7 @@ final class PoolChunk<T> implements PoolChunkMetric {
         return runOffset + pages - 1;
     }
 
-    private Long getAvailRunByOffset(int runOffset) {
+    private long getAvailRunByOffset(int runOffset) {
         return runsAvailMap.get(runOffset);
     }
 
@@ -299,6 +299,7 @@ final class PoolChunk<T> implements PoolChunkMetric {
     }
 
     boolean allocate(PooledByteBuf<T> buf, int reqCapacity, int sizeIdx, PoolThreadCache cache) {
+        touched = true;
         final long handle;
         if (sizeIdx <= arena.smallMaxSizeIdx) {
             // small
@@ -334,16 +335,14 @@ final class PoolChunk<T> implements PoolChunkMetric {
             }
 
             //get run with min offset in this queue
-            PriorityQueue<Long> queue = runsAvail[queueIdx];
+            LongPriorityQueue queue = runsAvail[queueIdx];
             long handle = queue.poll();
 
-            assert !isUsed(handle);
+            assert handle != LongPriorityQueue.NO_VALUE && !isUsed(handle) : "invalid handle: " + handle;
 
             removeAvailRun(queue, handle);
 
-            if (handle != -1) {
-                handle = splitLargeRun(handle, pages);
-            }
+            handle = splitLargeRun(handle, pages);
 
             freeBytes -= runSize(pageShifts, handle);
             return handle;
@@ -380,7 +379,7 @@ final class PoolChunk<T> implements PoolChunkMetric {
             return arena.nPSizes - 1;
         }
         for (int i = pageIdx; i < arena.nPSizes; i++) {
-            PriorityQueue<Long> queue = runsAvail[i];
+            LongPriorityQueue queue = runsAvail[i];
             if (queue != null && !queue.isEmpty()) {
                 return i;
             }
@@ -437,11 +436,17 @@ final class PoolChunk<T> implements PoolChunkMetric {
             int runOffset = runOffset(runHandle);
             int elemSize = arena.sizeIdx2size(sizeIdx);
 
-            PoolSubpage<T> subpage = new PoolSubpage<T>(head, this, pageShifts, runOffset,
+            PoolSubpage<T> subpage = new PoolSubpage<T>(this, pageShifts, runOffset,
                                runSize(pageShifts, runHandle), elemSize);
 
             subpages[runOffset] = subpage;
-            return subpage.allocate();
+            long handle = subpage.allocate();
+            // Only add the subpage to the pool after subpages[runOffset] was set, as adding it publishes it to the
+            // lock-free allocation path in PoolArena.
+            if (!subpage.isFull()) {
+                subpage.addToPool(head);
+            }
+            return handle;
         }
     }
 
@@ -502,8 +507,8 @@ final class PoolChunk<T> implements PoolChunkMetric {
             int runOffset = runOffset(handle);
             int runPages = runPages(handle);
 
-            Long pastRun = getAvailRunByOffset(runOffset - 1);
-            if (pastRun == null) {
+            long pastRun = getAvailRunByOffset(runOffset - 1);
+            if (pastRun == -1) {
                 return handle;
             }
 
@@ -526,8 +531,8 @@ final class PoolChunk<T> implements PoolChunkMetric {
             int runOffset = runOffset(handle);
             int runPages = runPages(handle);
 
-            Long nextRun = getAvailRunByOffset(runOffset + runPages);
-            if (nextRun == null) {
+            long nextRun = getAvailRunByOffset(runOffset + runPages);
+            if (nextRun == -1) {
                 return handle;
             }
 
@@ -555,7 +560,7 @@ final class PoolChunk<T> implements PoolChunkMetric {
                  PoolThreadCache threadCache) {
         if (isRun(handle)) {
             buf.init(this, nioBuffer, handle, runOffset(handle) << pageShifts,
-                     reqCapacity, runSize(pageShifts, handle), arena.parent.threadCache());
+                     reqCapacity, runSize(pageShifts, handle), threadCache);
         } else {
             initBufWithSubpage(buf, nioBuffer, handle, reqCapacity, threadCache);
         }
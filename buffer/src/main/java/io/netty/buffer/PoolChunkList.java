@@ -153,6 +153,40 @@ final class PoolChunkList<T> implements PoolChunkListMetric {
         return prevList.move(chunk);
     }
 
+    /**
+     * Removes the {@link PoolChunk}s which are completely free and were not used for at least {@code maxIdleNanos},
+     * while retaining at most {@code maxRetained} completely free chunks in this list. The removed chunks are added to
+     * {@code idleChunks} and must be destroyed by the caller.
+     * <p>
+     * A chunk is considered idle from the first time this method sees it completely free and not used since the
+     * previous call, so the precision is bound by the interval in which this method is called.
+     * <p>
+     * Method must be called inside synchronized(arena) { ... } block
+     */
+    void removeIdleChunks(long nanoTime, long maxIdleNanos, int maxRetained, List<PoolChunk<T>> idleChunks) {
+        int freeChunks = 0;
+        for (PoolChunk<T> cur = head; cur != null; cur = cur.next) {
+            if (cur.freeBytes == cur.chunkSize()) {
+                freeChunks++;
+            }
+        }
+
+        for (PoolChunk<T> cur = head; cur != null;) {
+            PoolChunk<T> next = cur.next;
+            if (cur.freeBytes != cur.chunkSize()) {
+                cur.idleSinceNanos = -1;
+            } else if (cur.touched || cur.idleSinceNanos == -1) {
+                cur.idleSinceNanos = nanoTime;
+            } else if (freeChunks > maxRetained && nanoTime - cur.idleSinceNanos >= maxIdleNanos) {
+                remove(cur);
+                idleChunks.add(cur);
+                freeChunks--;
+            }
+            cur.touched = false;
+            cur = next;
+        }
+    }
+
     void add(PoolChunk<T> chunk) {
         if (chunk.freeBytes <= freeMinThreshold) {
             nextList.add(chunk);
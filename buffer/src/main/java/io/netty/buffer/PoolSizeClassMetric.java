@@ -0,0 +1,48 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+/**
+ * Metrics for the allocations of a single size class of an arena.
+ */
+public interface PoolSizeClassMetric {
+
+    /**
+     * Return the index of the size class, see {@link SizeClassesMetric#size2SizeIdx(int)}.
+     */
+    int sizeIdx();
+
+    /**
+     * Return the size of the size class, which is the number of bytes granted per allocation.
+     */
+    int size();
+
+    /**
+     * Return the number of allocations that were served by this size class.
+     */
+    long numAllocations();
+
+    /**
+     * Return the sum of the capacities that were requested by the allocations of this size class.
+     */
+    long requestedBytes();
+
+    /**
+     * Return the sum of the bytes that were granted to the allocations of this size class.
+     * The difference to {@link #requestedBytes()} is the internal fragmentation caused by rounding up the requests.
+     */
+    long grantedBytes();
+}
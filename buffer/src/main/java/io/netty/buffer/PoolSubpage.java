@@ -16,29 +16,51 @@
 
 package io.netty.buffer;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongArray;
+
 import static io.netty.buffer.PoolChunk.RUN_OFFSET_SHIFT;
 import static io.netty.buffer.PoolChunk.SIZE_SHIFT;
 import static io.netty.buffer.PoolChunk.IS_USED_SHIFT;
 import static io.netty.buffer.PoolChunk.IS_SUBPAGE_SHIFT;
 import static io.netty.buffer.SizeClasses.LOG2_QUANTUM;
 
+/**
+ * A run of a {@link PoolChunk} that is split into elements of the same size.
+ * <p>
+ * Elements are allocated without holding any lock: {@link #allocate()} first reserves an element by decrementing
+ * {@link #numAvail} and then claims a free bit of the bitmap via CAS. Changes to the linked list of the subpage pool
+ * ({@link #prev} / {@link #next}) and {@link #free(PoolSubpage, int)} must be done while holding the lock of the
+ * pool head.
+ */
 final class PoolSubpage<T> implements PoolSubpageMetric {
 
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<PoolSubpage> NUM_AVAIL_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(PoolSubpage.class, "numAvail");
+
+    // Value of numAvail once the subpage was released back to its chunk.
+    private static final int DESTROYED = -1;
+
     final PoolChunk<T> chunk;
     private final int pageShifts;
     private final int runOffset;
     private final int runSize;
-    private final long[] bitmap;
+    private final AtomicLongArray bitmap;
 
     PoolSubpage<T> prev;
-    PoolSubpage<T> next;
-
-    boolean doNotDestroy;
-    int elemSize;
-    private int maxNumElems;
-    private int bitmapLength;
+    // volatile as it is read without holding the lock of the head by the allocation fast path.
+    volatile PoolSubpage<T> next;
+
+    volatile boolean doNotDestroy;
+    final int elemSize;
+    private final int maxNumElems;
+    private final int bitmapLength;
+    // Only a hint for the next free element, as it may be claimed concurrently.
     private int nextAvail;
-    private int numAvail;
+    private volatile int numAvail;
+    // Guarded by the lock of the head.
+    private boolean inPool;
 
     // TODO: Test if adding padding helps under contention
     //private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
@@ -51,54 +73,50 @@ final class PoolSubpage<T> implements PoolSubpageMetric {
         elemSize = -1;
         runSize = -1;
         bitmap = null;
+        maxNumElems = 0;
+        bitmapLength = 0;
+        doNotDestroy = true;
     }
 
-    PoolSubpage(PoolSubpage<T> head, PoolChunk<T> chunk, int pageShifts, int runOffset, int runSize, int elemSize) {
+    PoolSubpage(PoolChunk<T> chunk, int pageShifts, int runOffset, int runSize, int elemSize) {
         this.chunk = chunk;
         this.pageShifts = pageShifts;
         this.runOffset = runOffset;
         this.runSize = runSize;
         this.elemSize = elemSize;
-        bitmap = new long[runSize >>> 6 + LOG2_QUANTUM]; // runSize / 64 / QUANTUM
-        init(head, elemSize);
-    }
-
-    void init(PoolSubpage<T> head, int elemSize) {
-        doNotDestroy = true;
-        if (elemSize != 0) {
-            maxNumElems = numAvail = runSize / elemSize;
-            nextAvail = 0;
-            bitmapLength = maxNumElems >>> 6;
-            if ((maxNumElems & 63) != 0) {
-                bitmapLength ++;
-            }
+        bitmap = new AtomicLongArray(runSize >>> 6 + LOG2_QUANTUM); // runSize / 64 / QUANTUM
 
-            for (int i = 0; i < bitmapLength; i ++) {
-                bitmap[i] = 0;
-            }
+        maxNumElems = runSize / elemSize;
+        int bitmapLength = maxNumElems >>> 6;
+        if ((maxNumElems & 63) != 0) {
+            bitmapLength ++;
         }
-        addToPool(head);
+        this.bitmapLength = bitmapLength;
+        doNotDestroy = true;
+        numAvail = maxNumElems;
     }
 
     /**
-     * Returns the bitmap index of the subpage allocation.
+     * Returns the bitmap index of the subpage allocation or {@code -1} if the subpage is full or was destroyed.
+     * This method does not need to be called while holding the lock of the head, but if {@link #isFull()} returns
+     * {@code true} afterwards {@link #removeFromPoolIfFull()} must be called while holding it.
      */
     long allocate() {
-        if (numAvail == 0 || !doNotDestroy) {
-            return -1;
-        }
-
-        final int bitmapIdx = getNextAvail();
-        int q = bitmapIdx >>> 6;
-        int r = bitmapIdx & 63;
-        assert (bitmap[q] >>> r & 1) == 0;
-        bitmap[q] |= 1L << r;
-
-        if (-- numAvail == 0) {
-            removeFromPool();
+        // Reserve an element first, so there is guaranteed to be a free bit in the bitmap for us.
+        for (;;) {
+            int numAvail = this.numAvail;
+            if (numAvail <= 0) {
+                return -1;
+            }
+            if (NUM_AVAIL_UPDATER.compareAndSet(this, numAvail, numAvail - 1)) {
+                break;
+            }
         }
+        return toHandle(claimNextAvail());
+    }
 
-        return toHandle(bitmapIdx);
+    boolean isFull() {
+        return numAvail == 0;
     }
 
     /**
@@ -111,87 +129,108 @@ final class PoolSubpage<T> implements PoolSubpageMetric {
         }
         int q = bitmapIdx >>> 6;
         int r = bitmapIdx & 63;
-        assert (bitmap[q] >>> r & 1) != 0;
-        bitmap[q] ^= 1L << r;
+        for (;;) {
+            long bits = bitmap.get(q);
+            assert (bits >>> r & 1) != 0;
+            if (bitmap.compareAndSet(q, bits, bits ^ 1L << r)) {
+                break;
+            }
+        }
 
         setNextAvail(bitmapIdx);
 
-        if (numAvail ++ == 0) {
-            addToPool(head);
-            return true;
-        }
-
-        if (numAvail != maxNumElems) {
-            return true;
-        } else {
-            // Subpage not in use (numAvail == maxNumElems)
-            if (prev == next) {
-                // Do not remove if this subpage is the only one left in the pool.
+        for (;;) {
+            int numAvail = this.numAvail;
+            assert numAvail >= 0;
+            if (numAvail + 1 == maxNumElems && inPool && prev != next) {
+                // Subpage not in use anymore, remove it from the pool as there are other subpages left in the pool.
+                // The CAS fails if an element was reserved concurrently.
+                if (NUM_AVAIL_UPDATER.compareAndSet(this, numAvail, DESTROYED)) {
+                    doNotDestroy = false;
+                    removeFromPool();
+                    return false;
+                }
+            } else if (NUM_AVAIL_UPDATER.compareAndSet(this, numAvail, numAvail + 1)) {
+                if (!inPool) {
+                    addToPool(head);
+                }
                 return true;
             }
+        }
+    }
 
-            // Remove this subpage from the pool if there are other subpages left in the pool.
-            doNotDestroy = false;
+    /**
+     * Must be called while holding the lock of the head.
+     */
+    void removeFromPoolIfFull() {
+        if (inPool && numAvail == 0) {
             removeFromPool();
-            return false;
         }
     }
 
-    private void addToPool(PoolSubpage<T> head) {
-        assert prev == null && next == null;
+    /**
+     * Must be called while holding the lock of the head.
+     */
+    void addToPool(PoolSubpage<T> head) {
+        assert !inPool && prev == null && next == null;
         prev = head;
         next = head.next;
         next.prev = this;
+        inPool = true;
+        // Publishes this subpage to the allocation fast path, so it must be the last write.
         head.next = this;
     }
 
     private void removeFromPool() {
-        assert prev != null && next != null;
+        assert inPool && prev != null && next != null;
         prev.next = next;
         next.prev = prev;
         next = null;
         prev = null;
+        inPool = false;
     }
 
     private void setNextAvail(int bitmapIdx) {
         nextAvail = bitmapIdx;
     }
 
-    private int getNextAvail() {
+    private int claimNextAvail() {
         int nextAvail = this.nextAvail;
         if (nextAvail >= 0) {
             this.nextAvail = -1;
-            return nextAvail;
+            int q = nextAvail >>> 6;
+            long bits = bitmap.get(q);
+            long mask = 1L << (nextAvail & 63);
+            if ((bits & mask) == 0 && bitmap.compareAndSet(q, bits, bits | mask)) {
+                return nextAvail;
+            }
         }
-        return findNextAvail();
-    }
-
-    private int findNextAvail() {
-        final long[] bitmap = this.bitmap;
-        final int bitmapLength = this.bitmapLength;
-        for (int i = 0; i < bitmapLength; i ++) {
-            long bits = bitmap[i];
-            if (~bits != 0) {
-                return findNextAvail0(i, bits);
+        // As we reserved an element this will eventually succeed.
+        for (;;) {
+            int bitmapIdx = claimFirstAvail();
+            if (bitmapIdx >= 0) {
+                return bitmapIdx;
             }
         }
-        return -1;
     }
 
-    private int findNextAvail0(int i, long bits) {
+    private int claimFirstAvail() {
+        final AtomicLongArray bitmap = this.bitmap;
+        final int bitmapLength = this.bitmapLength;
         final int maxNumElems = this.maxNumElems;
-        final int baseVal = i << 6;
-
-        for (int j = 0; j < 64; j ++) {
-            if ((bits & 1) == 0) {
-                int val = baseVal | j;
-                if (val < maxNumElems) {
-                    return val;
-                } else {
+        for (int i = 0; i < bitmapLength; i ++) {
+            long bits = bitmap.get(i);
+            while (~bits != 0) {
+                int j = Long.numberOfTrailingZeros(~bits);
+                int val = i << 6 | j;
+                if (val >= maxNumElems) {
                     break;
                 }
+                if (bitmap.compareAndSet(i, bits, bits | 1L << j)) {
+                    return val;
+                }
+                bits = bitmap.get(i);
             }
-            bits >>>= 1;
         }
         return -1;
     }
@@ -207,32 +246,13 @@ final class PoolSubpage<T> implements PoolSubpageMetric {
 
     @Override
     public String toString() {
-        final boolean doNotDestroy;
-        final int maxNumElems;
-        final int numAvail;
-        final int elemSize;
         if (chunk == null) {
-            // This is the head so there is no need to synchronize at all as these never change.
-            doNotDestroy = true;
-            maxNumElems = 0;
-            numAvail = 0;
-            elemSize = -1;
-        } else {
-            synchronized (chunk.arena) {
-                if (!this.doNotDestroy) {
-                    doNotDestroy = false;
-                    // Not used for creating the String.
-                    maxNumElems = numAvail = elemSize = -1;
-                } else {
-                    doNotDestroy = true;
-                    maxNumElems = this.maxNumElems;
-                    numAvail = this.numAvail;
-                    elemSize = this.elemSize;
-                }
-            }
+            // This is the head so there is nothing to show.
+            return "(" + runOffset + ": 0/0, offset: " + runOffset + ", length: " + runSize + ", elemSize: -1)";
         }
 
-        if (!doNotDestroy) {
+        final int numAvail = this.numAvail;
+        if (numAvail == DESTROYED) {
             return "(" + runOffset + ": not in use)";
         }
 
@@ -242,14 +262,7 @@ final class PoolSubpage<T> implements PoolSubpageMetric {
 
     @Override
     public int maxNumElements() {
-        if (chunk == null) {
-            // It's the head.
-            return 0;
-        }
-
-        synchronized (chunk.arena) {
-            return maxNumElems;
-        }
+        return maxNumElems;
     }
 
     @Override
@@ -258,22 +271,13 @@ final class PoolSubpage<T> implements PoolSubpageMetric {
             // It's the head.
             return 0;
         }
-
-        synchronized (chunk.arena) {
-            return numAvail;
-        }
+        int numAvail = this.numAvail;
+        return numAvail == DESTROYED ? maxNumElems : numAvail;
     }
 
     @Override
     public int elementSize() {
-        if (chunk == null) {
-            // It's the head.
-            return -1;
-        }
-
-        synchronized (chunk.arena) {
-            return elemSize;
-        }
+        return elemSize;
     }
 
     @Override
@@ -61,23 +61,39 @@ final class PoolThreadCache {
 
     private int allocations;
 
+    // Number of allocations served out of this cache. This is only used by the PooledByteBufAllocator to detect idle
+    // caches and so it's fine that it's not thread-safe.
+    private int allocationHits;
+    private int lastObservedAllocationHits;
+
     // TODO: Test if adding padding helps under contention
     //private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
 
     PoolThreadCache(PoolArena<byte[]> heapArena, PoolArena<ByteBuffer> directArena,
                     int smallCacheSize, int normalCacheSize, int maxCachedBufferCapacity,
                     int freeSweepAllocationThreshold) {
+        this(heapArena, directArena, smallCacheSize, normalCacheSize, maxCachedBufferCapacity,
+             freeSweepAllocationThreshold, false);
+    }
+
+    /**
+     * Creates a new cache. If {@code shared} is {@code true} the cache may be used by multiple threads concurrently,
+     * which is the case when the {@link PooledByteBufAllocator} selects arenas per CPU.
+     */
+    PoolThreadCache(PoolArena<byte[]> heapArena, PoolArena<ByteBuffer> directArena,
+                    int smallCacheSize, int normalCacheSize, int maxCachedBufferCapacity,
+                    int freeSweepAllocationThreshold, boolean shared) {
         checkPositiveOrZero(maxCachedBufferCapacity, "maxCachedBufferCapacity");
         this.freeSweepAllocationThreshold = freeSweepAllocationThreshold;
         this.heapArena = heapArena;
         this.directArena = directArena;
         if (directArena != null) {
             smallSubPageDirectCaches = createSubPageCaches(
-                    smallCacheSize, directArena.numSmallSubpagePools);
+                    smallCacheSize, directArena.numSmallSubpagePools, shared);
 
             numShiftsNormalDirect = log2(directArena.pageSize);
             normalDirectCaches = createNormalCaches(
-                    normalCacheSize, maxCachedBufferCapacity, directArena);
+                    normalCacheSize, maxCachedBufferCapacity, directArena, shared);
 
             directArena.numThreadCaches.getAndIncrement();
         } else {
@@ -89,11 +105,11 @@ final class PoolThreadCache {
         if (heapArena != null) {
             // Create the caches for the heap allocations
             smallSubPageHeapCaches = createSubPageCaches(
-                    smallCacheSize, heapArena.numSmallSubpagePools);
+                    smallCacheSize, heapArena.numSmallSubpagePools, shared);
 
             numShiftsNormalHeap = log2(heapArena.pageSize);
             normalHeapCaches = createNormalCaches(
-                    normalCacheSize, maxCachedBufferCapacity, heapArena);
+                    normalCacheSize, maxCachedBufferCapacity, heapArena, shared);
 
             heapArena.numThreadCaches.getAndIncrement();
         } else {
@@ -113,13 +129,13 @@ final class PoolThreadCache {
     }
 
     private static <T> MemoryRegionCache<T>[] createSubPageCaches(
-            int cacheSize, int numCaches) {
+            int cacheSize, int numCaches, boolean shared) {
         if (cacheSize > 0 && numCaches > 0) {
             @SuppressWarnings("unchecked")
             MemoryRegionCache<T>[] cache = new MemoryRegionCache[numCaches];
             for (int i = 0; i < cache.length; i++) {
                 // TODO: maybe use cacheSize / cache.length
-                cache[i] = new SubPageMemoryRegionCache<T>(cacheSize);
+                cache[i] = new SubPageMemoryRegionCache<T>(cacheSize, shared);
             }
             return cache;
         } else {
@@ -128,7 +144,7 @@ final class PoolThreadCache {
     }
 
     private static <T> MemoryRegionCache<T>[] createNormalCaches(
-            int cacheSize, int maxCachedBufferCapacity, PoolArena<T> area) {
+            int cacheSize, int maxCachedBufferCapacity, PoolArena<T> area, boolean shared) {
         if (cacheSize > 0 && maxCachedBufferCapacity > 0) {
             int max = Math.min(area.chunkSize, maxCachedBufferCapacity);
             int arraySize = Math.max(1, log2(max / area.pageSize) + 1);
@@ -136,7 +152,7 @@ final class PoolThreadCache {
             @SuppressWarnings("unchecked")
             MemoryRegionCache<T>[] cache = new MemoryRegionCache[arraySize];
             for (int i = 0; i < cache.length; i++) {
-                cache[i] = new NormalMemoryRegionCache<T>(cacheSize);
+                cache[i] = new NormalMemoryRegionCache<T>(cacheSize, shared);
             }
             return cache;
         } else {
@@ -170,6 +186,9 @@ final class PoolThreadCache {
             return false;
         }
         boolean allocated = cache.allocate(buf, reqCapacity, this);
+        if (allocated) {
+            ++ allocationHits;
+        }
         if (++ allocations >= freeSweepAllocationThreshold) {
             allocations = 0;
             trim();
@@ -259,6 +278,17 @@ final class PoolThreadCache {
         return cache.free(finalizer);
     }
 
+    /**
+     * Returns {@code true} if no allocation was served out of this cache since the last time this method was called.
+     * This must only be called from a single thread, but that thread may be different to the one using the cache.
+     */
+    boolean checkIdle() {
+        int hits = allocationHits;
+        boolean idle = hits == lastObservedAllocationHits;
+        lastObservedAllocationHits = hits;
+        return idle;
+    }
+
     void trim() {
         trim(smallSubPageDirectCaches);
         trim(normalDirectCaches);
@@ -307,8 +337,8 @@ final class PoolThreadCache {
      * Cache used for buffers which are backed by TINY or SMALL size.
      */
     private static final class SubPageMemoryRegionCache<T> extends MemoryRegionCache<T> {
-        SubPageMemoryRegionCache(int size) {
-            super(size, SizeClass.Small);
+        SubPageMemoryRegionCache(int size, boolean shared) {
+            super(size, SizeClass.Small, shared);
         }
 
         @Override
@@ -323,8 +353,8 @@ final class PoolThreadCache {
      * Cache used for buffers which are backed by NORMAL size.
      */
     private static final class NormalMemoryRegionCache<T> extends MemoryRegionCache<T> {
-        NormalMemoryRegionCache(int size) {
-            super(size, SizeClass.Normal);
+        NormalMemoryRegionCache(int size, boolean shared) {
+            super(size, SizeClass.Normal, shared);
         }
 
         @Override
@@ -339,12 +369,15 @@ final class PoolThreadCache {
         private final int size;
         private final Queue<Entry<T>> queue;
         private final SizeClass sizeClass;
+        // If true the cache is shared between threads and so polling from the MPSC queue must be serialized.
+        private final boolean shared;
         private int allocations;
 
-        MemoryRegionCache(int size, SizeClass sizeClass) {
+        MemoryRegionCache(int size, SizeClass sizeClass, boolean shared) {
             this.size = MathUtil.safeFindNextPositivePowerOfTwo(size);
             queue = PlatformDependent.newFixedMpscQueue(this.size);
             this.sizeClass = sizeClass;
+            this.shared = shared;
         }
 
         /**
@@ -372,14 +405,15 @@ final class PoolThreadCache {
          * Allocate something out of the cache if possible and remove the entry from the cache.
          */
         public final boolean allocate(PooledByteBuf<T> buf, int reqCapacity, PoolThreadCache threadCache) {
-            Entry<T> entry = queue.poll();
+            Entry<T> entry = poll();
             if (entry == null) {
                 return false;
             }
             initBuf(entry.chunk, entry.nioBuffer, entry.handle, buf, reqCapacity, threadCache);
             entry.recycle();
 
-            // allocations is not thread-safe which is fine as this is only called from the same thread all time.
+            // allocations is not thread-safe which is fine as this is only called from the same thread all time, or
+            // in case of a shared cache only used as a heuristic for trimming.
             ++ allocations;
             return true;
         }
@@ -394,7 +428,7 @@ final class PoolThreadCache {
         private int free(int max, boolean finalizer) {
             int numFreed = 0;
             for (; numFreed < max; numFreed++) {
-                Entry<T> entry = queue.poll();
+                Entry<T> entry = poll();
                 if (entry != null) {
                     freeEntry(entry, finalizer);
                 } else {
@@ -405,6 +439,15 @@ final class PoolThreadCache {
             return numFreed;
         }
 
+        private Entry<T> poll() {
+            if (shared) {
+                synchronized (this) {
+                    return queue.poll();
+                }
+            }
+            return queue.poll();
+        }
+
         /**
          * Free up cached {@link PoolChunk}s if not allocated frequently enough.
          */
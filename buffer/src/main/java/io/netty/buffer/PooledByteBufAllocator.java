@@ -19,9 +19,11 @@ package io.netty.buffer;
 import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
 
 import io.netty.util.NettyRuntime;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.FastThreadLocal;
 import io.netty.util.concurrent.FastThreadLocalThread;
+import io.netty.util.concurrent.GlobalEventExecutor;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
 import io.netty.util.internal.SystemPropertyUtil;
@@ -29,10 +31,17 @@ import io.netty.util.internal.ThreadExecutorMap;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
+import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 public class PooledByteBufAllocator extends AbstractByteBufAllocator implements ByteBufAllocatorMetricProvider {
@@ -49,8 +58,13 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
     private static final int DEFAULT_CACHE_TRIM_INTERVAL;
     private static final long DEFAULT_CACHE_TRIM_INTERVAL_MILLIS;
     private static final boolean DEFAULT_USE_CACHE_FOR_ALL_THREADS;
+    private static final boolean DEFAULT_USE_PER_CPU_ARENAS;
+    private static final long DEFAULT_RECLAIM_INTERVAL_MILLIS;
+    private static final long DEFAULT_MAX_IDLE_CHUNK_AGE_MILLIS;
+    private static final int DEFAULT_MAX_RETAINED_IDLE_CHUNKS;
     private static final int DEFAULT_DIRECT_MEMORY_CACHE_ALIGNMENT;
     static final int DEFAULT_MAX_CACHED_BYTEBUFFERS_PER_CHUNK;
+    static final int DEFAULT_ALLOCATION_SITE_SAMPLE_INTERVAL;
 
     private static final int MIN_PAGE_SIZE = 4096;
     private static final int MAX_CHUNK_SIZE = (int) (((long) Integer.MAX_VALUE + 1) / 2);
@@ -142,6 +156,17 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         DEFAULT_USE_CACHE_FOR_ALL_THREADS = SystemPropertyUtil.getBoolean(
                 "io.netty.allocator.useCacheForAllThreads", true);
 
+        DEFAULT_USE_PER_CPU_ARENAS = SystemPropertyUtil.getBoolean(
+                "io.netty.allocator.usePerCpuArenas", false);
+
+        // the interval in which idle thread caches are trimmed and idle chunks are released, 0 disables it.
+        DEFAULT_RECLAIM_INTERVAL_MILLIS = Math.max(0, SystemPropertyUtil.getLong(
+                "io.netty.allocator.reclaimIntervalMillis", 0));
+        DEFAULT_MAX_IDLE_CHUNK_AGE_MILLIS = Math.max(0, SystemPropertyUtil.getLong(
+                "io.netty.allocator.maxIdleChunkAgeMillis", 60000));
+        DEFAULT_MAX_RETAINED_IDLE_CHUNKS = Math.max(0, SystemPropertyUtil.getInt(
+                "io.netty.allocator.maxRetainedIdleChunks", 1));
+
         DEFAULT_DIRECT_MEMORY_CACHE_ALIGNMENT = SystemPropertyUtil.getInt(
                 "io.netty.allocator.directMemoryCacheAlignment", 0);
 
@@ -150,6 +175,10 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         DEFAULT_MAX_CACHED_BYTEBUFFERS_PER_CHUNK = SystemPropertyUtil.getInt(
                 "io.netty.allocator.maxCachedByteBuffersPerChunk", 1023);
 
+        // Capture the allocation site of 1 in N allocations, 0 disables the sampling.
+        DEFAULT_ALLOCATION_SITE_SAMPLE_INTERVAL = Math.max(0, SystemPropertyUtil.getInt(
+                "io.netty.allocator.allocationSiteSampleInterval", 0));
+
         if (logger.isDebugEnabled()) {
             logger.debug("-Dio.netty.allocator.numHeapArenas: {}", DEFAULT_NUM_HEAP_ARENA);
             logger.debug("-Dio.netty.allocator.numDirectArenas: {}", DEFAULT_NUM_DIRECT_ARENA);
@@ -170,8 +199,14 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             logger.debug("-Dio.netty.allocator.cacheTrimInterval: {}", DEFAULT_CACHE_TRIM_INTERVAL);
             logger.debug("-Dio.netty.allocator.cacheTrimIntervalMillis: {}", DEFAULT_CACHE_TRIM_INTERVAL_MILLIS);
             logger.debug("-Dio.netty.allocator.useCacheForAllThreads: {}", DEFAULT_USE_CACHE_FOR_ALL_THREADS);
+            logger.debug("-Dio.netty.allocator.usePerCpuArenas: {}", DEFAULT_USE_PER_CPU_ARENAS);
+            logger.debug("-Dio.netty.allocator.reclaimIntervalMillis: {}", DEFAULT_RECLAIM_INTERVAL_MILLIS);
+            logger.debug("-Dio.netty.allocator.maxIdleChunkAgeMillis: {}", DEFAULT_MAX_IDLE_CHUNK_AGE_MILLIS);
+            logger.debug("-Dio.netty.allocator.maxRetainedIdleChunks: {}", DEFAULT_MAX_RETAINED_IDLE_CHUNKS);
             logger.debug("-Dio.netty.allocator.maxCachedByteBuffersPerChunk: {}",
                     DEFAULT_MAX_CACHED_BYTEBUFFERS_PER_CHUNK);
+            logger.debug("-Dio.netty.allocator.allocationSiteSampleInterval: {}",
+                    DEFAULT_ALLOCATION_SITE_SAMPLE_INTERVAL);
         }
     }
 
@@ -185,6 +220,12 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
     private final List<PoolArenaMetric> heapArenaMetrics;
     private final List<PoolArenaMetric> directArenaMetrics;
     private final PoolThreadLocalCache threadCache;
+    // Only used if arenas are selected per CPU, null otherwise.
+    private final PoolThreadCache[] perCpuCaches;
+    // Thread caches that belong to an EventExecutor and so can be trimmed by submitting a task to it. Only used if the
+    // idle memory is reclaimed periodically, null otherwise.
+    private final ConcurrentMap<PoolThreadCache, EventExecutor> executorCaches = DEFAULT_RECLAIM_INTERVAL_MILLIS > 0 ?
+            PlatformDependent.<PoolThreadCache, EventExecutor>newConcurrentHashMap() : null;
     private final int chunkSize;
     private final PooledByteBufAllocatorMetric metric;
 
@@ -262,6 +303,41 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
     public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
                                   int smallCacheSize, int normalCacheSize,
                                   boolean useCacheForAllThreads, int directMemoryCacheAlignment) {
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder,
+             smallCacheSize, normalCacheSize,
+             useCacheForAllThreads, directMemoryCacheAlignment, DEFAULT_USE_PER_CPU_ARENAS);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param usePerCpuArenas if {@code true} threads that are not {@link FastThreadLocalThread}s do not get a
+     *                        thread-local cache and arena assigned. Instead the arena is selected per allocation based
+     *                        on the CPU the thread is currently running on, and the buffers are cached in a cache that
+     *                        is shared by all threads using that arena. This bounds the memory footprint by the number
+     *                        of CPUs (arenas) instead of the number of threads.
+     */
+    public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
+                                  int smallCacheSize, int normalCacheSize,
+                                  boolean useCacheForAllThreads, int directMemoryCacheAlignment,
+                                  boolean usePerCpuArenas) {
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder,
+             smallCacheSize, normalCacheSize,
+             useCacheForAllThreads, directMemoryCacheAlignment, usePerCpuArenas, null);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param directChunkSource the {@link DirectChunkSource} which provides the memory for the chunks of the direct
+     *                          arenas, or {@code null} if the default direct memory allocation should be used.
+     *                          The chunk size ({@code pageSize << maxOrder}) must be a multiple of its
+     *                          {@link DirectChunkSource#chunkAlignment()}.
+     */
+    public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
+                                  int smallCacheSize, int normalCacheSize,
+                                  boolean useCacheForAllThreads, int directMemoryCacheAlignment,
+                                  boolean usePerCpuArenas, DirectChunkSource directChunkSource) {
         super(preferDirect);
         threadCache = new PoolThreadLocalCache(useCacheForAllThreads);
         this.smallCacheSize = smallCacheSize;
@@ -283,6 +359,14 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
 
         int pageShifts = validateAndCalculatePageShifts(pageSize);
 
+        if (directChunkSource != null) {
+            int chunkAlignment = directChunkSource.chunkAlignment();
+            if (chunkAlignment > 0 && chunkSize % chunkAlignment != 0) {
+                throw new IllegalArgumentException("pageSize (" + pageSize + ") << maxOrder (" + maxOrder +
+                        ") must be a multiple of " + chunkAlignment + " (expected by: " + directChunkSource + ')');
+            }
+        }
+
         if (nHeapArena > 0) {
             heapArenas = newArenaArray(nHeapArena);
             List<PoolArenaMetric> metrics = new ArrayList<PoolArenaMetric>(heapArenas.length);
@@ -304,7 +388,7 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             List<PoolArenaMetric> metrics = new ArrayList<PoolArenaMetric>(directArenas.length);
             for (int i = 0; i < directArenas.length; i ++) {
                 PoolArena.DirectArena arena = new PoolArena.DirectArena(
-                        this, pageSize, pageShifts, chunkSize, directMemoryCacheAlignment);
+                        this, pageSize, pageShifts, chunkSize, directMemoryCacheAlignment, directChunkSource);
                 directArenas[i] = arena;
                 metrics.add(arena);
             }
@@ -313,7 +397,29 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             directArenas = null;
             directArenaMetrics = Collections.emptyList();
         }
+        perCpuCaches = usePerCpuArenas ? newPerCpuCaches(heapArenas, directArenas, smallCacheSize, normalCacheSize)
+                : null;
         metric = new PooledByteBufAllocatorMetric(this);
+
+        if (DEFAULT_RECLAIM_INTERVAL_MILLIS > 0) {
+            ReclaimTask.schedule(this, DEFAULT_RECLAIM_INTERVAL_MILLIS);
+        }
+    }
+
+    private static PoolThreadCache[] newPerCpuCaches(PoolArena<byte[]>[] heapArenas,
+                                                     PoolArena<ByteBuffer>[] directArenas,
+                                                     int smallCacheSize, int normalCacheSize) {
+        int nHeapArena = heapArenas == null ? 0 : heapArenas.length;
+        int nDirectArena = directArenas == null ? 0 : directArenas.length;
+        PoolThreadCache[] caches = new PoolThreadCache[Math.max(1, Math.max(nHeapArena, nDirectArena))];
+        for (int i = 0; i < caches.length; i++) {
+            caches[i] = new PoolThreadCache(
+                    nHeapArena == 0 ? null : heapArenas[i % nHeapArena],
+                    nDirectArena == 0 ? null : directArenas[i % nDirectArena],
+                    smallCacheSize, normalCacheSize,
+                    DEFAULT_MAX_CACHED_BUFFER_CAPACITY, DEFAULT_CACHE_TRIM_INTERVAL, true);
+        }
+        return caches;
     }
 
     @SuppressWarnings("unchecked")
@@ -353,7 +459,7 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
 
     @Override
     protected ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity) {
-        PoolThreadCache cache = threadCache.get();
+        PoolThreadCache cache = threadCache();
         PoolArena<byte[]> heapArena = cache.heapArena;
 
         final ByteBuf buf;
@@ -370,7 +476,7 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
 
     @Override
     protected ByteBuf newDirectBuffer(int initialCapacity, int maxCapacity) {
-        PoolThreadCache cache = threadCache.get();
+        PoolThreadCache cache = threadCache();
         PoolArena<ByteBuffer> directArena = cache.directArena;
 
         final ByteBuf buf;
@@ -420,6 +526,13 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         return DEFAULT_USE_CACHE_FOR_ALL_THREADS;
     }
 
+    /**
+     * Default arena selection behavior - System Property: io.netty.allocator.usePerCpuArenas - default false
+     */
+    public static boolean defaultUsePerCpuArenas() {
+        return DEFAULT_USE_PER_CPU_ARENAS;
+    }
+
     /**
      * Default prefer direct - System Property: io.netty.noPreferDirect - default false
      */
@@ -498,12 +611,15 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
                         heapArena, directArena, smallCacheSize, normalCacheSize,
                         DEFAULT_MAX_CACHED_BUFFER_CAPACITY, DEFAULT_CACHE_TRIM_INTERVAL);
 
-                if (DEFAULT_CACHE_TRIM_INTERVAL_MILLIS > 0) {
-                    final EventExecutor executor = ThreadExecutorMap.currentExecutor();
-                    if (executor != null) {
+                final EventExecutor executor = ThreadExecutorMap.currentExecutor();
+                if (executor != null) {
+                    if (DEFAULT_CACHE_TRIM_INTERVAL_MILLIS > 0) {
                         executor.scheduleAtFixedRate(trimTask, DEFAULT_CACHE_TRIM_INTERVAL_MILLIS,
                                 DEFAULT_CACHE_TRIM_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
                     }
+                    if (executorCaches != null) {
+                        executorCaches.put(cache, executor);
+                    }
                 }
                 return cache;
             }
@@ -513,6 +629,9 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
 
         @Override
         protected void onRemoval(PoolThreadCache threadCache) {
+            if (executorCaches != null) {
+                executorCaches.remove(threadCache);
+            }
             threadCache.free(false);
         }
 
@@ -638,6 +757,34 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         return chunkSize;
     }
 
+    final long numReclaimedChunks() {
+        return numReclaimedChunks(heapArenas) + numReclaimedChunks(directArenas);
+    }
+
+    private static long numReclaimedChunks(PoolArena<?>[] arenas) {
+        long chunks = 0;
+        if (arenas != null) {
+            for (PoolArena<?> arena : arenas) {
+                chunks += arena.numReclaimedChunks();
+            }
+        }
+        return chunks;
+    }
+
+    final long reclaimedBytes() {
+        return reclaimedBytes(heapArenas) + reclaimedBytes(directArenas);
+    }
+
+    private static long reclaimedBytes(PoolArena<?>[] arenas) {
+        long bytes = 0;
+        if (arenas != null) {
+            for (PoolArena<?> arena : arenas) {
+                bytes += arena.reclaimedBytes();
+            }
+        }
+        return bytes;
+    }
+
     final long usedHeapMemory() {
         return usedMemory(heapArenas);
     }
@@ -661,6 +808,10 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
     }
 
     final PoolThreadCache threadCache() {
+        PoolThreadCache[] perCpuCaches = this.perCpuCaches;
+        if (perCpuCaches != null && !(Thread.currentThread() instanceof FastThreadLocalThread)) {
+            return perCpuCaches[CurrentCpu.currentCpu() % perCpuCaches.length];
+        }
         PoolThreadCache cache =  threadCache.get();
         assert cache != null;
         return cache;
@@ -681,6 +832,104 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         return false;
     }
 
+    /**
+     * Trims the caches which did not serve any allocation since the last call and releases the chunks that were
+     * completely free for at least {@code maxIdleChunkAgeNanos}, retaining at most {@code maxRetainedIdleChunks}
+     * completely free chunks per arena. Returns the number of bytes released by destroying chunks.
+     * <p>
+     * Caches of {@link EventExecutor} threads are trimmed by submitting a task to the executor, so the released
+     * memory will only be picked up by a later call. They are only known if
+     * {@code io.netty.allocator.reclaimIntervalMillis} is set. Caches of other threads are not trimmed, as this can
+     * only be done safely by the owning thread.
+     * <p>
+     * This must only be called by a single thread at a time, which is usually the thread of the {@link ReclaimTask}.
+     */
+    long reclaimIdleMemory(long maxIdleChunkAgeNanos, int maxRetainedIdleChunks) {
+        if (executorCaches != null) {
+            for (Map.Entry<PoolThreadCache, EventExecutor> entry: executorCaches.entrySet()) {
+                final PoolThreadCache cache = entry.getKey();
+                if (cache.checkIdle()) {
+                    try {
+                        entry.getValue().execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                cache.trim();
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        // The executor was shutdown, the cache will be freed once its thread terminates.
+                        logger.debug("Failed to submit a trim task to {}", entry.getValue(), e);
+                    }
+                }
+            }
+        }
+        PoolThreadCache[] perCpuCaches = this.perCpuCaches;
+        if (perCpuCaches != null) {
+            for (PoolThreadCache cache: perCpuCaches) {
+                // Shared caches are safe to trim from any thread.
+                if (cache.checkIdle()) {
+                    cache.trim();
+                }
+            }
+        }
+        return reclaimIdleChunks(heapArenas, maxIdleChunkAgeNanos, maxRetainedIdleChunks) +
+                reclaimIdleChunks(directArenas, maxIdleChunkAgeNanos, maxRetainedIdleChunks);
+    }
+
+    private static long reclaimIdleChunks(PoolArena<?>[] arenas, long maxIdleChunkAgeNanos,
+                                          int maxRetainedIdleChunks) {
+        long bytes = 0;
+        if (arenas != null) {
+            for (PoolArena<?> arena : arenas) {
+                bytes += arena.reclaimIdleChunks(maxIdleChunkAgeNanos, maxRetainedIdleChunks);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Periodically calls {@link #reclaimIdleMemory(long, int)} on a shared daemon thread. A periodic task never
+     * leaves the scheduled task queue, so it must not run on the {@link GlobalEventExecutor} whose non-daemon thread
+     * only terminates once its queue is empty. Only holds a weak reference to the allocator so it does not prevent it
+     * from being garbage collected, in which case the task cancels itself.
+     */
+    static final class ReclaimTask implements Runnable {
+        private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+                new DefaultThreadFactory("pooledByteBufAllocatorReclaimer", true, Thread.MIN_PRIORITY, null));
+
+        private final WeakReference<PooledByteBufAllocator> allocatorRef;
+        private volatile ScheduledFuture<?> future;
+
+        private ReclaimTask(PooledByteBufAllocator allocator) {
+            allocatorRef = new WeakReference<PooledByteBufAllocator>(allocator);
+        }
+
+        static ScheduledFuture<?> schedule(PooledByteBufAllocator allocator, long intervalMillis) {
+            ReclaimTask task = new ReclaimTask(allocator);
+            ScheduledFuture<?> future = EXECUTOR.scheduleAtFixedRate(
+                    task, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+            task.future = future;
+            return future;
+        }
+
+        @Override
+        public void run() {
+            PooledByteBufAllocator allocator = allocatorRef.get();
+            if (allocator == null) {
+                ScheduledFuture<?> future = this.future;
+                if (future != null) {
+                    future.cancel(false);
+                }
+                return;
+            }
+            long bytes = allocator.reclaimIdleMemory(
+                    TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_IDLE_CHUNK_AGE_MILLIS), DEFAULT_MAX_RETAINED_IDLE_CHUNKS);
+            if (bytes > 0 && logger.isDebugEnabled()) {
+                logger.debug("Released {} bytes of idle chunks", bytes);
+            }
+        }
+    }
+
     /**
      * Returns the status of the allocator (which contains all metrics) as string. Be aware this may be expensive
      * and so should not called too frequently.
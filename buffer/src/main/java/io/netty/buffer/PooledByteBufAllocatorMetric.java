@@ -97,6 +97,20 @@ public final class PooledByteBufAllocatorMetric implements ByteBufAllocatorMetri
         return allocator.chunkSize();
     }
 
+    /**
+     * Return the number of chunks that were released because they were idle.
+     */
+    public long numReclaimedChunks() {
+        return allocator.numReclaimedChunks();
+    }
+
+    /**
+     * Return the number of bytes that were released because the chunks holding them were idle.
+     */
+    public long reclaimedBytes() {
+        return allocator.reclaimedBytes();
+    }
+
     @Override
     public long usedHeapMemory() {
         return allocator.usedHeapMemory();
@@ -118,6 +132,7 @@ public final class PooledByteBufAllocatorMetric implements ByteBufAllocatorMetri
                 .append("; smallCacheSize: ").append(smallCacheSize())
                 .append("; normalCacheSize: ").append(normalCacheSize())
                 .append("; numThreadLocalCaches: ").append(numThreadLocalCaches())
+                .append("; reclaimedBytes: ").append(reclaimedBytes())
                 .append("; chunkSize: ").append(chunkSize()).append(')');
         return sb.toString();
     }
@@ -15,6 +15,7 @@
  */
 package io.netty.buffer;
 
+import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
 
 import java.io.IOException;
@@ -35,9 +36,15 @@ class ReadOnlyByteBufferBuf extends AbstractReferenceCountedByteBuf {
 
     protected final ByteBuffer buffer;
     private final ByteBufAllocator allocator;
+    // The original buffer, which is freed once this buffer is deallocated. null if it is owned by someone else.
+    private ByteBuffer bufferToFree;
     private ByteBuffer tmpNioBuf;
 
     ReadOnlyByteBufferBuf(ByteBufAllocator allocator, ByteBuffer buffer) {
+        this(allocator, buffer, false);
+    }
+
+    ReadOnlyByteBufferBuf(ByteBufAllocator allocator, ByteBuffer buffer, boolean doFree) {
         super(buffer.remaining());
         if (!buffer.isReadOnly()) {
             throw new IllegalArgumentException("must be a readonly buffer: " + StringUtil.simpleClassName(buffer));
@@ -45,11 +52,19 @@ class ReadOnlyByteBufferBuf extends AbstractReferenceCountedByteBuf {
 
         this.allocator = allocator;
         this.buffer = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+        // Keep the original as Unsafe.invokeCleaner(...) refuses to free a slice.
+        bufferToFree = doFree ? buffer : null;
         writerIndex(this.buffer.limit());
     }
 
     @Override
-    protected void deallocate() { }
+    protected void deallocate() {
+        ByteBuffer bufferToFree = this.bufferToFree;
+        if (bufferToFree != null) {
+            this.bufferToFree = null;
+            PlatformDependent.freeDirectBuffer(bufferToFree);
+        }
+    }
 
     @Override
     public boolean isWritable() {
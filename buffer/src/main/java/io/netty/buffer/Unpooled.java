@@ -20,9 +20,14 @@ import io.netty.util.internal.ObjectUtil;
 import io.netty.util.CharsetUtil;
 import io.netty.util.internal.PlatformDependent;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 
@@ -217,6 +222,57 @@ public final class Unpooled {
         return new WrappedUnpooledUnsafeDirectByteBuf(ALLOC, memoryAddress, size, doFree);
     }
 
+    /**
+     * Creates a new read-only buffer which maps the whole content of the specified {@code file} into memory.
+     * Unlike {@link #wrappedBuffer(ByteBuffer)} the mapping is released once the reference count of the
+     * returned buffer reaches {@code 0}, instead of when the garbage collector gets around to it.
+     */
+    public static ByteBuf mappedBuffer(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(ObjectUtil.checkNotNull(file, "file"), "r");
+        try {
+            long length = raf.length();
+            if (length > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(
+                        "file too large to be mapped into a single buffer: " + file + " (" + length + " bytes)");
+            }
+            return mappedBuffer(raf.getChannel(), FileChannel.MapMode.READ_ONLY, 0, (int) length);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Creates a new buffer which maps the region of {@code length} bytes starting at {@code position} of the
+     * specified {@link FileChannel} into memory. Only this region is mapped, so large files can be served
+     * one region at a time. The returned buffer is read-only if {@code mode} is
+     * {@link FileChannel.MapMode#READ_ONLY}. The channel may be closed once this method returns.
+     * <p>
+     * The mapping is released once the reference count of the returned buffer reaches {@code 0}. Derived buffers
+     * such as {@link ByteBuf#slice()} share the mapping without copying, so they must not be used after
+     * that point; use {@link ByteBuf#retainedSlice()} to keep the mapping alive.
+     */
+    public static ByteBuf mappedBuffer(FileChannel channel, FileChannel.MapMode mode, long position, int length)
+            throws IOException {
+        ObjectUtil.checkNotNull(channel, "channel");
+        ObjectUtil.checkNotNull(mode, "mode");
+        ObjectUtil.checkPositiveOrZero(position, "position");
+        ObjectUtil.checkPositiveOrZero(length, "length");
+        if (length == 0) {
+            return EMPTY_BUFFER;
+        }
+        MappedByteBuffer mapped = channel.map(mode, position, length);
+        if (PlatformDependent.hasUnsafe()) {
+            if (mapped.isReadOnly()) {
+                return new ReadOnlyUnsafeDirectByteBuf(ALLOC, mapped, true);
+            }
+            return new UnpooledUnsafeDirectByteBuf(ALLOC, mapped, length, true);
+        }
+        if (mapped.isReadOnly()) {
+            return new ReadOnlyByteBufferBuf(ALLOC, mapped, true);
+        }
+        return new UnpooledDirectByteBuf(ALLOC, mapped, length, true, false);
+    }
+
     /**
      * Creates a new buffer which wraps the specified buffer's readable bytes.
      * A modification on the specified buffer's content will be visible to the
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.netty.buffer.search;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.internal.PlatformDependent;
+
+import static io.netty.util.internal.MathUtil.isOutOfBounds;
+import static io.netty.util.internal.ObjectUtil.checkNonEmpty;
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * Searches a range of a {@link ByteBuf} for all occurrences of multiple {@code needles} in a single call.
+ * <br>
+ * Unlike the {@link SearchProcessor}s, which are invoked via {@link ByteBuf#forEachByte} once per byte, this
+ * scans the backing array or memory of the {@link ByteBuf} directly, reading 8 bytes at a time where possible, and
+ * reports every match to a {@link MatchHandler}.
+ * <br>
+ * The search works in two steps, similar to the Teddy algorithm. First a bit-parallel Shift-And filter runs over the
+ * first {@code min(8, length of the shortest needle)} bytes of the {@code needles}. The {@code needles} are spread
+ * over 8 buckets, and each bucket uses one bit per filter position of a single {@code long}, so all buckets are
+ * advanced with one table lookup per byte. A bucket only tells that some combination of its needles may match, so
+ * every candidate is then verified by comparing the complete needle.
+ * <br>
+ * The filter works best with few needles whose first bytes are rare in the haystack. With more than 8
+ * {@code needles} several share a bucket, which causes more candidates that fail the verification.
+ * <br>
+ * Instances are immutable and can be shared between threads.
+ * <pre>
+ *      ShiftOrMultiSearcher searcher = new ShiftOrMultiSearcher(
+ *          "AB".getBytes(CharsetUtil.UTF_8), "BC".getBytes(CharsetUtil.UTF_8));
+ *      searcher.search(haystack, haystack.readerIndex(), haystack.readableBytes(), new MatchHandler() {
+ *          public boolean onMatch(int endIndex, int needleId) {
+ *              // endIndex is the index of the last byte of the occurrence, needleId the index in needles[]
+ *              return true; // continue with the next match
+ *          }
+ *      });
+ * </pre>
+ */
+public final class ShiftOrMultiSearcher {
+
+    /**
+     * Receives the matches found by {@link ShiftOrMultiSearcher#search(ByteBuf, int, int, MatchHandler)}.
+     */
+    public interface MatchHandler {
+        /**
+         * Called for every occurrence of a needle, in the order of the index at which the occurrences start.
+         *
+         * @param endIndex the index of the last byte of the occurrence, like the {@link SearchProcessor}s return.
+         * @param needleId the index of the found needle in the array of {@code needles}.
+         * @return {@code true} to continue the search, {@code false} to stop it.
+         */
+        boolean onMatch(int endIndex, int needleId);
+    }
+
+    private static final int BUCKETS = 8;
+    private static final int MAX_FILTER_LENGTH = 8;
+    private static final boolean UNALIGNED = PlatformDependent.isUnaligned();
+
+    private final byte[][] needles;
+    // Ids of the needles per bucket.
+    private final int[][] buckets = new int[BUCKETS][];
+    // For every byte value, bit (position * 8 + bucket) is set if a needle of the bucket has the byte at position.
+    private final long[] masks = new long[256];
+    private final int filterLength;
+    private final int candidateShift;
+
+    public ShiftOrMultiSearcher(byte[]... needles) {
+        checkNonEmpty(needles, "needles");
+        this.needles = new byte[needles.length][];
+        int minLength = Integer.MAX_VALUE;
+        for (int i = 0; i < needles.length; i++) {
+            byte[] needle = checkNotNull(needles[i], "needle");
+            if (needle.length == 0) {
+                throw new IllegalArgumentException("needles must not contain an empty needle");
+            }
+            this.needles[i] = needle.clone();
+            minLength = Math.min(minLength, needle.length);
+        }
+        filterLength = Math.min(minLength, MAX_FILTER_LENGTH);
+        candidateShift = (filterLength - 1) * BUCKETS;
+
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            int numNeedles = (needles.length - bucket + BUCKETS - 1) / BUCKETS;
+            int[] ids = new int[numNeedles];
+            for (int i = 0; i < numNeedles; i++) {
+                ids[i] = bucket + i * BUCKETS;
+            }
+            buckets[bucket] = ids;
+        }
+        for (int id = 0; id < needles.length; id++) {
+            long bucketBit = 1L << (id % BUCKETS);
+            for (int pos = 0; pos < filterLength; pos++) {
+                masks[needles[id][pos] & 0xff] |= bucketBit << (pos * BUCKETS);
+            }
+        }
+    }
+
+    /**
+     * Searches the given range of the {@code haystack} for all occurrences of the needles, including overlapping
+     * ones. Only occurrences that lie completely within the range are reported.
+     *
+     * @return the number of matches that were passed to the {@code handler}.
+     */
+    public int search(ByteBuf haystack, int index, int length, MatchHandler handler) {
+        checkNotNull(handler, "handler");
+        if (isOutOfBounds(index, length, haystack.capacity())) {
+            throw new IndexOutOfBoundsException(String.format(
+                    "index: %d, length: %d (expected: range(0, %d))", index, length, haystack.capacity()));
+        }
+        if (haystack.refCnt() == 0) {
+            throw new IllegalReferenceCountException(0);
+        }
+
+        if (haystack.hasArray()) {
+            return searchArray(haystack, index, length, handler);
+        }
+        if (haystack.hasMemoryAddress() && PlatformDependent.hasUnsafe()) {
+            return searchMemory(haystack, index, length, handler);
+        }
+        return searchGeneric(haystack, index, length, handler);
+    }
+
+    private int searchArray(ByteBuf haystack, int index, int length, MatchHandler handler) {
+        final byte[] array = haystack.array();
+        final int offset = haystack.arrayOffset();
+        final int end = index + length;
+        int matches = 0;
+        long state = 0;
+        for (int i = index; i < end; i++) {
+            state = ((state << BUCKETS) | 0xFF) & masks[array[offset + i] & 0xff];
+            if (state >>> candidateShift != 0) {
+                int found = verify(haystack, i, end, (int) (state >>> candidateShift) & 0xFF, handler);
+                if (found < 0) {
+                    return matches - found - 1;
+                }
+                matches += found;
+            }
+        }
+        return matches;
+    }
+
+    private int searchMemory(ByteBuf haystack, int index, int length, MatchHandler handler) {
+        final long address = haystack.memoryAddress();
+        final int end = index + length;
+        // Reading a long from an arbitrary address is only allowed if unaligned access is supported, otherwise all
+        // bytes are read one at a time.
+        final int wordEnd = UNALIGNED ? index + (length & ~7) : index;
+        int matches = 0;
+        long state = 0;
+        int i = index;
+        for (; i < wordEnd; i += 8) {
+            long word = PlatformDependent.getLong(address + i);
+            if (PlatformDependent.BIG_ENDIAN_NATIVE_ORDER) {
+                word = Long.reverseBytes(word);
+            }
+            for (int j = 0; j < 8; j++) {
+                state = ((state << BUCKETS) | 0xFF) & masks[(int) (word >>> (j << 3)) & 0xff];
+                if (state >>> candidateShift != 0) {
+                    int found = verify(haystack, i + j, end, (int) (state >>> candidateShift) & 0xFF, handler);
+                    if (found < 0) {
+                        return matches - found - 1;
+                    }
+                    matches += found;
+                }
+            }
+        }
+        for (; i < end; i++) {
+            state = ((state << BUCKETS) | 0xFF) & masks[PlatformDependent.getByte(address + i) & 0xff];
+            if (state >>> candidateShift != 0) {
+                int found = verify(haystack, i, end, (int) (state >>> candidateShift) & 0xFF, handler);
+                if (found < 0) {
+                    return matches - found - 1;
+                }
+                matches += found;
+            }
+        }
+        return matches;
+    }
+
+    private int searchGeneric(ByteBuf haystack, int index, int length, MatchHandler handler) {
+        final int end = index + length;
+        final int wordEnd = index + (length & ~7);
+        int matches = 0;
+        long state = 0;
+        int i = index;
+        for (; i < wordEnd; i += 8) {
+            long word = haystack.getLongLE(i);
+            for (int j = 0; j < 8; j++) {
+                state = ((state << BUCKETS) | 0xFF) & masks[(int) (word >>> (j << 3)) & 0xff];
+                if (state >>> candidateShift != 0) {
+                    int found = verify(haystack, i + j, end, (int) (state >>> candidateShift) & 0xFF, handler);
+                    if (found < 0) {
+                        return matches - found - 1;
+                    }
+                    matches += found;
+                }
+            }
+        }
+        for (; i < end; i++) {
+            state = ((state << BUCKETS) | 0xFF) & masks[haystack.getByte(i) & 0xff];
+            if (state >>> candidateShift != 0) {
+                int found = verify(haystack, i, end, (int) (state >>> candidateShift) & 0xFF, handler);
+                if (found < 0) {
+                    return matches - found - 1;
+                }
+                matches += found;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Verifies the needles of the candidate buckets, whose filtered prefix ends at {@code filterEnd}.
+     *
+     * @return the number of matches, or {@code -(matches + 1)} if the handler stopped the search.
+     */
+    private int verify(ByteBuf haystack, int filterEnd, int end, int candidateBuckets, MatchHandler handler) {
+        final int start = filterEnd - filterLength + 1;
+        int matches = 0;
+        while (candidateBuckets != 0) {
+            int bucket = Integer.numberOfTrailingZeros(candidateBuckets);
+            candidateBuckets &= candidateBuckets - 1;
+            for (int id: buckets[bucket]) {
+                byte[] needle = needles[id];
+                if (end - start >= needle.length && matches(haystack, start, needle)) {
+                    matches++;
+                    if (!handler.onMatch(start + needle.length - 1, id)) {
+                        return -matches - 1;
+                    }
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static boolean matches(ByteBuf haystack, int start, byte[] needle) {
+        for (int i = 0; i < needle.length; i++) {
+            if (haystack.getByte(start + i) != needle[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -2157,6 +2157,48 @@ public abstract class AbstractByteBufTest {
         assertEquals(0, buffer.indexOf(-1, buffer.capacity(), (byte) 1));
     }
 
+    @Test
+    public void testIndexOfEveryPosition() {
+        // Covers the bytes that are compared as part of a word as well as the remaining bytes.
+        int length = Math.min(buffer.capacity(), 67);
+        buffer.clear();
+        buffer.setZero(0, length);
+        for (int i = 0; i < length; i++) {
+            buffer.setByte(i, 42);
+            assertEquals(i, buffer.indexOf(0, length, (byte) 42));
+            assertEquals(i == 0 ? -1 : 0, buffer.indexOf(0, i, (byte) 0));
+            assertEquals(-1, buffer.indexOf(i + 1, length, (byte) 42));
+            assertEquals(i, buffer.bytesBefore(0, length, (byte) 42));
+            assertEquals(i, buffer.forEachByte(0, length, ByteProcessor.FIND_NON_NUL));
+            buffer.setByte(i, 0);
+        }
+    }
+
+    @Test
+    public void testForEachByteFastPaths() {
+        int length = Math.min(buffer.capacity(), 67);
+        buffer.clear();
+        for (int i = 0; i < length; i++) {
+            buffer.setByte(i, 'a');
+        }
+        assertEquals(-1, buffer.forEachByte(0, length, ByteProcessor.FIND_LF));
+        assertEquals(-1, buffer.forEachByte(0, length, ByteProcessor.FIND_CRLF));
+        assertEquals(-1, buffer.forEachByte(0, length, ByteProcessor.FIND_NUL));
+
+        for (int i = 0; i < length; i++) {
+            buffer.setByte(i, '\n');
+            assertEquals(i, buffer.forEachByte(0, length, ByteProcessor.FIND_LF));
+            assertEquals(i, buffer.forEachByte(0, length, ByteProcessor.FIND_CRLF));
+            assertEquals(-1, buffer.forEachByte(0, i, ByteProcessor.FIND_LF));
+            buffer.setByte(i, '\r');
+            assertEquals(i, buffer.forEachByte(0, length, ByteProcessor.FIND_CRLF));
+            assertEquals(-1, buffer.forEachByte(0, length, ByteProcessor.FIND_LF));
+            buffer.setByte(i, 0);
+            assertEquals(i, buffer.forEachByte(0, length, ByteProcessor.FIND_NUL));
+            buffer.setByte(i, 'a');
+        }
+    }
+
     @Test
     public void testIndexOfReleaseBuffer() {
         ByteBuf buffer = releasedBuffer();
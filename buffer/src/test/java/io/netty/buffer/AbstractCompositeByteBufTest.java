@@ -24,11 +24,14 @@ import org.junit.Test;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static io.netty.buffer.Unpooled.EMPTY_BUFFER;
 import static io.netty.buffer.Unpooled.buffer;
@@ -254,6 +257,82 @@ public abstract class AbstractCompositeByteBufTest extends AbstractByteBufTest {
         buf.release();
     }
 
+    @Test
+    public void testAutoConsolidationMergesCheapestRuns() {
+        CompositeByteBuf buf = compositeBuffer(8);
+        byte[] bytes = new byte[26];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        int[] lengths = { 4, 4, 1, 1, 1, 1, 2, 4 };
+        for (int i = 0, offset = 0; i < lengths.length; offset += lengths[i++]) {
+            buf.addComponent(wrappedBuffer(bytes, offset, lengths[i]));
+        }
+        assertEquals(8, buf.numComponents());
+
+        ByteBuf last = wrappedBuffer(bytes, 18, 8);
+        buf.addComponent(last);
+
+        // A quarter of the maximum number of components is left and the biggest component is not copied.
+        assertEquals(2, buf.numComponents());
+        assertEquals(wrappedBuffer(bytes, 0, 18), buf.internalComponent(0));
+        assertSame(last, buf.internalComponent(1));
+
+        buf.release();
+    }
+
+    @Test
+    public void testAutoConsolidationDropsEmptyComponent() {
+        CompositeByteBuf buf = compositeBuffer(3);
+        ByteBuf first = wrappedBuffer(new byte[] { 1, 2 });
+        buf.addComponent(first);
+        buf.addComponent(EMPTY_BUFFER);
+        buf.addComponent(wrappedBuffer(new byte[] { 3, 4 }));
+        buf.addComponent(wrappedBuffer(new byte[] { 5, 6 }));
+
+        assertEquals(3, buf.numComponents());
+        assertSame(first, buf.internalComponent(0));
+        assertEquals(wrappedBuffer(new byte[] { 3, 4 }), buf.internalComponent(1));
+        assertEquals(wrappedBuffer(new byte[] { 5, 6 }), buf.internalComponent(2));
+
+        buf.release();
+    }
+
+    @Test
+    public void testAutoConsolidationCopiesLessThanFullConsolidation() {
+        final AtomicInteger copiedBytes = new AtomicInteger();
+        ByteBufAllocator alloc = new AbstractByteBufAllocator() {
+            @Override
+            protected ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity) {
+                copiedBytes.addAndGet(initialCapacity);
+                return new UnpooledHeapByteBuf(this, initialCapacity, maxCapacity);
+            }
+
+            @Override
+            protected ByteBuf newDirectBuffer(int initialCapacity, int maxCapacity) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public boolean isDirectBufferPooled() {
+                return false;
+            }
+        };
+        CompositeByteBuf buf = new CompositeByteBuf(alloc, false, 16);
+        for (int i = 0; i < 1024; i++) {
+            buf.addComponent(true, wrappedBuffer(new byte[] { (byte) i }));
+            assertTrue(buf.numComponents() <= 16);
+        }
+        assertEquals(1024, buf.readableBytes());
+        for (int i = 0; i < 1024; i++) {
+            assertEquals((byte) i, buf.getByte(i));
+        }
+        // Consolidating all components every 16 additions would copy about 33000 bytes.
+        assertTrue("copied bytes: " + copiedBytes, copiedBytes.get() < 1024 * 16);
+
+        buf.release();
+    }
+
     @Test
     public void testCompositeToSingleBuffer() {
         CompositeByteBuf buf = compositeBuffer(3);
@@ -818,6 +897,193 @@ public abstract class AbstractCompositeByteBufTest extends AbstractByteBufTest {
         buf.release();
     }
 
+    @Test
+    public void testAddAndRemoveAtStart() {
+        CompositeByteBuf buf = compositeBuffer(Integer.MAX_VALUE);
+        for (int i = 0; i < 1000; i++) {
+            buf.addComponent(true, 0, wrappedBuffer(new byte[] { (byte) i, (byte) i }));
+        }
+        assertEquals(1000, buf.numComponents());
+        assertEquals(2000, buf.readableBytes());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i * 2, buf.toByteIndex(i));
+            assertEquals(i, buf.toComponentIndex(i * 2 + 1));
+            assertEquals((byte) (999 - i), buf.getByte(i * 2));
+        }
+
+        for (int i = 0; i < 999; i++) {
+            buf.removeComponent(0);
+            assertEquals(0, buf.toByteIndex(0));
+            assertEquals((byte) (998 - i), buf.getByte(0));
+            assertEquals((byte) 0, buf.getByte(buf.capacity() - 1));
+        }
+        assertEquals(1, buf.numComponents());
+        assertEquals(2, buf.capacity());
+
+        buf.release();
+    }
+
+    @Test
+    public void testAddInMiddleAfterRemovingAtEnd() {
+        CompositeByteBuf buf = compositeBuffer(Integer.MAX_VALUE);
+        for (int i = 0; i < 16; i++) {
+            buf.addComponent(true, wrappedBuffer(new byte[] { (byte) i }));
+        }
+        buf.removeComponents(8, 8);
+        buf.addComponent(true, 2, wrappedBuffer(new byte[] { 42 }));
+        buf.setIndex(0, buf.capacity());
+
+        assertEquals(9, buf.numComponents());
+        assertArrayEquals(new byte[] { 0, 1, 42, 2, 3, 4, 5, 6, 7 }, ByteBufUtil.getBytes(buf));
+        for (int i = 0; i < 9; i++) {
+            assertEquals(i, buf.toByteIndex(i));
+            assertEquals(i, buf.toComponentIndex(i));
+        }
+
+        buf.release();
+    }
+
+    @Test
+    public void testAddAtEndAndDiscardAtStart() {
+        CompositeByteBuf buf = compositeBuffer(Integer.MAX_VALUE);
+        byte next = 0;
+        for (int i = 0; i < 1000; i++) {
+            buf.addComponent(true, wrappedBuffer(new byte[] { (byte) (i * 2), (byte) (i * 2 + 1) }));
+            assertEquals(next++, buf.readByte());
+            assertEquals(next++, buf.readByte());
+            if (i % 3 == 0) {
+                buf.discardReadComponents();
+            } else if (i % 3 == 1) {
+                buf.discardReadBytes();
+            }
+            assertTrue(buf.numComponents() <= 2);
+            assertEquals(0, buf.readableBytes());
+        }
+
+        buf.release();
+    }
+
+    @Test
+    public void testInterleavedAddRemoveAndConsolidate() {
+        testInterleavedAddRemoveAndConsolidate(Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testInterleavedAddRemoveAndAutoConsolidate() {
+        testInterleavedAddRemoveAndConsolidate(8);
+    }
+
+    private static void testInterleavedAddRemoveAndConsolidate(int maxNumComponents) {
+        Random random = new Random(6);
+        CompositeByteBuf buf = compositeBuffer(maxNumComponents);
+        List<byte[]> expected = new ArrayList<byte[]>();
+        byte next = 0;
+        for (int i = 0; i < 2000; i++) {
+            int numComponents = buf.numComponents();
+            int capacity = buf.capacity();
+            int op = random.nextInt(8);
+            switch (op) {
+            case 0:
+            case 1:
+            case 2:
+            case 3: {
+                // Add at the end, at the start or in the middle.
+                int cIndex = op == 0 ? 0 : op == 1 ? random.nextInt(numComponents + 1) : numComponents;
+                byte[] bytes = new byte[1 + random.nextInt(8)];
+                for (int j = 0; j < bytes.length; j++) {
+                    bytes[j] = next++;
+                }
+                buf.addComponent(true, cIndex, wrappedBuffer(bytes));
+                expected.add(cIndex, bytes);
+                break;
+            }
+            case 4: {
+                if (numComponents > 0) {
+                    int cIndex = random.nextBoolean() ? 0 : random.nextInt(numComponents);
+                    int count = Math.min(1 + random.nextInt(3), numComponents - cIndex);
+                    buf.removeComponents(cIndex, count);
+                    expected.subList(cIndex, cIndex + count).clear();
+                }
+                break;
+            }
+            case 5: {
+                int readerIndex = random.nextInt(capacity + 1);
+                buf.setIndex(readerIndex, capacity);
+                int discarded = 0;
+                while (!expected.isEmpty() && discarded + expected.get(0).length <= readerIndex) {
+                    discarded += expected.remove(0).length;
+                }
+                buf.discardReadComponents();
+                assertEquals(readerIndex - discarded, buf.readerIndex());
+                assertEquals(capacity - discarded, buf.writerIndex());
+                break;
+            }
+            case 6: {
+                int readerIndex = random.nextInt(capacity + 1);
+                buf.setIndex(readerIndex, capacity);
+                int discarded = 0;
+                while (!expected.isEmpty() && discarded + expected.get(0).length <= readerIndex) {
+                    discarded += expected.remove(0).length;
+                }
+                if (discarded < readerIndex) {
+                    byte[] first = expected.get(0);
+                    expected.set(0, Arrays.copyOfRange(first, readerIndex - discarded, first.length));
+                }
+                buf.discardReadBytes();
+                assertEquals(0, buf.readerIndex());
+                assertEquals(capacity - readerIndex, buf.writerIndex());
+                break;
+            }
+            case 7: {
+                if (numComponents > 1) {
+                    int cIndex = random.nextInt(numComponents - 1);
+                    int count = 2 + random.nextInt(Math.min(3, numComponents - cIndex - 1));
+                    buf.consolidate(cIndex, count);
+                    List<byte[]> merged = expected.subList(cIndex, cIndex + count);
+                    byte[] bytes = concat(merged);
+                    merged.clear();
+                    expected.add(cIndex, bytes);
+                }
+                break;
+            }
+            default:
+                throw new Error();
+            }
+            buf.setIndex(0, buf.capacity());
+
+            assertArrayEquals(concat(expected), ByteBufUtil.getBytes(buf));
+            assertTrue(buf.numComponents() <= maxNumComponents);
+            if (buf.numComponents() != expected.size()) {
+                // Consolidated automatically, continue with the components that are left.
+                expected.clear();
+                for (int cIndex = 0; cIndex < buf.numComponents(); cIndex++) {
+                    expected.add(ByteBufUtil.getBytes(buf.internalComponent(cIndex)));
+                }
+            }
+            int offset = 0;
+            for (int cIndex = 0; cIndex < expected.size(); cIndex++) {
+                byte[] bytes = expected.get(cIndex);
+                assertEquals(offset, buf.toByteIndex(cIndex));
+                assertEquals(cIndex, buf.toComponentIndex(offset + bytes.length - 1));
+                assertArrayEquals(bytes, ByteBufUtil.getBytes(buf.internalComponent(cIndex)));
+                offset += bytes.length;
+            }
+            assertEquals(offset, buf.capacity());
+        }
+
+        buf.release();
+    }
+
+    private static byte[] concat(List<byte[]> arrays) {
+        ByteBuf buf = Unpooled.buffer();
+        for (byte[] bytes : arrays) {
+            buf.writeBytes(bytes);
+        }
+        byte[] concat = ByteBufUtil.getBytes(buf);
+        buf.release();
+        return concat;
+    }
+
     @Test
     public void testGatheringWritesHeap() throws Exception {
         testGatheringWrites(buffer().order(order), buffer().order(order));
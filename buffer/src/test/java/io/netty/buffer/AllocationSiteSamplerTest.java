@@ -0,0 +1,72 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class AllocationSiteSamplerTest {
+
+    @Test
+    public void testSampleEveryAllocation() {
+        AllocationSiteSampler sampler = new AllocationSiteSampler(1, 16);
+        for (int i = 0; i < 3; i++) {
+            sampler.sample(100);
+        }
+        List<PoolAllocationSiteMetric> sites = sampler.sites();
+        assertEquals(1, sites.size());
+        PoolAllocationSiteMetric site = sites.get(0);
+        assertEquals(3, site.numSamples());
+        assertEquals(300, site.sampledBytes());
+        assertEquals(getClass().getName() + ".testSampleEveryAllocation",
+                site.site().substring(0, site.site().indexOf('(')));
+    }
+
+    @Test
+    public void testCallSiteSkipsAllocatorFrames() {
+        StackTraceElement[] frames = {
+                new StackTraceElement(AllocationSiteSampler.class.getName(), "sample", null, -1),
+                new StackTraceElement(PoolArena.class.getName(), "allocate", null, -1),
+                new StackTraceElement(PoolArena.DirectArena.class.getName(), "newByteBuf", null, -1),
+                new StackTraceElement(PooledByteBufAllocator.class.getName(), "newDirectBuffer", null, -1),
+                new StackTraceElement(AbstractByteBufAllocator.class.getName(), "directBuffer", null, -1),
+                new StackTraceElement("com.example.Handler", "channelRead", "Handler.java", 42)
+        };
+        assertEquals("com.example.Handler.channelRead(Handler.java:42)", AllocationSiteSampler.callSite(frames));
+    }
+
+    @Test
+    public void testSitesAreBounded() {
+        AllocationSiteSampler sampler = new AllocationSiteSampler(1, 2);
+        sampler.record("a", 1);
+        sampler.record("b", 2);
+        sampler.record("c", 4);
+        sampler.record("d", 8);
+        sampler.record("a", 16);
+        assertEquals(3, sampler.sites().size());
+        for (PoolAllocationSiteMetric site: sampler.sites()) {
+            if (AllocationSiteSampler.OTHER_SITE.equals(site.site())) {
+                assertEquals(2, site.numSamples());
+                assertEquals(12, site.sampledBytes());
+            } else if ("a".equals(site.site())) {
+                assertEquals(17, site.sampledBytes());
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LongPriorityQueueTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mustThrowWhenAddingNoValue() {
+        new LongPriorityQueue().offer(LongPriorityQueue.NO_VALUE);
+    }
+
+    @Test
+    public void mustReturnValuesInOrder() {
+        LongPriorityQueue pq = new LongPriorityQueue();
+        List<Long> values = new ArrayList<Long>();
+        for (long i = 0; i < 100; i++) {
+            values.add(i);
+        }
+        Collections.shuffle(values, new Random(42));
+        for (long value : values) {
+            pq.offer(value);
+        }
+        for (long i = 0; i < 100; i++) {
+            assertEquals(i, pq.peek());
+            assertEquals(i, pq.poll());
+        }
+        assertTrue(pq.isEmpty());
+        assertEquals(LongPriorityQueue.NO_VALUE, pq.peek());
+        assertEquals(LongPriorityQueue.NO_VALUE, pq.poll());
+    }
+
+    @Test
+    public void mustSupportDuplicateValues() {
+        LongPriorityQueue pq = new LongPriorityQueue();
+        pq.offer(10);
+        pq.offer(5);
+        pq.offer(5);
+        pq.offer(10);
+        assertEquals(5, pq.poll());
+        assertEquals(5, pq.poll());
+        assertEquals(10, pq.poll());
+        assertEquals(10, pq.poll());
+        assertTrue(pq.isEmpty());
+    }
+
+    @Test
+    public void removeMustKeepHeapOrder() {
+        LongPriorityQueue pq = new LongPriorityQueue();
+        for (long i = 1; i <= 20; i++) {
+            pq.offer(i);
+        }
+        pq.remove(1);
+        pq.remove(20);
+        pq.remove(7);
+        pq.remove(100);
+        for (long i = 2; i < 20; i++) {
+            if (i != 7) {
+                assertEquals(i, pq.poll());
+            }
+        }
+        assertTrue(pq.isEmpty());
+    }
+
+    @Test
+    public void mustBehaveLikeJdkPriorityQueue() {
+        Random random = new Random(1);
+        PriorityQueue<Long> expected = new PriorityQueue<Long>();
+        LongPriorityQueue pq = new LongPriorityQueue();
+        for (int i = 0; i < 10000; i++) {
+            int op = random.nextInt(3);
+            if (op == 0) {
+                long value = random.nextInt(512);
+                expected.offer(value);
+                pq.offer(value);
+            } else if (op == 1) {
+                long value = random.nextInt(512);
+                expected.remove(value);
+                pq.remove(value);
+            } else {
+                Long value = expected.poll();
+                assertEquals(value == null ? LongPriorityQueue.NO_VALUE : value, pq.poll());
+            }
+            assertEquals(expected.isEmpty(), pq.isEmpty());
+        }
+        while (!expected.isEmpty()) {
+            assertFalse(pq.isEmpty());
+            assertEquals((long) expected.poll(), pq.poll());
+        }
+        assertTrue(pq.isEmpty());
+    }
+}
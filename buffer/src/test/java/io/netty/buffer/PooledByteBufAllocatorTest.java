@@ -18,6 +18,7 @@ package io.netty.buffer;
 
 import io.netty.util.concurrent.FastThreadLocal;
 import io.netty.util.concurrent.FastThreadLocalThread;
+import io.netty.util.concurrent.GlobalEventExecutor;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.SystemPropertyUtil;
 import org.junit.Assume;
@@ -25,10 +26,15 @@ import org.junit.Test;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.LockSupport;
@@ -132,6 +138,216 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
         buf.release();
     }
 
+    @Test
+    public void testPerCpuArenas() throws Throwable {
+        assertFalse(Thread.currentThread() instanceof FastThreadLocalThread);
+
+        final PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                /*preferDirect=*/ true,
+                /*nHeapArena=*/ 2,
+                /*nDirectArena=*/ 4,
+                /*pageSize=*/8192,
+                /*maxOrder=*/ 11,
+                /*smallCacheSize=*/ 256,
+                /*normalCacheSize=*/ 64,
+                /*useCacheForAllThreads=*/ true,
+                /*directMemoryCacheAlignment=*/ 0,
+                /*usePerCpuArenas=*/ true);
+
+        // One shared cache per direct arena, as there are more direct than heap arenas.
+        assertEquals(4, allocator.metric().numThreadLocalCaches());
+
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 1024; i++) {
+                            ByteBuf small = allocator.directBuffer(i % 512);
+                            ByteBuf normal = allocator.heapBuffer(16384);
+                            small.writeZero(small.capacity());
+                            normal.writeZero(normal.capacity());
+                            small.release();
+                            normal.release();
+                        }
+                    } catch (Throwable cause) {
+                        error.compareAndSet(null, cause);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (error.get() != null) {
+            throw error.get();
+        }
+
+        // Threads that are not FastThreadLocalThreads must not have created a cache of their own.
+        assertFalse(allocator.hasThreadLocalCache());
+        assertEquals(4, allocator.metric().numThreadLocalCaches());
+    }
+
+    @Test
+    public void testSizeClassMetrics() {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(false, 1, 0, 8192, 11, 0, 0, false);
+        PoolArenaMetric arena = allocator.metric().heapArenas().get(0);
+        List<PoolSizeClassMetric> sizeClasses = arena.sizeClasses();
+        assertEquals(arena.sizeIdx2size(sizeClasses.size() - 1), allocator.metric().chunkSize());
+
+        ByteBuf small = allocator.heapBuffer(100);
+        ByteBuf small2 = allocator.heapBuffer(112);
+        ByteBuf normal = allocator.heapBuffer(30000);
+        ByteBuf huge = allocator.heapBuffer(allocator.metric().chunkSize() + 1);
+
+        PoolSizeClassMetric smallClass = sizeClasses.get(arena.size2SizeIdx(100));
+        assertEquals(arena.size2SizeIdx(100), smallClass.sizeIdx());
+        assertEquals(112, smallClass.size());
+        assertEquals(2, smallClass.numAllocations());
+        assertEquals(212, smallClass.requestedBytes());
+        assertEquals(224, smallClass.grantedBytes());
+
+        PoolSizeClassMetric normalClass = sizeClasses.get(arena.size2SizeIdx(30000));
+        assertEquals(1, normalClass.numAllocations());
+        assertEquals(30000, normalClass.requestedBytes());
+        assertEquals(normalClass.size(), normalClass.grantedBytes());
+
+        long total = 0;
+        for (PoolSizeClassMetric m: sizeClasses) {
+            total += m.numAllocations();
+        }
+        // The huge allocation is not part of any size class.
+        assertEquals(3, total);
+        // Sampling of allocation sites is disabled by default.
+        assertTrue(arena.allocationSites().isEmpty());
+
+        small.release();
+        small2.release();
+        normal.release();
+        huge.release();
+    }
+
+    @Test
+    public void testReclaimIdleChunks() {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                /*preferDirect=*/ true,
+                /*nHeapArena=*/ 0,
+                /*nDirectArena=*/ 1,
+                /*pageSize=*/8192,
+                /*maxOrder=*/ 9,
+                /*smallCacheSize=*/ 0,
+                /*normalCacheSize=*/ 0,
+                /*useCacheForAllThreads=*/ false);
+        int chunkSize = allocator.metric().chunkSize();
+
+        // Allocate and release a buffer, which leaves a completely free chunk in qInit.
+        ByteBuf buf1 = allocator.directBuffer(65536);
+        buf1.release();
+        assertEquals(chunkSize, allocator.metric().usedDirectMemory());
+
+        // The first pass only marks the chunk as idle.
+        assertEquals(0, allocator.reclaimIdleMemory(0, 0));
+        // Free chunks are retained up to the given maximum.
+        assertEquals(0, allocator.reclaimIdleMemory(0, 1));
+        assertEquals(chunkSize, allocator.metric().usedDirectMemory());
+        assertEquals(chunkSize, allocator.reclaimIdleMemory(0, 0));
+        assertEquals(0, allocator.metric().usedDirectMemory());
+        assertEquals(1, allocator.metric().numReclaimedChunks());
+        assertEquals(chunkSize, allocator.metric().reclaimedBytes());
+
+        // A chunk that was used since the last pass is not considered idle.
+        ByteBuf buf2 = allocator.directBuffer(65536);
+        assertEquals(0, allocator.reclaimIdleMemory(0, 0));
+        buf2.release();
+        assertEquals(0, allocator.reclaimIdleMemory(0, 0));
+        ByteBuf buf3 = allocator.directBuffer(65536);
+        buf3.release();
+        assertEquals(0, allocator.reclaimIdleMemory(0, 0));
+        assertEquals(chunkSize, allocator.reclaimIdleMemory(0, 0));
+        assertEquals(2, allocator.metric().numReclaimedChunks());
+
+        // Chunks which have not been idle long enough are retained.
+        ByteBuf buf4 = allocator.directBuffer(65536);
+        buf4.release();
+        assertEquals(0, allocator.reclaimIdleMemory(TimeUnit.HOURS.toNanos(1), 0));
+        assertEquals(0, allocator.reclaimIdleMemory(TimeUnit.HOURS.toNanos(1), 0));
+        assertEquals(chunkSize, allocator.metric().usedDirectMemory());
+    }
+
+    @Test
+    public void testAlignedDirectChunkSourceIsNotGrown() {
+        Assume.assumeTrue(PooledByteBufAllocator.isDirectMemoryCacheAlignmentSupported());
+        final int alignment = 8192;
+        final List<Integer> capacities = new ArrayList<Integer>();
+        final Map<ByteBuffer, ByteBuffer> allocated = new IdentityHashMap<ByteBuffer, ByteBuffer>();
+        DirectChunkSource source = new DirectChunkSource() {
+            @Override
+            public int chunkAlignment() {
+                return alignment;
+            }
+
+            @Override
+            public ByteBuffer allocate(int capacity) {
+                capacities.add(capacity);
+                // Allocate more than requested and slice it, so the returned memory really starts at the alignment.
+                ByteBuffer buffer = ByteBuffer.allocateDirect(capacity + alignment);
+                int remainder = (int) (PlatformDependent.directBufferAddress(buffer) & alignment - 1);
+                int offset = remainder == 0 ? 0 : alignment - remainder;
+                buffer.position(offset).limit(offset + capacity);
+                ByteBuffer aligned = buffer.slice();
+                allocated.put(aligned, buffer);
+                return aligned;
+            }
+
+            @Override
+            public void free(ByteBuffer buffer) {
+                PlatformDependent.freeDirectBuffer(allocated.remove(buffer));
+            }
+        };
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                true, 0, 1, 8192, 9, 0, 0, false, 64, false, source);
+        ByteBuf buf = allocator.directBuffer(1024);
+        assertEquals(0, buf.memoryAddress() & 63);
+        buf.release();
+        // The memory of the source is aligned already, so the chunk is not grown by the cache alignment.
+        assertEquals(Collections.singletonList(allocator.metric().chunkSize()), capacities);
+        for (ByteBuffer aligned : allocated.keySet()) {
+            assertEquals(0, PlatformDependent.directBufferAddress(aligned) & alignment - 1);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testReclaimTaskDoesNotKeepGlobalEventExecutorAlive() throws Exception {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true);
+        ScheduledFuture<?> future = PooledByteBufAllocator.ReclaimTask.schedule(allocator, 10);
+        try {
+            GlobalEventExecutor.INSTANCE.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // NOOP
+                }
+            });
+            assertTrue(GlobalEventExecutor.INSTANCE.awaitInactivity(5, TimeUnit.SECONDS));
+
+            // The reclaim task is still scheduled, but on a daemon thread that does not prevent the JVM from exiting.
+            assertFalse(future.isDone());
+            boolean found = false;
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.getName().startsWith("pooledByteBufAllocatorReclaimer")) {
+                    assertTrue(thread.isDaemon());
+                    found = true;
+                }
+            }
+            assertTrue(found);
+        } finally {
+            future.cancel(false);
+        }
+    }
+
     @Test
     public void testArenaMetricsNoCache() {
         testArenaMetrics0(new PooledByteBufAllocator(true, 2, 2, 8192, 11, 0, 0, 0), 100, 0, 100, 100);
@@ -540,6 +756,53 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
         }
     }
 
+    @Test(timeout = 30000)
+    public void testConcurrentSubpageAllocation() throws Throwable {
+        // No caches and a single arena so all threads allocate from the same subpages.
+        final ByteBufAllocator allocator = new PooledByteBufAllocator(true, 1, 1, 8192, 11, 0, 0, 0);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 16; i++) {
+            final byte id = (byte) i;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        List<ByteBuf> buffers = new ArrayList<ByteBuf>();
+                        for (int round = 0; round < 200; round++) {
+                            for (int j = 0; j < 64; j++) {
+                                ByteBuf buf = allocator.directBuffer(32, 32);
+                                // Fill the whole capacity, so an element handed out twice would be detected.
+                                while (buf.isWritable()) {
+                                    buf.writeByte(id);
+                                }
+                                buffers.add(buf);
+                            }
+                            for (ByteBuf buf: buffers) {
+                                while (buf.isReadable()) {
+                                    assertEquals(id, buf.readByte());
+                                }
+                                buf.release();
+                            }
+                            buffers.clear();
+                        }
+                    } catch (Throwable cause) {
+                        error.compareAndSet(null, cause);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread: threads) {
+            thread.join();
+        }
+        Throwable cause = error.get();
+        if (cause != null) {
+            throw cause;
+        }
+    }
+
     private static boolean isExpired(long start, long expireTime) {
         return System.nanoTime() - start > expireTime;
     }
@@ -19,8 +19,12 @@ import io.netty.util.CharsetUtil;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ScatteringByteChannel;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
@@ -747,4 +751,60 @@ public class UnpooledTest {
             wrappedBuffer.release();
         }
     }
+
+    @Test
+    public void testMappedBuffer() throws Exception {
+        File file = File.createTempFile("netty-", ".tmp");
+        file.deleteOnExit();
+        byte[] bytes = "mapped file content".getBytes(CharsetUtil.US_ASCII);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+
+        ByteBuf buffer = mappedBuffer(file);
+        assertTrue(buffer.isDirect());
+        assertTrue(buffer.isReadOnly());
+        assertEquals(wrappedBuffer(bytes), buffer);
+
+        ByteBuf slice = buffer.retainedSlice(7, 4);
+        assertEquals("file", slice.toString(CharsetUtil.US_ASCII));
+        assertFalse(buffer.release());
+        assertEquals("file", slice.toString(CharsetUtil.US_ASCII));
+        assertTrue(slice.release());
+        assertEquals(0, buffer.refCnt());
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void testMappedBufferReadWrite() throws Exception {
+        File file = File.createTempFile("netty-", ".tmp");
+        file.deleteOnExit();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(16);
+            ByteBuf buffer = mappedBuffer(raf.getChannel(), FileChannel.MapMode.READ_WRITE, 8, 8);
+            assertTrue(buffer.isDirect());
+            assertFalse(buffer.isReadOnly());
+            assertEquals(8, buffer.capacity());
+            buffer.setLong(0, 0x0102030405060708L);
+            assertTrue(buffer.release());
+
+            raf.seek(8);
+            assertEquals(0x0102030405060708L, raf.readLong());
+        } finally {
+            raf.close();
+        }
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void testMappedBufferEmptyRegion() throws Exception {
+        File file = File.createTempFile("netty-", ".tmp");
+        file.deleteOnExit();
+        assertSame(EMPTY_BUFFER, mappedBuffer(file));
+        assertTrue(file.delete());
+    }
 }
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.netty.buffer.search;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ShiftOrMultiSearcherTest {
+
+    @Test
+    public void testSearchForMultiple() {
+        ByteBuf haystack = Unpooled.copiedBuffer("one two three one", CharsetUtil.UTF_8);
+        ShiftOrMultiSearcher searcher = new ShiftOrMultiSearcher(bytes("one"), bytes("two"), bytes("three"));
+        assertEquals("2:0 6:1 12:2 16:0 ", searchAll(searcher, haystack, 0, haystack.readableBytes()));
+        // Occurrences which are not completely part of the range are not reported.
+        assertEquals("6:1 12:2 ", searchAll(searcher, haystack, 1, 15));
+        haystack.release();
+    }
+
+    @Test
+    public void testSearchForOverlapping() {
+        ByteBuf haystack = Unpooled.copiedBuffer("abcd", CharsetUtil.UTF_8);
+        ShiftOrMultiSearcher searcher = new ShiftOrMultiSearcher(bytes("ab"), bytes("bc"), bytes("cd"), bytes("abcd"));
+        assertEquals("1:0 3:3 2:1 3:2 ", searchAll(searcher, haystack, 0, haystack.readableBytes()));
+        haystack.release();
+    }
+
+    @Test
+    public void testStopSearch() {
+        ByteBuf haystack = Unpooled.copiedBuffer("aaaa", CharsetUtil.UTF_8);
+        ShiftOrMultiSearcher searcher = new ShiftOrMultiSearcher(bytes("a"));
+        final List<Integer> found = new ArrayList<Integer>();
+        int matches = searcher.search(haystack, 0, 4, new ShiftOrMultiSearcher.MatchHandler() {
+            @Override
+            public boolean onMatch(int endIndex, int needleId) {
+                found.add(endIndex);
+                return found.size() < 2;
+            }
+        });
+        assertEquals(2, matches);
+        assertEquals(2, found.size());
+        haystack.release();
+    }
+
+    @Test
+    public void testOutOfBounds() {
+        ByteBuf haystack = Unpooled.buffer(4).writeZero(4);
+        try {
+            searchAll(new ShiftOrMultiSearcher(bytes("a")), haystack, 1, 4);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+            // expected
+        }
+        haystack.release();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyNeedle() {
+        new ShiftOrMultiSearcher(bytes("a"), new byte[0]);
+    }
+
+    @Test
+    public void testMatchesNaiveSearch() {
+        Random rnd = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            // Use a small alphabet so there are many matches and false positives of the filter.
+            byte[] haystackBytes = randomBytes(rnd, 1 + rnd.nextInt(300), 3);
+            byte[][] needles = new byte[1 + rnd.nextInt(20)][];
+            for (int i = 0; i < needles.length; i++) {
+                needles[i] = randomBytes(rnd, 1 + rnd.nextInt(12), 3);
+            }
+            ShiftOrMultiSearcher searcher = new ShiftOrMultiSearcher(needles);
+            int index = rnd.nextInt(haystackBytes.length);
+            int length = rnd.nextInt(haystackBytes.length - index + 1);
+            String expected = naiveSearchAll(needles, haystackBytes, index, length);
+
+            for (ByteBuf haystack: new ByteBuf[] {
+                    Unpooled.wrappedBuffer(haystackBytes),
+                    Unpooled.directBuffer(haystackBytes.length).writeBytes(haystackBytes),
+                    Unpooled.wrappedBuffer(Unpooled.wrappedBuffer(haystackBytes, 0, haystackBytes.length / 2),
+                            Unpooled.wrappedBuffer(haystackBytes, haystackBytes.length / 2,
+                                    haystackBytes.length - haystackBytes.length / 2))}) {
+                assertEquals(expected, searchAll(searcher, haystack, index, length));
+                haystack.release();
+            }
+        }
+    }
+
+    private static String searchAll(ShiftOrMultiSearcher searcher, ByteBuf haystack, int index, int length) {
+        final StringBuilder found = new StringBuilder();
+        final int[] count = new int[1];
+        int matches = searcher.search(haystack, index, length, new ShiftOrMultiSearcher.MatchHandler() {
+            @Override
+            public boolean onMatch(int endIndex, int needleId) {
+                found.append(endIndex).append(':').append(needleId).append(' ');
+                count[0]++;
+                return true;
+            }
+        });
+        assertEquals(count[0], matches);
+        return found.toString();
+    }
+
+    // Reports matches in the same order as ShiftOrMultiSearcher: by start index, then by bucket, then by id.
+    private static String naiveSearchAll(byte[][] needles, byte[] haystack, int index, int length) {
+        StringBuilder found = new StringBuilder();
+        for (int start = index; start < index + length; start++) {
+            for (int bucket = 0; bucket < 8; bucket++) {
+                for (int id = bucket; id < needles.length; id += 8) {
+                    byte[] needle = needles[id];
+                    if (start + needle.length <= index + length && matches(haystack, start, needle)) {
+                        found.append(start + needle.length - 1).append(':').append(id).append(' ');
+                    }
+                }
+            }
+        }
+        return found.toString();
+    }
+
+    private static boolean matches(byte[] haystack, int start, byte[] needle) {
+        for (int i = 0; i < needle.length; i++) {
+            if (haystack[start + i] != needle[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] randomBytes(Random rnd, int size, int alphabet) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) ('a' + rnd.nextInt(alphabet));
+        }
+        return bytes;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(CharsetUtil.UTF_8);
+    }
+}
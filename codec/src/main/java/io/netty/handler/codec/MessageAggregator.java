@@ -159,8 +159,8 @@ public abstract class MessageAggregator<I, S, C extends ByteBufHolder, O extends
 
     /**
      * Returns the maximum number of components in the cumulation buffer.  If the number of
-     * the components in the cumulation buffer exceeds this value, the components of the
-     * cumulation buffer are consolidated into a single component, involving memory copies.
+     * the components in the cumulation buffer exceeds this value, adjacent components of the
+     * cumulation buffer are consolidated, involving memory copies.
      * The default value of this property is {@value #DEFAULT_MAX_COMPOSITEBUFFER_COMPONENTS}.
      */
     public final int maxCumulationBufferComponents() {
@@ -169,8 +169,8 @@ public abstract class MessageAggregator<I, S, C extends ByteBufHolder, O extends
 
     /**
      * Sets the maximum number of components in the cumulation buffer.  If the number of
-     * the components in the cumulation buffer exceeds this value, the components of the
-     * cumulation buffer are consolidated into a single component, involving memory copies.
+     * the components in the cumulation buffer exceeds this value, adjacent components of the
+     * cumulation buffer are consolidated, involving memory copies.
      * The default value of this property is {@value #DEFAULT_MAX_COMPOSITEBUFFER_COMPONENTS}
      * and its minimum allowed value is {@code 2}.
      */
@@ -19,6 +19,7 @@ import io.netty.util.internal.EmptyArrays;
 import io.netty.util.internal.InternalThreadLocalMap;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SWARUtil;
 
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
@@ -47,6 +48,11 @@ import static io.netty.util.internal.ObjectUtil.checkNotNull;
 public final class AsciiString implements CharSequence, Comparable<CharSequence> {
     public static final AsciiString EMPTY_STRING = cached("");
     private static final char MAX_CHAR_VALUE = 255;
+    /**
+     * {@code true} if the backing arrays can be read and written 8 bytes at a time, which lets the case-insensitive
+     * comparisons, {@link #indexOf(char, int)} and {@link #toLowerCase()} process a whole word per iteration.
+     */
+    private static final boolean SWAR_ENABLED = PlatformDependent.hasUnsafe() && PlatformDependent.isUnaligned();
 
     public static final int INDEX_NOT_FOUND = -1;
 
@@ -533,12 +539,11 @@ public final class AsciiString implements CharSequence, Comparable<CharSequence>
 
         if (string instanceof AsciiString) {
             AsciiString rhs = (AsciiString) string;
-            for (int i = arrayOffset(), j = rhs.arrayOffset(), end = i + length(); i < end; ++i, ++j) {
-                if (!equalsIgnoreCase(value[i], rhs.value[j])) {
-                    return false;
-                }
+            // The hash codes are case-insensitive, so they can only differ if the contents do.
+            if (hash != 0 && rhs.hash != 0 && hash != rhs.hash) {
+                return false;
             }
-            return true;
+            return equalsIgnoreCase(value, arrayOffset(), rhs.value, rhs.arrayOffset(), length());
         }
 
         for (int i = arrayOffset(), j = 0, end = length(); j < end; ++i, ++j) {
@@ -722,11 +727,23 @@ public final class AsciiString implements CharSequence, Comparable<CharSequence>
 
         if (start < 0) {
             start = 0;
+        } else if (start >= length) {
+            return INDEX_NOT_FOUND;
         }
 
         final byte chAsByte = c2b0(ch);
         final int len = offset + length;
-        for (int i = start + offset; i < len; ++i) {
+        int i = start + offset;
+        if (SWAR_ENABLED) {
+            final long pattern = SWARUtil.compilePattern(chAsByte);
+            for (final int wordsEnd = len - 7; i < wordsEnd; i += 8) {
+                long result = SWARUtil.applyPattern(PlatformDependent.getLong(value, i), pattern);
+                if (result != 0) {
+                    return i + SWARUtil.getIndex(result, PlatformDependent.BIG_ENDIAN_NATIVE_ORDER) - offset;
+                }
+            }
+        }
+        for (; i < len; ++i) {
             if (value[i] == chAsByte) {
                 return i - offset;
             }
@@ -851,6 +868,10 @@ public final class AsciiString implements CharSequence, Comparable<CharSequence>
         }
 
         thisStart += arrayOffset();
+        if (string instanceof AsciiString) {
+            AsciiString rhs = (AsciiString) string;
+            return equalsIgnoreCase(value, thisStart, rhs.value, rhs.arrayOffset() + start, length);
+        }
         final int thisEnd = thisStart + length;
         while (thisStart < thisEnd) {
             if (!equalsIgnoreCase(b2c(value[thisStart++]), string.charAt(start++))) {
@@ -925,11 +946,22 @@ public final class AsciiString implements CharSequence, Comparable<CharSequence>
         boolean lowercased = true;
         int i, j;
         final int len = length() + arrayOffset();
-        for (i = arrayOffset(); i < len; ++i) {
-            byte b = value[i];
-            if (b >= 'A' && b <= 'Z') {
-                lowercased = false;
-                break;
+        i = arrayOffset();
+        if (SWAR_ENABLED) {
+            for (final int wordsEnd = len - 7; i < wordsEnd; i += 8) {
+                if (SWARUtil.applyUpperCasePattern(PlatformDependent.getLong(value, i)) != 0) {
+                    lowercased = false;
+                    break;
+                }
+            }
+        }
+        if (lowercased) {
+            for (; i < len; ++i) {
+                byte b = value[i];
+                if (b >= 'A' && b <= 'Z') {
+                    lowercased = false;
+                    break;
+                }
             }
         }
 
@@ -939,7 +971,14 @@ public final class AsciiString implements CharSequence, Comparable<CharSequence>
         }
 
         final byte[] newValue = PlatformDependent.allocateUninitializedArray(length());
-        for (i = 0, j = arrayOffset(); i < newValue.length; ++i, ++j) {
+        i = 0;
+        j = arrayOffset();
+        if (SWAR_ENABLED) {
+            for (final int wordsEnd = newValue.length - 7; i < wordsEnd; i += 8, j += 8) {
+                PlatformDependent.putLong(newValue, i, SWARUtil.toLowerCase(PlatformDependent.getLong(value, j)));
+            }
+        }
+        for (; i < newValue.length; ++i, ++j) {
             newValue[i] = toLowerCase(value[j]);
         }
 
@@ -1815,6 +1854,25 @@ public final class AsciiString implements CharSequence, Comparable<CharSequence>
         return INDEX_NOT_FOUND;
     }
 
+    private static boolean equalsIgnoreCase(byte[] a, int aIndex, byte[] b, int bIndex, int length) {
+        int i = 0;
+        if (SWAR_ENABLED) {
+            for (final int wordsEnd = length - 7; i < wordsEnd; i += 8) {
+                long aWord = PlatformDependent.getLong(a, aIndex + i);
+                long bWord = PlatformDependent.getLong(b, bIndex + i);
+                if (aWord != bWord && SWARUtil.toLowerCase(aWord) != SWARUtil.toLowerCase(bWord)) {
+                    return false;
+                }
+            }
+        }
+        for (; i < length; ++i) {
+            if (!equalsIgnoreCase(a[aIndex + i], b[bIndex + i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static boolean equalsIgnoreCase(byte a, byte b) {
         return a == b || toLowerCase(a) == toLowerCase(b);
     }
@@ -0,0 +1,672 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.netty.util.internal.StringUtil.simpleClassName;
+
+/**
+ * A {@link Timer} optimized for large numbers of approximated I/O timeouts, like read or idle timeouts of
+ * many connections.
+ *
+ * <h3>Levels</h3>
+ *
+ * Unlike {@link HashedWheelTimer}, which uses a single wheel and revisits far away timeouts on every rotation,
+ * this timer maintains several wheels of increasing granularity. The first level has one bucket per tick, every
+ * bucket of the next level spans a full rotation of the level below, and so on. A timeout is put into the
+ * lowest level whose range covers its deadline and is only moved down a level (cascaded) once the bucket
+ * holding it is reached. So every timeout is touched at most once per level, no matter how far in the future
+ * its deadline lies. Deadlines beyond the range of the highest level are re-inserted when their bucket is
+ * reached.
+ *
+ * <h3>Scheduling and cancellation</h3>
+ *
+ * Like {@link HashedWheelTimer}, new and cancelled timeouts are handed to the thread that drives the timer via
+ * lock-free queues, so threads that schedule or cancel timeouts do not contend with each other or with the expiry
+ * of timeouts. Timeouts are linked directly into their bucket, so a timeout cancelled by the thread that drives the
+ * timer, like a {@link TimerTask} or a handler of the driving {@code EventLoop}, is unlinked in constant time right
+ * away. A timeout cancelled by any other thread is only unlinked by the next tick, so until then it is still
+ * counted by {@link #pendingTimeouts()}.
+ *
+ * <h3>Driving the timer</h3>
+ *
+ * By default a dedicated thread is started once the first timeout is scheduled. Alternatively the timer can be
+ * driven by an existing {@link EventExecutor}, like an {@code EventLoop}, in which case no extra thread is
+ * created and all {@link TimerTask}s are run by that executor. All timeouts that expired within a tick are
+ * collected first and then run as one batch.
+ */
+public class HierarchicalWheelTimer implements Timer {
+
+    static final InternalLogger logger = InternalLoggerFactory.getInstance(HierarchicalWheelTimer.class);
+
+    private static final AtomicIntegerFieldUpdater<HierarchicalWheelTimer> STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(HierarchicalWheelTimer.class, "state");
+
+    private static final int ST_INIT = 0;
+    private static final int ST_STARTED = 1;
+    private static final int ST_SHUTDOWN = 2;
+
+    private static final int DEFAULT_TICKS_PER_WHEEL = 256;
+    private static final int DEFAULT_NUM_LEVELS = 4;
+
+    @SuppressWarnings({ "unused", "FieldMayBeFinal" })
+    private volatile int state; // 0 - init, 1 - started, 2 - shut down
+
+    private final Thread workerThread;
+    private final EventExecutor executor;
+    private Future<?> tickFuture;
+
+    private final long tickDuration;
+    private final long startTime;
+    private final int wheelShift;
+    private final int mask;
+    private final int numLevels;
+    private final HierarchicalWheelBucket[] buckets;
+    private final Queue<HierarchicalWheelTimeout> timeouts = PlatformDependent.newMpscQueue();
+    private final Queue<HierarchicalWheelTimeout> cancelledTimeouts = PlatformDependent.newMpscQueue();
+    private final AtomicLong pendingTimeouts = new AtomicLong();
+
+    // The buckets and the tick are only accessed by the thread that drives the timer.
+    private long tick;
+
+    /**
+     * Creates a new timer with the default thread factory ({@link Executors#defaultThreadFactory()}), a tick
+     * duration of 100 milliseconds and the default wheel layout.
+     */
+    public HierarchicalWheelTimer() {
+        this(100, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new timer with the default thread factory ({@link Executors#defaultThreadFactory()}) and the
+     * default wheel layout.
+     *
+     * @param tickDuration   the duration between tick
+     * @param unit           the time unit of the {@code tickDuration}
+     */
+    public HierarchicalWheelTimer(long tickDuration, TimeUnit unit) {
+        this(Executors.defaultThreadFactory(), tickDuration, unit, DEFAULT_TICKS_PER_WHEEL, DEFAULT_NUM_LEVELS);
+    }
+
+    /**
+     * Creates a new timer which runs its {@link TimerTask}s in a dedicated thread.
+     *
+     * @param threadFactory  a {@link ThreadFactory} that creates a background {@link Thread} which is dedicated
+     *                       to {@link TimerTask} execution.
+     * @param tickDuration   the duration between tick
+     * @param unit           the time unit of the {@code tickDuration}
+     * @param ticksPerWheel  the number of buckets of every level, rounded up to the next power of two
+     * @param numLevels      the number of levels
+     */
+    public HierarchicalWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit,
+                                  int ticksPerWheel, int numLevels) {
+        this(ObjectUtil.checkNotNull(threadFactory, "threadFactory"), null, tickDuration, unit,
+                ticksPerWheel, numLevels);
+    }
+
+    /**
+     * Creates a new timer which is driven by the given {@link EventExecutor} instead of a dedicated thread, using
+     * the default wheel layout.
+     *
+     * @param executor       the {@link EventExecutor} which advances the timer and runs its {@link TimerTask}s
+     * @param tickDuration   the duration between tick
+     * @param unit           the time unit of the {@code tickDuration}
+     */
+    public HierarchicalWheelTimer(EventExecutor executor, long tickDuration, TimeUnit unit) {
+        this(executor, tickDuration, unit, DEFAULT_TICKS_PER_WHEEL, DEFAULT_NUM_LEVELS);
+    }
+
+    /**
+     * Creates a new timer which is driven by the given {@link EventExecutor} instead of a dedicated thread.
+     *
+     * @param executor       the {@link EventExecutor} which advances the timer and runs its {@link TimerTask}s
+     * @param tickDuration   the duration between tick
+     * @param unit           the time unit of the {@code tickDuration}
+     * @param ticksPerWheel  the number of buckets of every level, rounded up to the next power of two
+     * @param numLevels      the number of levels
+     */
+    public HierarchicalWheelTimer(EventExecutor executor, long tickDuration, TimeUnit unit,
+                                  int ticksPerWheel, int numLevels) {
+        this(null, ObjectUtil.checkNotNull(executor, "executor"), tickDuration, unit, ticksPerWheel, numLevels);
+    }
+
+    private HierarchicalWheelTimer(ThreadFactory threadFactory, EventExecutor executor, long tickDuration,
+                                   TimeUnit unit, int ticksPerWheel, int numLevels) {
+        ObjectUtil.checkNotNull(unit, "unit");
+        ObjectUtil.checkPositive(tickDuration, "tickDuration");
+        if (ticksPerWheel < 2 || ticksPerWheel > 1 << 16) {
+            throw new IllegalArgumentException(
+                    "ticksPerWheel: " + ticksPerWheel + " (expected: 2-" + (1 << 16) + ')');
+        }
+        ObjectUtil.checkPositive(numLevels, "numLevels");
+
+        wheelShift = 32 - Integer.numberOfLeadingZeros(ticksPerWheel - 1);
+        if (wheelShift * numLevels > 62) {
+            throw new IllegalArgumentException(String.format(
+                    "numLevels: %d (expected: numLevels * log2(ticksPerWheel) <= 62)", numLevels));
+        }
+        mask = (1 << wheelShift) - 1;
+        this.numLevels = numLevels;
+        buckets = new HierarchicalWheelBucket[numLevels << wheelShift];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new HierarchicalWheelBucket();
+        }
+
+        this.tickDuration = unit.toNanos(tickDuration);
+        this.executor = executor;
+        workerThread = threadFactory != null ? threadFactory.newThread(new Worker()) : null;
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * Starts the background thread explicitly, or starts ticking on the {@link EventExecutor} this timer was
+     * created with. The timer is started automatically once the first timeout is scheduled, so there is no need
+     * to call this method.
+     *
+     * @throws IllegalStateException if this timer has been {@linkplain #stop() stopped} already
+     */
+    public void start() {
+        switch (STATE_UPDATER.get(this)) {
+            case ST_INIT:
+                if (STATE_UPDATER.compareAndSet(this, ST_INIT, ST_STARTED)) {
+                    if (workerThread != null) {
+                        workerThread.start();
+                    } else {
+                        startTicking();
+                    }
+                }
+                break;
+            case ST_STARTED:
+                break;
+            case ST_SHUTDOWN:
+                throw new IllegalStateException("cannot be started once stopped");
+            default:
+                throw new Error("Invalid WorkerState");
+        }
+    }
+
+    private void startTicking() {
+        Future<?> tickFuture = executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                runExpiredTimeouts(expireTimeouts());
+            }
+        }, tickDuration, tickDuration, TimeUnit.NANOSECONDS);
+        synchronized (this) {
+            if (STATE_UPDATER.get(this) == ST_SHUTDOWN) {
+                // Stopped concurrently, before the future could be recorded.
+                tickFuture.cancel(false);
+            } else {
+                this.tickFuture = tickFuture;
+            }
+        }
+    }
+
+    @Override
+    public Set<Timeout> stop() {
+        if (Thread.currentThread() == workerThread) {
+            throw new IllegalStateException(
+                    HierarchicalWheelTimer.class.getSimpleName() +
+                            ".stop() cannot be called from " +
+                            TimerTask.class.getSimpleName());
+        }
+
+        if (STATE_UPDATER.getAndSet(this, ST_SHUTDOWN) != ST_STARTED) {
+            // Never started or stopped already, so there can't be any pending timeouts.
+            return Collections.emptySet();
+        }
+
+        if (workerThread != null) {
+            boolean interrupted = false;
+            while (workerThread.isAlive()) {
+                workerThread.interrupt();
+                try {
+                    workerThread.join(100);
+                } catch (InterruptedException ignored) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            // The worker thread is gone, so the buckets can be accessed by this thread.
+            return clearTimeouts();
+        }
+        return stopTicking();
+    }
+
+    private Set<Timeout> stopTicking() {
+        synchronized (this) {
+            if (tickFuture != null) {
+                tickFuture.cancel(false);
+                tickFuture = null;
+            }
+        }
+        if (executor.inEventLoop()) {
+            return clearTimeouts();
+        }
+        try {
+            // Clear the buckets on the executor, after a tick that may be running right now.
+            return executor.submit(new Callable<Set<Timeout>>() {
+                @Override
+                public Set<Timeout> call() {
+                    return clearTimeouts();
+                }
+            }).syncUninterruptibly().getNow();
+        } catch (RejectedExecutionException e) {
+            // The executor was shut down, so it does not tick anymore.
+            return clearTimeouts();
+        }
+    }
+
+    @Override
+    public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+        ObjectUtil.checkNotNull(task, "task");
+        ObjectUtil.checkNotNull(unit, "unit");
+
+        start();
+
+        long deadline = System.nanoTime() - startTime + unit.toNanos(delay);
+        // Guard against overflow.
+        if (delay > 0 && deadline < 0) {
+            deadline = Long.MAX_VALUE;
+        }
+        // Round up so the timeout never fires before its deadline.
+        long deadlineTick = deadline / tickDuration;
+        if (deadline > 0 && deadline % tickDuration != 0) {
+            deadlineTick++;
+        }
+
+        if (STATE_UPDATER.get(this) == ST_SHUTDOWN) {
+            throw new RejectedExecutionException("timer has been stopped");
+        }
+        // Added to a bucket by the next tick.
+        HierarchicalWheelTimeout timeout = new HierarchicalWheelTimeout(this, task, deadline, deadlineTick);
+        pendingTimeouts.incrementAndGet();
+        timeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Returns the number of pending timeouts of this {@link Timer}.
+     */
+    public long pendingTimeouts() {
+        return pendingTimeouts.get();
+    }
+
+    private void transferTimeoutsToBuckets() {
+        // Transfer at most 100000 timeouts per tick, so a thread that keeps adding timeouts in a loop can not stall
+        // the expiry.
+        for (int i = 0; i < 100000; i++) {
+            HierarchicalWheelTimeout timeout = timeouts.poll();
+            if (timeout == null) {
+                break;
+            }
+            if (timeout.isCancelled()) {
+                // Was cancelled before it was added to a bucket.
+                pendingTimeouts.decrementAndGet();
+                continue;
+            }
+            // Never schedule for the past or the tick which is processed right now.
+            timeout.deadlineTick = Math.max(timeout.deadlineTick, tick + 1);
+            schedule(timeout);
+        }
+    }
+
+    private void processCancelledTimeouts() {
+        for (;;) {
+            HierarchicalWheelTimeout timeout = cancelledTimeouts.poll();
+            if (timeout == null) {
+                break;
+            }
+            removeCancelled(timeout);
+        }
+    }
+
+    /**
+     * Unlinks a cancelled timeout from its bucket. Must be called by the thread that drives the timer.
+     */
+    void removeCancelled(HierarchicalWheelTimeout timeout) {
+        // Not in a bucket if it was not transferred yet or was already dropped by a cascade. In the first case the
+        // transfer drops it.
+        HierarchicalWheelBucket bucket = timeout.bucket;
+        if (bucket != null) {
+            bucket.remove(timeout);
+            pendingTimeouts.decrementAndGet();
+        }
+    }
+
+    boolean isDrivingThread() {
+        return workerThread != null ? Thread.currentThread() == workerThread : executor.inEventLoop();
+    }
+
+    /**
+     * Adds the timeout to the bucket of the lowest level that covers its deadline, relative to the current tick.
+     * Must be called by the thread that drives the timer.
+     */
+    private void schedule(HierarchicalWheelTimeout timeout) {
+        long deadlineTick = timeout.deadlineTick;
+        long diff = deadlineTick ^ tick;
+        // The level is given by the most significant digit in which the deadline and the current tick differ.
+        int level = diff == 0 ? 0 : (63 - Long.numberOfLeadingZeros(diff)) / wheelShift;
+        int slot;
+        if (level < numLevels) {
+            slot = (int) (deadlineTick >>> level * wheelShift) & mask;
+        } else {
+            level = numLevels - 1;
+            int shift = level * wheelShift;
+            if ((deadlineTick >>> shift) - (tick >>> shift) <= mask + 1) {
+                // Still reachable by the highest level, only the digit above it changes.
+                slot = (int) (deadlineTick >>> shift) & mask;
+            } else {
+                // Out of range, put it into the bucket of the highest level that is reached last. It will be
+                // re-inserted from there.
+                slot = (int) ((tick >>> shift) - 1) & mask;
+            }
+        }
+        buckets[level << wheelShift | slot].add(timeout);
+    }
+
+    /**
+     * Advances the wheels up to the current time and returns the timeouts that expired, chained via
+     * {@link HierarchicalWheelTimeout#next}.
+     */
+    private HierarchicalWheelTimeout expireTimeouts() {
+        processCancelledTimeouts();
+        transferTimeoutsToBuckets();
+
+        long lastTick = (System.nanoTime() - startTime) / tickDuration;
+        HierarchicalWheelTimeout head = null;
+        HierarchicalWheelTimeout tail = null;
+        while (tick < lastTick) {
+            tick++;
+
+            // Cascade the higher levels first so timeouts can move down more than one level within one tick.
+            for (int level = numLevels - 1; level > 0; level--) {
+                int shift = level * wheelShift;
+                if ((tick & (1L << shift) - 1) == 0) {
+                    cascade(buckets[level << wheelShift | (int) (tick >>> shift) & mask]);
+                }
+            }
+
+            HierarchicalWheelBucket bucket = buckets[(int) tick & mask];
+            HierarchicalWheelTimeout timeout = bucket.head;
+            bucket.head = bucket.tail = null;
+            while (timeout != null) {
+                HierarchicalWheelTimeout next = timeout.next;
+                timeout.prev = timeout.next = null;
+                timeout.bucket = null;
+                if (timeout.deadlineTick > tick) {
+                    // Only happens for timeouts that were out of range when they were scheduled.
+                    schedule(timeout);
+                } else {
+                    pendingTimeouts.decrementAndGet();
+                    if (timeout.compareAndSetState(HierarchicalWheelTimeout.ST_INIT,
+                            HierarchicalWheelTimeout.ST_EXPIRED)) {
+                        if (tail == null) {
+                            head = timeout;
+                        } else {
+                            tail.next = timeout;
+                        }
+                        tail = timeout;
+                    }
+                }
+                timeout = next;
+            }
+        }
+        return head;
+    }
+
+    private void cascade(HierarchicalWheelBucket bucket) {
+        HierarchicalWheelTimeout timeout = bucket.head;
+        bucket.head = bucket.tail = null;
+        while (timeout != null) {
+            HierarchicalWheelTimeout next = timeout.next;
+            timeout.prev = timeout.next = null;
+            timeout.bucket = null;
+            if (timeout.isCancelled()) {
+                pendingTimeouts.decrementAndGet();
+            } else {
+                schedule(timeout);
+            }
+            timeout = next;
+        }
+    }
+
+    private static void runExpiredTimeouts(HierarchicalWheelTimeout timeout) {
+        while (timeout != null) {
+            HierarchicalWheelTimeout next = timeout.next;
+            timeout.next = null;
+            timeout.run();
+            timeout = next;
+        }
+    }
+
+    private Set<Timeout> clearTimeouts() {
+        Set<Timeout> unprocessedTimeouts = new HashSet<Timeout>();
+        for (HierarchicalWheelBucket bucket : buckets) {
+            HierarchicalWheelTimeout timeout = bucket.head;
+            bucket.head = bucket.tail = null;
+            while (timeout != null) {
+                HierarchicalWheelTimeout next = timeout.next;
+                timeout.prev = timeout.next = null;
+                timeout.bucket = null;
+                if (!timeout.isCancelled()) {
+                    unprocessedTimeouts.add(timeout);
+                }
+                timeout = next;
+            }
+        }
+        for (;;) {
+            HierarchicalWheelTimeout timeout = timeouts.poll();
+            if (timeout == null) {
+                break;
+            }
+            if (!timeout.isCancelled()) {
+                unprocessedTimeouts.add(timeout);
+            }
+        }
+        cancelledTimeouts.clear();
+        pendingTimeouts.set(0);
+        return Collections.unmodifiableSet(unprocessedTimeouts);
+    }
+
+    private final class Worker implements Runnable {
+        @Override
+        public void run() {
+            long nextTick = 1;
+            while (STATE_UPDATER.get(HierarchicalWheelTimer.this) == ST_STARTED) {
+                long sleepTimeMs = (startTime + nextTick * tickDuration - System.nanoTime() + 999999) / 1000000;
+                if (sleepTimeMs > 0) {
+                    try {
+                        Thread.sleep(sleepTimeMs);
+                    } catch (InterruptedException ignored) {
+                        // Check the state again.
+                    }
+                    continue;
+                }
+                HierarchicalWheelTimeout expired = expireTimeouts();
+                nextTick = tick + 1;
+                runExpiredTimeouts(expired);
+            }
+        }
+    }
+
+    private static final class HierarchicalWheelTimeout implements Timeout {
+
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<HierarchicalWheelTimeout> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(HierarchicalWheelTimeout.class, "state");
+
+        private final HierarchicalWheelTimer timer;
+        private final TimerTask task;
+        private final long deadline;
+
+        @SuppressWarnings({"unused", "FieldMayBeFinal", "RedundantFieldInitialization" })
+        private volatile int state = ST_INIT;
+
+        // All the following fields are only accessed by the thread that drives the timer.
+        long deadlineTick;
+        HierarchicalWheelTimeout next;
+        HierarchicalWheelTimeout prev;
+        HierarchicalWheelBucket bucket;
+
+        HierarchicalWheelTimeout(HierarchicalWheelTimer timer, TimerTask task, long deadline, long deadlineTick) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+            this.deadlineTick = deadlineTick;
+        }
+
+        @Override
+        public Timer timer() {
+            return timer;
+        }
+
+        @Override
+        public TimerTask task() {
+            return task;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!compareAndSetState(ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            if (timer.isDrivingThread()) {
+                timer.removeCancelled(this);
+            } else {
+                // Removed from its bucket by the next tick.
+                timer.cancelledTimeouts.add(this);
+            }
+            return true;
+        }
+
+        boolean compareAndSetState(int expected, int state) {
+            return STATE_UPDATER.compareAndSet(this, expected, state);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        void run() {
+            try {
+                task.run(this);
+            } catch (Throwable t) {
+                if (logger.isWarnEnabled()) {
+                    logger.warn("An exception was thrown by " + TimerTask.class.getSimpleName() + '.', t);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            long remaining = deadline - System.nanoTime() + timer.startTime;
+
+            StringBuilder buf = new StringBuilder(192)
+               .append(simpleClassName(this))
+               .append('(')
+               .append("deadline: ");
+            if (remaining > 0) {
+                buf.append(remaining)
+                   .append(" ns later");
+            } else if (remaining < 0) {
+                buf.append(-remaining)
+                   .append(" ns ago");
+            } else {
+                buf.append("now");
+            }
+
+            if (isCancelled()) {
+                buf.append(", cancelled");
+            }
+
+            return buf.append(", task: ")
+                      .append(task())
+                      .append(')')
+                      .toString();
+        }
+    }
+
+    /**
+     * Doubly-linked list of {@link HierarchicalWheelTimeout}s, so a timeout can be removed from the middle in
+     * constant time.
+     */
+    private static final class HierarchicalWheelBucket {
+        HierarchicalWheelTimeout head;
+        HierarchicalWheelTimeout tail;
+
+        void add(HierarchicalWheelTimeout timeout) {
+            assert timeout.bucket == null;
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(HierarchicalWheelTimeout timeout) {
+            HierarchicalWheelTimeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
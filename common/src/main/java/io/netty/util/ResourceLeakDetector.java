@@ -17,6 +17,7 @@
 package io.netty.util;
 
 import io.netty.util.internal.EmptyArrays;
+import io.netty.util.internal.MathUtil;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.SystemPropertyUtil;
@@ -26,14 +27,17 @@ import io.netty.util.internal.logging.InternalLoggerFactory;
 import java.lang.ref.WeakReference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import static io.netty.util.internal.StringUtil.EMPTY_STRING;
@@ -53,8 +57,15 @@ public class ResourceLeakDetector<T> {
     // There is a minor performance benefit in TLR if this is a power of 2.
     private static final int DEFAULT_SAMPLING_INTERVAL = 128;
 
+    private static final String PROP_AGGREGATE = "io.netty.leakDetection.aggregate";
+    private static final String PROP_MAX_TRACKED = "io.netty.leakDetection.maxTracked";
+    private static final int DEFAULT_MAX_TRACKED = 4096;
+    private static final int MAX_LEAK_SITES = 1024;
+
     private static final int TARGET_RECORDS;
     static final int SAMPLING_INTERVAL;
+    private static final boolean AGGREGATE;
+    private static final int MAX_TRACKED;
 
     /**
      * Represents the level of resource leak detection.
@@ -124,11 +135,17 @@ public class ResourceLeakDetector<T> {
 
         TARGET_RECORDS = SystemPropertyUtil.getInt(PROP_TARGET_RECORDS, DEFAULT_TARGET_RECORDS);
         SAMPLING_INTERVAL = SystemPropertyUtil.getInt(PROP_SAMPLING_INTERVAL, DEFAULT_SAMPLING_INTERVAL);
+        AGGREGATE = SystemPropertyUtil.getBoolean(PROP_AGGREGATE, false);
+        MAX_TRACKED = SystemPropertyUtil.getInt(PROP_MAX_TRACKED, DEFAULT_MAX_TRACKED);
 
         ResourceLeakDetector.level = level;
         if (logger.isDebugEnabled()) {
             logger.debug("-D{}: {}", PROP_LEVEL, level.name().toLowerCase());
             logger.debug("-D{}: {}", PROP_TARGET_RECORDS, TARGET_RECORDS);
+            logger.debug("-D{}: {}", PROP_AGGREGATE, AGGREGATE);
+            if (AGGREGATE) {
+                logger.debug("-D{}: {}", PROP_MAX_TRACKED, MAX_TRACKED);
+            }
         }
     }
 
@@ -161,9 +178,22 @@ public class ResourceLeakDetector<T> {
         return level;
     }
 
+    /**
+     * Returns the leaks that were detected by the {@link ResourceLeakDetector}s running in aggregated mode,
+     * grouped by resource type and the stack trace of the allocation. Aggregated mode is enabled with
+     * {@code -Dio.netty.leakDetection.aggregate=true}. The counts are cumulative, so this can be scraped
+     * periodically.
+     */
+    public static List<ResourceLeakSite> leakSites() {
+        return Collections.unmodifiableList(new ArrayList<ResourceLeakSite>(leakSites.values()));
+    }
+
+    private static final ConcurrentMap<Long, ResourceLeakSite> leakSites =
+            PlatformDependent.newConcurrentHashMap();
+
     /** the collection of active resources */
-    private final Set<DefaultResourceLeak<?>> allLeaks =
-            Collections.newSetFromMap(new ConcurrentHashMap<DefaultResourceLeak<?>, Boolean>());
+    private final ActiveLeaks allLeaks;
+    private final boolean aggregate;
 
     private final ReferenceQueue<Object> refQueue = new ReferenceQueue<Object>();
     private final Set<String> reportedLeaks =
@@ -219,8 +249,14 @@ public class ResourceLeakDetector<T> {
      */
     @Deprecated
     public ResourceLeakDetector(String resourceType, int samplingInterval, long maxActive) {
+        this(resourceType, samplingInterval, AGGREGATE);
+    }
+
+    ResourceLeakDetector(String resourceType, int samplingInterval, boolean aggregate) {
         this.resourceType = ObjectUtil.checkNotNull(resourceType, "resourceType");
         this.samplingInterval = samplingInterval;
+        this.aggregate = aggregate;
+        allLeaks = aggregate ? new BoundedActiveLeaks(MAX_TRACKED) : new ConcurrentActiveLeaks();
     }
 
     /**
@@ -256,12 +292,23 @@ public class ResourceLeakDetector<T> {
         if (level.ordinal() < Level.PARANOID.ordinal()) {
             if ((PlatformDependent.threadLocalRandom().nextInt(samplingInterval)) == 0) {
                 reportLeak();
-                return new DefaultResourceLeak(obj, refQueue, allLeaks);
+                return newLeak(obj);
             }
             return null;
         }
         reportLeak();
-        return new DefaultResourceLeak(obj, refQueue, allLeaks);
+        return newLeak(obj);
+    }
+
+    @SuppressWarnings("unchecked")
+    private DefaultResourceLeak newLeak(T obj) {
+        DefaultResourceLeak leak = new DefaultResourceLeak(obj, refQueue, allLeaks);
+        if (!allLeaks.add(leak)) {
+            // Too many resources are tracked already, skip this one.
+            leak.clear();
+            return null;
+        }
+        return leak;
     }
 
     private void clearRefQueue() {
@@ -285,7 +332,7 @@ public class ResourceLeakDetector<T> {
     }
 
     private void reportLeak() {
-        if (!needReport()) {
+        if (!aggregate && !needReport()) {
             clearRefQueue();
             return;
         }
@@ -301,6 +348,11 @@ public class ResourceLeakDetector<T> {
                 continue;
             }
 
+            if (aggregate) {
+                aggregateLeak(ref);
+                continue;
+            }
+
             String records = ref.toString();
             if (reportedLeaks.add(records)) {
                 if (records.isEmpty()) {
@@ -312,6 +364,44 @@ public class ResourceLeakDetector<T> {
         }
     }
 
+    /**
+     * Counts the leak for the stack trace of its allocation. Only the first leak of every allocation site is
+     * reported, all later ones are just counted.
+     */
+    private void aggregateLeak(DefaultResourceLeak<?> ref) {
+        TraceRecord creation = ref.creationRecord();
+        int stackHash = creation != null ? creation.stackHash() : 0;
+        Long key = (long) resourceType.hashCode() << 32 | stackHash & 0xFFFFFFFFL;
+        ResourceLeakSite site = leakSites.get(key);
+        if (site == null) {
+            if (leakSites.size() >= MAX_LEAK_SITES) {
+                // Too many distinct sites, count it for the resource type only.
+                stackHash = 0;
+                key = (long) resourceType.hashCode() << 32;
+                site = leakSites.get(key);
+                creation = null;
+            }
+            if (site == null) {
+                String stackTrace = creation != null ? creation.toString() : EMPTY_STRING;
+                ResourceLeakSite newSite = new ResourceLeakSite(resourceType, stackHash, stackTrace);
+                site = leakSites.putIfAbsent(key, newSite);
+                if (site == null) {
+                    site = newSite;
+                    if (needReport()) {
+                        if (stackTrace.isEmpty()) {
+                            reportUntracedLeak(resourceType);
+                        } else {
+                            reportTracedLeak(resourceType, NEWLINE + "Created at:" + NEWLINE + stackTrace +
+                                    "Further leaks of this allocation site are only counted, see " +
+                                    simpleClassName(ResourceLeakDetector.class) + ".leakSites().");
+                        }
+                    }
+                }
+            }
+        }
+        site.increment();
+    }
+
     /**
      * This method is called when a traced leak is detected. It can be overridden for tracking how many times leaks
      * have been detected.
@@ -362,13 +452,15 @@ public class ResourceLeakDetector<T> {
         @SuppressWarnings("unused")
         private volatile int droppedRecords;
 
-        private final Set<DefaultResourceLeak<?>> allLeaks;
+        private final ActiveLeaks allLeaks;
         private final int trackedHash;
+        // The slot of this leak if it is tracked by BoundedActiveLeaks.
+        int slot;
 
         DefaultResourceLeak(
                 Object referent,
                 ReferenceQueue<Object> refQueue,
-                Set<DefaultResourceLeak<?>> allLeaks) {
+                ActiveLeaks allLeaks) {
             super(referent, refQueue);
 
             assert referent != null;
@@ -377,7 +469,6 @@ public class ResourceLeakDetector<T> {
             // It's important that we not store a reference to the referent as this would disallow it from
             // be collected via the WeakReference.
             trackedHash = System.identityHashCode(referent);
-            allLeaks.add(this);
             // Create a new Record so we always have the creation stacktrace included.
             headUpdater.set(this, new TraceRecord(TraceRecord.BOTTOM));
             this.allLeaks = allLeaks;
@@ -507,6 +598,20 @@ public class ResourceLeakDetector<T> {
             }
         }
 
+        /**
+         * Returns the record of the creation of the resource, or {@code null} if it was closed already.
+         */
+        TraceRecord creationRecord() {
+            TraceRecord record = headUpdater.getAndSet(this, null);
+            if (record == null) {
+                return null;
+            }
+            while (record.next != TraceRecord.BOTTOM) {
+                record = record.next;
+            }
+            return record;
+        }
+
         @Override
         public String toString() {
             TraceRecord oldHead = headUpdater.getAndSet(this, null);
@@ -561,6 +666,73 @@ public class ResourceLeakDetector<T> {
         }
     }
 
+    /**
+     * Keeps the {@link DefaultResourceLeak}s of resources that were not closed yet strongly reachable, so they
+     * are enqueued once the resource is garbage-collected.
+     */
+    private abstract static class ActiveLeaks {
+        /**
+         * Returns {@code false} if the leak could not be added and so must not be tracked.
+         */
+        abstract boolean add(DefaultResourceLeak<?> leak);
+
+        /**
+         * Returns {@code true} if the leak was removed, {@code false} if it was removed before.
+         */
+        abstract boolean remove(DefaultResourceLeak<?> leak);
+    }
+
+    private static final class ConcurrentActiveLeaks extends ActiveLeaks {
+        private final Set<DefaultResourceLeak<?>> leaks =
+                Collections.newSetFromMap(new ConcurrentHashMap<DefaultResourceLeak<?>, Boolean>());
+
+        @Override
+        boolean add(DefaultResourceLeak<?> leak) {
+            leaks.add(leak);
+            return true;
+        }
+
+        @Override
+        boolean remove(DefaultResourceLeak<?> leak) {
+            return leaks.remove(leak);
+        }
+    }
+
+    /**
+     * Lock-free table with a fixed number of slots. A leak claims a free slot close to a random start index and
+     * remembers it, so removing is a single compare-and-set. If no free slot is found the resource is not tracked.
+     */
+    private static final class BoundedActiveLeaks extends ActiveLeaks {
+        private static final int MAX_PROBES = 8;
+
+        private final AtomicReferenceArray<DefaultResourceLeak<?>> slots;
+        private final int mask;
+
+        BoundedActiveLeaks(int maxTracked) {
+            int size = MathUtil.safeFindNextPositivePowerOfTwo(Math.max(maxTracked, MAX_PROBES));
+            slots = new AtomicReferenceArray<DefaultResourceLeak<?>>(size);
+            mask = size - 1;
+        }
+
+        @Override
+        boolean add(DefaultResourceLeak<?> leak) {
+            int start = PlatformDependent.threadLocalRandom().nextInt();
+            for (int i = 0; i < MAX_PROBES; i++) {
+                int slot = start + i & mask;
+                if (slots.get(slot) == null && slots.compareAndSet(slot, null, leak)) {
+                    leak.slot = slot;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        boolean remove(DefaultResourceLeak<?> leak) {
+            return slots.compareAndSet(leak.slot, leak, null);
+        }
+    }
+
     private static final AtomicReference<String[]> excludedMethods =
             new AtomicReference<String[]>(EmptyArrays.EMPTY_STRINGS);
 
@@ -617,6 +789,22 @@ public class ResourceLeakDetector<T> {
             pos = -1;
         }
 
+        /**
+         * Returns a hash of the stack trace elements that {@link #toString()} would print.
+         */
+        int stackHash() {
+            StackTraceElement[] array = getStackTrace();
+            int hash = 1;
+            // Skip the first three elements.
+            for (int i = 3; i < array.length; i++) {
+                StackTraceElement element = array[i];
+                if (!isExcluded(element)) {
+                    hash = 31 * hash + element.hashCode();
+                }
+            }
+            return hash;
+        }
+
         @Override
         public String toString() {
             StringBuilder buf = new StringBuilder(2048);
@@ -627,15 +815,11 @@ public class ResourceLeakDetector<T> {
             // Append the stack trace.
             StackTraceElement[] array = getStackTrace();
             // Skip the first three elements.
-            out: for (int i = 3; i < array.length; i++) {
+            for (int i = 3; i < array.length; i++) {
                 StackTraceElement element = array[i];
                 // Strip the noisy stack trace elements.
-                String[] exclusions = excludedMethods.get();
-                for (int k = 0; k < exclusions.length; k += 2) {
-                    if (exclusions[k].equals(element.getClassName())
-                            && exclusions[k + 1].equals(element.getMethodName())) {
-                        continue out;
-                    }
+                if (isExcluded(element)) {
+                    continue;
                 }
 
                 buf.append('\t');
@@ -644,5 +828,16 @@ public class ResourceLeakDetector<T> {
             }
             return buf.toString();
         }
+
+        private static boolean isExcluded(StackTraceElement element) {
+            String[] exclusions = excludedMethods.get();
+            for (int k = 0; k < exclusions.length; k += 2) {
+                if (exclusions[k].equals(element.getClassName())
+                        && exclusions[k + 1].equals(element.getMethodName())) {
+                    return true;
+                }
+            }
+            return false;
+        }
     }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * The number of leaks detected for resources of one type that were allocated at the same place, as returned by
+ * {@link ResourceLeakDetector#leakSites()}.
+ */
+public final class ResourceLeakSite {
+
+    private final String resourceType;
+    private final int stackHash;
+    private final String stackTrace;
+    private final LongCounter count = PlatformDependent.newLongCounter();
+
+    ResourceLeakSite(String resourceType, int stackHash, String stackTrace) {
+        this.resourceType = resourceType;
+        this.stackHash = stackHash;
+        this.stackTrace = stackTrace;
+    }
+
+    void increment() {
+        count.increment();
+    }
+
+    /**
+     * Returns the type of the leaked resources.
+     */
+    public String resourceType() {
+        return resourceType;
+    }
+
+    /**
+     * Returns the hash of the allocation stack trace, which identifies this site.
+     */
+    public int stackHash() {
+        return stackHash;
+    }
+
+    /**
+     * Returns the stack trace of the allocation of the first resource that leaked at this site, or an empty
+     * string if too many distinct sites were seen for it to be recorded.
+     */
+    public String stackTrace() {
+        return stackTrace;
+    }
+
+    /**
+     * Returns the number of leaks detected at this site so far.
+     */
+    public long count() {
+        return count.value();
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceLeakSite(resourceType: " + resourceType + ", stackHash: " + Integer.toHexString(stackHash) +
+                ", count: " + count() + ')';
+    }
+}
@@ -44,6 +44,8 @@ public abstract class AbstractScheduledEventExecutor extends AbstractEventExecut
     };
 
     PriorityQueue<ScheduledFutureTask<?>> scheduledTaskQueue;
+    // Set by useScheduledTaskWheel(...) and taken over by the executor the next time it accesses the queue.
+    private volatile ScheduledTaskWheel pendingScheduledTaskWheel;
 
     long nextTaskId;
 
@@ -77,6 +79,9 @@ public abstract class AbstractScheduledEventExecutor extends AbstractEventExecut
     }
 
     PriorityQueue<ScheduledFutureTask<?>> scheduledTaskQueue() {
+        if (pendingScheduledTaskWheel != null) {
+            switchToScheduledTaskWheel();
+        }
         if (scheduledTaskQueue == null) {
             scheduledTaskQueue = new DefaultPriorityQueue<ScheduledFutureTask<?>>(
                     SCHEDULED_FUTURE_TASK_COMPARATOR,
@@ -86,6 +91,44 @@ public abstract class AbstractScheduledEventExecutor extends AbstractEventExecut
         return scheduledTaskQueue;
     }
 
+    private void switchToScheduledTaskWheel() {
+        ScheduledTaskWheel wheel = pendingScheduledTaskWheel;
+        pendingScheduledTaskWheel = null;
+        PriorityQueue<ScheduledFutureTask<?>> oldQueue = scheduledTaskQueue;
+        if (oldQueue != null) {
+            ScheduledFutureTask<?> task;
+            while ((task = oldQueue.poll()) != null) {
+                wheel.add(task);
+            }
+        }
+        scheduledTaskQueue = wheel;
+    }
+
+    /**
+     * Keeps the scheduled tasks of this executor in a timing wheel instead of a binary heap. Tasks that are due later
+     * than the current tick are added to and removed from the buckets of the wheel in {@code O(1)} and are only
+     * moved to a small heap once their tick is reached, which helps executors that have a large number of scheduled
+     * tasks, like the idle timeouts of many connections. The order in which the tasks are run does not change.
+     * <p>
+     * Already scheduled tasks are moved to the wheel the next time a task is scheduled or cancelled.
+     *
+     * @param tickDuration the duration between two ticks, rounded up to a power of two nanoseconds. Something
+     *                     in the order of a few milliseconds is a good trade-off in most cases.
+     * @param unit the unit of {@code tickDuration}
+     * @param ticksPerWheel the number of buckets of the wheel, rounded up to a power of two. Tasks that are due
+     *                      after more than {@code tickDuration * ticksPerWheel} are looked at once per rotation.
+     */
+    public void useScheduledTaskWheel(long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        ObjectUtil.checkNotNull(unit, "unit");
+        ObjectUtil.checkPositive(tickDuration, "tickDuration");
+        ObjectUtil.checkPositive(ticksPerWheel, "ticksPerWheel");
+        if (ticksPerWheel > 1 << 30) {
+            throw new IllegalArgumentException("ticksPerWheel may not be greater than 2^30: " + ticksPerWheel);
+        }
+        pendingScheduledTaskWheel = new ScheduledTaskWheel(
+                SCHEDULED_FUTURE_TASK_COMPARATOR, Math.max(1, unit.toNanos(tickDuration)), ticksPerWheel);
+    }
+
     private static boolean isNullOrEmpty(Queue<ScheduledFutureTask<?>> queue) {
         return queue == null || queue.isEmpty();
     }
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * {@link EventExecutorMetrics} that records all timings in {@link LatencyHistogram}s, which can be read from any
+ * thread while the executor is running.
+ * <p>
+ * The utilization of the executor between two points in time is the growth of
+ * {@code ioTime().sum() + taskTime().sum()} divided by the growth of that plus {@code waitTime().sum()}. The number
+ * of tasks that are currently queued is returned by {@link SingleThreadEventExecutor#pendingTasks()}.
+ */
+@UnstableApi
+public final class DefaultEventExecutorMetrics implements EventExecutorMetrics {
+
+    private final int taskSampleInterval;
+    private final LatencyHistogram waitTime = new LatencyHistogram();
+    private final LatencyHistogram ioTime = new LatencyHistogram();
+    private final LatencyHistogram taskTime = new LatencyHistogram();
+    private final LatencyHistogram taskQueueDelay = new LatencyHistogram();
+    private final LatencyHistogram taskRunTime = new LatencyHistogram();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param taskSampleInterval on average the queue delay and run time of one of this many tasks is recorded,
+     *                           {@code 0} to not record them at all. Sampled tasks need to be wrapped, which adds
+     *                           an allocation and two calls of {@link System#nanoTime()}.
+     */
+    public DefaultEventExecutorMetrics(int taskSampleInterval) {
+        this.taskSampleInterval = ObjectUtil.checkPositiveOrZero(taskSampleInterval, "taskSampleInterval");
+    }
+
+    @Override
+    public boolean sampleTask() {
+        int interval = taskSampleInterval;
+        return interval == 1 || interval != 0 && PlatformDependent.threadLocalRandom().nextInt(interval) == 0;
+    }
+
+    @Override
+    public void recordWait(long nanos) {
+        waitTime.record(nanos);
+    }
+
+    @Override
+    public void recordIo(long nanos) {
+        ioTime.record(nanos);
+    }
+
+    @Override
+    public void recordTasks(long nanos) {
+        taskTime.record(nanos);
+    }
+
+    @Override
+    public void recordTask(long queueDelayNanos, long runNanos) {
+        taskQueueDelay.record(queueDelayNanos);
+        taskRunTime.record(runNanos);
+    }
+
+    /**
+     * Returns the time spent waiting for I/O events or new tasks.
+     */
+    public LatencyHistogram waitTime() {
+        return waitTime;
+    }
+
+    /**
+     * Returns the time spent processing I/O events.
+     */
+    public LatencyHistogram ioTime() {
+        return ioTime;
+    }
+
+    /**
+     * Returns the time spent running tasks, where one value covers all the tasks that were run in a row.
+     */
+    public LatencyHistogram taskTime() {
+        return taskTime;
+    }
+
+    /**
+     * Returns the time the sampled tasks waited in the task queue before they were run.
+     */
+    public LatencyHistogram taskQueueDelay() {
+        return taskQueueDelay;
+    }
+
+    /**
+     * Returns the time it took to run each of the sampled tasks.
+     */
+    public LatencyHistogram taskRunTime() {
+        return taskRunTime;
+    }
+
+    @Override
+    public String toString() {
+        return "DefaultEventExecutorMetrics(waitTime: " + waitTime + ", ioTime: " + ioTime + ", taskTime: " + taskTime +
+                ", taskQueueDelay: " + taskQueueDelay + ", taskRunTime: " + taskRunTime + ')';
+    }
+}
@@ -28,6 +28,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
 import static io.netty.util.internal.ObjectUtil.checkNotNull;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -41,6 +42,9 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
     @SuppressWarnings("rawtypes")
     private static final AtomicReferenceFieldUpdater<DefaultPromise, Object> RESULT_UPDATER =
             AtomicReferenceFieldUpdater.newUpdater(DefaultPromise.class, Object.class, "result");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<DefaultPromise, Waiter> WAITERS_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(DefaultPromise.class, Waiter.class, "waiters");
     private static final Object SUCCESS = new Object();
     private static final Object UNCANCELLABLE = new Object();
     private static final CauseHolder CANCELLATION_CAUSE_HOLDER = new CauseHolder(ThrowableUtil.unknownStackTrace(
@@ -53,13 +57,21 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
      * One or more listeners. Can be a {@link GenericFutureListener} or a {@link DefaultFutureListeners}.
      * If {@code null}, it means either 1) no listeners were added yet or 2) all listeners were notified.
      *
-     * Threading - synchronized(this). We must support adding listeners when there is no EventExecutor.
+     * Threading - synchronized(this) for writes. We must support adding listeners when there is no EventExecutor.
+     * Volatile so completing the promise can check for listeners without holding the monitor.
+     */
+    private volatile Object listeners;
+    /**
+     * The second listener as long as {@link #listeners} is a {@link GenericFutureListener}, so the first two listeners
+     * do not need a {@link DefaultFutureListeners}.
+     *
+     * Threading - synchronized(this).
      */
-    private Object listeners;
+    private GenericFutureListener<?> listener2;
     /**
-     * Threading - synchronized(this). We are required to hold the monitor to use Java's underlying wait()/notifyAll().
+     * Stack of the threads that are blocked in one of the await methods.
      */
-    private short waiters;
+    private volatile Waiter waiters;
 
     /**
      * Threading - synchronized(this). We must prevent concurrent notification and FIFO listener notification if the
@@ -245,16 +257,7 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
 
         checkDeadLock();
 
-        synchronized (this) {
-            while (!isDone()) {
-                incWaiters();
-                try {
-                    wait();
-                } finally {
-                    decWaiters();
-                }
-            }
-        }
+        awaitDone(true, false, 0);
         return this;
     }
 
@@ -266,25 +269,12 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
 
         checkDeadLock();
 
-        boolean interrupted = false;
-        synchronized (this) {
-            while (!isDone()) {
-                incWaiters();
-                try {
-                    wait();
-                } catch (InterruptedException e) {
-                    // Interrupted while waiting.
-                    interrupted = true;
-                } finally {
-                    decWaiters();
-                }
-            }
-        }
-
-        if (interrupted) {
-            Thread.currentThread().interrupt();
+        try {
+            awaitDone(false, false, 0);
+        } catch (InterruptedException e) {
+            // Should not be raised at all.
+            throw new InternalError();
         }
-
         return this;
     }
 
@@ -535,6 +525,7 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
 
     private void notifyListenersNow() {
         Object listeners;
+        GenericFutureListener<?> listener2;
         synchronized (this) {
             // Only proceed if there are listeners to notify and we are not already notifying listeners.
             if (notifyingListeners || this.listeners == null) {
@@ -542,13 +533,18 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
             }
             notifyingListeners = true;
             listeners = this.listeners;
+            listener2 = this.listener2;
             this.listeners = null;
+            this.listener2 = null;
         }
         for (;;) {
             if (listeners instanceof DefaultFutureListeners) {
                 notifyListeners0((DefaultFutureListeners) listeners);
             } else {
                 notifyListener0(this, (GenericFutureListener<?>) listeners);
+                if (listener2 != null) {
+                    notifyListener0(this, listener2);
+                }
             }
             synchronized (this) {
                 if (this.listeners == null) {
@@ -558,7 +554,9 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
                     return;
                 }
                 listeners = this.listeners;
+                listener2 = this.listener2;
                 this.listeners = null;
+                this.listener2 = null;
             }
         }
     }
@@ -583,20 +581,30 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
     }
 
     private void addListener0(GenericFutureListener<? extends Future<? super V>> listener) {
+        Object listeners = this.listeners;
         if (listeners == null) {
-            listeners = listener;
+            this.listeners = listener;
         } else if (listeners instanceof DefaultFutureListeners) {
             ((DefaultFutureListeners) listeners).add(listener);
+        } else if (listener2 == null) {
+            listener2 = listener;
         } else {
-            listeners = new DefaultFutureListeners((GenericFutureListener<?>) listeners, listener);
+            DefaultFutureListeners dfl = new DefaultFutureListeners((GenericFutureListener<?>) listeners, listener2);
+            dfl.add(listener);
+            listener2 = null;
+            this.listeners = dfl;
         }
     }
 
     private void removeListener0(GenericFutureListener<? extends Future<? super V>> listener) {
+        Object listeners = this.listeners;
         if (listeners instanceof DefaultFutureListeners) {
             ((DefaultFutureListeners) listeners).remove(listener);
         } else if (listeners == listener) {
-            listeners = null;
+            this.listeners = listener2;
+            listener2 = null;
+        } else if (listener2 == listener) {
+            listener2 = null;
         }
     }
 
@@ -623,22 +631,97 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
      * Check if there are any waiters and if so notify these.
      * @return {@code true} if there are any listeners attached to the promise, {@code false} otherwise.
      */
-    private synchronized boolean checkNotifyWaiters() {
-        if (waiters > 0) {
-            notifyAll();
+    private boolean checkNotifyWaiters() {
+        // Both the result and the waiters / listeners are volatile, so either a thread that adds a waiter or a listener
+        // sees that the promise is done, or the waiter or listener is seen here.
+        if (waiters != null) {
+            Waiter waiter = WAITERS_UPDATER.getAndSet(this, null);
+            while (waiter != null) {
+                Thread thread = waiter.thread;
+                if (thread != null) {
+                    waiter.thread = null;
+                    LockSupport.unpark(thread);
+                }
+                waiter = waiter.next;
+            }
         }
         return listeners != null;
     }
 
-    private void incWaiters() {
-        if (waiters == Short.MAX_VALUE) {
-            throw new IllegalStateException("too many waiters: " + this);
+    /**
+     * Blocks until the promise is done, the timeout expired if {@code timed} or the thread was interrupted if
+     * {@code interruptable}. The interrupt status is restored if the thread is interrupted while not
+     * {@code interruptable}.
+     *
+     * @return {@code true} if the promise is done.
+     */
+    private boolean awaitDone(boolean interruptable, boolean timed, long timeoutNanos) throws InterruptedException {
+        final long deadline = timed ? System.nanoTime() + timeoutNanos : 0;
+        final Waiter waiter = new Waiter();
+        for (;;) {
+            Waiter head = waiters;
+            waiter.next = head;
+            if (WAITERS_UPDATER.compareAndSet(this, head, waiter)) {
+                break;
+            }
+        }
+        boolean interrupted = false;
+        try {
+            for (;;) {
+                if (isDone()) {
+                    return true;
+                }
+                if (Thread.interrupted()) {
+                    if (interruptable) {
+                        throw new InterruptedException(toString());
+                    }
+                    interrupted = true;
+                }
+                if (timed) {
+                    long waitTime = deadline - System.nanoTime();
+                    if (waitTime <= 0) {
+                        return isDone();
+                    }
+                    LockSupport.parkNanos(this, waitTime);
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+        } finally {
+            if (waiter.thread != null) {
+                // Not unparked by checkNotifyWaiters(), so the waiter is most likely still on the stack.
+                removeWaiter(waiter);
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
         }
-        ++waiters;
     }
 
-    private void decWaiters() {
-        --waiters;
+    /**
+     * Unlinks {@code waiter} and all other waiters that stopped waiting from the stack, the same way as
+     * {@link java.util.concurrent.FutureTask} does.
+     */
+    private void removeWaiter(Waiter waiter) {
+        waiter.thread = null;
+        retry:
+        for (;;) {
+            for (Waiter pred = null, w = waiters, next; w != null; w = next) {
+                next = w.next;
+                if (w.thread != null) {
+                    pred = w;
+                } else if (pred != null) {
+                    pred.next = next;
+                    if (pred.thread == null) {
+                        // pred was removed concurrently, so start over.
+                        continue retry;
+                    }
+                } else if (!WAITERS_UPDATER.compareAndSet(this, w, next)) {
+                    continue retry;
+                }
+            }
+            return;
+        }
     }
 
     private void rethrowIfFailed() {
@@ -665,42 +748,7 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
 
         checkDeadLock();
 
-        long startTime = System.nanoTime();
-        long waitTime = timeoutNanos;
-        boolean interrupted = false;
-        try {
-            for (;;) {
-                synchronized (this) {
-                    if (isDone()) {
-                        return true;
-                    }
-                    incWaiters();
-                    try {
-                        wait(waitTime / 1000000, (int) (waitTime % 1000000));
-                    } catch (InterruptedException e) {
-                        if (interruptable) {
-                            throw e;
-                        } else {
-                            interrupted = true;
-                        }
-                    } finally {
-                        decWaiters();
-                    }
-                }
-                if (isDone()) {
-                    return true;
-                } else {
-                    waitTime = timeoutNanos - (System.nanoTime() - startTime);
-                    if (waitTime <= 0) {
-                        return isDone();
-                    }
-                }
-            }
-        } finally {
-            if (interrupted) {
-                Thread.currentThread().interrupt();
-            }
-        }
+        return awaitDone(interruptable, true, timeoutNanos);
     }
 
     /**
@@ -791,12 +839,19 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
             }
 
             return copy;
-        } else if (listeners instanceof GenericProgressiveFutureListener) {
+        }
+
+        // Only one or two listeners were added.
+        GenericFutureListener<?> listener2 = this.listener2;
+        if (listeners instanceof GenericProgressiveFutureListener) {
+            if (listener2 instanceof GenericProgressiveFutureListener) {
+                return new GenericProgressiveFutureListener<?>[] {
+                        (GenericProgressiveFutureListener<?>) listeners, (GenericProgressiveFutureListener<?>) listener2
+                };
+            }
             return listeners;
-        } else {
-            // Only one listener was added and it's not a progressive listener.
-            return null;
         }
+        return listener2 instanceof GenericProgressiveFutureListener ? listener2 : null;
     }
 
     private static void notifyProgressiveListeners0(
@@ -829,6 +884,11 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
         return result != null && result != UNCANCELLABLE;
     }
 
+    private static final class Waiter {
+        volatile Thread thread = Thread.currentThread();
+        volatile Waiter next;
+    }
+
     private static final class CauseHolder {
         final Throwable cause;
         CauseHolder(Throwable cause) {
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Receives timings from a {@link SingleThreadEventExecutor}, see
+ * {@link SingleThreadEventExecutor#setMetrics(EventExecutorMetrics)}. All times are in nanoseconds.
+ * <p>
+ * Except for {@link #sampleTask()} all methods are called by the thread of the executor, so an instance must not be
+ * shared between executors. Implementations must be cheap as they are called for every iteration of the event loop.
+ *
+ * @see DefaultEventExecutorMetrics
+ */
+@UnstableApi
+public interface EventExecutorMetrics {
+
+    /**
+     * Called by the thread that submits a task. Returns {@code true} if the time the task waits in the task queue
+     * and the time it takes to run should be passed to {@link #recordTask(long, long)}, which requires the task to
+     * be wrapped.
+     */
+    boolean sampleTask();
+
+    /**
+     * Called after the executor waited for I/O events or new tasks, like in {@code Selector.select()} or
+     * {@code epoll_wait}.
+     */
+    void recordWait(long nanos);
+
+    /**
+     * Called after the executor processed I/O events.
+     */
+    void recordIo(long nanos);
+
+    /**
+     * Called after the executor ran one or more tasks in a row.
+     */
+    void recordTasks(long nanos);
+
+    /**
+     * Called after a task for which {@link #sampleTask()} returned {@code true} was run.
+     *
+     * @param queueDelayNanos the time between submitting the task and running it.
+     * @param runNanos the time it took to run the task.
+     */
+    void recordTask(long queueDelayNanos, long runNanos);
+}
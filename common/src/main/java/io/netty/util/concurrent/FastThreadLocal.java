@@ -16,7 +16,9 @@
 package io.netty.util.concurrent;
 
 import io.netty.util.internal.InternalThreadLocalMap;
+import io.netty.util.internal.ObjectCleaner;
 import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
 
 import java.util.Collections;
 import java.util.IdentityHashMap;
@@ -45,6 +47,13 @@ public class FastThreadLocal<V> {
 
     private static final int variablesToRemoveIndex = InternalThreadLocalMap.nextVariableIndex();
 
+    /**
+     * Reuse the index of a {@link FastThreadLocal} once it was garbage collected, so applications that create
+     * {@link FastThreadLocal}s dynamically do not keep growing the tables of all threads.
+     */
+    private static final boolean REUSE_INDEXES =
+            SystemPropertyUtil.getBoolean("io.netty.fastThreadLocal.reuseIndexes", false);
+
     /**
      * Removes all {@link FastThreadLocal} variables bound to the current thread.  This operation is useful when you
      * are in a container environment, and you don't want to leave the thread local variables in the threads you do not
@@ -126,6 +135,11 @@ public class FastThreadLocal<V> {
 
     public FastThreadLocal() {
         index = InternalThreadLocalMap.nextVariableIndex();
+        if (REUSE_INDEXES) {
+            // Every map that contains a value for this variable also references it via its variablesToRemove set, so
+            // once it is unreachable no map contains a value for its index anymore.
+            ObjectCleaner.register(this, new IndexReleaser(index));
+        }
     }
 
     /**
@@ -273,4 +287,17 @@ public class FastThreadLocal<V> {
      * cleanup of the resources in the case of `Thread` completion.
      */
     protected void onRemoval(@SuppressWarnings("UnusedParameters") V value) throws Exception { }
+
+    private static final class IndexReleaser implements Runnable {
+        private final int index;
+
+        IndexReleaser(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            InternalThreadLocalMap.releaseVariableIndex(index);
+        }
+    }
 }
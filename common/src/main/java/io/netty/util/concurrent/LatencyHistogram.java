@@ -0,0 +1,161 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.UnstableApi;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A histogram of durations in nanoseconds that uses a fixed amount of memory. Values are counted in buckets whose
+ * width grows with the value, like in HdrHistogram, so every value is reported with a relative error of at most
+ * {@code 12.5%}.
+ * <p>
+ * Values are only recorded by a single thread, usually the thread of the {@link EventExecutor} the histogram
+ * belongs to, which does not need any atomic read-modify-write operations. All other methods can be called from any
+ * thread, but may not see the most recent values and are not atomic with respect to each other.
+ */
+@UnstableApi
+public final class LatencyHistogram {
+
+    private static final AtomicLongFieldUpdater<LatencyHistogram> COUNT_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(LatencyHistogram.class, "count");
+    private static final AtomicLongFieldUpdater<LatencyHistogram> SUM_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(LatencyHistogram.class, "sum");
+    private static final AtomicLongFieldUpdater<LatencyHistogram> MAX_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(LatencyHistogram.class, "max");
+
+    // Every power of two is split into 2^SUB_BUCKET_BITS buckets.
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private volatile long count;
+    private volatile long sum;
+    private volatile long max;
+
+    /**
+     * Creates a new empty instance.
+     */
+    public LatencyHistogram() { }
+
+    /**
+     * Records {@code nanos}. Must only be called by a single thread. Negative values are recorded as {@code 0}.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int index = bucketIndex(nanos);
+        // Only this thread writes, so lazySet is enough to publish the values to the readers.
+        buckets.lazySet(index, buckets.get(index) + 1);
+        COUNT_UPDATER.lazySet(this, count + 1);
+        SUM_UPDATER.lazySet(this, sum + nanos);
+        if (nanos > max) {
+            MAX_UPDATER.lazySet(this, nanos);
+        }
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1 << SUB_BUCKET_BITS) + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Returns the highest value that is counted in the bucket with the given index.
+     */
+    static long highestValueInBucket(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long lowest = (long) (SUB_BUCKETS + (index & SUB_BUCKETS - 1)) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Returns the number of recorded values.
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Returns the sum of all recorded values in nanoseconds.
+     */
+    public long sum() {
+        return sum;
+    }
+
+    /**
+     * Returns the highest recorded value in nanoseconds, or {@code 0} if no value was recorded yet.
+     */
+    public long max() {
+        return max;
+    }
+
+    /**
+     * Returns the mean of all recorded values in nanoseconds, or {@code 0} if no value was recorded yet.
+     */
+    public double mean() {
+        long count = this.count;
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Returns a value in nanoseconds that is greater than or equal to {@code percentile} percent of the recorded
+     * values, or {@code 0} if no value was recorded yet.
+     *
+     * @param percentile a value between {@code 0} and {@code 100}.
+     */
+    public long valueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile: " + percentile + " (expected: 0-100)");
+        }
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long bucketCount = buckets.get(i);
+            counts[i] = bucketCount;
+            total += bucketCount;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                // Never report more than the actual maximum, the upper bound of its bucket may be much higher.
+                return Math.min(highestValueInBucket(i), max);
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram(count: " + count + ", mean: " + (long) mean() + "ns, p50: " + valueAtPercentile(50) +
+                "ns, p99: " + valueAtPercentile(99) + "ns, max: " + max + "ns)";
+    }
+}
@@ -15,6 +15,9 @@
  */
 package io.netty.util.concurrent;
 
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.UnstableApi;
+
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -150,6 +153,34 @@ public abstract class MultithreadEventExecutorGroup extends AbstractEventExecuto
         return children.length;
     }
 
+    /**
+     * Calls {@link AbstractScheduledEventExecutor#useScheduledTaskWheel(long, TimeUnit, int)} on all the
+     * {@link EventExecutor}s of this group that support it.
+     */
+    public void useScheduledTaskWheel(long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        for (EventExecutor child: children) {
+            if (child instanceof AbstractScheduledEventExecutor) {
+                ((AbstractScheduledEventExecutor) child).useScheduledTaskWheel(tickDuration, unit, ticksPerWheel);
+            }
+        }
+    }
+
+    /**
+     * Sets a new {@link DefaultEventExecutorMetrics} on all the {@link SingleThreadEventExecutor}s of this group, see
+     * {@link SingleThreadEventExecutor#setMetrics(EventExecutorMetrics)}.
+     *
+     * @param taskSampleInterval see {@link DefaultEventExecutorMetrics#DefaultEventExecutorMetrics(int)}.
+     */
+    @UnstableApi
+    public void enableMetrics(int taskSampleInterval) {
+        ObjectUtil.checkPositiveOrZero(taskSampleInterval, "taskSampleInterval");
+        for (EventExecutor child: children) {
+            if (child instanceof SingleThreadEventExecutor) {
+                ((SingleThreadEventExecutor) child).setMetrics(new DefaultEventExecutorMetrics(taskSampleInterval));
+            }
+        }
+    }
+
     /**
      * Create a new EventExecutor which will later then accessible via the {@link #next()}  method. This method will be
      * called for each thread that will serve this {@link MultithreadEventExecutorGroup}.
@@ -0,0 +1,385 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.DefaultPriorityQueue;
+import io.netty.util.internal.MathUtil;
+import io.netty.util.internal.PriorityQueue;
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link PriorityQueue} of {@link ScheduledFutureTask}s for executors that have a large number of scheduled tasks,
+ * like the idle and read timeouts of many connections.
+ * <p>
+ * Only the tasks that are due before the horizon, which follows the current time with a granularity of one tick, are
+ * kept in a binary heap. All the others are kept in the buckets of a timing wheel, where adding and removing them is
+ * {@code O(1)}, and are moved to the heap once the horizon passes their tick. A task that is due after more than one
+ * rotation of the wheel stays in its bucket until the horizon reaches its tick.
+ * <p>
+ * This class is not thread-safe and must only be used by the executor that owns it.
+ */
+final class ScheduledTaskWheel extends AbstractQueue<ScheduledFutureTask<?>>
+        implements PriorityQueue<ScheduledFutureTask<?>> {
+
+    private static final ScheduledFutureTask<?>[] EMPTY_BUCKET = new ScheduledFutureTask<?>[0];
+    private static final int MAX_RETAINED_BUCKET_CAPACITY = 64;
+
+    private final DefaultPriorityQueue<ScheduledFutureTask<?>> heap;
+    private final ScheduledFutureTask<?>[][] buckets;
+    private final int[] bucketSizes;
+    // The first task of each bucket, or null if it has to be looked up again.
+    private final ScheduledFutureTask<?>[] bucketHeads;
+    // A bit per bucket which is set if it is not empty, so the empty buckets can be skipped quickly.
+    private final long[] occupied;
+    private final int tickShift;
+    private final int mask;
+    // All the tasks whose deadline tick is before the horizon are in the heap, all others are in the wheel.
+    private long horizon;
+    private int wheelSize;
+    // The first task of the wheel or null if it has to be looked up again.
+    private ScheduledFutureTask<?> wheelHead;
+
+    ScheduledTaskWheel(Comparator<ScheduledFutureTask<?>> comparator, long tickNanos, int ticksPerWheel) {
+        heap = new DefaultPriorityQueue<ScheduledFutureTask<?>>(comparator, 11);
+        // Round the tick up to a power of two, so the tick of a deadline is a shift away.
+        tickShift = 64 - Long.numberOfLeadingZeros(tickNanos - 1);
+        int length = MathUtil.safeFindNextPositivePowerOfTwo(ticksPerWheel);
+        buckets = new ScheduledFutureTask<?>[length][];
+        Arrays.fill(buckets, EMPTY_BUCKET);
+        bucketSizes = new int[length];
+        bucketHeads = new ScheduledFutureTask<?>[length];
+        occupied = new long[(length + 63) >>> 6];
+        mask = length - 1;
+        horizon = tick(ScheduledFutureTask.nanoTime()) + 1;
+    }
+
+    private long tick(long deadlineNanos) {
+        return deadlineNanos >>> tickShift;
+    }
+
+    @Override
+    public int size() {
+        return heap.size() + wheelSize;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return heap.isEmpty() && wheelSize == 0;
+    }
+
+    @Override
+    public boolean offer(ScheduledFutureTask<?> task) {
+        long tick = tick(task.deadlineNanos());
+        if (tick < horizon) {
+            return heap.offer(task);
+        }
+        if (task.wheelIndex() != ScheduledFutureTask.INDEX_NOT_IN_QUEUE) {
+            throw new IllegalArgumentException("task.wheelIndex(): " + task.wheelIndex() +
+                    " (expected: " + ScheduledFutureTask.INDEX_NOT_IN_QUEUE + ") + task: " + task);
+        }
+        addToWheel(task, (int) tick & mask);
+        if (wheelHead != null && task.compareTo(wheelHead) < 0) {
+            wheelHead = task;
+        }
+        return true;
+    }
+
+    @Override
+    public ScheduledFutureTask<?> peek() {
+        if (heap.isEmpty()) {
+            if (wheelSize == 0) {
+                return null;
+            }
+            advance(tick(ScheduledFutureTask.nanoTime()) + 1);
+            if (heap.isEmpty()) {
+                return wheelHead();
+            }
+        }
+        return heap.peek();
+    }
+
+    @Override
+    public ScheduledFutureTask<?> poll() {
+        ScheduledFutureTask<?> task = peek();
+        if (task == null) {
+            return null;
+        }
+        if (!heap.isEmpty()) {
+            return heap.poll();
+        }
+        removeFromWheel(task);
+        return task;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof ScheduledFutureTask && containsTyped((ScheduledFutureTask<?>) o);
+    }
+
+    @Override
+    public boolean containsTyped(ScheduledFutureTask<?> task) {
+        return tick(task.deadlineNanos()) < horizon ? heap.containsTyped(task) : wheelContains(task);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof ScheduledFutureTask && removeTyped((ScheduledFutureTask<?>) o);
+    }
+
+    @Override
+    public boolean removeTyped(ScheduledFutureTask<?> task) {
+        if (tick(task.deadlineNanos()) < horizon) {
+            return heap.removeTyped(task);
+        }
+        if (!wheelContains(task)) {
+            return false;
+        }
+        removeFromWheel(task);
+        return true;
+    }
+
+    /**
+     * Not supported, as the deadline of a {@link ScheduledFutureTask} never changes while it is queued.
+     */
+    @Override
+    public void priorityChanged(ScheduledFutureTask<?> task) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        heap.clear();
+        for (int i = 0; i < buckets.length; i++) {
+            ScheduledFutureTask<?>[] bucket = buckets[i];
+            for (int j = 0; j < bucketSizes[i]; j++) {
+                bucket[j].wheelIndex(ScheduledFutureTask.INDEX_NOT_IN_QUEUE);
+            }
+        }
+        clearWheel();
+    }
+
+    @Override
+    public void clearIgnoringIndexes() {
+        heap.clearIgnoringIndexes();
+        clearWheel();
+    }
+
+    private void clearWheel() {
+        Arrays.fill(buckets, EMPTY_BUCKET);
+        Arrays.fill(bucketSizes, 0);
+        Arrays.fill(bucketHeads, null);
+        Arrays.fill(occupied, 0);
+        wheelSize = 0;
+        wheelHead = null;
+    }
+
+    /**
+     * This iterator does not return elements in any particular order.
+     */
+    @Override
+    public Iterator<ScheduledFutureTask<?>> iterator() {
+        return new WheelIterator();
+    }
+
+    private boolean wheelContains(ScheduledFutureTask<?> task) {
+        int i = task.wheelIndex();
+        int bucket = (int) tick(task.deadlineNanos()) & mask;
+        return i >= 0 && i < bucketSizes[bucket] && buckets[bucket][i] == task;
+    }
+
+    private void addToWheel(ScheduledFutureTask<?> task, int bucket) {
+        ScheduledFutureTask<?>[] tasks = buckets[bucket];
+        int size = bucketSizes[bucket];
+        if (size == tasks.length) {
+            tasks = buckets[bucket] = Arrays.copyOf(tasks, Math.max(4, size << 1));
+        }
+        tasks[size] = task;
+        task.wheelIndex(size);
+        bucketSizes[bucket] = size + 1;
+        wheelSize++;
+        if (size == 0) {
+            occupied[bucket >>> 6] |= 1L << bucket;
+            bucketHeads[bucket] = task;
+        } else {
+            ScheduledFutureTask<?> head = bucketHeads[bucket];
+            if (head != null && task.compareTo(head) < 0) {
+                bucketHeads[bucket] = task;
+            }
+        }
+    }
+
+    private void removeFromWheel(ScheduledFutureTask<?> task) {
+        removeFromBucket((int) tick(task.deadlineNanos()) & mask, task.wheelIndex());
+        if (task == wheelHead) {
+            wheelHead = null;
+        }
+    }
+
+    private void removeFromBucket(int bucket, int i) {
+        ScheduledFutureTask<?>[] tasks = buckets[bucket];
+        int last = --bucketSizes[bucket];
+        ScheduledFutureTask<?> task = tasks[i];
+        task.wheelIndex(ScheduledFutureTask.INDEX_NOT_IN_QUEUE);
+        if (i != last) {
+            ScheduledFutureTask<?> moved = tasks[i] = tasks[last];
+            moved.wheelIndex(i);
+        }
+        tasks[last] = null;
+        wheelSize--;
+        if (last == 0) {
+            occupied[bucket >>> 6] &= ~(1L << bucket);
+            bucketHeads[bucket] = null;
+        } else if (task == bucketHeads[bucket]) {
+            bucketHeads[bucket] = null;
+        }
+    }
+
+    /**
+     * Moves the horizon forward to {@code newHorizon}, moving all the tasks of the passed ticks to the heap.
+     */
+    private void advance(long newHorizon) {
+        if (newHorizon <= horizon) {
+            return;
+        }
+        // Every bucket has to be visited at most once, even if the horizon moves by more than a whole rotation.
+        long end = Math.min(newHorizon, horizon + buckets.length);
+        for (long tick = nextOccupiedTick(horizon, end); tick != -1; tick = nextOccupiedTick(tick + 1, end)) {
+            int bucket = (int) tick & mask;
+            ScheduledFutureTask<?>[] tasks = buckets[bucket];
+            for (int i = 0; i < bucketSizes[bucket];) {
+                ScheduledFutureTask<?> task = tasks[i];
+                if (tick(task.deadlineNanos()) < newHorizon) {
+                    removeFromBucket(bucket, i);
+                    heap.offer(task);
+                    if (task == wheelHead) {
+                        wheelHead = null;
+                    }
+                } else {
+                    i++;
+                }
+            }
+            if (bucketSizes[bucket] == 0 && tasks.length > MAX_RETAINED_BUCKET_CAPACITY) {
+                // Release the memory of buckets that grew during a burst.
+                buckets[bucket] = EMPTY_BUCKET;
+            }
+        }
+        horizon = newHorizon;
+    }
+
+    private ScheduledFutureTask<?> wheelHead() {
+        ScheduledFutureTask<?> head = wheelHead;
+        if (head == null) {
+            // The first task is the first task of the first tick that has one. A bucket contains the tasks of later
+            // rotations too, so its first task only belongs to the tick if its deadline is in it.
+            long end = horizon + buckets.length;
+            for (long tick = nextOccupiedTick(horizon, end); tick != -1; tick = nextOccupiedTick(tick + 1, end)) {
+                ScheduledFutureTask<?> candidate = bucketHead((int) tick & mask);
+                if (tick(candidate.deadlineNanos()) == tick) {
+                    head = candidate;
+                    break;
+                }
+            }
+            if (head == null) {
+                // All tasks are due after a full rotation.
+                for (long tick = nextOccupiedTick(horizon, end); tick != -1; tick = nextOccupiedTick(tick + 1, end)) {
+                    ScheduledFutureTask<?> candidate = bucketHead((int) tick & mask);
+                    if (head == null || candidate.compareTo(head) < 0) {
+                        head = candidate;
+                    }
+                }
+            }
+            wheelHead = head;
+        }
+        return head;
+    }
+
+    /**
+     * Returns the first task of the non-empty {@code bucket}.
+     */
+    private ScheduledFutureTask<?> bucketHead(int bucket) {
+        ScheduledFutureTask<?> head = bucketHeads[bucket];
+        if (head == null) {
+            ScheduledFutureTask<?>[] tasks = buckets[bucket];
+            head = tasks[0];
+            for (int i = 1; i < bucketSizes[bucket]; i++) {
+                ScheduledFutureTask<?> task = tasks[i];
+                if (task.compareTo(head) < 0) {
+                    head = task;
+                }
+            }
+            bucketHeads[bucket] = head;
+        }
+        return head;
+    }
+
+    /**
+     * Returns the first tick in {@code [tick, end)} whose bucket is not empty, or {@code -1} if there is none.
+     * {@code end} must not be more than one rotation after {@code tick}.
+     */
+    private long nextOccupiedTick(long tick, long end) {
+        while (tick < end) {
+            int bucket = (int) tick & mask;
+            int bit = bucket & 63;
+            long bits = occupied[bucket >>> 6] & -1L << bit;
+            if (bits != 0) {
+                long next = tick + Long.numberOfTrailingZeros(bits) - bit;
+                return next < end ? next : -1;
+            }
+            // Skip to the next word, or to the start of the wheel if it has less than 64 buckets.
+            tick += Math.min(64 - bit, buckets.length - bucket);
+        }
+        return -1;
+    }
+
+    private final class WheelIterator implements Iterator<ScheduledFutureTask<?>> {
+        private final Iterator<ScheduledFutureTask<?>> heapIterator = heap.iterator();
+        private int bucket;
+        private int index;
+
+        @Override
+        public boolean hasNext() {
+            if (heapIterator.hasNext()) {
+                return true;
+            }
+            while (bucket < buckets.length && index >= bucketSizes[bucket]) {
+                bucket++;
+                index = 0;
+            }
+            return bucket < buckets.length;
+        }
+
+        @Override
+        public ScheduledFutureTask<?> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (heapIterator.hasNext()) {
+                return heapIterator.next();
+            }
+            return buckets[bucket][index++];
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove");
+        }
+    }
+}
@@ -17,6 +17,7 @@ package io.netty.util.concurrent;
 
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.QueueDrainer;
 import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.ThreadExecutorMap;
 import io.netty.util.internal.UnstableApi;
@@ -55,6 +56,12 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
     private static final InternalLogger logger =
             InternalLoggerFactory.getInstance(SingleThreadEventExecutor.class);
 
+    /**
+     * The maximum number of tasks that are taken from the task queue at once. {@link #runAllTasks(long)} also checks
+     * its timeout at most once per this many tasks because {@code nanoTime()} is relatively expensive.
+     */
+    private static final int TASK_BATCH_SIZE = 64;
+
     private static final int ST_NOT_STARTED = 1;
     private static final int ST_STARTED = 2;
     private static final int ST_SHUTTING_DOWN = 3;
@@ -75,6 +82,13 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
                     SingleThreadEventExecutor.class, ThreadProperties.class, "threadProperties");
 
     private final Queue<Runnable> taskQueue;
+    private final QueueDrainer<Runnable> taskDrainer = new QueueDrainer<Runnable>(new Runnable[TASK_BATCH_SIZE]);
+    // The tasks of the current batch that were not run yet are those from taskBatchIndex to taskBatchSize. A task that
+    // runs tasks itself first runs the rest of the batch, so tasks are still run in the order they were added.
+    private int taskBatchIndex;
+    private int taskBatchSize;
+    private final QueueDrainer<Runnable> scheduledTaskBatch =
+            new QueueDrainer<Runnable>(new Runnable[TASK_BATCH_SIZE]);
 
     private volatile Thread thread;
     @SuppressWarnings("unused")
@@ -90,6 +104,10 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
 
     private long lastExecutionTime;
 
+    private volatile EventExecutorMetrics metrics;
+    // When takeTask() returned, used to record the time until the next updateLastExecutionTime() as task time.
+    private long takeTaskReturnTime;
+
     @SuppressWarnings({ "FieldMayBeFinal", "unused" })
     private volatile int state = ST_NOT_STARTED;
 
@@ -234,6 +252,18 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
             throw new UnsupportedOperationException();
         }
 
+        EventExecutorMetrics metrics = this.metrics;
+        if (metrics == null) {
+            return takeTask0();
+        }
+        long startTime = ScheduledFutureTask.nanoTime();
+        Runnable task = takeTask0();
+        takeTaskReturnTime = ScheduledFutureTask.nanoTime();
+        metrics.recordWait(takeTaskReturnTime - startTime);
+        return task;
+    }
+
+    private Runnable takeTask0() {
         BlockingQueue<Runnable> taskQueue = (BlockingQueue<Runnable>) this.taskQueue;
         for (;;) {
             ScheduledFutureTask<?> scheduledTask = peekScheduledTask();
@@ -280,16 +310,28 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
             return true;
         }
         long nanoTime = AbstractScheduledEventExecutor.nanoTime();
+        QueueDrainer<Runnable> batch = scheduledTaskBatch;
         for (;;) {
-            Runnable scheduledTask = pollScheduledTask(nanoTime);
-            if (scheduledTask == null) {
+            // Move the expired tasks in batches, so a JCTools task queue only needs to be updated once per batch.
+            int expired = 0;
+            Runnable scheduledTask;
+            while (expired < batch.capacity() && (scheduledTask = pollScheduledTask(nanoTime)) != null) {
+                batch.set(expired++, scheduledTask);
+            }
+            if (expired == 0) {
                 return true;
             }
-            if (!taskQueue.offer(scheduledTask)) {
-                // No space left in the task queue add it back to the scheduledTaskQueue so we pick it up again.
-                scheduledTaskQueue.add((ScheduledFutureTask<?>) scheduledTask);
+            int added = batch.fill(taskQueue, expired);
+            if (added < expired) {
+                // No space left in the task queue add the rest back to the scheduledTaskQueue so we pick it up again.
+                for (int i = added; i < expired; i++) {
+                    scheduledTaskQueue.add((ScheduledFutureTask<?>) batch.get(i));
+                }
                 return false;
             }
+            if (expired < batch.capacity()) {
+                return true;
+            }
         }
     }
 
@@ -324,7 +366,7 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
      */
     protected boolean hasTasks() {
         assert inEventLoop();
-        return !taskQueue.isEmpty();
+        return taskBatchIndex < taskBatchSize || !taskQueue.isEmpty();
     }
 
     /**
@@ -334,7 +376,8 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
      * SingleThreadEventExecutor. So use it with care!</strong>
      */
     public int pendingTasks() {
-        return taskQueue.size();
+        // The batch is only updated by the event loop, so another thread may see a stale and even negative remainder.
+        return taskQueue.size() + Math.max(0, taskBatchSize - taskBatchIndex);
     }
 
     /**
@@ -371,6 +414,8 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         assert inEventLoop();
         boolean fetchedAll;
         boolean ranAtLeastOne = false;
+        EventExecutorMetrics metrics = this.metrics;
+        long startTime = metrics != null ? ScheduledFutureTask.nanoTime() : 0;
 
         do {
             fetchedAll = fetchFromScheduledTaskQueue();
@@ -381,6 +426,9 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
 
         if (ranAtLeastOne) {
             lastExecutionTime = ScheduledFutureTask.nanoTime();
+            if (metrics != null) {
+                metrics.recordTasks(lastExecutionTime - startTime);
+            }
         }
         afterRunningAllTasks();
         return ranAtLeastOne;
@@ -398,6 +446,8 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         assert inEventLoop();
         boolean ranAtLeastOneTask;
         int drainAttempt = 0;
+        EventExecutorMetrics metrics = this.metrics;
+        long startTime = metrics != null ? ScheduledFutureTask.nanoTime() : 0;
         do {
             // We must run the taskQueue tasks first, because the scheduled tasks from outside the EventLoop are queued
             // here because the taskQueue is thread safe and the scheduledTaskQueue is not thread safe.
@@ -406,6 +456,9 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
 
         if (drainAttempt > 0) {
             lastExecutionTime = ScheduledFutureTask.nanoTime();
+            if (metrics != null) {
+                metrics.recordTasks(lastExecutionTime - startTime);
+            }
         }
         afterRunningAllTasks();
 
@@ -420,17 +473,46 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
      * @return {@code true} if at least one task was executed.
      */
     protected final boolean runAllTasksFrom(Queue<Runnable> taskQueue) {
-        Runnable task = pollTaskFrom(taskQueue);
-        if (task == null) {
+        if (runTaskBatchFrom(taskQueue) == 0) {
             return false;
         }
-        for (;;) {
-            safeExecute(task);
-            task = pollTaskFrom(taskQueue);
-            if (task == null) {
-                return true;
+        while (runTaskBatchFrom(taskQueue) != 0) {
+            // Keep on running until the queue is empty.
+        }
+        return true;
+    }
+
+    /**
+     * Takes up to {@link #TASK_BATCH_SIZE} tasks from {@code taskQueue} at once and runs them.
+     *
+     * @return the number of tasks that were run, which is {@code 0} if and only if {@code taskQueue} was empty.
+     */
+    private int runTaskBatchFrom(Queue<Runnable> taskQueue) {
+        int ran = 0;
+        QueueDrainer<Runnable> drainer = taskDrainer;
+        if (taskBatchIndex == taskBatchSize) {
+            taskBatchIndex = 0;
+            taskBatchSize = drainer.drain(taskQueue);
+        }
+        // If a task of the current batch runs tasks itself, the rest of the batch is run first. The index is advanced
+        // before a task is run, so the outer call does not run the same task again.
+        while (taskBatchIndex < taskBatchSize) {
+            Runnable task = drainer.get(taskBatchIndex++);
+            if (task != WAKEUP_TASK) {
+                safeExecute(task);
+                ran++;
+            }
+        }
+        if (ran == 0) {
+            // The drainer only found wakeup tasks or stopped before a task that is still being added.
+            // pollTaskFrom(...) waits for such a task, so only give up if it finds nothing either.
+            Runnable task = pollTaskFrom(taskQueue);
+            if (task != null) {
+                safeExecute(task);
+                ran = 1;
             }
         }
+        return ran;
     }
 
     /**
@@ -439,6 +521,10 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
      * @return {@code true} if at least {@link Runnable#run()} was called.
      */
     private boolean runExistingTasksFrom(Queue<Runnable> taskQueue) {
+        if (taskBatchIndex < taskBatchSize) {
+            // The rest of the batch a running task was taken from must run before the tasks that are still queued.
+            return runTaskBatchFrom(taskQueue) != 0;
+        }
         Runnable task = pollTaskFrom(taskQueue);
         if (task == null) {
             return false;
@@ -459,36 +545,44 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
      */
     protected boolean runAllTasks(long timeoutNanos) {
         fetchFromScheduledTaskQueue();
-        Runnable task = pollTask();
-        if (task == null) {
+        if (taskBatchIndex == taskBatchSize && taskQueue.isEmpty()) {
             afterRunningAllTasks();
             return false;
         }
 
-        final long deadline = timeoutNanos > 0 ? ScheduledFutureTask.nanoTime() + timeoutNanos : 0;
+        EventExecutorMetrics metrics = this.metrics;
+        final long startTime = timeoutNanos > 0 || metrics != null ? ScheduledFutureTask.nanoTime() : 0;
+        final long deadline = timeoutNanos > 0 ? startTime + timeoutNanos : 0;
         long runTasks = 0;
+        long nextTimeoutCheck = TASK_BATCH_SIZE;
         long lastExecutionTime;
         for (;;) {
-            safeExecute(task);
-
-            runTasks ++;
+            // Runs the rest of the batch a running task was taken from first, so nested calls keep the order.
+            int ran = runTaskBatchFrom(taskQueue);
+            if (ran == 0) {
+                if (runTasks == 0) {
+                    // Only wakeup tasks were queued.
+                    afterRunningAllTasks();
+                    return false;
+                }
+                lastExecutionTime = ScheduledFutureTask.nanoTime();
+                break;
+            }
+            runTasks += ran;
 
-            // Check timeout every 64 tasks because nanoTime() is relatively expensive.
-            // XXX: Hard-coded value - will make it configurable if it is really a problem.
-            if ((runTasks & 0x3F) == 0) {
+            // Check timeout every TASK_BATCH_SIZE tasks because nanoTime() is relatively expensive.
+            if (runTasks >= nextTimeoutCheck) {
                 lastExecutionTime = ScheduledFutureTask.nanoTime();
                 if (lastExecutionTime >= deadline) {
                     break;
                 }
-            }
-
-            task = pollTask();
-            if (task == null) {
-                lastExecutionTime = ScheduledFutureTask.nanoTime();
-                break;
+                nextTimeoutCheck = runTasks + TASK_BATCH_SIZE;
             }
         }
 
+        if (metrics != null) {
+            metrics.recordTasks(lastExecutionTime - startTime);
+        }
         afterRunningAllTasks();
         this.lastExecutionTime = lastExecutionTime;
         return true;
@@ -533,7 +627,31 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
      * checks.
      */
     protected void updateLastExecutionTime() {
-        lastExecutionTime = ScheduledFutureTask.nanoTime();
+        long lastExecutionTime = ScheduledFutureTask.nanoTime();
+        this.lastExecutionTime = lastExecutionTime;
+        EventExecutorMetrics metrics = this.metrics;
+        if (metrics != null && takeTaskReturnTime != 0) {
+            metrics.recordTasks(lastExecutionTime - takeTaskReturnTime);
+            takeTaskReturnTime = 0;
+        }
+    }
+
+    /**
+     * Sets the {@link EventExecutorMetrics} that receive the timings of this executor, or {@code null} to stop
+     * recording them. The instance must not be used by another executor. Subclasses that wait for I/O, like the
+     * {@code EventLoop}s of the NIO and native transports, also report their wait and I/O processing times.
+     */
+    @UnstableApi
+    public void setMetrics(EventExecutorMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the {@link EventExecutorMetrics} set via {@link #setMetrics(EventExecutorMetrics)}, or {@code null}.
+     */
+    @UnstableApi
+    public EventExecutorMetrics metrics() {
+        return metrics;
     }
 
     /**
@@ -824,6 +942,10 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
     }
 
     private void execute(Runnable task, boolean immediate) {
+        EventExecutorMetrics metrics = this.metrics;
+        if (metrics != null && metrics.sampleTask()) {
+            task = new TimedTask(task, metrics);
+        }
         boolean inEventLoop = inEventLoop();
         addTask(task);
         if (!inEventLoop) {
@@ -850,6 +972,72 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         }
     }
 
+    /**
+     * Executes all the given tasks in order, like calling {@link #execute(Runnable)} for each of them, but starts the
+     * thread and wakes it up at most once. If one of the tasks is rejected, the tasks that follow it are not added
+     * while the tasks before it are still executed.
+     */
+    public void executeBatch(Runnable... tasks) {
+        ObjectUtil.checkNotNull(tasks, "tasks");
+        boolean immediate = false;
+        for (int i = 0; i < tasks.length; i++) {
+            Runnable task = ObjectUtil.checkNotNull(tasks[i], "tasks[" + i + ']');
+            immediate |= !(task instanceof LazyRunnable) && wakesUpForTask(task);
+        }
+        if (tasks.length == 0) {
+            return;
+        }
+        EventExecutorMetrics metrics = this.metrics;
+        if (metrics != null) {
+            tasks = tasks.clone();
+            for (int i = 0; i < tasks.length; i++) {
+                if (metrics.sampleTask()) {
+                    tasks[i] = new TimedTask(tasks[i], metrics);
+                }
+            }
+        }
+
+        boolean inEventLoop = inEventLoop();
+        int added = 0;
+        try {
+            for (Runnable task: tasks) {
+                addTask(task);
+                added++;
+            }
+        } finally {
+            // Also start and wake up the thread if a task was rejected, so the tasks added before it are run.
+            if (added != 0) {
+                startAndWakeup(tasks, added, inEventLoop, immediate);
+            }
+        }
+    }
+
+    private void startAndWakeup(Runnable[] tasks, int added, boolean inEventLoop, boolean immediate) {
+        if (!inEventLoop) {
+            startThread();
+            if (isShutdown()) {
+                boolean reject = false;
+                try {
+                    for (int i = 0; i < added; i++) {
+                        if (removeTask(tasks[i])) {
+                            reject = true;
+                        }
+                    }
+                } catch (UnsupportedOperationException e) {
+                    // The task queue does not support removal so the best thing we can do is to just move on and
+                    // hope we will be able to pick-up the tasks before its completely terminated.
+                }
+                if (reject) {
+                    reject();
+                }
+            }
+        }
+
+        if (!addTaskWakesUp && immediate) {
+            wakeup(inEventLoop);
+        }
+    }
+
     @Override
     public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
         throwIfInEventLoop("invokeAny");
@@ -1072,6 +1260,35 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         return numTasks;
     }
 
+    /**
+     * Wraps a task for which {@link EventExecutorMetrics#sampleTask()} returned {@code true}.
+     */
+    private static final class TimedTask implements Runnable {
+        private final Runnable task;
+        private final EventExecutorMetrics metrics;
+        private final long submitTime = ScheduledFutureTask.nanoTime();
+
+        TimedTask(Runnable task, EventExecutorMetrics metrics) {
+            this.task = task;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void run() {
+            long startTime = ScheduledFutureTask.nanoTime();
+            try {
+                task.run();
+            } finally {
+                metrics.recordTask(startTime - submitTime, ScheduledFutureTask.nanoTime() - startTime);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+    }
+
     private static final class DefaultThreadProperties implements ThreadProperties {
         private final Thread t;
 
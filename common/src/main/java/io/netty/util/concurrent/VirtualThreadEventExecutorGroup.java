@@ -0,0 +1,486 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link EventExecutorGroup} for handlers that block, like handlers that call JDBC or file APIs.
+ * <p>
+ * Every call of {@link #next()} returns a new {@link OrderedEventExecutor} that runs its tasks one after the other,
+ * but that does not own a thread. Its tasks are run by a thread of the shared {@link Executor} of the group while
+ * there are any, so a {@code ChannelPipeline} can use one executor per {@code Channel} without a thread per
+ * executor. On Java 21 and later the tasks are run on virtual threads by default, which are cheap to block. On
+ * older versions a thread pool with a fixed number of threads is used instead, unless another {@link Executor}, like
+ * a {@code ForkJoinPool}, is given.
+ * <p>
+ * {@link EventExecutor#inEventLoop()} returns {@code true} for the thread that is currently running the tasks of an
+ * executor. Tasks scheduled on an executor are submitted to it once they are due by
+ * {@link GlobalEventExecutor#INSTANCE}.
+ * <p>
+ * The group terminates once all the tasks that were submitted before {@link #shutdownGracefully()} have run.
+ * Scheduled tasks that are not due by then are not run. As the executors are created on demand,
+ * {@link #iterator()} does not return any of them.
+ */
+@UnstableApi
+public final class VirtualThreadEventExecutorGroup extends AbstractEventExecutorGroup {
+
+    private static final InternalLogger logger =
+            InternalLoggerFactory.getInstance(VirtualThreadEventExecutorGroup.class);
+
+    // The maximum number of tasks an executor runs before it lets the tasks of other executors run on its thread.
+    private static final int MAX_TASKS_PER_RUN = 1024;
+    // The value of activeExecutors once the group terminated, so an executor submitted afterwards sees a negative
+    // count.
+    private static final int TERMINATED = Integer.MIN_VALUE;
+
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+
+    static {
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderFactory = null;
+        // Virtual threads are a preview feature before Java 21.
+        if (PlatformDependent.javaVersion() >= 21) {
+            try {
+                ofVirtual = Thread.class.getMethod("ofVirtual");
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                builderName = builderClass.getMethod("name", String.class, long.class);
+                builderFactory = builderClass.getMethod("factory");
+                // Make sure the factory can be created.
+                builderFactory.invoke(ofVirtual.invoke(null));
+            } catch (Throwable t) {
+                logger.debug("Virtual threads are not available", t);
+                ofVirtual = null;
+                builderName = null;
+                builderFactory = null;
+            }
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_FACTORY = builderFactory;
+        logger.debug("Virtual threads available: {}", isVirtualThreadSupported());
+    }
+
+    /**
+     * Returns {@code true} if the groups created without an {@link Executor} run their tasks on virtual threads.
+     */
+    public static boolean isVirtualThreadSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    private final Executor executor;
+    // Set if the executor is created by this group and has to be shut down with it.
+    private final ThreadPoolExecutor ownedExecutor;
+    private final Promise<?> terminationFuture = new DefaultPromise<Void>(GlobalEventExecutor.INSTANCE);
+    // The number of executors that are submitted to or running on the executor, or negative once terminated.
+    private final AtomicInteger activeExecutors = new AtomicInteger();
+    private volatile boolean shuttingDown;
+
+    /**
+     * Creates a new instance that runs the tasks on virtual threads if {@link #isVirtualThreadSupported()} and on
+     * up to {@code fallbackThreads} threads otherwise.
+     */
+    public VirtualThreadEventExecutorGroup(int fallbackThreads) {
+        this(fallbackThreads, new DefaultThreadFactory(VirtualThreadEventExecutorGroup.class));
+    }
+
+    /**
+     * Creates a new instance that runs the tasks on virtual threads if {@link #isVirtualThreadSupported()} and on
+     * up to {@code fallbackThreads} threads created by {@code fallbackThreadFactory} otherwise.
+     */
+    public VirtualThreadEventExecutorGroup(int fallbackThreads, ThreadFactory fallbackThreadFactory) {
+        ObjectUtil.checkPositive(fallbackThreads, "fallbackThreads");
+        ObjectUtil.checkNotNull(fallbackThreadFactory, "fallbackThreadFactory");
+        if (isVirtualThreadSupported()) {
+            executor = new ThreadPerTaskExecutor(newVirtualThreadFactory(
+                    DefaultThreadFactory.toPoolName(VirtualThreadEventExecutorGroup.class) + '-'));
+            ownedExecutor = null;
+        } else {
+            ownedExecutor = new ThreadPoolExecutor(fallbackThreads, fallbackThreads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), fallbackThreadFactory);
+            ownedExecutor.allowCoreThreadTimeOut(true);
+            executor = ownedExecutor;
+        }
+    }
+
+    /**
+     * Creates a new instance that runs the tasks on the given {@link Executor}, which is not shut down by this
+     * group.
+     */
+    public VirtualThreadEventExecutorGroup(Executor executor) {
+        this.executor = ObjectUtil.checkNotNull(executor, "executor");
+        ownedExecutor = null;
+    }
+
+    private static ThreadFactory newVirtualThreadFactory(String prefix) {
+        try {
+            Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 0L);
+            return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+        } catch (Exception e) {
+            throw new IllegalStateException("failed to create a virtual thread factory", e);
+        }
+    }
+
+    /**
+     * Returns a new {@link OrderedEventExecutor} that runs its tasks on the threads of this group.
+     */
+    @Override
+    public EventExecutor next() {
+        return new SerialEventExecutor(this);
+    }
+
+    @Override
+    public Iterator<EventExecutor> iterator() {
+        return Collections.<EventExecutor>emptyList().iterator();
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        return shuttingDown;
+    }
+
+    /**
+     * Stops accepting new tasks. As the executors of this group have no threads to stop, the quiet period and the
+     * timeout are ignored.
+     */
+    @Override
+    public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+        ObjectUtil.checkPositiveOrZero(quietPeriod, "quietPeriod");
+        if (timeout < quietPeriod) {
+            throw new IllegalArgumentException(
+                    "timeout: " + timeout + " (expected >= quietPeriod (" + quietPeriod + "))");
+        }
+        ObjectUtil.checkNotNull(unit, "unit");
+        shuttingDown = true;
+        tryTerminate();
+        return terminationFuture;
+    }
+
+    @Override
+    public Future<?> terminationFuture() {
+        return terminationFuture;
+    }
+
+    /**
+     * @deprecated {@link #shutdownGracefully(long, long, TimeUnit)} or {@link #shutdownGracefully()} instead.
+     */
+    @Override
+    @Deprecated
+    public void shutdown() {
+        shutdownGracefully();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shuttingDown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminationFuture.isDone();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminationFuture.await(timeout, unit);
+    }
+
+    private void tryTerminate() {
+        if (shuttingDown && activeExecutors.compareAndSet(0, TERMINATED) && terminationFuture.trySuccess(null)
+                && ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    private static final class SerialEventExecutor extends AbstractScheduledEventExecutor
+            implements OrderedEventExecutor, Runnable {
+
+        private final VirtualThreadEventExecutorGroup group;
+        private final Queue<Runnable> tasks = PlatformDependent.newMpscQueue();
+        // Set while this executor is submitted to or running on the executor of the group.
+        private final AtomicBoolean submitted = new AtomicBoolean();
+        private final Runnable wakeupTask = new Runnable() {
+            @Override
+            public void run() {
+                wakeup();
+            }
+        };
+        private volatile Thread thread;
+        // Tasks that were queued before a rejected one, only accessed while this executor is submitted.
+        private Queue<Runnable> carriedTasks;
+        // The deadline of the last wakeup scheduled on GlobalEventExecutor, only accessed by the running thread.
+        private long wakeupDeadlineNanos = Long.MAX_VALUE;
+
+        SerialEventExecutor(VirtualThreadEventExecutorGroup group) {
+            super(group);
+            this.group = group;
+        }
+
+        @Override
+        public boolean inEventLoop(Thread thread) {
+            return thread == this.thread;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            ObjectUtil.checkNotNull(task, "task");
+            if (group.isShuttingDown()) {
+                throw new RejectedExecutionException("event executor terminated");
+            }
+            offer(task);
+        }
+
+        // Also used for wakeups after the group was shut down, so the scheduled tasks are cancelled.
+        private void wakeup() {
+            try {
+                offer(WAKEUP_TASK);
+            } catch (RejectedExecutionException ignore) {
+                // The executor of the group was shut down, so no scheduled task can run anymore.
+            }
+        }
+
+        private void offer(Runnable task) {
+            if (!tasks.offer(task)) {
+                throw new RejectedExecutionException();
+            }
+            if (submitted.compareAndSet(false, true)) {
+                Throwable cause = submit();
+                if (cause != null) {
+                    // Still the only consumer, so take back the task without dropping the ones of other producers.
+                    removeRejected(task);
+                    submitPendingTasks();
+                    PlatformDependent.throwException(cause);
+                }
+            }
+        }
+
+        /**
+         * Submits this executor after it was marked as {@link #submitted}.
+         *
+         * @return the cause if this executor could not be submitted, in which case it is still marked as submitted.
+         */
+        private Throwable submit() {
+            if (group.activeExecutors.incrementAndGet() < 0) {
+                // The group terminated before the task was offered, so nothing would run it anymore.
+                done();
+                return new RejectedExecutionException("event executor terminated");
+            }
+            try {
+                group.executor.execute(this);
+                return null;
+            } catch (Throwable t) {
+                done();
+                return t;
+            }
+        }
+
+        private void removeRejected(Runnable rejected) {
+            // Tasks offered before the rejected one must still run before the ones that follow it, so they are kept
+            // aside and run first by the next thread that runs this executor.
+            Runnable task;
+            while ((task = tasks.poll()) != null && task != rejected) {
+                if (carriedTasks == null) {
+                    carriedTasks = new ArrayDeque<Runnable>();
+                }
+                carriedTasks.add(task);
+            }
+        }
+
+        // Called after this executor could not be submitted. Other producers may have added tasks in the meantime
+        // without submitting this executor, so submit it again for them or cancel them if that is not possible.
+        private void submitPendingTasks() {
+            for (;;) {
+                if (carriedTasks != null || !tasks.isEmpty()) {
+                    if (submit() == null) {
+                        return;
+                    }
+                    cancelPendingTasks();
+                }
+                submitted.set(false);
+                if (tasks.isEmpty() || !submitted.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+
+        private void cancelPendingTasks() {
+            Runnable task;
+            if (carriedTasks != null) {
+                while ((task = carriedTasks.poll()) != null) {
+                    cancelPendingTask(task);
+                }
+                carriedTasks = null;
+            }
+            while ((task = tasks.poll()) != null) {
+                cancelPendingTask(task);
+            }
+        }
+
+        private static void cancelPendingTask(Runnable task) {
+            if (task instanceof Future) {
+                ((Future<?>) task).cancel(false);
+            } else if (task != WAKEUP_TASK) {
+                logger.warn("A task was dropped as the executor of the group rejected it: {}", task);
+            }
+        }
+
+        private void done() {
+            if (group.activeExecutors.decrementAndGet() == 0) {
+                group.tryTerminate();
+            }
+        }
+
+        @Override
+        public void run() {
+            for (;;) {
+                thread = Thread.currentThread();
+                boolean yield;
+                try {
+                    yield = runTasks();
+                    if (!yield) {
+                        afterRunningTasks();
+                    }
+                } finally {
+                    thread = null;
+                }
+                if (yield) {
+                    try {
+                        // Let the executors that were submitted in the meantime run.
+                        group.executor.execute(this);
+                        return;
+                    } catch (Throwable ignore) {
+                        // Most likely the executor is saturated, so just keep running on this thread.
+                        continue;
+                    }
+                }
+                submitted.set(false);
+                // Look at the queue again, a task may have been added after the last poll by a thread that did not
+                // submit this executor because it was still marked as submitted.
+                if (tasks.isEmpty() || !submitted.compareAndSet(false, true)) {
+                    done();
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Runs the scheduled tasks that are due and then the queued tasks.
+         *
+         * @return {@code true} if there are more tasks to run than {@link #MAX_TASKS_PER_RUN}.
+         */
+        private boolean runTasks() {
+            int runTasks = 0;
+            if (hasScheduledTasks()) {
+                long nanoTime = nanoTime();
+                Runnable task;
+                while ((task = pollScheduledTask(nanoTime)) != null) {
+                    safeExecute(task);
+                    runTasks++;
+                }
+            }
+            Runnable task;
+            if (carriedTasks != null) {
+                while ((task = carriedTasks.poll()) != null) {
+                    safeExecute(task);
+                    runTasks++;
+                }
+                carriedTasks = null;
+            }
+            while ((task = tasks.poll()) != null) {
+                safeExecute(task);
+                if (++runTasks >= MAX_TASKS_PER_RUN) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void afterRunningTasks() {
+            if (group.isShuttingDown()) {
+                cancelScheduledTasks();
+                return;
+            }
+            ScheduledFutureTask<?> next = peekScheduledTask();
+            if (next == null) {
+                return;
+            }
+            long deadlineNanos = next.deadlineNanos();
+            // Only schedule a new wakeup if the next task is due before the last one, or if the last one fired.
+            if (deadlineNanos < wakeupDeadlineNanos || wakeupDeadlineNanos <= nanoTime()) {
+                wakeupDeadlineNanos = deadlineNanos;
+                GlobalEventExecutor.INSTANCE.schedule(
+                        wakeupTask, deadlineToDelayNanos(deadlineNanos), TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        public boolean isShuttingDown() {
+            return group.isShuttingDown();
+        }
+
+        @Override
+        public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+            return group.shutdownGracefully(quietPeriod, timeout, unit);
+        }
+
+        @Override
+        public Future<?> terminationFuture() {
+            return group.terminationFuture();
+        }
+
+        @Override
+        @Deprecated
+        public void shutdown() {
+            group.shutdown();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return group.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return group.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return group.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.internal;
+
+/**
+ * Resolves the CPU the calling {@link Thread} is currently running on. Implemented by the native transports so other
+ * modules can call into them without reflection.
+ */
+public interface CurrentCpuProvider {
+    /**
+     * Returns the index of the CPU the calling {@link Thread} is currently running on or {@code -1} if this is not
+     * supported.
+     *
+     * @throws UnsatisfiedLinkError if the native library was not loaded yet, in which case the call may succeed
+     *                              later on.
+     */
+    int currentCpu();
+}
@@ -21,6 +21,7 @@ import io.netty.util.concurrent.FastThreadLocalThread;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
+import java.lang.ref.WeakReference;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
@@ -48,7 +49,19 @@ public final class InternalThreadLocalMap extends UnpaddedInternalThreadLocalMap
 
     public static final Object UNSET = new Object();
 
+    /**
+     * The maps of threads that are not {@link FastThreadLocalThread}s, indexed by the id of the thread. This avoids
+     * the {@link ThreadLocal} lookup, which may have to probe past the entries of other {@link ThreadLocal}s, for
+     * all threads whose slot is not taken by another live thread. {@code null} if disabled.
+     */
+    private static final ForeignThreadEntry[] FOREIGN_THREAD_MAPS;
+    private static final BitSet FREE_INDEXES = new BitSet();
+    // Guarded by FREE_INDEXES, volatile so nextVariableIndex() does not need to lock if no index was released.
+    private static volatile int freeIndexCount;
+
     private BitSet cleanerFlags;
+    // The thread this map belongs to, used to validate the entries of FOREIGN_THREAD_MAPS.
+    private final Thread thread = Thread.currentThread();
 
     static {
         STRING_BUILDER_INITIAL_SIZE =
@@ -57,6 +70,15 @@ public final class InternalThreadLocalMap extends UnpaddedInternalThreadLocalMap
 
         STRING_BUILDER_MAX_SIZE = SystemPropertyUtil.getInt("io.netty.threadLocalMap.stringBuilder.maxSize", 1024 * 4);
         logger.debug("-Dio.netty.threadLocalMap.stringBuilder.maxSize: {}", STRING_BUILDER_MAX_SIZE);
+
+        int foreignThreadMaps = SystemPropertyUtil.getInt("io.netty.threadLocalMap.foreignThreadMaps", 1024);
+        if (foreignThreadMaps > 0) {
+            FOREIGN_THREAD_MAPS = new ForeignThreadEntry[MathUtil.safeFindNextPositivePowerOfTwo(foreignThreadMaps)];
+            logger.debug("-Dio.netty.threadLocalMap.foreignThreadMaps: {}", FOREIGN_THREAD_MAPS.length);
+        } else {
+            FOREIGN_THREAD_MAPS = null;
+            logger.debug("-Dio.netty.threadLocalMap.foreignThreadMaps: disabled");
+        }
     }
 
     public static InternalThreadLocalMap getIfSet() {
@@ -64,7 +86,8 @@ public final class InternalThreadLocalMap extends UnpaddedInternalThreadLocalMap
         if (thread instanceof FastThreadLocalThread) {
             return ((FastThreadLocalThread) thread).threadLocalMap();
         }
-        return slowThreadLocalMap.get();
+        InternalThreadLocalMap map = foreignThreadMap(thread);
+        return map != null ? map : slowThreadLocalMap.get();
     }
 
     public static InternalThreadLocalMap get() {
@@ -85,29 +108,92 @@ public final class InternalThreadLocalMap extends UnpaddedInternalThreadLocalMap
     }
 
     private static InternalThreadLocalMap slowGet() {
+        Thread thread = Thread.currentThread();
+        InternalThreadLocalMap ret = foreignThreadMap(thread);
+        if (ret != null) {
+            return ret;
+        }
         ThreadLocal<InternalThreadLocalMap> slowThreadLocalMap = UnpaddedInternalThreadLocalMap.slowThreadLocalMap;
-        InternalThreadLocalMap ret = slowThreadLocalMap.get();
+        ret = slowThreadLocalMap.get();
         if (ret == null) {
             ret = new InternalThreadLocalMap();
             slowThreadLocalMap.set(ret);
         }
+        cacheForeignThreadMap(thread, ret);
         return ret;
     }
 
+    private static int foreignThreadSlot(Thread thread) {
+        return (int) thread.getId() & FOREIGN_THREAD_MAPS.length - 1;
+    }
+
+    private static InternalThreadLocalMap foreignThreadMap(Thread thread) {
+        if (FOREIGN_THREAD_MAPS == null) {
+            return null;
+        }
+        ForeignThreadEntry entry = FOREIGN_THREAD_MAPS[foreignThreadSlot(thread)];
+        if (entry != null) {
+            InternalThreadLocalMap map = entry.get();
+            if (map != null && map.thread == thread) {
+                return map;
+            }
+        }
+        return null;
+    }
+
+    private static void cacheForeignThreadMap(Thread thread, InternalThreadLocalMap map) {
+        if (FOREIGN_THREAD_MAPS == null) {
+            return;
+        }
+        int slot = foreignThreadSlot(thread);
+        ForeignThreadEntry entry = FOREIGN_THREAD_MAPS[slot];
+        // Never replace the map of another live thread, so two threads with the same slot do not keep replacing
+        // each other. The map is only weakly referenced and so is collected with its thread.
+        if (entry == null || entry.get() == null) {
+            FOREIGN_THREAD_MAPS[slot] = new ForeignThreadEntry(map);
+        }
+    }
+
+    private static void removeForeignThreadMap(Thread thread) {
+        if (FOREIGN_THREAD_MAPS == null) {
+            return;
+        }
+        int slot = foreignThreadSlot(thread);
+        ForeignThreadEntry entry = FOREIGN_THREAD_MAPS[slot];
+        if (entry != null) {
+            InternalThreadLocalMap map = entry.get();
+            if (map == null || map.thread == thread) {
+                FOREIGN_THREAD_MAPS[slot] = null;
+            }
+        }
+    }
+
     public static void remove() {
         Thread thread = Thread.currentThread();
         if (thread instanceof FastThreadLocalThread) {
             ((FastThreadLocalThread) thread).setThreadLocalMap(null);
         } else {
+            removeForeignThreadMap(thread);
             slowThreadLocalMap.remove();
         }
     }
 
     public static void destroy() {
+        removeForeignThreadMap(Thread.currentThread());
         slowThreadLocalMap.remove();
     }
 
     public static int nextVariableIndex() {
+        if (freeIndexCount != 0) {
+            synchronized (FREE_INDEXES) {
+                int index = FREE_INDEXES.nextSetBit(0);
+                if (index >= 0) {
+                    FREE_INDEXES.clear(index);
+                    freeIndexCount--;
+                    return index;
+                }
+            }
+        }
         int index = nextIndex.getAndIncrement();
         if (index < 0) {
             nextIndex.decrementAndGet();
@@ -116,6 +202,22 @@ public final class InternalThreadLocalMap extends UnpaddedInternalThreadLocalMap
         return index;
     }
 
+    /**
+     * Makes {@code index} available to be returned by {@link #nextVariableIndex()} again. The lowest released
+     * indexes are reused first, so the tables of the maps do not need to grow.
+     * <p>
+     * The caller must make sure that {@code index} is not used anymore and that no map contains a value for it.
+     */
+    public static void releaseVariableIndex(int index) {
+        ObjectUtil.checkPositiveOrZero(index, "index");
+        synchronized (FREE_INDEXES) {
+            if (!FREE_INDEXES.get(index)) {
+                FREE_INDEXES.set(index);
+                freeIndexCount++;
+            }
+        }
+    }
+
     public static int lastVariableIndex() {
         return nextIndex.get() - 1;
     }
@@ -349,4 +451,10 @@ public final class InternalThreadLocalMap extends UnpaddedInternalThreadLocalMap
         }
         cleanerFlags.set(index);
     }
+
+    private static final class ForeignThreadEntry extends WeakReference<InternalThreadLocalMap> {
+        ForeignThreadEntry(InternalThreadLocalMap map) {
+            super(map);
+        }
+    }
 }
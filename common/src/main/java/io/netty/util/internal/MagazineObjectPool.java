@@ -0,0 +1,262 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.internal;
+
+import io.netty.util.Recycler;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * {@link ObjectPool} that keeps the pooled objects of every thread in a magazine, which is a stack that only the
+ * thread itself accesses plus a bounded MPSC queue for the objects that are recycled by other threads.
+ * <p>
+ * Unlike {@link Recycler} no state is kept per pair of threads, so recycling an object on another thread than the
+ * one that allocated it costs a single offer to a queue, and the memory of a pool is bounded by
+ * {@code maxCapacityPerThread + returnCapacity} objects per thread. Objects that do not fit are left to the garbage
+ * collector.
+ */
+final class MagazineObjectPool<T> extends ObjectPool<T> {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(MagazineObjectPool.class);
+
+    private static final int DEFAULT_MAX_CAPACITY_PER_THREAD;
+    private static final int DEFAULT_RETURN_CAPACITY;
+    private static final int INITIAL_CAPACITY = 256;
+
+    @SuppressWarnings("rawtypes")
+    private static final Handle NOOP_HANDLE = new Handle() {
+        @Override
+        public void recycle(Object self) {
+            // NOOP
+        }
+    };
+
+    static {
+        DEFAULT_MAX_CAPACITY_PER_THREAD = max(0,
+                SystemPropertyUtil.getInt("io.netty.objectPool.magazine.maxCapacityPerThread", 4 * 1024));
+        DEFAULT_RETURN_CAPACITY = max(0, SystemPropertyUtil.getInt("io.netty.objectPool.magazine.returnCapacity",
+                DEFAULT_MAX_CAPACITY_PER_THREAD / 4));
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("-Dio.netty.objectPool.magazine.maxCapacityPerThread: {}", DEFAULT_MAX_CAPACITY_PER_THREAD);
+            logger.debug("-Dio.netty.objectPool.magazine.returnCapacity: {}", DEFAULT_RETURN_CAPACITY);
+        }
+    }
+
+    private final ObjectCreator<T> creator;
+    private final int maxCapacityPerThread;
+    private final int returnCapacity;
+    private final FastThreadLocal<Magazine<T>> magazines = new FastThreadLocal<Magazine<T>>() {
+        @Override
+        protected Magazine<T> initialValue() {
+            return new Magazine<T>(Thread.currentThread(), maxCapacityPerThread, returnCapacity);
+        }
+
+        @Override
+        protected void onRemoval(Magazine<T> magazine) {
+            // Objects recycled after the thread is gone are dropped instead of being queued for nobody.
+            magazine.owner.clear();
+        }
+    };
+
+    MagazineObjectPool(ObjectCreator<T> creator) {
+        this(creator, DEFAULT_MAX_CAPACITY_PER_THREAD, DEFAULT_RETURN_CAPACITY);
+    }
+
+    MagazineObjectPool(ObjectCreator<T> creator, int maxCapacityPerThread, int returnCapacity) {
+        this.creator = creator;
+        this.maxCapacityPerThread = ObjectUtil.checkPositiveOrZero(maxCapacityPerThread, "maxCapacityPerThread");
+        this.returnCapacity = ObjectUtil.checkPositiveOrZero(returnCapacity, "returnCapacity");
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T get() {
+        if (maxCapacityPerThread == 0) {
+            return creator.newObject((Handle<T>) NOOP_HANDLE);
+        }
+        Magazine<T> magazine = magazines.get();
+        MagazineHandle<T> handle = magazine.pop();
+        if (handle == null) {
+            handle = new MagazineHandle<T>(magazine);
+            handle.value = creator.newObject(handle);
+        }
+        return handle.value;
+    }
+
+    /**
+     * Returns the number of pooled objects that the current thread can get without creating new ones, not counting
+     * the ones that other threads recycled since the last time the magazine ran empty.
+     */
+    int threadLocalSize() {
+        return magazines.get().size;
+    }
+
+    private static final class MagazineHandle<T> implements Handle<T> {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<MagazineHandle> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(MagazineHandle.class, "state");
+        private static final int STATE_CLAIMED = 0;
+        private static final int STATE_AVAILABLE = 1;
+
+        private final Magazine<T> magazine;
+        private volatile int state;
+        T value;
+
+        MagazineHandle(Magazine<T> magazine) {
+            this.magazine = magazine;
+        }
+
+        void claim() {
+            STATE_UPDATER.lazySet(this, STATE_CLAIMED);
+        }
+
+        @Override
+        public void recycle(T object) {
+            if (object != value) {
+                throw new IllegalArgumentException("object does not belong to handle");
+            }
+            Magazine<T> magazine = this.magazine;
+            Thread owner = magazine.owner.get();
+            if (owner == Thread.currentThread()) {
+                // Only the owner claims the handle again, so there is no race with get().
+                if (state != STATE_CLAIMED) {
+                    throw new IllegalStateException("recycled already");
+                }
+                STATE_UPDATER.lazySet(this, STATE_AVAILABLE);
+                magazine.push(this);
+            } else {
+                if (!STATE_UPDATER.compareAndSet(this, STATE_CLAIMED, STATE_AVAILABLE)) {
+                    throw new IllegalStateException("recycled already");
+                }
+                // FastThreadLocal.onRemoval() is not called when a thread just dies, so check if the owner is alive.
+                if (owner != null && owner.isAlive()) {
+                    magazine.pushLater(this);
+                } else {
+                    magazine.release();
+                }
+            }
+        }
+    }
+
+    private static final class Magazine<T> {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Magazine, Queue> RETURNED_UPDATER =
+                AtomicReferenceFieldUpdater.newUpdater(Magazine.class, Queue.class, "returned");
+        @SuppressWarnings("rawtypes")
+        private static final MagazineHandle[] EMPTY_ELEMENTS = new MagazineHandle[0];
+
+        // Weak, so the handles of the objects that are still in use do not keep a dead thread alive.
+        final WeakReference<Thread> owner;
+        private final int maxCapacity;
+        private final int returnCapacity;
+        // Only accessed by the owner.
+        private MagazineHandle<T>[] elements;
+        int size;
+        // Created on the first recycle by another thread, as most pools are only used by a single thread.
+        private volatile Queue<MagazineHandle<T>> returned;
+
+        @SuppressWarnings("unchecked")
+        Magazine(Thread owner, int maxCapacity, int returnCapacity) {
+            this.owner = new WeakReference<Thread>(owner);
+            this.maxCapacity = maxCapacity;
+            this.returnCapacity = returnCapacity;
+            elements = new MagazineHandle[min(INITIAL_CAPACITY, maxCapacity)];
+        }
+
+        MagazineHandle<T> pop() {
+            int size = this.size;
+            if (size == 0) {
+                size = drainReturned();
+                if (size == 0) {
+                    return null;
+                }
+            }
+            size--;
+            MagazineHandle<T> handle = elements[size];
+            elements[size] = null;
+            this.size = size;
+            handle.claim();
+            return handle;
+        }
+
+        void push(MagazineHandle<T> handle) {
+            int size = this.size;
+            if (size == elements.length) {
+                if (size == maxCapacity) {
+                    // Hit the maximum capacity, drop the object.
+                    return;
+                }
+                elements = Arrays.copyOf(elements, min(size << 1, maxCapacity));
+            }
+            elements[size] = handle;
+            this.size = size + 1;
+        }
+
+        void pushLater(MagazineHandle<T> handle) {
+            Queue<MagazineHandle<T>> returned = this.returned;
+            if (returned == null) {
+                if (returnCapacity == 0) {
+                    return;
+                }
+                returned = PlatformDependent.newFixedMpscQueue(returnCapacity);
+                if (!RETURNED_UPDATER.compareAndSet(this, null, returned)) {
+                    returned = this.returned;
+                }
+            }
+            // If the queue is full the object is dropped.
+            returned.offer(handle);
+        }
+
+        /**
+         * Drops the pooled objects once the owner is gone, so only the objects that are still in use are kept.
+         */
+        @SuppressWarnings("unchecked")
+        void release() {
+            owner.clear();
+            // The owner does not access the stack anymore, so it is safe to clear it from another thread.
+            elements = EMPTY_ELEMENTS;
+            size = 0;
+            returned = null;
+        }
+
+        /**
+         * Moves the objects that were recycled by other threads to the stack of the owner.
+         *
+         * @return the new size of the stack.
+         */
+        private int drainReturned() {
+            Queue<MagazineHandle<T>> returned = this.returned;
+            if (returned != null) {
+                MagazineHandle<T> handle;
+                while (size < maxCapacity && (handle = returned.poll()) != null) {
+                    push(handle);
+                }
+            }
+            return size;
+        }
+    }
+}
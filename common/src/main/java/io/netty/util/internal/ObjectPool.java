@@ -16,6 +16,8 @@
 package io.netty.util.internal;
 
 import io.netty.util.Recycler;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
 
 /**
  * Light-weight object pool.
@@ -24,6 +26,23 @@ import io.netty.util.Recycler;
  */
 public abstract class ObjectPool<T> {
 
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(ObjectPool.class);
+
+    /**
+     * Use {@link MagazineObjectPool} instead of {@link Recycler} for the pools created by
+     * {@link #newPool(ObjectCreator)}.
+     */
+    private static final boolean USE_MAGAZINE_POOL;
+
+    static {
+        String type = SystemPropertyUtil.get("io.netty.objectPool.type", "recycler").trim();
+        USE_MAGAZINE_POOL = "magazine".equalsIgnoreCase(type);
+        if (!USE_MAGAZINE_POOL && !"recycler".equalsIgnoreCase(type)) {
+            logger.warn("-Dio.netty.objectPool.type: unknown type {}, using recycler", type);
+        }
+        logger.debug("-Dio.netty.objectPool.type: {}", USE_MAGAZINE_POOL ? "magazine" : "recycler");
+    }
+
     ObjectPool() { }
 
     /**
@@ -62,9 +81,14 @@ public abstract class ObjectPool<T> {
     /**
      * Creates a new {@link ObjectPool} which will use the given {@link ObjectCreator} to create the {@link Object}
      * that should be pooled.
+     * <p>
+     * The pool is backed by a {@link Recycler}, unless {@code -Dio.netty.objectPool.type=magazine} is set. Then it
+     * keeps a bounded stack and return queue per thread, which is cheaper if objects are often recycled by another
+     * thread than the one that got them from the pool.
      */
     public static <T> ObjectPool<T> newPool(final ObjectCreator<T> creator) {
-        return new RecyclerObjectPool<T>(ObjectUtil.checkNotNull(creator, "creator"));
+        ObjectUtil.checkNotNull(creator, "creator");
+        return USE_MAGAZINE_POOL ? new MagazineObjectPool<T>(creator) : new RecyclerObjectPool<T>(creator);
     }
 
     private static final class RecyclerObjectPool<T> extends ObjectPool<T> {
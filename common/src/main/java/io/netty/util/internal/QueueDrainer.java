@@ -0,0 +1,129 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.internal;
+
+import org.jctools.queues.MessagePassingQueue;
+
+import java.util.Queue;
+
+/**
+ * Moves the elements of a {@link Queue} into a reusable array, or the elements of that array into a {@link Queue}.
+ * The queues created by {@link PlatformDependent#newMpscQueue()} and the other JCTools based factory methods are
+ * drained and filled in a single pass, all other queues are drained via {@link Queue#poll()} and filled via
+ * {@link Queue#offer(Object)}.
+ * <p>
+ * Like {@link Queue#poll()} this must only be used by the consumer of the queue. Unlike {@link Queue#poll()}, a
+ * drain may stop before an element that a producer is still in the middle of adding, so draining fewer elements
+ * than requested does not mean that the queue is empty.
+ *
+ * @param <E> the type of the elements
+ */
+public final class QueueDrainer<E> {
+
+    private final E[] elements;
+    private final MessagePassingQueue.Consumer<E> consumer = new MessagePassingQueue.Consumer<E>() {
+        @Override
+        public void accept(E e) {
+            elements[size++] = e;
+        }
+    };
+    private final MessagePassingQueue.Supplier<E> supplier = new MessagePassingQueue.Supplier<E>() {
+        @Override
+        public E get() {
+            return QueueDrainer.this.get(filled++);
+        }
+    };
+    private int size;
+    private int filled;
+
+    /**
+     * Creates a new instance that drains up to {@code elements.length} elements at a time into {@code elements}.
+     */
+    public QueueDrainer(E[] elements) {
+        ObjectUtil.checkPositive(elements.length, "elements.length");
+        this.elements = elements;
+    }
+
+    /**
+     * Moves up to {@link #capacity()} elements from the head of {@code queue} to this drainer, replacing the elements
+     * of the previous call.
+     *
+     * @return the number of elements that were moved, which can be retrieved via {@link #get(int)}.
+     */
+    @SuppressWarnings("unchecked")
+    public int drain(Queue<E> queue) {
+        size = 0;
+        if (queue instanceof MessagePassingQueue) {
+            ((MessagePassingQueue<E>) queue).drain(consumer, elements.length);
+        } else {
+            E e;
+            while (size < elements.length && (e = queue.poll()) != null) {
+                elements[size++] = e;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Moves the first {@code length} elements, which were stored via {@link #set(int, Object)}, to the tail of
+     * {@code queue} in order. Unlike {@link #drain(Queue)} this may be used by any producer of the queue.
+     *
+     * @return the number of elements that were moved. If the queue is full this is less than {@code length} and the
+     *         elements that were not moved can still be retrieved via {@link #get(int)}.
+     */
+    @SuppressWarnings("unchecked")
+    public int fill(Queue<E> queue, int length) {
+        filled = 0;
+        if (queue instanceof MessagePassingQueue) {
+            MessagePassingQueue<E> mpq = (MessagePassingQueue<E>) queue;
+            while (filled < length) {
+                // A bounded queue may accept fewer elements than requested in a single pass.
+                if (mpq.fill(supplier, length - filled) == 0) {
+                    break;
+                }
+            }
+        } else {
+            while (filled < length && queue.offer(elements[filled])) {
+                elements[filled++] = null;
+            }
+        }
+        return filled;
+    }
+
+    /**
+     * Stores {@code e} at {@code index}, so it can be moved to a queue via {@link #fill(Queue, int)}.
+     */
+    public void set(int index, E e) {
+        elements[index] = e;
+    }
+
+    /**
+     * Returns the element at {@code index} of the last {@link #drain(Queue)} or {@link #set(int, Object)} and
+     * releases the reference to it, so every element can only be retrieved once.
+     */
+    public E get(int index) {
+        E e = elements[index];
+        elements[index] = null;
+        return e;
+    }
+
+    /**
+     * Returns the maximum number of elements moved by a single {@link #drain(Queue)} or {@link #fill(Queue, int)}.
+     */
+    public int capacity() {
+        return elements.length;
+    }
+}
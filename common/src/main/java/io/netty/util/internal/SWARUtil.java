@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.internal;
+
+/**
+ * Utility methods for SWAR (SIMD within a register) operations, which process the 8 bytes of a {@code long} at
+ * once.
+ */
+public final class SWARUtil {
+
+    private static final long LOW_7_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    /**
+     * Returns a pattern that can be passed to {@link #applyPattern(long, long)} to find {@code byteToFind}.
+     */
+    public static long compilePattern(byte byteToFind) {
+        return (byteToFind & 0xFFL) * 0x101010101010101L;
+    }
+
+    /**
+     * Returns a {@code long} in which the highest bit of every byte is set if the byte at the same position of
+     * {@code word} matches the pattern created by {@link #compilePattern(byte)}, and all other bits are clear.
+     * Unlike the classic {@code (x - 0x01..) & ~x & 0x80..} trick this never reports false positives, so the result
+     * can be used to find all the matches of a word and not only the first one.
+     */
+    public static long applyPattern(long word, long pattern) {
+        long input = word ^ pattern;
+        long tmp = (input & LOW_7_BITS) + LOW_7_BITS;
+        return ~(tmp | input | LOW_7_BITS);
+    }
+
+    /**
+     * Returns the index of the first matching byte in the result of {@link #applyPattern(long, long)}, which must
+     * not be {@code 0}. {@code isBigEndian} must reflect the byte order that was used to read the word.
+     */
+    public static int getIndex(long result, boolean isBigEndian) {
+        return isBigEndian ? Long.numberOfLeadingZeros(result) >>> 3 : Long.numberOfTrailingZeros(result) >>> 3;
+    }
+
+    /**
+     * Returns a {@code long} in which the highest bit of every byte is set if the byte at the same position of
+     * {@code word} is an ASCII uppercase letter, and all other bits are clear.
+     */
+    public static long applyUpperCasePattern(long word) {
+        // Adding to the low 7 bits never carries into the next byte. The highest bit of a byte is set by the first
+        // addition if it is >= 'A' and by the second one if it is > 'Z'.
+        long low = word & LOW_7_BITS;
+        return (low + 0x3F3F3F3F3F3F3F3FL) & ~(low + 0x2525252525252525L) & ~word & HIGH_BITS;
+    }
+
+    /**
+     * Returns a {@code long} in which the highest bit of every byte is set if the byte at the same position of
+     * {@code word} is an ASCII lowercase letter, and all other bits are clear.
+     */
+    public static long applyLowerCasePattern(long word) {
+        long low = word & LOW_7_BITS;
+        return (low + 0x1F1F1F1F1F1F1F1FL) & ~(low + 0x0505050505050505L) & ~word & HIGH_BITS;
+    }
+
+    /**
+     * Converts the ASCII uppercase letters in the 8 bytes of {@code word} to lowercase, leaving all other bytes as
+     * they are.
+     */
+    public static long toLowerCase(long word) {
+        // 0x80 >>> 2 is 0x20, the difference between an uppercase letter and its lowercase counterpart.
+        return word | applyUpperCasePattern(word) >>> 2;
+    }
+
+    /**
+     * Converts the ASCII lowercase letters in the 8 bytes of {@code word} to uppercase, leaving all other bytes as
+     * they are.
+     */
+    public static long toUpperCase(long word) {
+        return word & ~(applyLowerCasePattern(word) >>> 2);
+    }
+
+    private SWARUtil() {
+        // Utility
+    }
+}
@@ -46,6 +46,30 @@ public class AsciiStringCharacterTest {
         assertFalse(asciiString.contentEqualsIgnoreCase(AsciiString.of("b")));
     }
 
+    @Test
+    public void testContentEqualsIgnoreCaseWords() {
+        String lower = "content-type: application/x-www-form-urlencoded; charset=utf-8";
+        String upper = lower.toUpperCase();
+        for (int start = 0; start < 8; start++) {
+            for (int end = start; end <= lower.length(); end++) {
+                AsciiString a = new AsciiString(lower).subSequence(start, end, false);
+                AsciiString b = new AsciiString(" " + upper).subSequence(start + 1, end + 1, false);
+                assertTrue(a.contentEqualsIgnoreCase(b));
+                assertTrue(AsciiString.contentEqualsIgnoreCase(b, a));
+                assertTrue(a.regionMatches(true, 0, b, 0, a.length()));
+                assertEquals(a.hashCode(), b.hashCode());
+                for (int i = 0; i < a.length(); i++) {
+                    byte[] changed = b.toByteArray();
+                    // '@' and '[' are right outside of the uppercase range.
+                    changed[i] = (byte) (changed[i] == '@' ? '[' : '@');
+                    AsciiString c = new AsciiString(changed, false);
+                    assertFalse(a.contentEqualsIgnoreCase(c));
+                    assertFalse(a.regionMatches(true, 0, c, 0, a.length()));
+                }
+            }
+        }
+    }
+
     @Test
     public void testGetBytesStringBuilder() {
         final StringBuilder b = new StringBuilder();
@@ -166,6 +190,21 @@ public class AsciiStringCharacterTest {
         assertEquals(caseInsenstaiveEquals, containsIgnoreCase(a, b));
     }
 
+    @Test
+    public void testToLowerCaseWords() {
+        String mixed = "X-Forwarded-For: @[Some-Proxy]`{Z}";
+        for (int start = 0; start < 8; start++) {
+            for (int end = start; end <= mixed.length(); end++) {
+                AsciiString string = new AsciiString(mixed).subSequence(start, end, false);
+                String expected = mixed.substring(start, end).toLowerCase();
+                assertEquals(expected, string.toLowerCase().toString());
+                if (expected.equals(string.toString())) {
+                    assertSame(string, string.toLowerCase());
+                }
+            }
+        }
+    }
+
     @Test
     public void testCaseSensitivity() {
         int i = 0;
@@ -350,6 +389,26 @@ public class AsciiStringCharacterTest {
         assertEquals(-1, new AsciiString("012345").indexOf("abcdefghi", 4));
     }
 
+    @Test
+    public void testIndexOfCharWords() {
+        byte[] bytes = new byte[40];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ('a' + i % 3);
+        }
+        for (int offset = 0; offset < 8; offset++) {
+            for (int i = offset; i < bytes.length; i++) {
+                byte[] copy = bytes.clone();
+                copy[i] = (byte) 0xFF;
+                AsciiString string = new AsciiString(copy, offset, copy.length - offset, false);
+                assertEquals(i - offset, string.indexOf((char) 0xFF, 0));
+                assertEquals(i - offset, string.indexOf((char) 0xFF, i - offset));
+                assertEquals(-1, string.indexOf((char) 0xFF, i - offset + 1));
+                assertEquals(-1, string.indexOf('d', 0));
+                assertEquals(-1, new AsciiString(copy, offset, i - offset, false).indexOf((char) 0xFF, 0));
+            }
+        }
+    }
+
     @Test
     public void testStaticIndexOfChar() {
         assertEquals(-1, AsciiString.indexOf(null, 'a', 0));
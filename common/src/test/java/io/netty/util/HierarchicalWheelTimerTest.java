@@ -0,0 +1,221 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import io.netty.util.concurrent.DefaultEventExecutor;
+import io.netty.util.concurrent.EventExecutor;
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HierarchicalWheelTimerTest {
+
+    @Test(timeout = 5000)
+    public void testTimeoutsExpireInOrderAndNotEarly() throws InterruptedException {
+        // 4 buckets per level and 2 levels only cover 16 ticks, so the longer delays have to be cascaded and
+        // re-inserted.
+        HierarchicalWheelTimer timer = new HierarchicalWheelTimer(
+                Executors.defaultThreadFactory(), 5, TimeUnit.MILLISECONDS, 4, 2);
+        final BlockingQueue<Long> queue = new LinkedBlockingQueue<Long>();
+        long[] delays = new long[50];
+        for (int i = 0; i < delays.length; i++) {
+            delays[i] = 1 + i * 6;
+        }
+        final long start = System.nanoTime();
+        for (int i = delays.length - 1; i >= 0; i--) {
+            final long delay = delays[i];
+            timer.newTimeout(new TimerTask() {
+                @Override
+                public void run(Timeout timeout) {
+                    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    queue.add(elapsed >= delay ? delay : -delay);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        for (long delay : delays) {
+            assertEquals(delay, (long) queue.take());
+        }
+        assertEquals(0, timer.pendingTimeouts());
+        assertTrue(timer.stop().isEmpty());
+    }
+
+    @Test(timeout = 3000)
+    public void testCancel() throws InterruptedException {
+        HierarchicalWheelTimer timer = new HierarchicalWheelTimer(10, TimeUnit.MILLISECONDS);
+        final CountDownLatch latch = new CountDownLatch(1);
+        Timeout cancelled = timer.newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout timeout) {
+                fail("cancelled timeout should not run");
+            }
+        }, 50, TimeUnit.MILLISECONDS);
+        timer.newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout timeout) {
+                latch.countDown();
+            }
+        }, 100, TimeUnit.MILLISECONDS);
+        assertEquals(2, timer.pendingTimeouts());
+
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertTrue(cancelled.isCancelled());
+
+        // The cancelled timeout is removed by the next tick.
+        latch.await();
+        assertFalse(cancelled.isExpired());
+        assertEquals(0, timer.pendingTimeouts());
+        timer.stop();
+    }
+
+    @Test(timeout = 3000)
+    public void testStopReturnsUnprocessedTimeouts() {
+        HierarchicalWheelTimer timer = new HierarchicalWheelTimer();
+        TimerTask task = new TimerTask() {
+            @Override
+            public void run(Timeout timeout) {
+                fail("should not run");
+            }
+        };
+        Timeout timeout = timer.newTimeout(task, 10, TimeUnit.SECONDS);
+        timer.newTimeout(task, 10, TimeUnit.DAYS).cancel();
+
+        Set<Timeout> unprocessed = timer.stop();
+        assertEquals(1, unprocessed.size());
+        assertSame(timeout, unprocessed.iterator().next());
+        assertEquals(0, timer.pendingTimeouts());
+        assertTrue(timer.stop().isEmpty());
+
+        try {
+            timer.newTimeout(task, 1, TimeUnit.SECONDS);
+            fail();
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+    }
+
+    @Test(timeout = 3000)
+    public void testDrivenByEventExecutor() throws InterruptedException {
+        final EventExecutor executor = new DefaultEventExecutor();
+        try {
+            HierarchicalWheelTimer timer = new HierarchicalWheelTimer(executor, 5, TimeUnit.MILLISECONDS);
+            final CountDownLatch latch = new CountDownLatch(2);
+            final AtomicReference<String> error = new AtomicReference<String>();
+            TimerTask task = new TimerTask() {
+                @Override
+                public void run(Timeout timeout) {
+                    if (!executor.inEventLoop()) {
+                        error.set("not run by the executor");
+                    }
+                    latch.countDown();
+                }
+            };
+            timer.newTimeout(task, 10, TimeUnit.MILLISECONDS);
+            timer.newTimeout(task, 40, TimeUnit.MILLISECONDS);
+            latch.await();
+            assertNull(error.get());
+            assertTrue(timer.stop().isEmpty());
+        } finally {
+            executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 3000)
+    public void testCancelByDrivingThreadIsImmediate() throws InterruptedException {
+        final EventExecutor executor = new DefaultEventExecutor();
+        try {
+            final HierarchicalWheelTimer timer = new HierarchicalWheelTimer(executor, 5, TimeUnit.MILLISECONDS);
+            final Timeout cancelled = timer.newTimeout(new TimerTask() {
+                @Override
+                public void run(Timeout timeout) {
+                    fail("cancelled timeout should not run");
+                }
+            }, 10, TimeUnit.SECONDS);
+            final CountDownLatch latch = new CountDownLatch(1);
+            final AtomicLong pendingAfterCancel = new AtomicLong(-1);
+            timer.newTimeout(new TimerTask() {
+                @Override
+                public void run(Timeout timeout) {
+                    // Both timeouts were added to their buckets by the tick that expired this one.
+                    cancelled.cancel();
+                    pendingAfterCancel.set(timer.pendingTimeouts());
+                    latch.countDown();
+                }
+            }, 10, TimeUnit.MILLISECONDS);
+            latch.await();
+            assertEquals(0, pendingAfterCancel.get());
+            assertTrue(timer.stop().isEmpty());
+        } finally {
+            executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrentNewTimeoutAndCancel() throws InterruptedException {
+        final HierarchicalWheelTimer timer = new HierarchicalWheelTimer(1, TimeUnit.MILLISECONDS);
+        final int threads = 4;
+        final int timeoutsPerThread = 1000;
+        final CountDownLatch expired = new CountDownLatch(threads * timeoutsPerThread / 2);
+        final TimerTask task = new TimerTask() {
+            @Override
+            public void run(Timeout timeout) {
+                expired.countDown();
+            }
+        };
+        final TimerTask cancelledTask = new TimerTask() {
+            @Override
+            public void run(Timeout timeout) {
+                fail("cancelled timeout should not run");
+            }
+        };
+        Thread[] producers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            producers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < timeoutsPerThread / 2; j++) {
+                        timer.newTimeout(task, j % 20, TimeUnit.MILLISECONDS);
+                        assertTrue(timer.newTimeout(cancelledTask, j % 20 + 5, TimeUnit.MILLISECONDS).cancel());
+                    }
+                }
+            });
+            producers[i].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        expired.await();
+        // The cancelled timeouts are removed by the following ticks.
+        while (timer.pendingTimeouts() != 0) {
+            Thread.sleep(1);
+        }
+        assertTrue(timer.stop().isEmpty());
+    }
+}
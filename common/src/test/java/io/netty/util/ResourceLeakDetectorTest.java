@@ -21,8 +21,14 @@ import java.util.ArrayDeque;
 import java.util.Queue;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
 public class ResourceLeakDetectorTest {
 
     @Test(timeout = 60000)
@@ -95,6 +101,52 @@ public class ResourceLeakDetectorTest {
         assertNoErrors(error);
     }
 
+    @Test(timeout = 60000)
+    public void testAggregatedLeakReports() throws Exception {
+        final String resourceType = "AggregatedResource";
+        final AtomicInteger reports = new AtomicInteger();
+        ResourceLeakDetector<Object> detector = new ResourceLeakDetector<Object>(resourceType, 1, true) {
+            @Override
+            protected void reportTracedLeak(String resourceType, String records) {
+                reports.incrementAndGet();
+            }
+        };
+
+        for (int i = 0; i < 10; i++) {
+            leakResource(detector);
+        }
+
+        ResourceLeakSite site = null;
+        while (site == null || site.count() < 10) {
+            System.gc();
+            Thread.sleep(10);
+            // Leaks are only detected when the next resource is tracked.
+            Object resource = new Object();
+            assertTrue(detector.track(resource).close(resource));
+            site = findLeakSite(resourceType);
+        }
+
+        assertEquals(10, site.count());
+        assertTrue(site.stackTrace(), site.stackTrace().contains("leakResource"));
+        // Only the first leak of the site is reported, the others are counted.
+        assertEquals(1, reports.get());
+    }
+
+    private static void leakResource(ResourceLeakDetector<Object> detector) {
+        assertNotNull(detector.track(new Object()));
+    }
+
+    private static ResourceLeakSite findLeakSite(String resourceType) {
+        ResourceLeakSite found = null;
+        for (ResourceLeakSite site : ResourceLeakDetector.leakSites()) {
+            if (site.resourceType().equals(resourceType)) {
+                assertNull("more than one site", found);
+                found = site;
+            }
+        }
+        return found;
+    }
+
     // Mimic the way how we implement our classes that should help with leak detection
     private static final  class LeakAwareResource implements Resource {
         private final Resource resource;
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DefaultEventExecutorMetricsTest {
+
+    @Test
+    public void testBuckets() {
+        int previousIndex = -1;
+        for (long value = 0; value < 1L << 20; value++) {
+            int index = LatencyHistogram.bucketIndex(value);
+            // Buckets are contiguous and every value is counted in the bucket that covers it.
+            assertTrue(index == previousIndex || index == previousIndex + 1);
+            assertTrue(value <= LatencyHistogram.highestValueInBucket(index));
+            assertTrue(index == 0 || value > LatencyHistogram.highestValueInBucket(index - 1));
+            previousIndex = index;
+        }
+        int maxIndex = LatencyHistogram.bucketIndex(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueInBucket(maxIndex));
+        assertEquals(maxIndex, LatencyHistogram.bucketIndex(LatencyHistogram.highestValueInBucket(maxIndex - 1) + 1));
+    }
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.valueAtPercentile(50));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        histogram.record(-1);
+        assertEquals(1001, histogram.count());
+        assertEquals(500500000, histogram.sum());
+        assertEquals(1000000, histogram.max());
+        assertEquals(0, histogram.valueAtPercentile(0));
+        assertCloseTo(500000, histogram.valueAtPercentile(50));
+        assertCloseTo(990000, histogram.valueAtPercentile(99));
+        assertEquals(1000000, histogram.valueAtPercentile(100));
+    }
+
+    private static void assertCloseTo(long expected, long actual) {
+        assertTrue("expected: " + expected + ", actual: " + actual,
+                actual >= expected && actual <= expected + expected / 8);
+    }
+
+    @Test(timeout = 5000)
+    public void testEventExecutor() throws Exception {
+        DefaultEventExecutor executor = new DefaultEventExecutor();
+        try {
+            DefaultEventExecutorMetrics metrics = new DefaultEventExecutorMetrics(1);
+            executor.setMetrics(metrics);
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    // NOOP
+                }
+            }, 10, TimeUnit.MILLISECONDS).sync();
+            // Recorded after the task was run, so wait for another one.
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    // NOOP
+                }
+            }).sync();
+
+            assertTrue(metrics.waitTime().count() > 0);
+            assertTrue(metrics.taskTime().count() >= 2);
+            assertTrue(metrics.taskTime().max() >= TimeUnit.MILLISECONDS.toNanos(20));
+            // The scheduled task was submitted from this thread and so it is wrapped as well.
+            assertTrue(metrics.taskRunTime().count() >= 2);
+            assertTrue(metrics.taskRunTime().max() >= TimeUnit.MILLISECONDS.toNanos(20));
+            assertEquals(metrics.taskRunTime().count(), metrics.taskQueueDelay().count());
+            // The second task was submitted while the first one was still running.
+            assertTrue(metrics.taskQueueDelay().max() >= TimeUnit.MILLISECONDS.toNanos(10));
+        } finally {
+            executor.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testNoTaskSampling() {
+        DefaultEventExecutorMetrics metrics = new DefaultEventExecutorMetrics(0);
+        for (int i = 0; i < 100; i++) {
+            assertFalse(metrics.sampleTask());
+        }
+    }
+}
@@ -222,6 +222,122 @@ public class DefaultPromiseTest {
         }
     }
 
+    @Test
+    public void testRemoveListener() {
+        final StringBuilder notified = new StringBuilder();
+        FutureListener<Void>[] listeners = new FutureListener[4];
+        for (int i = 0; i < listeners.length; i++) {
+            final int id = i;
+            listeners[i] = new FutureListener<Void>() {
+                @Override
+                public void operationComplete(Future<Void> future) {
+                    notified.append(id);
+                }
+            };
+        }
+
+        // Only the first two listeners, which are not stored in DefaultFutureListeners.
+        Promise<Void> promise = new DefaultPromise<Void>(ImmediateEventExecutor.INSTANCE);
+        promise.addListeners(listeners[0], listeners[1], listeners[2]);
+        promise.removeListener(listeners[0]);
+        promise.addListener(listeners[3]);
+        promise.setSuccess(null);
+        assertEquals("123", notified.toString());
+
+        notified.setLength(0);
+        promise = new DefaultPromise<Void>(ImmediateEventExecutor.INSTANCE);
+        promise.addListeners(listeners[0], listeners[1]);
+        promise.removeListener(listeners[0]);
+        promise.addListener(listeners[2]);
+        promise.removeListener(listeners[1]);
+        promise.setSuccess(null);
+        assertEquals("2", notified.toString());
+    }
+
+    @Test
+    public void testProgressiveListeners() {
+        final AtomicInteger progressed = new AtomicInteger();
+        GenericProgressiveFutureListener<ProgressiveFuture<Void>> listener =
+                new GenericProgressiveFutureListener<ProgressiveFuture<Void>>() {
+            @Override
+            public void operationProgressed(ProgressiveFuture<Void> future, long progress, long total) {
+                progressed.incrementAndGet();
+            }
+
+            @Override
+            public void operationComplete(ProgressiveFuture<Void> future) {
+                // NOOP
+            }
+        };
+        FutureListener<Void> nonProgressive = new FutureListener<Void>() {
+            @Override
+            public void operationComplete(Future<Void> future) {
+                // NOOP
+            }
+        };
+        for (int listeners = 1; listeners <= 4; listeners++) {
+            progressed.set(0);
+            ProgressivePromise<Void> promise = new DefaultProgressivePromise<Void>(ImmediateEventExecutor.INSTANCE);
+            promise.addListener(nonProgressive);
+            for (int i = 0; i < listeners; i++) {
+                promise.addListener(listener);
+            }
+            promise.setProgress(1, 2);
+            assertEquals(listeners, progressed.get());
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testAwaitWakesAllWaiters() throws Exception {
+        final Promise<Void> promise = new DefaultPromise<Void>(GlobalEventExecutor.INSTANCE);
+        // Waiters that time out must not prevent the others from being woken up.
+        assertFalse(promise.await(1));
+        assertFalse(promise.awaitUninterruptibly(1, TimeUnit.MILLISECONDS));
+
+        int waiters = 8;
+        final CountDownLatch done = new CountDownLatch(waiters);
+        ExecutorService executorService = Executors.newFixedThreadPool(waiters);
+        try {
+            for (int i = 0; i < waiters; i++) {
+                final boolean timed = i % 2 == 0;
+                executorService.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (timed) {
+                            promise.awaitUninterruptibly(1, TimeUnit.MINUTES);
+                        } else {
+                            promise.awaitUninterruptibly();
+                        }
+                        done.countDown();
+                    }
+                });
+            }
+            Thread.sleep(100);
+            assertEquals(waiters, done.getCount());
+            promise.setSuccess(null);
+            done.await();
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testAwaitInterrupted() throws Exception {
+        final Promise<Void> promise = new DefaultPromise<Void>(GlobalEventExecutor.INSTANCE);
+        Thread.currentThread().interrupt();
+        try {
+            promise.await();
+            fail();
+        } catch (InterruptedException expected) {
+            // expected
+        }
+
+        Thread.currentThread().interrupt();
+        assertFalse(promise.awaitUninterruptibly(10, TimeUnit.MILLISECONDS));
+        // The interrupt status is restored.
+        assertTrue(Thread.interrupted());
+    }
+
     @Test
     public void testListenerNotifyLater() throws Exception {
         // Testing first execution path in DefaultPromise
@@ -16,6 +16,7 @@
 
 package io.netty.util.concurrent;
 
+import io.netty.util.internal.InternalThreadLocalMap;
 import io.netty.util.internal.ObjectCleaner;
 import org.junit.Before;
 import org.junit.Ignore;
@@ -27,7 +28,10 @@ import java.util.concurrent.atomic.AtomicReference;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -157,6 +161,50 @@ public class FastThreadLocalTest {
         assertEquals(0, ObjectCleaner.getLiveSetCount() - sizeWhenStart);
     }
 
+    @Test(timeout = 4000)
+    public void testGetAndRemoveFromNonFastThreadLocalThread() throws Exception {
+        final FastThreadLocal<String> threadLocal = new FastThreadLocal<String>();
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    assertNull(InternalThreadLocalMap.getIfSet());
+                    InternalThreadLocalMap map = InternalThreadLocalMap.get();
+                    assertSame(map, InternalThreadLocalMap.get());
+                    assertSame(map, InternalThreadLocalMap.getIfSet());
+
+                    threadLocal.set("value");
+                    assertEquals("value", threadLocal.get());
+
+                    FastThreadLocal.removeAll();
+                    assertNull(InternalThreadLocalMap.getIfSet());
+                    assertNull(threadLocal.getIfExists());
+                    assertNotSame(map, InternalThreadLocalMap.get());
+                } catch (Throwable t) {
+                    error.set(t);
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+        // The map of the other thread must not be visible to this thread.
+        assertNull(threadLocal.getIfExists());
+    }
+
+    @Test
+    public void testReleasedVariableIndexIsReused() {
+        int index = InternalThreadLocalMap.nextVariableIndex();
+        InternalThreadLocalMap.releaseVariableIndex(index);
+        // Released twice, but still only handed out once.
+        InternalThreadLocalMap.releaseVariableIndex(index);
+        assertEquals(index, InternalThreadLocalMap.nextVariableIndex());
+        assertNotEquals(index, InternalThreadLocalMap.nextVariableIndex());
+    }
+
     @Test(timeout = 4000)
     public void testOnRemoveCalledForFastThreadLocalGet() throws Exception {
         testOnRemoveCalled(true, true);
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.DefaultPriorityQueue;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ScheduledTaskWheelTest {
+
+    private static final Comparator<ScheduledFutureTask<?>> COMPARATOR = new Comparator<ScheduledFutureTask<?>>() {
+        @Override
+        public int compare(ScheduledFutureTask<?> o1, ScheduledFutureTask<?> o2) {
+            return o1.compareTo(o2);
+        }
+    };
+
+    private static final Runnable NOOP = new Runnable() {
+        @Override
+        public void run() {
+            // NOOP
+        }
+    };
+
+    @Test
+    public void testSameOrderAsHeap() {
+        // Ticks of ~4 microseconds and only 16 buckets, so the horizon moves while the test runs and most
+        // tasks are due after more than one rotation.
+        testSameOrderAsHeap(16);
+    }
+
+    @Test
+    public void testSameOrderAsHeapMultipleOccupancyWords() {
+        // More than 64 buckets, so the lookup of the non-empty buckets has to cross words.
+        testSameOrderAsHeap(256);
+    }
+
+    private static void testSameOrderAsHeap(int ticksPerWheel) {
+        AbstractScheduledEventExecutor executor = new DefaultEventExecutor();
+        try {
+            ScheduledTaskWheel wheel = new ScheduledTaskWheel(COMPARATOR, 4096, ticksPerWheel);
+            // A task can only be in one queue, so the heap contains a twin of every task in the wheel.
+            DefaultPriorityQueue<ScheduledFutureTask<?>> heap =
+                    new DefaultPriorityQueue<ScheduledFutureTask<?>>(COMPARATOR, 11);
+            Map<ScheduledFutureTask<?>, ScheduledFutureTask<?>> twins =
+                    new IdentityHashMap<ScheduledFutureTask<?>, ScheduledFutureTask<?>>();
+            List<ScheduledFutureTask<?>> queued = new ArrayList<ScheduledFutureTask<?>>();
+            Random random = new Random(42);
+            long id = 0;
+            for (int i = 0; i < 20000; i++) {
+                int op = random.nextInt(10);
+                if (op < 6) {
+                    long delay = random.nextBoolean() ? random.nextInt(100000) : random.nextInt(5000000);
+                    // Some tasks are already due and some share their deadline, so they are only ordered by id.
+                    long deadline = Math.max(0, ScheduledFutureTask.nanoTime() + delay - 10000 - delay % 7);
+                    ScheduledFutureTask<Void> task =
+                            new ScheduledFutureTask<Void>(executor, NOOP, deadline).setId(++id);
+                    ScheduledFutureTask<Void> twin = new ScheduledFutureTask<Void>(executor, NOOP, deadline).setId(id);
+                    assertTrue(wheel.add(task));
+                    heap.add(twin);
+                    twins.put(task, twin);
+                    queued.add(task);
+                } else if (op < 8 && !queued.isEmpty()) {
+                    ScheduledFutureTask<?> task = queued.remove(random.nextInt(queued.size()));
+                    assertTrue(wheel.containsTyped(task));
+                    assertTrue(wheel.removeTyped(task));
+                    assertFalse(wheel.containsTyped(task));
+                    assertFalse(wheel.removeTyped(task));
+                    assertTrue(heap.removeTyped(twins.remove(task)));
+                } else {
+                    ScheduledFutureTask<?> task = wheel.poll();
+                    assertSame(heap.poll(), twins.remove(task));
+                    queued.remove(task);
+                }
+                assertEquals(heap.size(), wheel.size());
+                assertSame(heap.peek(), twins.get(wheel.peek()));
+            }
+
+            assertEquals(twins.keySet(), new HashSet<ScheduledFutureTask<?>>(wheel));
+            while (!heap.isEmpty()) {
+                assertSame(heap.poll(), twins.get(wheel.poll()));
+            }
+            assertTrue(wheel.isEmpty());
+            assertNull(wheel.poll());
+        } finally {
+            executor.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testScheduleAndCancel() throws Exception {
+        DefaultEventExecutorGroup group = new DefaultEventExecutorGroup(1);
+        try {
+            // Schedule one task before switching to make sure it is moved to the wheel.
+            final BlockingQueue<Integer> order = new LinkedBlockingQueue<Integer>();
+            EventExecutor executor = group.next();
+            executor.schedule(new Task(order, 3), 300, TimeUnit.MILLISECONDS);
+            group.useScheduledTaskWheel(1, TimeUnit.MILLISECONDS, 64);
+
+            executor.schedule(new Task(order, 2), 150, TimeUnit.MILLISECONDS);
+            ScheduledFuture<?> cancelled = executor.schedule(new Task(order, -1), 100, TimeUnit.MILLISECONDS);
+            executor.schedule(new Task(order, 1), 50, TimeUnit.MILLISECONDS);
+            assertTrue(cancelled.cancel(false));
+
+            assertEquals(1, (int) order.take());
+            assertEquals(2, (int) order.take());
+            assertEquals(3, (int) order.take());
+            assertNull(order.poll(100, TimeUnit.MILLISECONDS));
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+        }
+    }
+
+    private static final class Task implements Runnable {
+        private final BlockingQueue<Integer> order;
+        private final int value;
+
+        Task(BlockingQueue<Integer> order, int value) {
+            this.order = order;
+            this.value = value;
+        }
+
+        @Override
+        public void run() {
+            order.add(value);
+        }
+    }
+}
@@ -19,8 +19,13 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import io.netty.util.concurrent.AbstractEventExecutor.LazyRunnable;
+import io.netty.util.internal.PlatformDependent;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
@@ -252,6 +257,223 @@ public class SingleThreadEventExecutorTest {
         assertEquals(0, latch2.getCount());
     }
 
+    @Test(timeout = 5000)
+    public void testExecuteBatch() throws Exception {
+        final AtomicInteger wakeups = new AtomicInteger();
+        final SingleThreadEventExecutor executor = new SingleThreadEventExecutor(null,
+                Executors.defaultThreadFactory(), false) {
+            @Override
+            protected Queue<Runnable> newTaskQueue(int maxPendingTasks) {
+                return PlatformDependent.newMpscQueue();
+            }
+
+            @Override
+            protected void run() {
+                while (!confirmShutdown()) {
+                    try {
+                        synchronized (this) {
+                            if (!hasTasks()) {
+                                wait();
+                            }
+                        }
+                        runAllTasks();
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        Assert.fail(e.toString());
+                    }
+                }
+            }
+
+            @Override
+            protected void wakeup(boolean inEventLoop) {
+                if (!inEventLoop) {
+                    wakeups.incrementAndGet();
+                    synchronized (this) {
+                        notifyAll();
+                    }
+                }
+            }
+        };
+
+        // Block the event loop so all the tasks are queued before any of them runs.
+        final CountDownLatch blocked = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        wakeups.set(0);
+
+        // More tasks than fit into one batch, some of them executing more tasks while they run.
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(1);
+        Runnable[] tasks = new Runnable[200];
+        for (int i = 0; i < tasks.length; i++) {
+            final int index = i;
+            tasks[i] = new Runnable() {
+                @Override
+                public void run() {
+                    order.add(index);
+                    if (index % 50 == 0) {
+                        executor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                order.add(-index);
+                            }
+                        });
+                    }
+                    if (index == 199) {
+                        executor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                done.countDown();
+                            }
+                        });
+                    }
+                }
+            };
+        }
+        executor.executeBatch(tasks);
+        assertEquals(1, wakeups.get());
+        blocked.countDown();
+        done.await();
+
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < tasks.length; i++) {
+            expected.add(i);
+        }
+        for (int i = 0; i < tasks.length; i += 50) {
+            expected.add(-i);
+        }
+        assertEquals(expected, order);
+        executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    @Test(timeout = 5000)
+    public void testExecuteBatchRunsAddedTasksWhenRejected() throws Exception {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        final SingleThreadEventExecutor executor = new SingleThreadEventExecutor(null, executorService, false,
+                new LinkedBlockingQueue<Runnable>(2), RejectedExecutionHandlers.reject()) {
+            @Override
+            protected void run() {
+                while (!confirmShutdown()) {
+                    Runnable task = takeTask();
+                    if (task != null) {
+                        task.run();
+                    }
+                }
+            }
+        };
+
+        final CountDownLatch latch = new CountDownLatch(2);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        };
+        Runnable rejected = new Runnable() {
+            @Override
+            public void run() {
+                fail();
+            }
+        };
+        try {
+            executor.executeBatch(task, task, rejected);
+            fail();
+        } catch (RejectedExecutionException expected) {
+            // expected
+        }
+        // The thread was started even though the last task was rejected, so the tasks added before it are run.
+        latch.await();
+        executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        executorService.shutdown();
+    }
+
+    @Test(timeout = 5000)
+    public void testNestedRunAllTasksKeepsOrder() throws Exception {
+        testNestedRunAllTasksKeepsOrder(false);
+    }
+
+    @Test(timeout = 5000)
+    public void testNestedRunAllTasksWithTimeoutKeepsOrder() throws Exception {
+        testNestedRunAllTasksKeepsOrder(true);
+    }
+
+    private static void testNestedRunAllTasksKeepsOrder(final boolean withTimeout) throws Exception {
+        final SingleThreadEventExecutor executor = new SingleThreadEventExecutor(null,
+                Executors.defaultThreadFactory(), false) {
+            @Override
+            protected void run() {
+                while (!confirmShutdown()) {
+                    Runnable task = takeTask();
+                    if (task != null) {
+                        task.run();
+                        runAllTasks();
+                    }
+                }
+            }
+        };
+
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicBoolean hasTasks = new AtomicBoolean();
+        final AtomicInteger pendingTasks = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+        Runnable first = new Runnable() {
+            @Override
+            public void run() {
+                // Taken via takeTask(), so the following tasks are run as one batch by runAllTasks().
+            }
+        };
+        Runnable nested = new Runnable() {
+            @Override
+            public void run() {
+                order.add(0);
+                // The rest of the batch was already taken from the queue, but is still pending.
+                hasTasks.set(executor.hasTasks());
+                pendingTasks.set(executor.pendingTasks());
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        order.add(3);
+                        done.countDown();
+                    }
+                });
+                // Must run the rest of the current batch before the task that was just added.
+                if (withTimeout) {
+                    executor.runAllTasks(TimeUnit.SECONDS.toNanos(10));
+                } else {
+                    executor.runAllTasks();
+                }
+            }
+        };
+        Runnable second = new Runnable() {
+            @Override
+            public void run() {
+                order.add(1);
+            }
+        };
+        Runnable third = new Runnable() {
+            @Override
+            public void run() {
+                order.add(2);
+            }
+        };
+        executor.executeBatch(first, nested, second, third);
+        done.await();
+
+        assertEquals(Arrays.asList(0, 1, 2, 3), order);
+        assertTrue(hasTasks.get());
+        // Also counts a wakeup task if the thread was started by the batch.
+        assertTrue(pendingTasks.get() >= 2);
+        executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
     @Test
     public void testTaskAddedAfterShutdownNotAbandoned() throws Exception {
 
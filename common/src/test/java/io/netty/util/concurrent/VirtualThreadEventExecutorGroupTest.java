@@ -0,0 +1,315 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class VirtualThreadEventExecutorGroupTest {
+
+    @Test(timeout = 10000)
+    public void testOrdering() throws Throwable {
+        // Fewer threads than executors, so tasks of different executors share the same threads.
+        VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup(4);
+        try {
+            final int executors = 16;
+            final int tasks = 5000;
+            final List<List<Integer>> results = new ArrayList<List<Integer>>();
+            final AtomicBoolean notInEventLoop = new AtomicBoolean();
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < executors; i++) {
+                final EventExecutor executor = group.next();
+                assertTrue(executor instanceof OrderedEventExecutor);
+                assertFalse(executor.inEventLoop());
+                final List<Integer> result = new ArrayList<Integer>();
+                results.add(result);
+                for (int j = 0; j < tasks; j++) {
+                    final int value = j;
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!executor.inEventLoop()) {
+                                notInEventLoop.set(true);
+                            }
+                            result.add(value);
+                            if (value % 1000 == 0) {
+                                // Block a bit, like a handler calling a database.
+                                try {
+                                    Thread.sleep(1);
+                                } catch (InterruptedException e) {
+                                    Thread.currentThread().interrupt();
+                                }
+                            }
+                        }
+                    });
+                }
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        // NOOP
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.syncUninterruptibly();
+            }
+            assertFalse(notInEventLoop.get());
+            for (List<Integer> result : results) {
+                assertEquals(tasks, result.size());
+                for (int j = 0; j < tasks; j++) {
+                    assertEquals(j, (int) result.get(j));
+                }
+            }
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testSchedule() throws Exception {
+        VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup(1);
+        try {
+            final EventExecutor executor = group.next();
+            final BlockingQueue<Integer> order = new LinkedBlockingQueue<Integer>();
+            executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    order.add(2);
+                }
+            }, 100, TimeUnit.MILLISECONDS);
+            ScheduledFuture<?> cancelled = executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    order.add(-1);
+                }
+            }, 50, TimeUnit.MILLISECONDS);
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // Scheduled from the executor itself.
+                    executor.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            order.add(1);
+                        }
+                    }, 20, TimeUnit.MILLISECONDS);
+                }
+            });
+            assertTrue(cancelled.cancel(false));
+            assertEquals(1, (int) order.take());
+            assertEquals(2, (int) order.take());
+            assertNull(order.poll(100, TimeUnit.MILLISECONDS));
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testShutdownRunsSubmittedTasks() throws Exception {
+        VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup(2);
+        final EventExecutor executor = group.next();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicBoolean ran = new AtomicBoolean();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                ran.set(true);
+            }
+        });
+        Future<?> termination = group.shutdownGracefully();
+        assertTrue(executor.isShuttingDown());
+        try {
+            group.next().execute(new Runnable() {
+                @Override
+                public void run() {
+                    // NOOP
+                }
+            });
+            fail();
+        } catch (RejectedExecutionException expected) {
+            // expected
+        }
+        assertFalse(termination.isDone());
+        latch.countDown();
+        termination.syncUninterruptibly();
+        assertTrue(ran.get());
+        assertTrue(group.isTerminated());
+    }
+
+    @Test(timeout = 5000)
+    public void testRejectedSubmissionKeepsOtherTasks() throws Exception {
+        final BlockingQueue<String> order = new LinkedBlockingQueue<String>();
+        final AtomicBoolean reject = new AtomicBoolean(true);
+        final EventExecutor[] executorRef = new EventExecutor[1];
+        VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                if (reject.compareAndSet(true, false)) {
+                    // Another producer adds a task while the executor is being submitted.
+                    executorRef[0].execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            order.add("other");
+                        }
+                    });
+                    throw new RejectedExecutionException();
+                }
+                new Thread(command).start();
+            }
+        });
+        try {
+            EventExecutor executor = group.next();
+            executorRef[0] = executor;
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        order.add("rejected");
+                    }
+                });
+                fail();
+            } catch (RejectedExecutionException expected) {
+                // expected
+            }
+            // The task of the other producer runs without another task being added.
+            assertEquals("other", order.take());
+            assertNull(order.poll(100, TimeUnit.MILLISECONDS));
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testRejectedSubmissionCancelsOtherTasks() throws Exception {
+        final AtomicBoolean ran = new AtomicBoolean();
+        final EventExecutor[] executorRef = new EventExecutor[1];
+        final List<Future<?>> otherFutures = new ArrayList<Future<?>>();
+        VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                if (otherFutures.isEmpty()) {
+                    // Another producer adds a task while the executor is being submitted.
+                    otherFutures.add(executorRef[0].submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            ran.set(true);
+                        }
+                    }));
+                }
+                throw new RejectedExecutionException();
+            }
+        });
+        try {
+            EventExecutor executor = group.next();
+            executorRef[0] = executor;
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        ran.set(true);
+                    }
+                });
+                fail();
+            } catch (RejectedExecutionException expected) {
+                // expected
+            }
+            assertEquals(1, otherFutures.size());
+            assertTrue(otherFutures.get(0).isCancelled());
+            assertFalse(ran.get());
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testNoTaskAcceptedAfterTermination() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            final VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup(new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    new Thread(command).start();
+                }
+            });
+            final EventExecutor executor = group.next();
+            final AtomicInteger accepted = new AtomicInteger();
+            final AtomicInteger ran = new AtomicInteger();
+            final Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    ran.incrementAndGet();
+                }
+            };
+            Thread producer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (;;) {
+                            executor.execute(task);
+                            accepted.incrementAndGet();
+                        }
+                    } catch (RejectedExecutionException expected) {
+                        // expected
+                    }
+                }
+            });
+            producer.start();
+            group.shutdownGracefully().syncUninterruptibly();
+            producer.join();
+            // Every task that was accepted ran before the group terminated.
+            assertEquals(accepted.get(), ran.get());
+        }
+    }
+
+    @Test
+    public void testNextReturnsNewExecutor() {
+        VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup(1);
+        try {
+            EventExecutor executor = group.next();
+            assertNotSame(executor, group.next());
+            assertSame(group, executor.parent());
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.internal;
+
+import io.netty.util.internal.ObjectPool.Handle;
+import io.netty.util.internal.ObjectPool.ObjectCreator;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class MagazineObjectPoolTest {
+
+    private static MagazineObjectPool<HandledObject> newPool(int maxCapacityPerThread, int returnCapacity) {
+        return new MagazineObjectPool<HandledObject>(new ObjectCreator<HandledObject>() {
+            @Override
+            public HandledObject newObject(Handle<HandledObject> handle) {
+                return new HandledObject(handle);
+            }
+        }, maxCapacityPerThread, returnCapacity);
+    }
+
+    @Test
+    public void testRecycle() {
+        MagazineObjectPool<HandledObject> pool = newPool(16, 16);
+        HandledObject object = pool.get();
+        object.recycle();
+        assertSame(object, pool.get());
+        assertNotSame(object, pool.get());
+    }
+
+    @Test
+    public void testRecycleDisabled() {
+        MagazineObjectPool<HandledObject> pool = newPool(0, 16);
+        HandledObject object = pool.get();
+        object.recycle();
+        assertNotSame(object, pool.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMultipleRecycle() {
+        HandledObject object = newPool(16, 16).get();
+        object.recycle();
+        object.recycle();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMultipleRecycleAtDifferentThread() throws Throwable {
+        final HandledObject object = newPool(16, 16).get();
+        recycleInOtherThread(object);
+        object.recycle();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRecycleOtherObject() {
+        MagazineObjectPool<HandledObject> pool = newPool(16, 16);
+        HandledObject object = pool.get();
+        object.handle.recycle(pool.get());
+    }
+
+    @Test
+    public void testMaxCapacity() {
+        MagazineObjectPool<HandledObject> pool = newPool(300, 16);
+        List<HandledObject> objects = new ArrayList<HandledObject>();
+        for (int i = 0; i < 1000; i++) {
+            objects.add(pool.get());
+        }
+        for (HandledObject object : objects) {
+            object.recycle();
+        }
+        assertEquals(300, pool.threadLocalSize());
+    }
+
+    @Test
+    public void testRecycleAtDifferentThread() throws Throwable {
+        MagazineObjectPool<HandledObject> pool = newPool(256, 64);
+        List<HandledObject> objects = new ArrayList<HandledObject>();
+        for (int i = 0; i < 100; i++) {
+            objects.add(pool.get());
+        }
+        for (HandledObject object : objects) {
+            recycleInOtherThread(object);
+        }
+        // The objects are only moved to the stack of this thread once it needs them.
+        assertEquals(0, pool.threadLocalSize());
+
+        Set<HandledObject> reused = new HashSet<HandledObject>();
+        for (int i = 0; i < 100; i++) {
+            reused.add(pool.get());
+        }
+        // Only as many objects as fit into the return queue are reused, the others are dropped.
+        reused.retainAll(objects);
+        assertEquals(64, reused.size());
+    }
+
+    @Test
+    public void testGetAtDifferentThread() throws Throwable {
+        final MagazineObjectPool<HandledObject> pool = newPool(16, 16);
+        HandledObject object = pool.get();
+        object.recycle();
+        final AtomicReference<HandledObject> other = new AtomicReference<HandledObject>();
+        runInOtherThread(new Runnable() {
+            @Override
+            public void run() {
+                // Every thread has its own magazine.
+                other.set(pool.get());
+            }
+        });
+        assertNotSame(object, other.get());
+        assertSame(object, pool.get());
+
+        // The other thread is gone, so the object is dropped instead of being returned to its magazine.
+        other.get().recycle();
+        assertEquals(0, pool.threadLocalSize());
+    }
+
+    @Test(timeout = 10000)
+    public void testRecycleAfterOwnerDied() throws Throwable {
+        final MagazineObjectPool<HandledObject> pool = newPool(16, 16);
+        final AtomicReference<HandledObject> object = new AtomicReference<HandledObject>();
+        final AtomicReference<Thread> owner = new AtomicReference<Thread>();
+        runInOtherThread(new Runnable() {
+            @Override
+            public void run() {
+                owner.set(Thread.currentThread());
+                object.set(pool.get());
+            }
+        });
+        WeakReference<Thread> ownerRef = new WeakReference<Thread>(owner.getAndSet(null));
+        // The owner is dead, so the object is dropped instead of being queued for it.
+        object.get().recycle();
+
+        // The handle of the object does not keep the dead owner reachable.
+        while (ownerRef.get() != null) {
+            System.gc();
+            Thread.sleep(10);
+        }
+    }
+
+    private static void recycleInOtherThread(final HandledObject object) throws Throwable {
+        runInOtherThread(new Runnable() {
+            @Override
+            public void run() {
+                object.recycle();
+            }
+        });
+    }
+
+    private static void runInOtherThread(final Runnable task) throws Throwable {
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    error.set(t);
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+        if (error.get() != null) {
+            throw error.get();
+        }
+    }
+
+    static final class HandledObject {
+        final Handle<HandledObject> handle;
+
+        HandledObject(Handle<HandledObject> handle) {
+            this.handle = handle;
+        }
+
+        void recycle() {
+            handle.recycle(this);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SWARUtilTest {
+
+    @Test
+    public void testApplyPatternFindsEveryByte() {
+        for (int b = 0; b < 256; b++) {
+            long pattern = SWARUtil.compilePattern((byte) b);
+            for (int i = 0; i < 8; i++) {
+                // Fill the other bytes with b + 1 and b - 1, which must not match.
+                long word = 0;
+                for (int j = 0; j < 8; j++) {
+                    long value = j == i ? b : (j & 1) == 0 ? b + 1 : b - 1;
+                    word |= (value & 0xFF) << (j << 3);
+                }
+                long result = SWARUtil.applyPattern(word, pattern);
+                assertEquals(0x80L << (i << 3), result);
+                assertEquals(i, SWARUtil.getIndex(result, false));
+                assertEquals(i, SWARUtil.getIndex(Long.reverseBytes(result), true));
+            }
+        }
+    }
+
+    @Test
+    public void testApplyPatternNoMatch() {
+        assertEquals(0, SWARUtil.applyPattern(0x0102030405060708L, SWARUtil.compilePattern((byte) 0)));
+        assertEquals(0, SWARUtil.applyPattern(0L, SWARUtil.compilePattern((byte) 0x80)));
+    }
+
+    @Test
+    public void testApplyPatternMultipleMatches() {
+        long result = SWARUtil.applyPattern(0x0A00000A0000000AL, SWARUtil.compilePattern((byte) '\n'));
+        assertEquals(0x8000008000000080L, result);
+        assertEquals(0, SWARUtil.getIndex(result, false));
+        assertEquals(0, SWARUtil.getIndex(result, true));
+    }
+
+    @Test
+    public void testCaseConversion() {
+        for (int b = 0; b < 256; b++) {
+            boolean upper = b >= 'A' && b <= 'Z';
+            boolean lower = b >= 'a' && b <= 'z';
+            for (int i = 0; i < 8; i++) {
+                // Surround the byte with the bytes right outside of the letter ranges.
+                long word = 0;
+                for (int j = 0; j < 8; j++) {
+                    long value = j == i ? b : "@[`{".charAt(j & 3);
+                    word |= value << (j << 3);
+                }
+                long mask = 0xFFL << (i << 3);
+                long others = word & ~mask;
+                assertEquals(upper ? 0x80L << (i << 3) : 0, SWARUtil.applyUpperCasePattern(word));
+                assertEquals(lower ? 0x80L << (i << 3) : 0, SWARUtil.applyLowerCasePattern(word));
+                assertEquals(others | (long) (upper ? b + 32 : b) << (i << 3), SWARUtil.toLowerCase(word));
+                assertEquals(others | (long) (lower ? b - 32 : b) << (i << 3), SWARUtil.toUpperCase(word));
+            }
+        }
+    }
+}
@@ -48,6 +48,12 @@ public class CompositeByteBufRandomAccessBenchmark extends AbstractMicrobenchmar
             ByteBuf newBuffer(int length) {
                 return newBufferLargeChunks(length);
             }
+        },
+        AUTO_CONSOLIDATED {
+            @Override
+            ByteBuf newBuffer(int length) {
+                return newBufferAutoConsolidated(length);
+            }
         };
         abstract ByteBuf newBuffer(int length);
     }
@@ -115,4 +121,16 @@ public class CompositeByteBufRandomAccessBenchmark extends AbstractMicrobenchmar
         // Truncate to the requested capacity.
         return buffer.capacity(length).writerIndex(0);
     }
+
+    private static ByteBuf newBufferAutoConsolidated(int length) {
+        // Append small chunks to a composite with the default component limit so its layout is the one
+        // produced by the automatic consolidation.
+        CompositeByteBuf buffer = Unpooled.compositeBuffer();
+        for (int i = 0, j = 1; i < length; i += j, j = j % 9 + 1) {
+            buffer.addComponent(true, wrappedBuffer(new byte[j]));
+        }
+
+        // Truncate to the requested capacity.
+        return buffer.capacity(length).writerIndex(0);
+    }
 }
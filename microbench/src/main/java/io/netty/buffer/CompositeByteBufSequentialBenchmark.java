@@ -48,6 +48,12 @@ public class CompositeByteBufSequentialBenchmark extends AbstractMicrobenchmark
             ByteBuf newBuffer(int length) {
                 return newBufferLargeChunks(length);
             }
+        },
+        AUTO_CONSOLIDATED {
+            @Override
+            ByteBuf newBuffer(int length) {
+                return newBufferAutoConsolidated(length);
+            }
         };
         abstract ByteBuf newBuffer(int length);
     }
@@ -58,6 +64,8 @@ public class CompositeByteBufSequentialBenchmark extends AbstractMicrobenchmark
     @Param
     public ByteBufType bufferType;
 
+    private static final byte[] CHUNK = new byte[9];
+
     private ByteBuf buffer;
 
     @Setup
@@ -98,6 +106,56 @@ public class CompositeByteBufSequentialBenchmark extends AbstractMicrobenchmark
         return 1;
     }
 
+    @Benchmark
+    public int appendAndDiscardReadComponents() {
+        // Streaming usage: small chunks are appended while the reader consumes from the head, which keeps the
+        // buffer at its component limit and exercises the automatic consolidation.
+        CompositeByteBuf composite = Unpooled.compositeBuffer();
+        try {
+            for (int i = 0, j = 1; i < size; i += j, j = j % 9 + 1) {
+                composite.addComponent(true, wrappedBuffer(CHUNK, 0, j));
+                if (composite.readableBytes() > 64) {
+                    composite.skipBytes(32).discardReadComponents();
+                }
+            }
+            return composite.readableBytes();
+        } finally {
+            composite.release();
+        }
+    }
+
+    @Benchmark
+    public int appendAtComponentLimit() {
+        // Append small chunks to a composite with the default component limit, which consolidates components
+        // each time the limit is exceeded.
+        CompositeByteBuf composite = Unpooled.compositeBuffer();
+        try {
+            for (int i = 0, j = 1; i < size; i += j, j = j % 9 + 1) {
+                composite.addComponent(true, wrappedBuffer(CHUNK, 0, j));
+            }
+            return composite.numComponents();
+        } finally {
+            composite.release();
+        }
+    }
+
+    @Benchmark
+    public int prependAndRemoveFirstComponent() {
+        // Add and remove components at the head of a composite which holds many of them.
+        CompositeByteBuf composite = Unpooled.compositeBuffer(Integer.MAX_VALUE);
+        try {
+            for (int i = 0, j = 1; i < size; i += j, j = j % 9 + 1) {
+                composite.addComponent(true, 0, wrappedBuffer(CHUNK, 0, j));
+            }
+            while (composite.numComponents() > 0) {
+                composite.removeComponent(0);
+            }
+            return composite.capacity();
+        } finally {
+            composite.release();
+        }
+    }
+
     private static ByteBuf newBufferSmallChunks(int length) {
 
         List<ByteBuf> buffers = new ArrayList<ByteBuf>(((length + 1) / 45) * 19);
@@ -129,4 +187,16 @@ public class CompositeByteBufSequentialBenchmark extends AbstractMicrobenchmark
         // Truncate to the requested capacity.
         return buffer.capacity(length).writerIndex(0);
     }
+
+    private static ByteBuf newBufferAutoConsolidated(int length) {
+        // Append small chunks to a composite with the default component limit so its layout is the one
+        // produced by the automatic consolidation.
+        CompositeByteBuf buffer = Unpooled.compositeBuffer();
+        for (int i = 0, j = 1; i < length; i += j, j = j % 9 + 1) {
+            buffer.addComponent(true, wrappedBuffer(new byte[j]));
+        }
+
+        // Truncate to the requested capacity.
+        return buffer.capacity(length).writerIndex(0);
+    }
 }
@@ -16,6 +16,7 @@
 package io.netty.microbench.buffer;
 
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.microbench.util.AbstractMicrobenchmark;
 import org.openjdk.jmh.annotations.Benchmark;
@@ -33,6 +34,9 @@ import org.openjdk.jmh.annotations.Warmup;
 public class ByteBufAllocatorConcurrentBenchmark  extends AbstractMicrobenchmark {
 
     private static final ByteBufAllocator unpooledAllocator = new UnpooledByteBufAllocator(true, true);
+    // A single arena without caches, so all threads contend on the same arena and subpages.
+    private static final ByteBufAllocator pooledAllocator =
+            new PooledByteBufAllocator(true, 1, 1, 8192, 11, 0, 0, false);
 
     @Param({ "00064", "00256", "01024", "04096" })
     public int size;
@@ -41,4 +45,9 @@ public class ByteBufAllocatorConcurrentBenchmark  extends AbstractMicrobenchmark
     public boolean allocateRelease() {
         return unpooledAllocator.directBuffer(size).release();
     }
+
+    @Benchmark
+    public boolean allocateReleasePooled() {
+        return pooledAllocator.directBuffer(size).release();
+    }
 }
@@ -19,6 +19,7 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.ByteProcessor;
 import io.netty.util.CharsetUtil;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Measurement;
@@ -44,6 +45,7 @@ public class
     private ByteBuf wrapped;
     private ByteBuf asciiBuffer;
     private ByteBuf utf8Buffer;
+    private ByteBuf lineBuffer;
 
     private StringBuilder asciiSequence;
     private String ascii;
@@ -74,6 +76,13 @@ public class
 
         asciiBuffer = Unpooled.copiedBuffer(ascii, CharsetUtil.US_ASCII);
         utf8Buffer = Unpooled.copiedBuffer(utf8, CharsetUtil.UTF_8);
+
+        // Only the last byte is a line feed, so searches have to scan the whole buffer.
+        lineBuffer = direct? Unpooled.directBuffer(length) : Unpooled.buffer(length);
+        for (int i = 0; i < length - 1; i++) {
+            lineBuffer.writeByte('a');
+        }
+        lineBuffer.writeByte('\n');
     }
 
     @TearDown
@@ -82,6 +91,7 @@ public class
         wrapped.release();
         asciiBuffer.release();
         utf8Buffer.release();
+        lineBuffer.release();
     }
 
     @Benchmark
@@ -189,4 +199,30 @@ public class
     public String decodeStringUtf8() {
         return utf8Buffer.toString(CharsetUtil.UTF_8);
     }
+
+    @Benchmark
+    public int indexOf() {
+        return lineBuffer.indexOf(lineBuffer.readerIndex(), lineBuffer.writerIndex(), (byte) '\n');
+    }
+
+    @Benchmark
+    public int bytesBefore() {
+        return lineBuffer.bytesBefore((byte) '\n');
+    }
+
+    @Benchmark
+    public int forEachByteFindLf() {
+        return lineBuffer.forEachByte(ByteProcessor.FIND_LF);
+    }
+
+    @Benchmark
+    public int forEachByteFindCrLf() {
+        return lineBuffer.forEachByte(ByteProcessor.FIND_CRLF);
+    }
+
+    @Benchmark
+    public int forEachByteFindSemiColon() {
+        // Not specialized, so this is the baseline of calling the processor for every byte.
+        return lineBuffer.forEachByte(ByteProcessor.FIND_SEMI_COLON);
+    }
 }
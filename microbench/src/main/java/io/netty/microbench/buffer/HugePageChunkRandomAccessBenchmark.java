@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.buffer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.unix.HugePageDirectChunkSource;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+
+/**
+ * Compares random access over a large pool of direct buffers whose chunks are either allocated the default way
+ * or backed by transparent huge pages via {@link HugePageDirectChunkSource}. With many megabytes of live buffers
+ * the regular 4KB pages thrash the TLB, which huge pages are meant to avoid. Only runs on Linux with epoll.
+ */
+@State(Scope.Thread)
+public class HugePageChunkRandomAccessBenchmark extends AbstractMicrobenchmark {
+
+    private static final int BUFFER_SIZE = 65536;
+    private static final int ACCESSES = 1024;
+
+    @Param({ "256", "1024" })
+    public int poolSizeMb;
+
+    @Param({ "true", "false" })
+    public boolean hugePages;
+
+    private PooledByteBufAllocator allocator;
+    private ByteBuf[] buffers;
+    private int[] bufferIndexes;
+    private int[] offsets;
+
+    @Setup
+    public void setup() {
+        Epoll.ensureAvailability();
+        // Caches are disabled as we only care about the memory the chunks are carved from.
+        allocator = hugePages ?
+                new PooledByteBufAllocator(true, 0, 1, 8192, 11, 0, 0, false, 0, false,
+                        new HugePageDirectChunkSource()) :
+                new PooledByteBufAllocator(true, 0, 1, 8192, 11, 0, 0, false);
+
+        buffers = new ByteBuf[poolSizeMb * 1024 * 1024 / BUFFER_SIZE];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = allocator.directBuffer(BUFFER_SIZE, BUFFER_SIZE).writeZero(BUFFER_SIZE);
+        }
+
+        Random rand = new Random(42);
+        bufferIndexes = new int[ACCESSES];
+        offsets = new int[ACCESSES];
+        for (int i = 0; i < ACCESSES; i++) {
+            bufferIndexes[i] = rand.nextInt(buffers.length);
+            offsets[i] = rand.nextInt(BUFFER_SIZE - 8);
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        for (ByteBuf buf : buffers) {
+            buf.release();
+        }
+    }
+
+    @Benchmark
+    public long randomRead() {
+        long sum = 0;
+        for (int i = 0; i < ACCESSES; i++) {
+            sum += buffers[bufferIndexes[i]].getLong(offsets[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public void randomWrite() {
+        for (int i = 0; i < ACCESSES; i++) {
+            buffers[bufferIndexes[i]].setLong(offsets[i], i);
+        }
+    }
+}
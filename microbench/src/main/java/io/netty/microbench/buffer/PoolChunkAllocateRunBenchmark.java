@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.buffer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+
+import java.util.Random;
+
+/**
+ * Exercises the run bookkeeping of {@code PoolChunk} ({@code allocateRun} / {@code free}) by allocating and
+ * releasing normal sized buffers with the thread-local caches disabled, so every operation hits the chunk.
+ * The {@link GCProfiler} is enabled so the {@code gc.alloc.rate.norm} of the allocator itself can be compared
+ * between versions.
+ */
+@State(Scope.Thread)
+public class PoolChunkAllocateRunBenchmark extends AbstractMicrobenchmark {
+
+    private static final int MAX_LIVE_BUFFERS = 2048;
+
+    @Param({ "08192", "16384", "65536" })
+    public int size;
+
+    @Param({ "true", "false" })
+    public boolean direct;
+
+    private final Random rand = new Random(42);
+    private final ByteBuf[] buffers = new ByteBuf[MAX_LIVE_BUFFERS];
+    private PooledByteBufAllocator allocator;
+    private int[] sizes;
+    private int[] indexes;
+    private int next;
+
+    @Setup
+    public void setup() {
+        // Disable the thread-local caches so allocations and releases always go through the PoolChunk.
+        allocator = new PooledByteBufAllocator(direct, 1, 1, 8192, 11, 0, 0, false);
+        sizes = new int[MAX_LIVE_BUFFERS];
+        indexes = new int[MAX_LIVE_BUFFERS];
+        for (int i = 0; i < MAX_LIVE_BUFFERS; i++) {
+            // Mix sizes so runs get split and collapsed.
+            sizes[i] = size * (1 + rand.nextInt(4));
+            indexes[i] = rand.nextInt(MAX_LIVE_BUFFERS);
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        for (int i = 0; i < buffers.length; i++) {
+            ByteBuf buf = buffers[i];
+            if (buf != null) {
+                buf.release();
+                buffers[i] = null;
+            }
+        }
+    }
+
+    @Benchmark
+    public ByteBuf allocateAndFree() {
+        int i = next++ & MAX_LIVE_BUFFERS - 1;
+        int idx = indexes[i];
+        ByteBuf oldBuf = buffers[idx];
+        if (oldBuf != null) {
+            oldBuf.release();
+        }
+        ByteBuf buf = direct ? allocator.directBuffer(sizes[i]) : allocator.heapBuffer(sizes[i]);
+        buffers[idx] = buf;
+        return buf;
+    }
+
+    @Override
+    protected ChainedOptionsBuilder newOptionsBuilder() throws Exception {
+        return super.newOptionsBuilder().addProfiler(GCProfiler.class);
+    }
+}
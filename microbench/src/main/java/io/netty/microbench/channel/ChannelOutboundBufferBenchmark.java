@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.channel;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writes a batch of small messages to a {@link ChannelOutboundBuffer} and drains it the way a transport does, like
+ * the responses of a pipelined protocol.
+ */
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ChannelOutboundBufferBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "1", "16", "256" })
+    public int messages;
+
+    // The number of bytes that are written per call, to also cover partial writes.
+    @Param({ "1024", "65536" })
+    public int bytesPerWrite;
+
+    private EmbeddedChannel channel;
+    private ChannelOutboundBuffer buffer;
+    private ChannelPromise promise;
+    private ByteBuf message;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        channel = new EmbeddedChannel();
+        buffer = channel.unsafe().outboundBuffer();
+        promise = channel.voidPromise();
+        message = Unpooled.unreleasableBuffer(Unpooled.directBuffer(128).writeZero(128));
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        channel.close();
+    }
+
+    @Benchmark
+    public long writeAndDrain() {
+        ChannelOutboundBuffer buffer = this.buffer;
+        for (int i = 0; i < messages; i++) {
+            buffer.addMessage(message.duplicate(), 128, promise);
+        }
+        buffer.addFlush();
+        long written = 0;
+        while (!buffer.isEmpty()) {
+            buffer.nioBuffers(1024, bytesPerWrite);
+            long bytes = Math.min(buffer.nioBufferSize(), bytesPerWrite);
+            written += buffer.nioBufferCount();
+            buffer.removeBytes(bytes);
+        }
+        return written;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.channel;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of creating, listening to and completing the promise of a write, which is paid for every message
+ * that is written. Run with {@code -prof gc} to compare the allocation rate: up to two listeners are kept inline in
+ * the promise, the third one allocates the listener array.
+ */
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ChannelPromiseBenchmark extends AbstractMicrobenchmark {
+
+    private static final Object MSG = new Object();
+
+    private static final ChannelFutureListener NOOP_LISTENER = new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) {
+            // NOOP
+        }
+    };
+
+    @Param({ "0", "1", "2", "3" })
+    public int listeners;
+
+    private EmbeddedChannel channel;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                // Complete the write right away, like a transport that wrote the message to the socket.
+                promise.setSuccess();
+            }
+        });
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        channel.close();
+    }
+
+    @Benchmark
+    public ChannelFuture writeAndComplete() {
+        ChannelPromise promise = channel.newPromise();
+        for (int i = 0; i < listeners; i++) {
+            promise.addListener(NOOP_LISTENER);
+        }
+        return channel.write(MSG, promise);
+    }
+
+    @Benchmark
+    public boolean completeAndAwait() throws InterruptedException {
+        ChannelPromise promise = channel.newPromise();
+        for (int i = 0; i < listeners; i++) {
+            promise.addListener(NOOP_LISTENER);
+        }
+        promise.setSuccess();
+        return promise.await(1);
+    }
+}
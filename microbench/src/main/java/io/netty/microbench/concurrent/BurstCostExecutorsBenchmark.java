@@ -21,6 +21,7 @@ import io.netty.channel.kqueue.KQueueEventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.microbench.util.AbstractMicrobenchmark;
 import io.netty.util.concurrent.DefaultEventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
 import io.netty.util.internal.PlatformDependent;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
@@ -34,6 +35,7 @@ import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.infra.Blackhole;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Queue;
@@ -180,6 +182,11 @@ public class BurstCostExecutorsBenchmark extends AbstractMicrobenchmark {
     private String executorType;
     @Param({ "0", "10" })
     private int work;
+    /**
+     * Submit each burst via {@link SingleThreadEventExecutor#executeBatch(Runnable...)}, if supported.
+     */
+    @Param({ "false", "true" })
+    private boolean executeBatch;
 
     private ExecutorService executor;
     private ExecutorService executorToShutdown;
@@ -243,6 +250,7 @@ public class BurstCostExecutorsBenchmark extends AbstractMicrobenchmark {
         private volatile int completed;
 
         private Runnable completeTask;
+        private Runnable[] burst;
 
         @Setup
         public void setup(BurstCostExecutorsBenchmark bench) {
@@ -271,6 +279,8 @@ public class BurstCostExecutorsBenchmark extends AbstractMicrobenchmark {
                     }
                 };
             }
+            burst = new Runnable[bench.burstLength];
+            Arrays.fill(burst, completeTask);
         }
 
         /**
@@ -320,9 +330,13 @@ public class BurstCostExecutorsBenchmark extends AbstractMicrobenchmark {
     private int executeBurst(final PerThreadState state) {
         final ExecutorService executor = this.executor;
         final int burstLength = this.burstLength;
-        final Runnable completeTask = state.completeTask;
-        for (int i = 0; i < burstLength; i++) {
-            executor.execute(completeTask);
+        if (executeBatch && executor instanceof SingleThreadEventExecutor) {
+            ((SingleThreadEventExecutor) executor).executeBatch(state.burst);
+        } else {
+            final Runnable completeTask = state.completeTask;
+            for (int i = 0; i < burstLength; i++) {
+                executor.execute(completeTask);
+            }
         }
         final int value = state.spinWaitCompletionOf(burstLength);
         state.resetCompleted();
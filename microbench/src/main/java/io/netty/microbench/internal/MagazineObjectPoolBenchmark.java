@@ -0,0 +1,32 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.internal;
+
+import java.util.Arrays;
+
+/**
+ * Runs {@link ObjectPoolBenchmark} with {@code -Dio.netty.objectPool.type=magazine}.
+ */
+public class MagazineObjectPoolBenchmark extends ObjectPoolBenchmark {
+
+    @Override
+    protected String[] jvmArgs() {
+        String[] jvmArgs = super.jvmArgs();
+        String[] args = Arrays.copyOf(jvmArgs, jvmArgs.length + 1);
+        args[jvmArgs.length] = "-Dio.netty.objectPool.type=magazine";
+        return args;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.internal;
+
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.internal.ObjectPool;
+import io.netty.util.internal.ObjectPool.Handle;
+import io.netty.util.internal.ObjectPool.ObjectCreator;
+import io.netty.util.internal.PlatformDependent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Queue;
+
+/**
+ * Benchmarks the {@link ObjectPool} returned by {@link ObjectPool#newPool(ObjectCreator)}, which is backed by the
+ * {@code Recycler}. See {@link MagazineObjectPoolBenchmark} for the same benchmarks with the magazine pool.
+ */
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class ObjectPoolBenchmark extends AbstractMicrobenchmark {
+
+    private static final ObjectPool<PooledObject> POOL = ObjectPool.newPool(new ObjectCreator<PooledObject>() {
+        @Override
+        public PooledObject newObject(Handle<PooledObject> handle) {
+            return new PooledObject(handle);
+        }
+    });
+
+    static final class PooledObject {
+        private final Handle<PooledObject> handle;
+
+        PooledObject(Handle<PooledObject> handle) {
+            this.handle = handle;
+        }
+
+        void recycle() {
+            handle.recycle(this);
+        }
+    }
+
+    @State(Scope.Group)
+    public static class HandOff {
+        Queue<PooledObject> queue;
+
+        @Setup(Level.Iteration)
+        public void setup() {
+            queue = PlatformDependent.newFixedMpscQueue(1024);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            queue = null;
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public PooledObject recycleSameThread() {
+        PooledObject object = POOL.get();
+        object.recycle();
+        return object;
+    }
+
+    /**
+     * One thread gets objects from the pool and hands them to another thread that recycles them, like a buffer that
+     * is allocated by one event loop and released by another.
+     */
+    @Benchmark
+    @Group("crossThread")
+    @GroupThreads(1)
+    public PooledObject get(HandOff handOff) {
+        PooledObject object = POOL.get();
+        if (!handOff.queue.offer(object)) {
+            object.recycle();
+        }
+        return object;
+    }
+
+    @Benchmark
+    @Group("crossThread")
+    @GroupThreads(1)
+    public PooledObject recycleOtherThread(HandOff handOff) {
+        PooledObject object = handOff.queue.poll();
+        if (object != null) {
+            object.recycle();
+        }
+        return object;
+    }
+}
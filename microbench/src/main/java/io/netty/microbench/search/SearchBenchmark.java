@@ -21,6 +21,7 @@ import io.netty.buffer.Unpooled;
 import io.netty.buffer.search.AbstractMultiSearchProcessorFactory;
 import io.netty.buffer.search.AbstractSearchProcessorFactory;
 import io.netty.buffer.search.SearchProcessorFactory;
+import io.netty.buffer.search.ShiftOrMultiSearcher;
 import io.netty.microbench.util.AbstractMicrobenchmark;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.CompilerControl;
@@ -122,6 +123,8 @@ public class SearchBenchmark extends AbstractMicrobenchmark {
     private ByteBuf needle, haystack;
     private byte[] needleBytes, haystackBytes;
     private SearchProcessorFactory kmpFactory, bitapFactory, ahoCorasicFactory;
+    private ShiftOrMultiSearcher shiftOrSearcher;
+    private FirstMatchHandler firstMatchHandler;
 
     @Setup
     public void setup() {
@@ -135,6 +138,8 @@ public class SearchBenchmark extends AbstractMicrobenchmark {
 
         kmpFactory = AbstractSearchProcessorFactory.newKmpSearchProcessorFactory(needleBytes);
         ahoCorasicFactory = AbstractMultiSearchProcessorFactory.newAhoCorasicSearchProcessorFactory(needleBytes);
+        shiftOrSearcher = new ShiftOrMultiSearcher(needleBytes);
+        firstMatchHandler = new FirstMatchHandler();
 
         if (needleBytes.length <= 64) {
             bitapFactory = AbstractSearchProcessorFactory.newBitapSearchProcessorFactory(needleBytes);
@@ -171,6 +176,24 @@ public class SearchBenchmark extends AbstractMicrobenchmark {
         return haystack.forEachByte(ahoCorasicFactory.newSearchProcessor());
     }
 
+    @Benchmark
+    @CompilerControl(Mode.DONT_INLINE)
+    public int shiftOr() {
+        firstMatchHandler.endIndex = -1;
+        shiftOrSearcher.search(haystack, haystack.readerIndex(), haystack.readableBytes(), firstMatchHandler);
+        return firstMatchHandler.endIndex;
+    }
+
+    private static final class FirstMatchHandler implements ShiftOrMultiSearcher.MatchHandler {
+        int endIndex;
+
+        @Override
+        public boolean onMatch(int endIndex, int needleId) {
+            this.endIndex = endIndex;
+            return false;
+        }
+    }
+
     private static byte[] randomBytes(Random rnd, int size, int from, int to) {
         byte[] bytes = new byte[size];
         for (int i = 0; i < size; i++) {
@@ -20,6 +20,7 @@ import io.netty.buffer.search.AbstractMultiSearchProcessorFactory;
 import io.netty.buffer.search.AbstractSearchProcessorFactory;
 import io.netty.buffer.search.SearchProcessor;
 import io.netty.buffer.search.SearchProcessorFactory;
+import io.netty.buffer.search.ShiftOrMultiSearcher;
 import io.netty.microbench.util.AbstractMicrobenchmark;
 import io.netty.util.internal.ResourcesUtil;
 import org.openjdk.jmh.annotations.Benchmark;
@@ -52,23 +53,92 @@ public class SearchRealDataBenchmark extends AbstractMicrobenchmark {
     public enum Algorithm {
         AHO_CORASIC {
             @Override
-            SearchProcessorFactory newFactory(byte[] needle) {
-                return AbstractMultiSearchProcessorFactory.newAhoCorasicSearchProcessorFactory(needle);
+            Searcher newSearcher(byte[] needle) {
+                return new ProcessorSearcher(AbstractMultiSearchProcessorFactory.newAhoCorasicSearchProcessorFactory(
+                        needle));
             }
         },
         KMP {
             @Override
-            SearchProcessorFactory newFactory(byte[] needle) {
-                return AbstractSearchProcessorFactory.newKmpSearchProcessorFactory(needle);
+            Searcher newSearcher(byte[] needle) {
+                return new ProcessorSearcher(AbstractSearchProcessorFactory.newKmpSearchProcessorFactory(needle));
             }
         },
         BITAP {
             @Override
-            SearchProcessorFactory newFactory(byte[] needle) {
-                return AbstractSearchProcessorFactory.newBitapSearchProcessorFactory(needle);
+            Searcher newSearcher(byte[] needle) {
+                return new ProcessorSearcher(AbstractSearchProcessorFactory.newBitapSearchProcessorFactory(needle));
+            }
+        },
+        SHIFT_OR {
+            @Override
+            Searcher newSearcher(byte[] needle) {
+                return new ShiftOrSearcher(new ShiftOrMultiSearcher(needle));
             }
         };
-        abstract SearchProcessorFactory newFactory(byte[] needle);
+        abstract Searcher newSearcher(byte[] needle);
+    }
+
+    interface Searcher {
+        int findFirst(ByteBuf haystack, int index, int length);
+
+        void findAll(ByteBuf haystack, Blackhole blackHole);
+    }
+
+    private static final class ProcessorSearcher implements Searcher {
+        private final SearchProcessorFactory factory;
+
+        ProcessorSearcher(SearchProcessorFactory factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public int findFirst(ByteBuf haystack, int index, int length) {
+            return haystack.forEachByte(index, length, factory.newSearchProcessor());
+        }
+
+        @Override
+        public void findAll(ByteBuf haystack, Blackhole blackHole) {
+            SearchProcessor searchProcessor = factory.newSearchProcessor();
+            int haystackLength = haystack.readableBytes();
+            int pos = 0;
+            do {
+                pos = haystack.forEachByte(pos, haystackLength - pos, searchProcessor) + 1;
+                blackHole.consume(pos);
+            } while (pos > 0);
+        }
+    }
+
+    private static final class ShiftOrSearcher implements Searcher {
+        private final ShiftOrMultiSearcher searcher;
+
+        ShiftOrSearcher(ShiftOrMultiSearcher searcher) {
+            this.searcher = searcher;
+        }
+
+        @Override
+        public int findFirst(ByteBuf haystack, int index, int length) {
+            final int[] found = { -1 };
+            searcher.search(haystack, index, length, new ShiftOrMultiSearcher.MatchHandler() {
+                @Override
+                public boolean onMatch(int endIndex, int needleId) {
+                    found[0] = endIndex;
+                    return false;
+                }
+            });
+            return found[0];
+        }
+
+        @Override
+        public void findAll(ByteBuf haystack, final Blackhole blackHole) {
+            searcher.search(haystack, 0, haystack.readableBytes(), new ShiftOrMultiSearcher.MatchHandler() {
+                @Override
+                public boolean onMatch(int endIndex, int needleId) {
+                    blackHole.consume(endIndex);
+                    return true;
+                }
+            });
+        }
     }
 
     @Param
@@ -78,8 +148,8 @@ public class SearchRealDataBenchmark extends AbstractMicrobenchmark {
     public ByteBufType bufferType;
 
     private ByteBuf haystack;
-    private SearchProcessorFactory[] searchProcessorFactories;
-    private SearchProcessorFactory searchProcessorFactory;
+    private Searcher[] searchers;
+    private Searcher searcher;
 
     private static final byte[][] NEEDLES = {
             "Thank You".getBytes(),
@@ -106,16 +176,16 @@ public class SearchRealDataBenchmark extends AbstractMicrobenchmark {
         searchFrom = 0;
         haystackLength = haystack.readableBytes();
 
-        searchProcessorFactories = new SearchProcessorFactory[NEEDLES.length];
+        searchers = new Searcher[NEEDLES.length];
         for (int i = 0; i < NEEDLES.length; i++) {
-            searchProcessorFactories[i] = algorithm.newFactory(NEEDLES[i]);
+            searchers[i] = algorithm.newSearcher(NEEDLES[i]);
         }
     }
 
     @Setup(Level.Invocation)
     public void invocationSetup() {
-        needleId = (needleId + 1) % searchProcessorFactories.length;
-        searchProcessorFactory = searchProcessorFactories[needleId];
+        needleId = (needleId + 1) % searchers.length;
+        searcher = searchers[needleId];
     }
 
     @TearDown
@@ -126,26 +196,20 @@ public class SearchRealDataBenchmark extends AbstractMicrobenchmark {
     @Benchmark
     @CompilerControl(Mode.DONT_INLINE)
     public int findFirst() {
-        return haystack.forEachByte(searchProcessorFactory.newSearchProcessor());
+        return searcher.findFirst(haystack, 0, haystackLength);
     }
 
     @Benchmark
     @CompilerControl(Mode.DONT_INLINE)
     public int findFirstFromIndex() {
         searchFrom = (searchFrom + 100) % haystackLength;
-        return haystack.forEachByte(
-                searchFrom, haystackLength - searchFrom, searchProcessorFactory.newSearchProcessor());
+        return searcher.findFirst(haystack, searchFrom, haystackLength - searchFrom);
     }
 
     @Benchmark
     @CompilerControl(Mode.DONT_INLINE)
     public void findAll(Blackhole blackHole) {
-        SearchProcessor searchProcessor = searchProcessorFactory.newSearchProcessor();
-        int pos = 0;
-        do {
-            pos = haystack.forEachByte(pos, haystackLength - pos, searchProcessor) + 1;
-            blackHole.consume(pos);
-        } while (pos > 0);
+        searcher.findAll(haystack, blackHole);
     }
 
     private static byte[] readBytes(File file) throws IOException {
@@ -16,21 +16,34 @@
 package io.netty.microbench.util;
 
 import io.netty.util.ResourceLeakDetector;
+import io.netty.util.ResourceLeakTracker;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Setup;
 
+/**
+ * Run {@link ResourceLeakDetectorAggregatedBenchmark} to compare with the aggregated mode.
+ */
 public class ResourceLeakDetectorBenchmark extends AbstractMicrobenchmark {
 
     private static final Object DUMMY = new Object();
     private ResourceLeakDetector<Object> detector;
+    private ResourceLeakDetector<Object> trackAllDetector;
 
     @Setup
     public void setup() {
         detector = new ResourceLeakDetector<Object>(getClass(), 128, Long.MAX_VALUE);
+        trackAllDetector = new ResourceLeakDetector<Object>(getClass(), 1);
     }
 
     @Benchmark
     public Object open() {
         return detector.open(DUMMY);
     }
+
+    @Benchmark
+    public boolean trackAndClose() {
+        // Every call is sampled, so this measures the cost of the tracking itself.
+        ResourceLeakTracker<Object> tracker = trackAllDetector.track(DUMMY);
+        return tracker != null && tracker.close(DUMMY);
+    }
 }
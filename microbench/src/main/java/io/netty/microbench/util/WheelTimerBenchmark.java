@@ -0,0 +1,101 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.util;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.HierarchicalWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import io.netty.util.internal.PlatformDependent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link HashedWheelTimer} and {@link HierarchicalWheelTimer} while a large number of timeouts, like the
+ * idle timeouts of many connections, is pending. The benchmark resets a timeout the way an idle handler does on
+ * every read. The cost of rotating the wheel is paid by the timer thread, so run with a CPU profiler to compare
+ * it as well.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Threads(4)
+public class WheelTimerBenchmark extends AbstractMicrobenchmark {
+
+    private static final TimerTask NOOP = new TimerTask() {
+        @Override
+        public void run(Timeout timeout) {
+            // NOOP
+        }
+    };
+
+    public enum TimerType {
+        HASHED {
+            @Override
+            Timer newTimer() {
+                return new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 512);
+            }
+        },
+        HIERARCHICAL {
+            @Override
+            Timer newTimer() {
+                return new HierarchicalWheelTimer(1, TimeUnit.MILLISECONDS);
+            }
+        };
+        abstract Timer newTimer();
+    }
+
+    @Param
+    public TimerType timerType;
+
+    @Param({ "1000000" })
+    public int pending;
+
+    private Timer timer;
+
+    @Setup
+    public void setup() {
+        timer = timerType.newTimer();
+        for (int i = 0; i < pending; i++) {
+            timer.newTimeout(NOOP, randomDelay(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        timer.stop();
+    }
+
+    @Benchmark
+    public boolean resetTimeout() {
+        return timer.newTimeout(NOOP, randomDelay(), TimeUnit.MILLISECONDS).cancel();
+    }
+
+    private static long randomDelay() {
+        // Between 10 minutes and 1 hour, so nothing expires while the benchmark runs.
+        return TimeUnit.MINUTES.toMillis(10) + PlatformDependent.threadLocalRandom().nextInt(50 * 60 * 1000);
+    }
+}
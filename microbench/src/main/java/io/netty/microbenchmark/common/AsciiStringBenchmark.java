@@ -39,6 +39,9 @@ public class AsciiStringBenchmark extends AbstractMicrobenchmark {
 
     private AsciiString asciiString;
     private String string;
+    private AsciiString mixedCase;
+    private AsciiString lowerCase;
+    private AsciiString upperCase;
     private static final Random random = new Random();
 
     @Setup(Level.Trial)
@@ -47,6 +50,15 @@ public class AsciiStringBenchmark extends AbstractMicrobenchmark {
         random.nextBytes(bytes);
         asciiString = new AsciiString(bytes, false);
         string = new String(bytes, CharsetUtil.US_ASCII);
+
+        // Header names and values are mostly letters, digits and '-'.
+        byte[] letters = new byte[size];
+        for (int i = 0; i < size; i++) {
+            letters[i] = (byte) (random.nextBoolean() ? 'a' + random.nextInt(26) : 'A' + random.nextInt(26));
+        }
+        mixedCase = new AsciiString(letters, false);
+        lowerCase = mixedCase.toLowerCase();
+        upperCase = mixedCase.toUpperCase();
     }
 
     @Benchmark
@@ -81,4 +93,30 @@ public class AsciiStringBenchmark extends AbstractMicrobenchmark {
     public int hashCodeBenchCharSequenceNew() {
         return PlatformDependent.hashCodeAscii(string);
     }
+
+    @Benchmark
+    public boolean contentEqualsIgnoreCase() {
+        return lowerCase.contentEqualsIgnoreCase(upperCase);
+    }
+
+    @Benchmark
+    public boolean regionMatchesIgnoreCase() {
+        return lowerCase.regionMatches(true, 0, upperCase, 0, size);
+    }
+
+    @Benchmark
+    public int indexOfChar() {
+        // Not found, so the whole string is scanned.
+        return mixedCase.indexOf('-', 0);
+    }
+
+    @Benchmark
+    public AsciiString toLowerCase() {
+        return mixedCase.toLowerCase();
+    }
+
+    @Benchmark
+    public AsciiString toLowerCaseAlreadyLowerCase() {
+        return lowerCase.toLowerCase();
+    }
 }
@@ -50,11 +50,22 @@ public class ScheduleFutureTaskBenchmark extends AbstractMicrobenchmark {
         @Param({ "100000" })
         int num;
 
+        /**
+         * Use {@link AbstractScheduledEventExecutor#useScheduledTaskWheel(long, TimeUnit, int)} instead of the
+         * default heap.
+         */
+        @Param({ "false", "true" })
+        boolean wheel;
+
         AbstractScheduledEventExecutor eventLoop;
 
         @Setup(Level.Trial)
         public void reset() {
-            eventLoop = (AbstractScheduledEventExecutor) new NioEventLoopGroup(1).next();
+            NioEventLoopGroup group = new NioEventLoopGroup(1);
+            if (wheel) {
+                group.useScheduledTaskWheel(4, TimeUnit.MILLISECONDS, 4096);
+            }
+            eventLoop = (AbstractScheduledEventExecutor) group.next();
         }
 
         @Setup(Level.Invocation)
@@ -87,6 +98,23 @@ public class ScheduleFutureTaskBenchmark extends AbstractMicrobenchmark {
         }).syncUninterruptibly();
     }
 
+    @Benchmark
+    @Threads(3)
+    public Future<?> scheduleCancelLots(final ThreadState threadState) {
+        // Like idle timeouts that are cancelled because the connection was closed or reset on activity.
+        return threadState.eventLoop.submit(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= threadState.num; i++) {
+                    threadState.eventLoop.schedule(NO_OP, i, TimeUnit.SECONDS);
+                }
+                for (int i = 1; i <= threadState.num; i++) {
+                    threadState.eventLoop.schedule(NO_OP, i, TimeUnit.SECONDS).cancel(false);
+                }
+            }
+        }).syncUninterruptibly();
+    }
+
     @Benchmark
     @Threads(1)
     public Future<?> scheduleLotsOutsideLoop(final ThreadState threadState) {
@@ -17,6 +17,7 @@ package io.netty.channel.epoll;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelConfig;
 import io.netty.channel.ChannelFuture;
@@ -30,6 +31,7 @@ import io.netty.channel.EventLoop;
 import io.netty.channel.FileRegion;
 import io.netty.channel.RecvByteBufAllocator;
 import io.netty.channel.internal.ChannelUtils;
+import io.netty.channel.internal.SharedReadBuffer;
 import io.netty.channel.socket.DuplexChannel;
 import io.netty.channel.unix.FileDescriptor;
 import io.netty.channel.unix.IovArray;
@@ -739,6 +741,16 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             return new EpollRecvByteAllocatorStreamingHandle(handle);
         }
 
+        private ByteBuf readSharedReadBuffer(ByteBufAllocator allocator, EpollRecvByteAllocatorHandle allocHandle)
+                throws Exception {
+            // Bound the read by the guess, just like a buffer of the allocator would be.
+            ByteBuf buffer = SharedReadBuffer.buffer(allocHandle.guess());
+            allocHandle.lastBytesRead(doReadBytes(buffer));
+            // The shared buffer is reused by the next read of any channel of this EventLoop, so only what was read is
+            // kept. Nothing was read otherwise, return a buffer that can be released as usual.
+            return allocHandle.lastBytesRead() > 0 ? SharedReadBuffer.copy(allocator, buffer) : Unpooled.EMPTY_BUFFER;
+        }
+
         @Override
         void epollInReady() {
             final ChannelConfig config = config();
@@ -751,12 +763,17 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
 
             final ChannelPipeline pipeline = pipeline();
             final ByteBufAllocator allocator = config.getAllocator();
+            final boolean sharedReadBuffer = config().isSharedReadBuffer();
             allocHandle.reset(config);
             epollInBefore();
 
             ByteBuf byteBuf = null;
             boolean close = false;
             try {
+                if (allocHandle.wantsBytesAvailable()) {
+                    // Only asked once per read loop, after that the handle keeps track of what is left.
+                    allocHandle.bytesAvailable(socket.bytesAvailable());
+                }
                 Queue<SpliceInTask> sQueue = null;
                 do {
                     if (sQueue != null || (sQueue = spliceQueue) != null) {
@@ -775,10 +792,14 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
                         }
                     }
 
-                    // we use a direct buffer here as the native implementations only be able
-                    // to handle direct buffers.
-                    byteBuf = allocHandle.allocate(allocator);
-                    allocHandle.lastBytesRead(doReadBytes(byteBuf));
+                    if (sharedReadBuffer) {
+                        byteBuf = readSharedReadBuffer(allocator, allocHandle);
+                    } else {
+                        // we use a direct buffer here as the native implementations only be able
+                        // to handle direct buffers.
+                        byteBuf = allocHandle.allocate(allocator);
+                        allocHandle.lastBytesRead(doReadBytes(byteBuf));
+                    }
                     if (allocHandle.lastBytesRead() <= 0) {
                         // nothing was read, release the buffer.
                         byteBuf.release();
@@ -26,6 +26,7 @@ import io.netty.channel.unix.IovArray;
 import io.netty.util.IntSupplier;
 import io.netty.util.collection.IntObjectHashMap;
 import io.netty.util.collection.IntObjectMap;
+import io.netty.util.concurrent.EventExecutorMetrics;
 import io.netty.util.concurrent.RejectedExecutionHandler;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.PlatformDependent;
@@ -308,6 +309,8 @@ class EpollEventLoop extends SingleThreadEventLoop {
         long prevDeadlineNanos = NONE;
         for (;;) {
             try {
+                final EventExecutorMetrics metrics = metrics();
+                final long waitStartTime = metrics != null ? System.nanoTime() : 0;
                 int strategy = selectStrategy.calculateStrategy(selectNowSupplier, hasTasks());
                 switch (strategy) {
                     case SelectStrategy.CONTINUE:
@@ -363,24 +366,33 @@ class EpollEventLoop extends SingleThreadEventLoop {
                 }
 
                 final int ioRatio = this.ioRatio;
+                final long ioStartTime = metrics != null || ioRatio != 100 && strategy > 0 ? System.nanoTime() : 0;
+                if (metrics != null) {
+                    metrics.recordWait(ioStartTime - waitStartTime);
+                }
                 if (ioRatio == 100) {
                     try {
                         if (strategy > 0 && processReady(events, strategy)) {
                             prevDeadlineNanos = NONE;
                         }
                     } finally {
+                        if (metrics != null && strategy > 0) {
+                            metrics.recordIo(System.nanoTime() - ioStartTime);
+                        }
                         // Ensure we always run tasks.
                         runAllTasks();
                     }
                 } else if (strategy > 0) {
-                    final long ioStartTime = System.nanoTime();
                     try {
                         if (processReady(events, strategy)) {
                             prevDeadlineNanos = NONE;
                         }
                     } finally {
-                        // Ensure we always run tasks.
                         final long ioTime = System.nanoTime() - ioStartTime;
+                        if (metrics != null) {
+                            metrics.recordIo(ioTime);
+                        }
+                        // Ensure we always run tasks.
                         runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
                     }
                 } else {
@@ -17,6 +17,7 @@ package io.netty.channel.epoll;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.RecvByteBufAllocator.BytesAvailableHandle;
 import io.netty.channel.RecvByteBufAllocator.DelegatingHandle;
 import io.netty.channel.RecvByteBufAllocator.ExtendedHandle;
 import io.netty.channel.unix.PreferredDirectByteBufAllocator;
@@ -68,6 +69,18 @@ class EpollRecvByteAllocatorHandle extends DelegatingHandle implements ExtendedH
         return isEdgeTriggered;
     }
 
+    /**
+     * Returns {@code true} if the wrapped handle makes use of {@link #bytesAvailable(int)}, which costs an extra
+     * system call per read loop.
+     */
+    final boolean wantsBytesAvailable() {
+        return delegate() instanceof BytesAvailableHandle;
+    }
+
+    final void bytesAvailable(int bytes) {
+        ((BytesAvailableHandle) delegate()).bytesAvailable(bytes);
+    }
+
     @Override
     public final ByteBuf allocate(ByteBufAllocator alloc) {
         // We need to ensure we always allocate a direct ByteBuf as we can only use a direct buffer to read via JNI.
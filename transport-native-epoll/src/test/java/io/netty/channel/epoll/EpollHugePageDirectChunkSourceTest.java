@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.unix.Buffer;
+import io.netty.channel.unix.HugePageDirectChunkSource;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EpollHugePageDirectChunkSourceTest {
+
+    @BeforeClass
+    public static void loadNativeLibrary() {
+        Epoll.ensureAvailability();
+    }
+
+    @Test
+    public void testAllocateIsAlignedAndRoundedUp() {
+        HugePageDirectChunkSource source = new HugePageDirectChunkSource();
+        ByteBuffer buffer = source.allocate(1024);
+        try {
+            assertTrue(buffer.isDirect());
+            assertEquals(HugePageDirectChunkSource.DEFAULT_HUGE_PAGE_SIZE, buffer.capacity());
+            assertEquals(0, Buffer.memoryAddress(buffer) & HugePageDirectChunkSource.DEFAULT_HUGE_PAGE_SIZE - 1);
+            buffer.putLong(0, 42);
+            buffer.putLong(buffer.capacity() - 8, 42);
+            assertEquals(42, buffer.getLong(0));
+            assertEquals(42, buffer.getLong(buffer.capacity() - 8));
+        } finally {
+            source.free(buffer);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testChunkSizeMustBeAligned() {
+        // 8192 << 7 = 1 MiB which is not a multiple of the huge page size.
+        new PooledByteBufAllocator(true, 0, 1, 8192, 7, 0, 0, false, 0, false, new HugePageDirectChunkSource());
+    }
+
+    @Test
+    public void testPooledAllocator() {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                true, 0, 1, 8192, 11, 0, 0, false, 0, false, new HugePageDirectChunkSource());
+        ByteBuf small = allocator.directBuffer(64);
+        ByteBuf normal = allocator.directBuffer(65536);
+        try {
+            small.writeLong(1);
+            normal.writerIndex(normal.capacity() - 8);
+            normal.writeLong(2);
+            assertEquals(1, small.readLong());
+            assertEquals(2, normal.getLong(normal.capacity() - 8));
+        } finally {
+            small.release();
+            normal.release();
+        }
+    }
+}
@@ -26,6 +26,7 @@ import io.netty.channel.unix.IovArray;
 import io.netty.util.IntSupplier;
 import io.netty.util.collection.IntObjectHashMap;
 import io.netty.util.collection.IntObjectMap;
+import io.netty.util.concurrent.EventExecutorMetrics;
 import io.netty.util.concurrent.RejectedExecutionHandler;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.PlatformDependent;
@@ -226,6 +227,8 @@ final class KQueueEventLoop extends SingleThreadEventLoop {
     protected void run() {
         for (;;) {
             try {
+                final EventExecutorMetrics metrics = metrics();
+                final long waitStartTime = metrics != null ? System.nanoTime() : 0;
                 int strategy = selectStrategy.calculateStrategy(selectNowSupplier, hasTasks());
                 switch (strategy) {
                     case SelectStrategy.CONTINUE:
@@ -273,23 +276,31 @@ final class KQueueEventLoop extends SingleThreadEventLoop {
                 }
 
                 final int ioRatio = this.ioRatio;
+                final long ioStartTime = metrics != null || ioRatio != 100 ? System.nanoTime() : 0;
+                if (metrics != null) {
+                    metrics.recordWait(ioStartTime - waitStartTime);
+                }
                 if (ioRatio == 100) {
                     try {
                         if (strategy > 0) {
                             processReady(strategy);
                         }
                     } finally {
+                        if (metrics != null && strategy > 0) {
+                            metrics.recordIo(System.nanoTime() - ioStartTime);
+                        }
                         runAllTasks();
                     }
                 } else {
-                    final long ioStartTime = System.nanoTime();
-
                     try {
                         if (strategy > 0) {
                             processReady(strategy);
                         }
                     } finally {
                         final long ioTime = System.nanoTime() - ioStartTime;
+                        if (metrics != null && strategy > 0) {
+                            metrics.recordIo(ioTime);
+                        }
                         runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
                     }
                 }
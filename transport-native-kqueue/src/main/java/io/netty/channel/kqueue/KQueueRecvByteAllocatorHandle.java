@@ -18,6 +18,7 @@ package io.netty.channel.kqueue;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.ChannelConfig;
+import io.netty.channel.RecvByteBufAllocator.BytesAvailableHandle;
 import io.netty.channel.RecvByteBufAllocator.DelegatingHandle;
 import io.netty.channel.RecvByteBufAllocator.ExtendedHandle;
 import io.netty.channel.unix.PreferredDirectByteBufAllocator;
@@ -53,6 +54,10 @@ final class KQueueRecvByteAllocatorHandle extends DelegatingHandle implements Ex
     public void reset(ChannelConfig config) {
         overrideGuess = ((KQueueChannelConfig) config).getRcvAllocTransportProvidesGuess();
         delegate().reset(config);
+        if (delegate() instanceof BytesAvailableHandle) {
+            // kqueue already tells the number of bytes, so there is no need for an extra system call as for epoll.
+            ((BytesAvailableHandle) delegate()).bytesAvailable(guess0());
+        }
     }
 
     @Override
@@ -13,7 +13,22 @@
  * License for the specific language governing permissions and limitations
  * under the License.
  */
+
+/*
+ * _GNU_SOURCE must be defined (before including any header files) in order to obtain the
+ * declaration of sched_getcpu(...) on Linux.
+ */
+#ifdef __linux__
+#define _GNU_SOURCE
+#include <sched.h>
+#endif /* __linux__ */
+
+#include <errno.h>
+#include <stdint.h>
+#include <sys/mman.h>
+
 #include "netty_unix_jni.h"
+#include "netty_unix_errors.h"
 #include "netty_unix_util.h"
 #include "netty_unix_buffer.h"
 
@@ -26,12 +41,73 @@ static jint netty_unix_buffer_addressSize0(JNIEnv* env, jclass clazz) {
    return (jint) sizeof(int*);
 }
 
+static jint netty_unix_buffer_currentCpu0(JNIEnv* env, jclass clazz) {
+#ifdef __linux__
+    int cpu = sched_getcpu();
+    return cpu < 0 ? -1 : (jint) cpu;
+#else
+    return -1;
+#endif /* __linux__ */
+}
+
+static jobject netty_unix_buffer_mmapAnonymous0(JNIEnv* env, jclass clazz, jint size, jint alignment, jboolean hugePages) {
+    size_t len = (size_t) size;
+    size_t align = (size_t) alignment;
+    // Over-allocate so we can align the start of the mapping and unmap what is not needed afterwards.
+    size_t mapLen = align > 0 ? len + align : len;
+    char* mem = mmap(NULL, mapLen, PROT_READ | PROT_WRITE, MAP_PRIVATE | MAP_ANONYMOUS, -1, 0);
+    if (mem == MAP_FAILED) {
+        netty_unix_errors_throwRuntimeExceptionErrorNo(env, "mmap() failed: ", errno);
+        return NULL;
+    }
+    if (align > 0) {
+        char* aligned = (char*) (((uintptr_t) mem + align - 1) & ~((uintptr_t) align - 1));
+        size_t head = aligned - mem;
+        size_t tail = mapLen - head - len;
+        if (head > 0) {
+            munmap(mem, head);
+        }
+        if (tail > 0) {
+            munmap(aligned + len, tail);
+        }
+        mem = aligned;
+    }
+    if (hugePages == JNI_TRUE) {
+#ifdef MADV_HUGEPAGE
+        if (madvise(mem, len, MADV_HUGEPAGE) != 0) {
+            int err = errno;
+            munmap(mem, len);
+            netty_unix_errors_throwRuntimeExceptionErrorNo(env, "madvise() failed: ", err);
+            return NULL;
+        }
+#else
+        munmap(mem, len);
+        netty_unix_errors_throwRuntimeException(env, "madvise(MADV_HUGEPAGE) not supported");
+        return NULL;
+#endif /* MADV_HUGEPAGE */
+    }
+    jobject buffer = (*env)->NewDirectByteBuffer(env, mem, (jlong) len);
+    if (buffer == NULL) {
+        munmap(mem, len);
+    }
+    return buffer;
+}
+
+static void netty_unix_buffer_munmap0(JNIEnv* env, jclass clazz, jlong address, jint size) {
+    if (munmap((void*) (intptr_t) address, (size_t) size) != 0) {
+        netty_unix_errors_throwRuntimeExceptionErrorNo(env, "munmap() failed: ", errno);
+    }
+}
+
 // JNI Registered Methods End
 
 // JNI Method Registration Table Begin
 static const JNINativeMethod statically_referenced_fixed_method_table[] = {
   { "memoryAddress0", "(Ljava/nio/ByteBuffer;)J", (void *) netty_unix_buffer_memoryAddress0 },
-  { "addressSize0", "()I", (void *) netty_unix_buffer_addressSize0 }
+  { "addressSize0", "()I", (void *) netty_unix_buffer_addressSize0 },
+  { "currentCpu0", "()I", (void *) netty_unix_buffer_currentCpu0 },
+  { "mmapAnonymous0", "(IIZ)Ljava/nio/ByteBuffer;", (void *) netty_unix_buffer_mmapAnonymous0 },
+  { "munmap0", "(JI)V", (void *) netty_unix_buffer_munmap0 }
 };
 static const jint statically_referenced_fixed_method_table_size = sizeof(statically_referenced_fixed_method_table) / sizeof(statically_referenced_fixed_method_table[0]);
 // JNI Method Registration Table End
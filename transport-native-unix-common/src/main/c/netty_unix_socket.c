@@ -21,6 +21,7 @@
 #include <stdlib.h>
 #include <string.h>
 #include <sys/un.h>
+#include <sys/ioctl.h>
 #include <sys/socket.h>
 #include <arpa/inet.h>
 #include <netinet/in.h>
@@ -939,6 +940,14 @@ static jint netty_unix_socket_getSoError(JNIEnv* env, jclass clazz, jint fd) {
     return optval;
 }
 
+static jint netty_unix_socket_bytesAvailable(JNIEnv* env, jclass clazz, jint fd) {
+    int available;
+    if (ioctl(fd, FIONREAD, &available) == -1) {
+        return -errno;
+    }
+    return available;
+}
+
 static jint netty_unix_socket_isReuseAddress(JNIEnv* env, jclass clazz, jint fd) {
     int optval;
     if (netty_unix_socket_getOption(env, fd, SOL_SOCKET, SO_REUSEADDR, &optval, sizeof(optval)) == -1) {
@@ -1008,6 +1017,7 @@ static const JNINativeMethod fixed_method_table[] = {
   { "getSoLinger", "(I)I", (void *) netty_unix_socket_getSoLinger },
   { "getTrafficClass", "(IZ)I", (void *) netty_unix_socket_getTrafficClass },
   { "getSoError", "(I)I", (void *) netty_unix_socket_getSoError },
+  { "bytesAvailable", "(I)I", (void *) netty_unix_socket_bytesAvailable },
   { "initialize", "(Z)V", (void *) netty_unix_socket_initialize },
   { "isIPv6Preferred", "()Z", (void *) netty_unix_socket_isIPv6Preferred },
   { "isIPv6", "(I)Z", (void *) netty_unix_socket_isIPv6 }
@@ -62,6 +62,28 @@ public final class Buffer {
         return addressSize0();
     }
 
+    /**
+     * Returns the index of the CPU the calling {@link Thread} is currently running on or {@code -1} if this is not
+     * supported by the platform.
+     * <p>
+     * This is used by {@code PooledByteBufAllocator} to select an arena per CPU.
+     *
+     * @throws UnsatisfiedLinkError if the native library was not loaded yet.
+     */
+    public static int currentCpu() {
+        return currentCpu0();
+    }
+
+    private static native int currentCpu0();
+
+    /**
+     * Maps {@code size} bytes of anonymous memory, aligned to {@code alignment} bytes, and optionally advises the
+     * kernel to back it by huge pages. The returned {@link ByteBuffer} must be released via
+     * {@link #munmap0(long, int)}.
+     */
+    static native ByteBuffer mmapAnonymous0(int size, int alignment, boolean hugePages);
+    static native void munmap0(long address, int size);
+
     // If Unsafe can not be used we will need to do JNI calls.
     private static native int addressSize0();
     private static native long memoryAddress0(ByteBuffer buffer);
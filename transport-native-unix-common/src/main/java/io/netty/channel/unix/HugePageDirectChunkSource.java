@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.unix;
+
+import io.netty.buffer.DirectChunkSource;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.UnstableApi;
+
+import java.nio.ByteBuffer;
+
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * {@link DirectChunkSource} which maps the chunks of a {@link PooledByteBufAllocator} via {@code mmap(...)} and
+ * advises the kernel via {@code madvise(..., MADV_HUGEPAGE)} to back them by transparent huge pages. This reduces
+ * TLB pressure for large pools.
+ * <p>
+ * Chunks are aligned to and rounded up to a multiple of the huge page size, so the chunk size of the allocator should
+ * be a multiple of it as well. The mapped memory is not accounted against {@code -XX:MaxDirectMemorySize}.
+ * <p>
+ * This requires the native library of the epoll transport to be loaded, for example by calling
+ * {@code Epoll.ensureAvailability()}, and transparent huge pages to be enabled in {@code madvise} or {@code always}
+ * mode.
+ */
+@UnstableApi
+public final class HugePageDirectChunkSource implements DirectChunkSource {
+
+    /**
+     * The default size of a transparent huge page on x86_64 and aarch64.
+     */
+    public static final int DEFAULT_HUGE_PAGE_SIZE = 2 * 1024 * 1024;
+
+    private final int hugePageSize;
+
+    public HugePageDirectChunkSource() {
+        this(DEFAULT_HUGE_PAGE_SIZE);
+    }
+
+    public HugePageDirectChunkSource(int hugePageSize) {
+        checkPositive(hugePageSize, "hugePageSize");
+        if ((hugePageSize & hugePageSize - 1) != 0) {
+            throw new IllegalArgumentException("hugePageSize: " + hugePageSize + " (expected: power of 2)");
+        }
+        this.hugePageSize = hugePageSize;
+    }
+
+    @Override
+    public int chunkAlignment() {
+        return hugePageSize;
+    }
+
+    @Override
+    public ByteBuffer allocate(int capacity) {
+        checkPositive(capacity, "capacity");
+        long size = mappedSize(capacity);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("capacity: " + capacity + " (expected: <= " +
+                    (Integer.MAX_VALUE & -hugePageSize) + ')');
+        }
+        return Buffer.mmapAnonymous0((int) size, hugePageSize, true);
+    }
+
+    @Override
+    public void free(ByteBuffer buffer) {
+        Buffer.munmap0(Buffer.memoryAddress(buffer), buffer.capacity());
+    }
+
+    private long mappedSize(int capacity) {
+        return (capacity + (long) hugePageSize - 1) & -hugePageSize;
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.simpleClassName(this) + "(hugePageSize: " + hugePageSize + ')';
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.unix;
+
+import io.netty.util.internal.CurrentCpuProvider;
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * {@link CurrentCpuProvider} which uses {@code sched_getcpu()}. This is loaded by {@code PooledByteBufAllocator} to
+ * select an arena per CPU.
+ */
+@UnstableApi
+public final class NativeCurrentCpuProvider implements CurrentCpuProvider {
+    @Override
+    public int currentCpu() {
+        return Buffer.currentCpu();
+    }
+}
@@ -349,6 +349,17 @@ public class Socket extends FileDescriptor {
         return getSoError(fd);
     }
 
+    /**
+     * Returns the number of bytes that can be read without blocking.
+     */
+    public final int bytesAvailable() throws IOException {
+        int res = bytesAvailable(fd);
+        if (res < 0) {
+            throw newIOException("bytesAvailable", res);
+        }
+        return res;
+    }
+
     public final int getTrafficClass() throws IOException {
         return getTrafficClass(fd, ipv6);
     }
@@ -492,6 +503,7 @@ public class Socket extends FileDescriptor {
     private static native int isBroadcast(int fd) throws IOException;
     private static native int getSoLinger(int fd) throws IOException;
     private static native int getSoError(int fd) throws IOException;
+    private static native int bytesAvailable(int fd);
     private static native int getTrafficClass(int fd, boolean ipv6) throws IOException;
 
     private static native void setReuseAddress(int fd, int reuseAddress) throws IOException;
@@ -463,6 +463,8 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
             }
 
             AbstractChannel.this.eventLoop = eventLoop;
+            // The contexts without an executor of their own now run on another EventLoop.
+            pipeline.invalidateNextContexts();
 
             if (eventLoop.inEventLoop()) {
                 register0(promise);
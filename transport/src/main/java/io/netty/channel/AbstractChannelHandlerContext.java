@@ -35,6 +35,7 @@ import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.net.SocketAddress;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import static io.netty.channel.ChannelHandlerMask.MASK_BIND;
@@ -85,6 +86,9 @@ abstract class AbstractChannelHandlerContext implements ChannelHandlerContext, R
      */
     private static final int INIT = 0;
 
+    // Only the events that are triggered for every message are cached, see nextContextIndex(int).
+    private static final int NEXT_CONTEXTS = 6;
+
     private final DefaultChannelPipeline pipeline;
     private final String name;
     private final boolean ordered;
@@ -95,6 +99,12 @@ abstract class AbstractChannelHandlerContext implements ChannelHandlerContext, R
     final EventExecutor executor;
     private ChannelFuture succeededFuture;
 
+    // The contexts that were found as the next ones interested in an event, indexed by nextContextIndex(mask), and
+    // the DefaultChannelPipeline.linkGeneration they were found with. Only accessed by the executor of this context,
+    // lookups from other threads and for the other events always walk the pipeline.
+    private AbstractChannelHandlerContext[] nextContexts;
+    private int nextContextsGeneration;
+
     // Lazily instantiated tasks used to trigger events to a handler with different executor.
     // There is no need to make this volatile as at worse it will just create a few more instances then needed.
     private Tasks invokeTasks;
@@ -874,23 +884,84 @@ abstract class AbstractChannelHandlerContext implements ChannelHandlerContext, R
     }
 
     private AbstractChannelHandlerContext findContextInbound(int mask) {
-        AbstractChannelHandlerContext ctx = this;
         EventExecutor currentExecutor = executor();
+        int index = nextContextIndex(mask);
+        AbstractChannelHandlerContext[] nextContexts =
+                index >= 0 && currentExecutor.inEventLoop() ? nextContexts() : null;
+        AbstractChannelHandlerContext ctx;
+        if (nextContexts != null) {
+            ctx = nextContexts[index];
+            if (ctx != null) {
+                return ctx;
+            }
+        }
+        ctx = this;
         do {
             ctx = ctx.next;
         } while (skipContext(ctx, currentExecutor, mask, MASK_ONLY_INBOUND));
+        if (nextContexts != null) {
+            nextContexts[index] = ctx;
+        }
         return ctx;
     }
 
     private AbstractChannelHandlerContext findContextOutbound(int mask) {
-        AbstractChannelHandlerContext ctx = this;
         EventExecutor currentExecutor = executor();
+        int index = nextContextIndex(mask);
+        AbstractChannelHandlerContext[] nextContexts =
+                index >= 0 && currentExecutor.inEventLoop() ? nextContexts() : null;
+        AbstractChannelHandlerContext ctx;
+        if (nextContexts != null) {
+            ctx = nextContexts[index];
+            if (ctx != null) {
+                return ctx;
+            }
+        }
+        ctx = this;
         do {
             ctx = ctx.prev;
         } while (skipContext(ctx, currentExecutor, mask, MASK_ONLY_OUTBOUND));
+        if (nextContexts != null) {
+            nextContexts[index] = ctx;
+        }
         return ctx;
     }
 
+    /**
+     * Returns the index of the cached next context for the event, or {@code -1} if the event is not cached.
+     */
+    private static int nextContextIndex(int mask) {
+        switch (mask) {
+            case MASK_CHANNEL_READ:
+                return 0;
+            case MASK_CHANNEL_READ_COMPLETE:
+                return 1;
+            case MASK_READ:
+                return 2;
+            case MASK_WRITE:
+                return 3;
+            case MASK_FLUSH:
+                return 4;
+            case MASK_WRITE | MASK_FLUSH:
+                return 5;
+            default:
+                return -1;
+        }
+    }
+
+    private AbstractChannelHandlerContext[] nextContexts() {
+        // Read the generation before walking the pipeline, so a modification during the walk empties the cache again.
+        int generation = pipeline.linkGeneration;
+        AbstractChannelHandlerContext[] nextContexts = this.nextContexts;
+        if (nextContexts == null) {
+            this.nextContexts = nextContexts = new AbstractChannelHandlerContext[NEXT_CONTEXTS];
+        } else if (nextContextsGeneration != generation) {
+            Arrays.fill(nextContexts, null);
+        }
+        nextContextsGeneration = generation;
+        return nextContexts;
+    }
+
     private static boolean skipContext(
             AbstractChannelHandlerContext ctx, EventExecutor currentExecutor, int mask, int onlyMask) {
         // Ensure we correctly handle MASK_EXCEPTION_CAUGHT which is not included in the MASK_EXCEPTION_CAUGHT
@@ -19,6 +19,7 @@ import io.netty.buffer.ByteBufAllocator;
 import io.netty.util.AbstractConstant;
 import io.netty.util.ConstantPool;
 import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.UnstableApi;
 
 import java.net.InetAddress;
 import java.net.NetworkInterface;
@@ -133,6 +134,14 @@ public class ChannelOption<T> extends AbstractConstant<ChannelOption<T>> {
     public static final ChannelOption<Boolean> SINGLE_EVENTEXECUTOR_PER_GROUP =
             valueOf("SINGLE_EVENTEXECUTOR_PER_GROUP");
 
+    /**
+     * If {@code true} then byte channels read into a buffer that is shared by all channels of the same
+     * {@link EventLoop} and only copy the bytes that were read into a buffer of the exact size. This saves memory
+     * when there are many connections which mostly idle, at the cost of a copy. The default value is {@code false}.
+     */
+    @UnstableApi
+    public static final ChannelOption<Boolean> SHARED_READ_BUFFER = valueOf("SHARED_READ_BUFFER");
+
     /**
      * Creates a new {@link ChannelOption} with the specified unique {@code name}.
      */
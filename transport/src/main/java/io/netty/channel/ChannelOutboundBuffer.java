@@ -22,9 +22,6 @@ import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.util.ReferenceCountUtil;
 import io.netty.util.concurrent.FastThreadLocal;
 import io.netty.util.internal.InternalThreadLocalMap;
-import io.netty.util.internal.ObjectPool;
-import io.netty.util.internal.ObjectPool.Handle;
-import io.netty.util.internal.ObjectPool.ObjectCreator;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.PromiseNotificationUtil;
 import io.netty.util.internal.SystemPropertyUtil;
@@ -52,16 +49,15 @@ import static java.lang.Math.min;
  * </p>
  */
 public final class ChannelOutboundBuffer {
-    // Assuming a 64-bit JVM:
-    //  - 16 bytes object header
-    //  - 6 reference fields
-    //  - 2 long fields
-    //  - 2 int fields
-    //  - 1 boolean field
-    //  - padding
+    // The size that is added to every message when calculating the pending bytes. This used to be the size of the
+    // linked list entry that held a message on a 64-bit JVM. The slots of a message in the arrays below take less
+    // than that, but the default is kept so the writability of existing applications does not change.
     static final int CHANNEL_OUTBOUND_BUFFER_ENTRY_OVERHEAD =
             SystemPropertyUtil.getInt("io.netty.transport.outboundBufferEntrySizeOverhead", 96);
 
+    // Must be a power of two.
+    private static final int INITIAL_CAPACITY = 8;
+
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(ChannelOutboundBuffer.class);
 
     private static final FastThreadLocal<ByteBuffer[]> NIO_BUFFERS = new FastThreadLocal<ByteBuffer[]>() {
@@ -73,15 +69,31 @@ public final class ChannelOutboundBuffer {
 
     private final Channel channel;
 
-    // Entry(flushedEntry) --> ... Entry(unflushedEntry) --> ... Entry(tailEntry)
+    // The messages are kept in a ring of parallel arrays, which are allocated on the first write and reused for the
+    // life of the channel. Keeping the arrays of the initial capacity costs about 470 bytes per channel that ever
+    // wrote, which is accepted so that a channel which drains its buffer after every flush does not allocate nine
+    // arrays per flush. Arrays that grew beyond the initial capacity are dropped once the buffer is empty, so a burst
+    // of writes does not keep holding memory:
+    //
+    // head --> ... flushed messages ... --> head + flushed --> ... unflushed messages ... --> head + size
     //
-    // The Entry that is the first in the linked-list structure that was flushed
-    private Entry flushedEntry;
-    // The Entry which is the first unflushed in the linked-list structure
-    private Entry unflushedEntry;
-    // The Entry which represents the tail of the buffer
-    private Entry tailEntry;
-    // The number of flushed entries that are not written yet
+    // The slot of the n-th message is (head + n) & (capacity - 1).
+    private Object[] messages;
+    private ChannelPromise[] promises;
+    private long[] progresses;
+    private long[] totals;
+    private int[] pendingSizes;
+    // The number of NIO buffers of a message, or -1 if not known yet.
+    private int[] nioBufferCounts;
+    // The cached NIO buffer of a message that consists of a single one.
+    private ByteBuffer[] nioBufferCache;
+    // The cached NIO buffers of a message that consists of more than one.
+    private ByteBuffer[][] nioBuffersCache;
+    private boolean[] cancelled;
+    private int head;
+    // The number of messages in the buffer
+    private int size;
+    // The number of flushed messages that are not written yet
     private int flushed;
 
     private int nioBufferCount;
@@ -112,21 +124,108 @@ public final class ChannelOutboundBuffer {
      * the message was written.
      */
     public void addMessage(Object msg, int size, ChannelPromise promise) {
-        Entry entry = Entry.newInstance(msg, size, total(msg), promise);
-        if (tailEntry == null) {
-            flushedEntry = null;
-        } else {
-            Entry tail = tailEntry;
-            tail.next = entry;
-        }
-        tailEntry = entry;
-        if (unflushedEntry == null) {
-            unflushedEntry = entry;
-        }
+        if (messages == null) {
+            allocate(INITIAL_CAPACITY);
+        } else if (this.size == messages.length) {
+            grow();
+        }
+        int slot = slot(this.size++);
+        int pendingSize = size + CHANNEL_OUTBOUND_BUFFER_ENTRY_OVERHEAD;
+        messages[slot] = msg;
+        promises[slot] = promise;
+        totals[slot] = total(msg);
+        pendingSizes[slot] = pendingSize;
 
         // increment pending bytes after adding message to the unflushed arrays.
         // See https://github.com/netty/netty/issues/1619
-        incrementPendingOutboundBytes(entry.pendingSize, false);
+        incrementPendingOutboundBytes(pendingSize, false);
+    }
+
+    private void allocate(int capacity) {
+        messages = new Object[capacity];
+        promises = new ChannelPromise[capacity];
+        progresses = new long[capacity];
+        totals = new long[capacity];
+        pendingSizes = new int[capacity];
+        nioBufferCounts = new int[capacity];
+        Arrays.fill(nioBufferCounts, -1);
+        nioBufferCache = new ByteBuffer[capacity];
+        nioBuffersCache = new ByteBuffer[capacity][];
+        cancelled = new boolean[capacity];
+    }
+
+    private void grow() {
+        Object[] oldMessages = messages;
+        ChannelPromise[] oldPromises = promises;
+        long[] oldProgresses = progresses;
+        long[] oldTotals = totals;
+        int[] oldPendingSizes = pendingSizes;
+        int[] oldNioBufferCounts = nioBufferCounts;
+        ByteBuffer[] oldNioBufferCache = nioBufferCache;
+        ByteBuffer[][] oldNioBuffersCache = nioBuffersCache;
+        boolean[] oldCancelled = cancelled;
+
+        int oldCapacity = oldMessages.length;
+        int newCapacity = oldCapacity << 1;
+        if (newCapacity < 0) {
+            throw new IllegalStateException();
+        }
+        allocate(newCapacity);
+
+        // Unwrap the ring so the messages start at index 0 of the new arrays.
+        int first = oldCapacity - head;
+        copy(oldMessages, messages, first);
+        copy(oldPromises, promises, first);
+        copy(oldProgresses, progresses, first);
+        copy(oldTotals, totals, first);
+        copy(oldPendingSizes, pendingSizes, first);
+        copy(oldNioBufferCounts, nioBufferCounts, first);
+        copy(oldNioBufferCache, nioBufferCache, first);
+        copy(oldNioBuffersCache, nioBuffersCache, first);
+        copy(oldCancelled, cancelled, first);
+        head = 0;
+    }
+
+    private void copy(Object src, Object dst, int first) {
+        System.arraycopy(src, head, dst, 0, first);
+        System.arraycopy(src, 0, dst, first, head);
+    }
+
+    private int slot(int n) {
+        return head + n & messages.length - 1;
+    }
+
+    // Clears the slot of a message that was removed, so the message can be GC'ed and the slot reused.
+    private void clearSlot(int slot) {
+        messages[slot] = null;
+        promises[slot] = null;
+        progresses[slot] = 0;
+        totals[slot] = 0;
+        pendingSizes[slot] = 0;
+        nioBufferCounts[slot] = -1;
+        nioBufferCache[slot] = null;
+        nioBuffersCache[slot] = null;
+        cancelled[slot] = false;
+    }
+
+    // Returns the pending size of the message.
+    private int cancel(int slot) {
+        if (!cancelled[slot]) {
+            cancelled[slot] = true;
+            int pSize = pendingSizes[slot];
+
+            // release message and replace with an empty buffer
+            ReferenceCountUtil.safeRelease(messages[slot]);
+            messages[slot] = Unpooled.EMPTY_BUFFER;
+
+            pendingSizes[slot] = 0;
+            totals[slot] = 0;
+            progresses[slot] = 0;
+            nioBufferCache[slot] = null;
+            nioBuffersCache[slot] = null;
+            return pSize;
+        }
+        return 0;
     }
 
     /**
@@ -138,24 +237,13 @@ public final class ChannelOutboundBuffer {
         // where added in the meantime.
         //
         // See https://github.com/netty/netty/issues/2577
-        Entry entry = unflushedEntry;
-        if (entry != null) {
-            if (flushedEntry == null) {
-                // there is no flushedEntry yet, so start with the entry
-                flushedEntry = entry;
+        while (flushed < size) {
+            int slot = slot(flushed++);
+            if (!promises[slot].setUncancellable()) {
+                // Was cancelled so make sure we free up memory and notify about the freed bytes
+                int pending = cancel(slot);
+                decrementPendingOutboundBytes(pending, false, true);
             }
-            do {
-                flushed ++;
-                if (!entry.promise.setUncancellable()) {
-                    // Was cancelled so make sure we free up memory and notify about the freed bytes
-                    int pending = entry.cancel();
-                    decrementPendingOutboundBytes(pending, false, true);
-                }
-                entry = entry.next;
-            } while (entry != null);
-
-            // All flushed so reset unflushedEntry
-            unflushedEntry = null;
         }
     }
 
@@ -214,12 +302,11 @@ public final class ChannelOutboundBuffer {
      * Return the current message to write or {@code null} if nothing was flushed before and so is ready to be written.
      */
     public Object current() {
-        Entry entry = flushedEntry;
-        if (entry == null) {
+        if (flushed == 0) {
             return null;
         }
 
-        return entry.msg;
+        return messages[head];
     }
 
     /**
@@ -227,24 +314,23 @@ public final class ChannelOutboundBuffer {
      * @return {@code 0} if nothing was flushed before for the current message or there is no current message
      */
     public long currentProgress() {
-        Entry entry = flushedEntry;
-        if (entry == null) {
+        if (flushed == 0) {
             return 0;
         }
-        return entry.progress;
+        return progresses[head];
     }
 
     /**
      * Notify the {@link ChannelPromise} of the current message about writing progress.
      */
     public void progress(long amount) {
-        Entry e = flushedEntry;
-        assert e != null;
-        ChannelPromise p = e.promise;
-        long progress = e.progress + amount;
-        e.progress = progress;
+        assert flushed != 0;
+        int slot = head;
+        ChannelPromise p = promises[slot];
+        long progress = progresses[slot] + amount;
+        progresses[slot] = progress;
         if (p instanceof ChannelProgressivePromise) {
-            ((ChannelProgressivePromise) p).tryProgress(progress, e.total);
+            ((ChannelProgressivePromise) p).tryProgress(progress, totals[slot]);
         }
     }
 
@@ -254,28 +340,26 @@ public final class ChannelOutboundBuffer {
      * messages are ready to be handled.
      */
     public boolean remove() {
-        Entry e = flushedEntry;
-        if (e == null) {
+        if (flushed == 0) {
             clearNioBuffers();
             return false;
         }
-        Object msg = e.msg;
-
-        ChannelPromise promise = e.promise;
-        int size = e.pendingSize;
+        int slot = head;
+        Object msg = messages[slot];
+        ChannelPromise promise = promises[slot];
+        int size = pendingSizes[slot];
+        boolean cancelled = this.cancelled[slot];
 
-        removeEntry(e);
+        // Remove the message before notifying the promise, as its listeners may write to the channel.
+        removeHead();
 
-        if (!e.cancelled) {
+        if (!cancelled) {
             // only release message, notify and decrement if it was not canceled before.
             ReferenceCountUtil.safeRelease(msg);
             safeSuccess(promise);
             decrementPendingOutboundBytes(size, false, true);
         }
 
-        // recycle the entry
-        e.recycle();
-
         return true;
     }
 
@@ -289,19 +373,19 @@ public final class ChannelOutboundBuffer {
     }
 
     private boolean remove0(Throwable cause, boolean notifyWritability) {
-        Entry e = flushedEntry;
-        if (e == null) {
+        if (flushed == 0) {
             clearNioBuffers();
             return false;
         }
-        Object msg = e.msg;
-
-        ChannelPromise promise = e.promise;
-        int size = e.pendingSize;
+        int slot = head;
+        Object msg = messages[slot];
+        ChannelPromise promise = promises[slot];
+        int size = pendingSizes[slot];
+        boolean cancelled = this.cancelled[slot];
 
-        removeEntry(e);
+        removeHead();
 
-        if (!e.cancelled) {
+        if (!cancelled) {
             // only release message, fail and decrement if it was not canceled before.
             ReferenceCountUtil.safeRelease(msg);
 
@@ -309,25 +393,32 @@ public final class ChannelOutboundBuffer {
             decrementPendingOutboundBytes(size, false, notifyWritability);
         }
 
-        // recycle the entry
-        e.recycle();
-
         return true;
     }
 
-    private void removeEntry(Entry e) {
-        if (-- flushed == 0) {
-            // processed everything
-            flushedEntry = null;
-            if (e == tailEntry) {
-                tailEntry = null;
-                unflushedEntry = null;
-            }
+    private void removeHead() {
+        flushed--;
+        if (--size == 0 && messages.length > INITIAL_CAPACITY) {
+            head = 0;
+            releaseArrays();
         } else {
-            flushedEntry = e.next;
+            clearSlot(head);
+            head = size == 0 ? 0 : head + 1 & messages.length - 1;
         }
     }
 
+    private void releaseArrays() {
+        messages = null;
+        promises = null;
+        progresses = null;
+        totals = null;
+        pendingSizes = null;
+        nioBufferCounts = null;
+        nioBufferCache = null;
+        nioBuffersCache = null;
+        cancelled = null;
+    }
+
     /**
      * Removes the fully written entries and update the reader index of the partially written entry.
      * This operation assumes all messages in this buffer is {@link ByteBuf}.
@@ -406,10 +497,16 @@ public final class ChannelOutboundBuffer {
         int nioBufferCount = 0;
         final InternalThreadLocalMap threadLocalMap = InternalThreadLocalMap.get();
         ByteBuffer[] nioBuffers = NIO_BUFFERS.get(threadLocalMap);
-        Entry entry = flushedEntry;
-        while (isFlushedEntry(entry) && entry.msg instanceof ByteBuf) {
-            if (!entry.cancelled) {
-                ByteBuf buf = (ByteBuf) entry.msg;
+        final Object[] messages = this.messages;
+        final int flushed = this.flushed;
+        for (int i = 0; i < flushed; i++) {
+            int slot = slot(i);
+            Object msg = messages[slot];
+            if (!(msg instanceof ByteBuf)) {
+                break;
+            }
+            if (!cancelled[slot]) {
+                ByteBuf buf = (ByteBuf) msg;
                 final int readerIndex = buf.readerIndex();
                 final int readableBytes = buf.writerIndex() - readerIndex;
 
@@ -429,10 +526,10 @@ public final class ChannelOutboundBuffer {
                         break;
                     }
                     nioBufferSize += readableBytes;
-                    int count = entry.count;
+                    int count = nioBufferCounts[slot];
                     if (count == -1) {
                         //noinspection ConstantValueVariableUse
-                        entry.count = count = buf.nioBufferCount();
+                        nioBufferCounts[slot] = count = buf.nioBufferCount();
                     }
                     int neededSpace = min(maxCount, nioBufferCount + count);
                     if (neededSpace > nioBuffers.length) {
@@ -440,24 +537,23 @@ public final class ChannelOutboundBuffer {
                         NIO_BUFFERS.set(threadLocalMap, nioBuffers);
                     }
                     if (count == 1) {
-                        ByteBuffer nioBuf = entry.buf;
+                        ByteBuffer nioBuf = nioBufferCache[slot];
                         if (nioBuf == null) {
                             // cache ByteBuffer as it may need to create a new ByteBuffer instance if its a
                             // derived buffer
-                            entry.buf = nioBuf = buf.internalNioBuffer(readerIndex, readableBytes);
+                            nioBufferCache[slot] = nioBuf = buf.internalNioBuffer(readerIndex, readableBytes);
                         }
                         nioBuffers[nioBufferCount++] = nioBuf;
                     } else {
                         // The code exists in an extra method to ensure the method is not too big to inline as this
                         // branch is not very likely to get hit very frequently.
-                        nioBufferCount = nioBuffers(entry, buf, nioBuffers, nioBufferCount, maxCount);
+                        nioBufferCount = nioBuffers(slot, buf, nioBuffers, nioBufferCount, maxCount);
                     }
                     if (nioBufferCount >= maxCount) {
                         break;
                     }
                 }
             }
-            entry = entry.next;
         }
         this.nioBufferCount = nioBufferCount;
         this.nioBufferSize = nioBufferSize;
@@ -465,12 +561,12 @@ public final class ChannelOutboundBuffer {
         return nioBuffers;
     }
 
-    private static int nioBuffers(Entry entry, ByteBuf buf, ByteBuffer[] nioBuffers, int nioBufferCount, int maxCount) {
-        ByteBuffer[] nioBufs = entry.bufs;
+    private int nioBuffers(int slot, ByteBuf buf, ByteBuffer[] nioBuffers, int nioBufferCount, int maxCount) {
+        ByteBuffer[] nioBufs = nioBuffersCache[slot];
         if (nioBufs == null) {
             // cached ByteBuffers as they may be expensive to create in terms
             // of Object allocation
-            entry.bufs = nioBufs = buf.nioBuffers();
+            nioBuffersCache[slot] = nioBufs = buf.nioBuffers();
         }
         for (int i = 0; i < nioBufs.length && nioBufferCount < maxCount; ++i) {
             ByteBuffer nioBuf = nioBufs[i];
@@ -689,17 +785,21 @@ public final class ChannelOutboundBuffer {
 
         // Release all unflushed messages.
         try {
-            Entry e = unflushedEntry;
-            while (e != null) {
+            while (size != 0) {
+                int slot = head;
+                Object msg = messages[slot];
+                ChannelPromise promise = promises[slot];
+                boolean cancelled = this.cancelled[slot];
                 // Just decrease; do not trigger any events via decrementPendingOutboundBytes()
-                int size = e.pendingSize;
-                TOTAL_PENDING_SIZE_UPDATER.addAndGet(this, -size);
-
-                if (!e.cancelled) {
-                    ReferenceCountUtil.safeRelease(e.msg);
-                    safeFail(e.promise, cause);
+                TOTAL_PENDING_SIZE_UPDATER.addAndGet(this, -pendingSizes[slot]);
+
+                // There are no flushed messages, so this only removes the unflushed one.
+                flushed++;
+                removeHead();
+                if (!cancelled) {
+                    ReferenceCountUtil.safeRelease(msg);
+                    safeFail(promise, cause);
                 }
-                e = e.recycleAndGetNext();
             }
         } finally {
             inFail = false;
@@ -770,23 +870,15 @@ public final class ChannelOutboundBuffer {
     public void forEachFlushedMessage(MessageProcessor processor) throws Exception {
         ObjectUtil.checkNotNull(processor, "processor");
 
-        Entry entry = flushedEntry;
-        if (entry == null) {
-            return;
-        }
-
-        do {
-            if (!entry.cancelled) {
-                if (!processor.processMessage(entry.msg)) {
+        for (int i = 0; i < flushed; i++) {
+            // Look up the slot again for every message, the arrays may grow if the processor writes to the channel.
+            int slot = slot(i);
+            if (!cancelled[slot]) {
+                if (!processor.processMessage(messages[slot])) {
                     return;
                 }
             }
-            entry = entry.next;
-        } while (isFlushedEntry(entry));
-    }
-
-    private boolean isFlushedEntry(Entry e) {
-        return e != null && e != unflushedEntry;
+        }
     }
 
     public interface MessageProcessor {
@@ -796,77 +888,4 @@ public final class ChannelOutboundBuffer {
          */
         boolean processMessage(Object msg) throws Exception;
     }
-
-    static final class Entry {
-        private static final ObjectPool<Entry> RECYCLER = ObjectPool.newPool(new ObjectCreator<Entry>() {
-            @Override
-            public Entry newObject(Handle<Entry> handle) {
-                return new Entry(handle);
-            }
-        });
-
-        private final Handle<Entry> handle;
-        Entry next;
-        Object msg;
-        ByteBuffer[] bufs;
-        ByteBuffer buf;
-        ChannelPromise promise;
-        long progress;
-        long total;
-        int pendingSize;
-        int count = -1;
-        boolean cancelled;
-
-        private Entry(Handle<Entry> handle) {
-            this.handle = handle;
-        }
-
-        static Entry newInstance(Object msg, int size, long total, ChannelPromise promise) {
-            Entry entry = RECYCLER.get();
-            entry.msg = msg;
-            entry.pendingSize = size + CHANNEL_OUTBOUND_BUFFER_ENTRY_OVERHEAD;
-            entry.total = total;
-            entry.promise = promise;
-            return entry;
-        }
-
-        int cancel() {
-            if (!cancelled) {
-                cancelled = true;
-                int pSize = pendingSize;
-
-                // release message and replace with an empty buffer
-                ReferenceCountUtil.safeRelease(msg);
-                msg = Unpooled.EMPTY_BUFFER;
-
-                pendingSize = 0;
-                total = 0;
-                progress = 0;
-                bufs = null;
-                buf = null;
-                return pSize;
-            }
-            return 0;
-        }
-
-        void recycle() {
-            next = null;
-            bufs = null;
-            buf = null;
-            msg = null;
-            promise = null;
-            progress = 0;
-            total = 0;
-            pendingSize = 0;
-            count = -1;
-            cancelled = false;
-            handle.recycle(this);
-        }
-
-        Entry recycleAndGetNext() {
-            Entry next = this.next;
-            recycle();
-            return next;
-        }
-    }
 }
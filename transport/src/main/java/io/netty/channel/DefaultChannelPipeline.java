@@ -37,6 +37,7 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.WeakHashMap;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
@@ -61,6 +62,8 @@ public class DefaultChannelPipeline implements ChannelPipeline {
     private static final AtomicReferenceFieldUpdater<DefaultChannelPipeline, MessageSizeEstimator.Handle> ESTIMATOR =
             AtomicReferenceFieldUpdater.newUpdater(
                     DefaultChannelPipeline.class, MessageSizeEstimator.Handle.class, "estimatorHandle");
+    private static final AtomicIntegerFieldUpdater<DefaultChannelPipeline> LINK_GENERATION_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(DefaultChannelPipeline.class, "linkGeneration");
     final AbstractChannelHandlerContext head;
     final AbstractChannelHandlerContext tail;
 
@@ -73,6 +76,13 @@ public class DefaultChannelPipeline implements ChannelPipeline {
     private volatile MessageSizeEstimator.Handle estimatorHandle;
     private boolean firstRegistration = true;
 
+    /**
+     * Changes every time the handlers are linked differently or the {@link EventLoop} of the {@link Channel} changes,
+     * which invalidates the contexts that {@link AbstractChannelHandlerContext} cached as the next ones interested in
+     * an event.
+     */
+    volatile int linkGeneration;
+
     /**
      * This is the head of a linked list that is processed by {@link #callHandlerAddedForAllHandlers()} and so process
      * all the pending {@link #callHandlerAdded0(AbstractChannelHandlerContext)}.
@@ -188,6 +198,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         newCtx.next = nextCtx;
         head.next = newCtx;
         nextCtx.prev = newCtx;
+        invalidateNextContexts();
     }
 
     @Override
@@ -230,6 +241,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         newCtx.next = tail;
         prev.next = newCtx;
         tail.prev = newCtx;
+        invalidateNextContexts();
     }
 
     @Override
@@ -270,11 +282,12 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         return this;
     }
 
-    private static void addBefore0(AbstractChannelHandlerContext ctx, AbstractChannelHandlerContext newCtx) {
+    private void addBefore0(AbstractChannelHandlerContext ctx, AbstractChannelHandlerContext newCtx) {
         newCtx.prev = ctx.prev;
         newCtx.next = ctx;
         ctx.prev.next = newCtx;
         ctx.prev = newCtx;
+        invalidateNextContexts();
     }
 
     private String filterName(String name, ChannelHandler handler) {
@@ -323,11 +336,12 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         return this;
     }
 
-    private static void addAfter0(AbstractChannelHandlerContext ctx, AbstractChannelHandlerContext newCtx) {
+    private void addAfter0(AbstractChannelHandlerContext ctx, AbstractChannelHandlerContext newCtx) {
         newCtx.prev = ctx;
         newCtx.next = ctx.next;
         ctx.next.prev = newCtx;
         ctx.next = newCtx;
+        invalidateNextContexts();
     }
 
     public final ChannelPipeline addFirst(ChannelHandler handler) {
@@ -486,6 +500,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         AbstractChannelHandlerContext next = ctx.next;
         prev.next = next;
         next.prev = prev;
+        invalidateNextContexts();
     }
 
     @Override
@@ -574,7 +589,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         return ctx.handler();
     }
 
-    private static void replace0(AbstractChannelHandlerContext oldCtx, AbstractChannelHandlerContext newCtx) {
+    private void replace0(AbstractChannelHandlerContext oldCtx, AbstractChannelHandlerContext newCtx) {
         AbstractChannelHandlerContext prev = oldCtx.prev;
         AbstractChannelHandlerContext next = oldCtx.next;
         newCtx.prev = prev;
@@ -590,6 +605,15 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         // update the reference to the replacement so forward of buffered content will work correctly
         oldCtx.prev = newCtx;
         oldCtx.next = newCtx;
+        invalidateNextContexts();
+    }
+
+    /**
+     * Must be called after the handlers were linked differently or the {@link EventLoop} of the {@link Channel}
+     * changed.
+     */
+    final void invalidateNextContexts() {
+        LINK_GENERATION_UPDATER.incrementAndGet(this);
     }
 
     private static void checkMultiplicity(ChannelHandler handler) {
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.UnstableApi;
+
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * The {@link RecvByteBufAllocator} that sizes the buffers from an exponentially weighted moving average of the number
+ * of bytes that were read per read operation.
+ * <p>
+ * Unlike {@link AdaptiveRecvByteBufAllocator}, which moves along a fixed table of sizes, the prediction follows the
+ * sizes of the messages a connection actually receives, plus some headroom. So a connection that receives small
+ * messages only holds small buffers while a connection that receives bulk data quickly ramps up, as the prediction
+ * doubles every time a read fills the whole buffer. If the transport knows how many bytes are ready to be read, see
+ * {@link BytesAvailableHandle}, buffers are sized to exactly that.
+ */
+@UnstableApi
+public class EwmaRecvByteBufAllocator extends DefaultMaxMessagesRecvByteBufAllocator {
+
+    // Every read moves the average 1/2^WEIGHT_SHIFT of the way to the number of bytes that were read.
+    private static final int WEIGHT_SHIFT = 2;
+    // Predict 1/2^HEADROOM_SHIFT more than the average so that slightly bigger messages are still read at once.
+    private static final int HEADROOM_SHIFT = 2;
+
+    private final class HandleImpl extends MaxMessageHandle implements BytesAvailableHandle {
+        private int average;
+        private int nextReceiveBufferSize;
+        private int bytesAvailable;
+        private boolean filled;
+
+        HandleImpl() {
+            average = initial;
+            nextReceiveBufferSize = initial;
+        }
+
+        @Override
+        public void reset(ChannelConfig config) {
+            super.reset(config);
+            bytesAvailable = 0;
+            filled = false;
+        }
+
+        @Override
+        public void bytesAvailable(int bytes) {
+            bytesAvailable = max(0, bytes);
+        }
+
+        @Override
+        public int guess() {
+            int available = bytesAvailable;
+            return available > 0 ? max(minimum, min(maximum, available)) : nextReceiveBufferSize;
+        }
+
+        @Override
+        public void lastBytesRead(int bytes) {
+            if (bytes > 0) {
+                int available = bytesAvailable;
+                // A buffer that was sized to the available bytes is expected to be filled, so it does not show
+                // that there is more data than predicted.
+                boolean full = bytes == attemptedBytesRead() && (available == 0 || bytes < available);
+                bytesAvailable = max(0, available - bytes);
+                record(bytes, full);
+            }
+            super.lastBytesRead(bytes);
+        }
+
+        private void record(int bytes, boolean full) {
+            if (full) {
+                average = (int) min(maximum, (long) max(average, bytes) << 1);
+                filled = true;
+            } else if (!filled) {
+                // If a read of this read loop filled the buffer this read only returns what is left of a bigger
+                // burst, which does not tell anything about the size of the messages.
+                average += (bytes - average) >> WEIGHT_SHIFT;
+            }
+            nextReceiveBufferSize = max(minimum, (int) min(maximum, average + (long) (average >>> HEADROOM_SHIFT)));
+        }
+    }
+
+    private final int minimum;
+    private final int initial;
+    private final int maximum;
+
+    /**
+     * Creates a new predictor with the default parameters.  With the default parameters, the expected buffer size
+     * starts from {@code 2048}, does not go down below {@code 64}, and does not go up above {@code 65536}.
+     */
+    public EwmaRecvByteBufAllocator() {
+        this(AdaptiveRecvByteBufAllocator.DEFAULT_MINIMUM, AdaptiveRecvByteBufAllocator.DEFAULT_INITIAL,
+                AdaptiveRecvByteBufAllocator.DEFAULT_MAXIMUM);
+    }
+
+    /**
+     * Creates a new predictor with the specified parameters.
+     *
+     * @param minimum  the inclusive lower bound of the expected buffer size
+     * @param initial  the initial buffer size when no feed back was received
+     * @param maximum  the inclusive upper bound of the expected buffer size
+     */
+    public EwmaRecvByteBufAllocator(int minimum, int initial, int maximum) {
+        checkPositive(minimum, "minimum");
+        if (initial < minimum) {
+            throw new IllegalArgumentException("initial: " + initial);
+        }
+        if (maximum < initial) {
+            throw new IllegalArgumentException("maximum: " + maximum);
+        }
+        this.minimum = minimum;
+        this.initial = initial;
+        this.maximum = maximum;
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public Handle newHandle() {
+        return new HandleImpl();
+    }
+
+    @Override
+    public EwmaRecvByteBufAllocator respectMaybeMoreData(boolean respectMaybeMoreData) {
+        super.respectMaybeMoreData(respectMaybeMoreData);
+        return this;
+    }
+}
@@ -117,6 +117,19 @@ public interface RecvByteBufAllocator {
         boolean continueReading(UncheckedBooleanSupplier maybeMoreDataSupplier);
     }
 
+    /**
+     * An {@link ExtendedHandle} which can size its buffers from the number of bytes that are ready to be read, if the
+     * transport is able to tell.
+     */
+    @UnstableApi
+    interface BytesAvailableHandle extends ExtendedHandle {
+        /**
+         * Called before a read with the number of bytes that can be read from the socket without blocking. The value
+         * is only a hint, as more data may arrive before the read.
+         */
+        void bytesAvailable(int bytes);
+    }
+
     /**
      * A {@link Handle} which delegates all call to some other {@link Handle}.
      */
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.internal;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelOption;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+/**
+ * A direct buffer per {@link io.netty.channel.EventLoop} that byte channels read into if
+ * {@link ChannelOption#SHARED_READ_BUFFER} is set. Only the bytes that were actually read are copied into a buffer
+ * of the exact size which is then passed through the pipeline, so connections that mostly idle or only receive small
+ * messages do not hold on to buffers that were sized for the biggest possible read.
+ */
+public final class SharedReadBuffer {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(SharedReadBuffer.class);
+
+    private static final int SIZE = Math.max(1024,
+            SystemPropertyUtil.getInt("io.netty.channel.sharedReadBufferSize", 65536));
+
+    private static final FastThreadLocal<ByteBuf> BUFFER = new FastThreadLocal<ByteBuf>() {
+        @Override
+        protected ByteBuf initialValue() {
+            return Unpooled.directBuffer(SIZE, SIZE);
+        }
+
+        @Override
+        protected void onRemoval(ByteBuf value) {
+            value.release();
+        }
+    };
+
+    static {
+        if (logger.isDebugEnabled()) {
+            logger.debug("-Dio.netty.channel.sharedReadBufferSize: {}", SIZE);
+        }
+    }
+
+    private SharedReadBuffer() {
+    }
+
+    /**
+     * Returns the empty buffer of the current thread to read into, which has at most {@code maxBytes} writable bytes.
+     * The buffer must neither be released nor be passed to the pipeline, use {@link #copy(ByteBufAllocator, ByteBuf)}
+     * for that.
+     */
+    public static ByteBuf buffer(int maxBytes) {
+        ByteBuf buffer = BUFFER.get();
+        // Start at the end so only maxBytes are writable, reads are bounded by the capacity of the buffer.
+        int index = buffer.capacity() - Math.min(Math.max(maxBytes, 0), buffer.capacity());
+        return buffer.setIndex(index, index);
+    }
+
+    /**
+     * Returns a new buffer of {@code alloc} that contains the readable bytes of {@code buffer} and is sized to them.
+     */
+    public static ByteBuf copy(ByteBufAllocator alloc, ByteBuf buffer) {
+        int readable = buffer.readableBytes();
+        return alloc.ioBuffer(readable).writeBytes(buffer);
+    }
+}
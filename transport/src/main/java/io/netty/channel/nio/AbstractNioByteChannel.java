@@ -17,15 +17,18 @@ package io.netty.channel.nio;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelConfig;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelMetadata;
 import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.channel.ChannelPipeline;
+import io.netty.channel.DefaultChannelConfig;
 import io.netty.channel.FileRegion;
 import io.netty.channel.RecvByteBufAllocator;
 import io.netty.channel.internal.ChannelUtils;
+import io.netty.channel.internal.SharedReadBuffer;
 import io.netty.channel.socket.ChannelInputShutdownEvent;
 import io.netty.channel.socket.ChannelInputShutdownReadComplete;
 import io.netty.channel.socket.SocketChannelConfig;
@@ -94,6 +97,10 @@ public abstract class AbstractNioByteChannel extends AbstractNioChannel {
                 ((SocketChannelConfig) config).isAllowHalfClosure();
     }
 
+    private static boolean isSharedReadBuffer(ChannelConfig config) {
+        return config instanceof DefaultChannelConfig && ((DefaultChannelConfig) config).isSharedReadBuffer();
+    }
+
     protected class NioByteUnsafe extends AbstractNioUnsafe {
 
         private void closeOnRead(ChannelPipeline pipeline) {
@@ -131,6 +138,16 @@ public abstract class AbstractNioByteChannel extends AbstractNioChannel {
             }
         }
 
+        private ByteBuf readSharedReadBuffer(ByteBufAllocator allocator, RecvByteBufAllocator.Handle allocHandle)
+                throws Exception {
+            // Bound the read by the guess, just like a buffer of the allocator would be.
+            ByteBuf buffer = SharedReadBuffer.buffer(allocHandle.guess());
+            allocHandle.lastBytesRead(doReadBytes(buffer));
+            // The shared buffer is reused by the next read of any channel of this EventLoop, so only what was read is
+            // kept. Nothing was read otherwise, return a buffer that can be released as usual.
+            return allocHandle.lastBytesRead() > 0 ? SharedReadBuffer.copy(allocator, buffer) : Unpooled.EMPTY_BUFFER;
+        }
+
         @Override
         public final void read() {
             final ChannelConfig config = config();
@@ -141,14 +158,19 @@ public abstract class AbstractNioByteChannel extends AbstractNioChannel {
             final ChannelPipeline pipeline = pipeline();
             final ByteBufAllocator allocator = config.getAllocator();
             final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            final boolean sharedReadBuffer = isSharedReadBuffer(config);
             allocHandle.reset(config);
 
             ByteBuf byteBuf = null;
             boolean close = false;
             try {
                 do {
-                    byteBuf = allocHandle.allocate(allocator);
-                    allocHandle.lastBytesRead(doReadBytes(byteBuf));
+                    if (sharedReadBuffer) {
+                        byteBuf = readSharedReadBuffer(allocator, allocHandle);
+                    } else {
+                        byteBuf = allocHandle.allocate(allocator);
+                        allocHandle.lastBytesRead(doReadBytes(byteBuf));
+                    }
                     if (allocHandle.lastBytesRead() <= 0) {
                         // nothing was read. release the buffer.
                         byteBuf.release();
@@ -23,6 +23,7 @@ import io.netty.channel.EventLoopTaskQueueFactory;
 import io.netty.channel.SelectStrategy;
 import io.netty.channel.SingleThreadEventLoop;
 import io.netty.util.IntSupplier;
+import io.netty.util.concurrent.EventExecutorMetrics;
 import io.netty.util.concurrent.RejectedExecutionHandler;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.PlatformDependent;
@@ -436,6 +437,8 @@ public final class NioEventLoop extends SingleThreadEventLoop {
         int selectCnt = 0;
         for (;;) {
             try {
+                final EventExecutorMetrics metrics = metrics();
+                final long waitStartTime = metrics != null ? System.nanoTime() : 0;
                 int strategy;
                 try {
                     strategy = selectStrategy.calculateStrategy(selectNowSupplier, hasTasks());
@@ -477,6 +480,10 @@ public final class NioEventLoop extends SingleThreadEventLoop {
                 cancelledKeys = 0;
                 needsToSelectAgain = false;
                 final int ioRatio = this.ioRatio;
+                final long ioStartTime = metrics != null || ioRatio != 100 && strategy > 0 ? System.nanoTime() : 0;
+                if (metrics != null) {
+                    metrics.recordWait(ioStartTime - waitStartTime);
+                }
                 boolean ranTasks;
                 if (ioRatio == 100) {
                     try {
@@ -484,16 +491,21 @@ public final class NioEventLoop extends SingleThreadEventLoop {
                             processSelectedKeys();
                         }
                     } finally {
+                        if (metrics != null && strategy > 0) {
+                            metrics.recordIo(System.nanoTime() - ioStartTime);
+                        }
                         // Ensure we always run tasks.
                         ranTasks = runAllTasks();
                     }
                 } else if (strategy > 0) {
-                    final long ioStartTime = System.nanoTime();
                     try {
                         processSelectedKeys();
                     } finally {
-                        // Ensure we always run tasks.
                         final long ioTime = System.nanoTime() - ioStartTime;
+                        if (metrics != null) {
+                            metrics.recordIo(ioTime);
+                        }
+                        // Ensure we always run tasks.
                         ranTasks = runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
                     }
                 } else {
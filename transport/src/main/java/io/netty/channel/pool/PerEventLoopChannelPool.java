@@ -0,0 +1,728 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.LatencyHistogram;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * {@link ChannelPool} implementation that keeps the idle {@link Channel}s in a sub-pool per {@link EventLoop} of the
+ * {@link Bootstrap} and enforces a maximum number of open connections.
+ * <p>
+ * An acquire is served by the sub-pool of the {@link EventLoop} that calls {@link #acquire()}, so the returned
+ * {@link Channel} is usually registered on the {@link EventLoop} of the caller. If that sub-pool has no idle
+ * {@link Channel} a new connection is made from the same {@link EventLoop}. Only once the maximum number of
+ * connections is reached an idle {@link Channel} is taken from another sub-pool, and if there is none the acquire
+ * waits on the {@link EventLoop} of the caller until a {@link Channel} is released to any sub-pool. Unlike
+ * {@link FixedChannelPool} no operation has to go through a single {@link EventExecutor}.
+ * <p>
+ * The maximum number of connections, which includes the idle ones, is enforced with a semaphore that is striped per
+ * {@link EventLoop}. The time it took to acquire a {@link Channel} is recorded per {@link EventLoop}, see
+ * {@link #acquireLatency(EventLoop)}.
+ */
+@UnstableApi
+public class PerEventLoopChannelPool implements ChannelPool {
+    private static final AttributeKey<PerEventLoopChannelPool> POOL_KEY =
+            AttributeKey.newInstance("io.netty.channel.pool.PerEventLoopChannelPool");
+
+    private final Bootstrap bootstrap;
+    private final ChannelPoolHandler handler;
+    private final ChannelHealthChecker healthCheck;
+    private final long acquireTimeoutNanos;
+    private final int maxConnections;
+    private final int maxPendingAcquires;
+    private final EventLoopGroup group;
+    private final SubPool[] subPools;
+    private final Map<EventExecutor, SubPool> subPoolsByLoop = new IdentityHashMap<EventExecutor, SubPool>();
+    private final StripedSemaphore permits;
+    private final AtomicInteger pendingAcquireCount = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * Creates a new instance using the {@link ChannelHealthChecker#ACTIVE}.
+     *
+     * @param bootstrap         the {@link Bootstrap} that is used for connections
+     * @param handler           the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     * @param maxConnections    the number of maximal open connections, once this is reached new tries to acquire
+     *                          a {@link Channel} will be delayed until a connection is returned to the pool again.
+     */
+    public PerEventLoopChannelPool(Bootstrap bootstrap, ChannelPoolHandler handler, int maxConnections) {
+        this(bootstrap, handler, ChannelHealthChecker.ACTIVE, maxConnections, Integer.MAX_VALUE, -1);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap             the {@link Bootstrap} that is used for connections
+     * @param handler               the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     * @param healthCheck           the {@link ChannelHealthChecker} that will be used to check if a {@link Channel} is
+     *                              still healthy when obtained from or released to the {@link ChannelPool}
+     * @param maxConnections        the number of maximal open connections, once this is reached new tries to
+     *                              acquire a {@link Channel} will be delayed until a connection is returned to the
+     *                              pool again.
+     * @param maxPendingAcquires    the maximum number of pending acquires. Once this is exceed acquire tries will
+     *                              be failed.
+     * @param acquireTimeoutMillis  the time (in milliseconds) after which a pending acquire is failed with a
+     *                              {@link TimeoutException}, or {@code -1} to wait forever.
+     */
+    public PerEventLoopChannelPool(Bootstrap bootstrap, final ChannelPoolHandler handler,
+                                   ChannelHealthChecker healthCheck, int maxConnections, int maxPendingAcquires,
+                                   long acquireTimeoutMillis) {
+        this.handler = checkNotNull(handler, "handler");
+        this.healthCheck = checkNotNull(healthCheck, "healthCheck");
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("maxConnections: " + maxConnections + " (expected: >= 1)");
+        }
+        if (maxPendingAcquires < 1) {
+            throw new IllegalArgumentException("maxPendingAcquires: " + maxPendingAcquires + " (expected: >= 1)");
+        }
+        if (acquireTimeoutMillis < 0 && acquireTimeoutMillis != -1) {
+            throw new IllegalArgumentException(
+                    "acquireTimeoutMillis: " + acquireTimeoutMillis + " (expected: >= 0 or -1)");
+        }
+        this.maxConnections = maxConnections;
+        this.maxPendingAcquires = maxPendingAcquires;
+        acquireTimeoutNanos = acquireTimeoutMillis == -1 ? -1 : TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMillis);
+
+        // Clone the original Bootstrap as we want to set our own handler
+        this.bootstrap = checkNotNull(bootstrap, "bootstrap").clone();
+        this.bootstrap.handler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) throws Exception {
+                assert ch.eventLoop().inEventLoop();
+                handler.channelCreated(ch);
+            }
+        });
+        group = checkNotNull(this.bootstrap.config().group(), "bootstrap.config().group()");
+
+        List<SubPool> subPools = new ArrayList<SubPool>();
+        for (EventExecutor executor : group) {
+            SubPool subPool = new SubPool((EventLoop) executor, subPools.size());
+            subPools.add(subPool);
+            subPoolsByLoop.put(executor, subPool);
+        }
+        this.subPools = subPools.toArray(new SubPool[0]);
+        permits = new StripedSemaphore(this.subPools.length, maxConnections);
+    }
+
+    /**
+     * Returns the number of open connections, both acquired and idle ones.
+     */
+    public int openChannelCount() {
+        return maxConnections - permits.availablePermits();
+    }
+
+    /**
+     * Returns the number of idle connections in all sub-pools.
+     */
+    public int idleChannelCount() {
+        int count = 0;
+        for (SubPool subPool : subPools) {
+            count += subPool.idle.size();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of acquires that wait for a {@link Channel}.
+     */
+    public int pendingAcquireCount() {
+        return pendingAcquireCount.get();
+    }
+
+    /**
+     * Returns the time between calling {@link #acquire()} and the {@link Channel} being handed out, for all the
+     * {@link Channel}s that are registered on the given {@link EventLoop}.
+     */
+    public LatencyHistogram acquireLatency(EventLoop loop) {
+        SubPool subPool = subPoolsByLoop.get(checkNotNull(loop, "loop"));
+        if (subPool == null) {
+            throw new IllegalArgumentException("loop: " + loop + " (expected: an EventLoop of the Bootstrap)");
+        }
+        return subPool.acquireLatency;
+    }
+
+    @Override
+    public final Future<Channel> acquire() {
+        SubPool subPool = currentSubPool();
+        return acquire(subPool, subPool.loop.<Channel>newPromise());
+    }
+
+    @Override
+    public Future<Channel> acquire(Promise<Channel> promise) {
+        return acquire(currentSubPool(), checkNotNull(promise, "promise"));
+    }
+
+    private Future<Channel> acquire(final SubPool subPool, Promise<Channel> promise) {
+        try {
+            subPool.acquire(new AcquireTask(subPool, promise));
+        } catch (Throwable cause) {
+            promise.tryFailure(cause);
+        }
+        return promise;
+    }
+
+    private SubPool currentSubPool() {
+        for (SubPool subPool : subPools) {
+            if (subPool.loop.inEventLoop()) {
+                return subPool;
+            }
+        }
+        return subPoolsByLoop.get(group.next());
+    }
+
+    /**
+     * Bootstrap a new {@link Channel}. The default implementation uses {@link Bootstrap#connect()}, sub-classes may
+     * override this.
+     * <p>
+     * The {@link Bootstrap} that is passed in here is cloned via {@link Bootstrap#clone(EventLoopGroup)} with the
+     * {@link EventLoop} the {@link Channel} must be registered on, so it is safe to modify.
+     */
+    protected ChannelFuture connectChannel(Bootstrap bs) {
+        return bs.connect();
+    }
+
+    @Override
+    public final Future<Void> release(Channel channel) {
+        return release(channel, channel.eventLoop().<Void>newPromise());
+    }
+
+    @Override
+    public Future<Void> release(final Channel channel, final Promise<Void> promise) {
+        checkNotNull(channel, "channel");
+        checkNotNull(promise, "promise");
+        try {
+            final SubPool subPool = subPoolsByLoop.get(channel.eventLoop());
+            if (subPool == null) {
+                closeAndFail(channel, new IllegalArgumentException(
+                        "Channel " + channel + " was not acquired from this ChannelPool"), promise);
+            } else if (subPool.loop.inEventLoop()) {
+                subPool.release0(channel, promise);
+            } else {
+                subPool.loop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        subPool.release0(channel, promise);
+                    }
+                });
+            }
+        } catch (Throwable cause) {
+            closeAndFail(channel, cause, promise);
+        }
+        return promise;
+    }
+
+    private static void closeChannel(Channel channel) {
+        channel.attr(POOL_KEY).getAndSet(null);
+        channel.close();
+    }
+
+    private static void closeAndFail(Channel channel, Throwable cause, Promise<?> promise) {
+        closeChannel(channel);
+        promise.tryFailure(cause);
+    }
+
+    /**
+     * Runs the pending acquires of the first sub-pool, starting with the given one, that has any. Called once a
+     * {@link Channel} or a permit for a new connection became available.
+     */
+    private void signalPendingAcquires(int from) {
+        signalPendingAcquires(from, subPools.length);
+    }
+
+    /**
+     * Like {@link #signalPendingAcquires(int)} but only looks at the given number of sub-pools. If the signalled
+     * sub-pool does not serve any acquire, for example because they timed out in the meantime, it passes the signal on
+     * to the remaining sub-pools so their acquires are not left waiting.
+     */
+    private void signalPendingAcquires(int from, int count) {
+        for (int i = 0; i < count; i++) {
+            SubPool subPool = subPools[(from + i) % subPools.length];
+            if (subPool.pendingCount > 0) {
+                subPool.runPendingLater(count - i - 1);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            closeAsync().await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Closes the pool in an async manner.
+     *
+     * @return Future which represents completion of the close task
+     */
+    public Future<Void> closeAsync() {
+        closed = true;
+        // Execute close asynchronously as it waits for all the EventLoops.
+        return GlobalEventExecutor.INSTANCE.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                for (SubPool subPool : subPools) {
+                    subPool.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    private final class SubPool {
+        final EventLoop loop;
+        final int index;
+        // Polled from the last end by the own EventLoop and from the first end by the other sub-pools, so they take
+        // the least recently used Channel.
+        final Deque<Channel> idle = PlatformDependent.newConcurrentDeque();
+        final LatencyHistogram acquireLatency = new LatencyHistogram();
+        // Only accessed by the EventLoop.
+        private final ArrayDeque<AcquireTask> pending = new ArrayDeque<AcquireTask>();
+        // Written by the EventLoop only, read by the other sub-pools to find one with pending acquires.
+        volatile int pendingCount;
+
+        SubPool(EventLoop loop, int index) {
+            this.loop = loop;
+            this.index = index;
+        }
+
+        void acquire(final AcquireTask task) {
+            if (loop.inEventLoop()) {
+                acquire0(task);
+            } else {
+                loop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        acquire0(task);
+                    }
+                });
+            }
+        }
+
+        private void acquire0(AcquireTask task) {
+            assert loop.inEventLoop();
+
+            if (closed) {
+                task.promise.tryFailure(new IllegalStateException("PerEventLoopChannelPool was closed"));
+                return;
+            }
+            if (pending.isEmpty() && tryAcquire(task)) {
+                return;
+            }
+            if (pendingAcquireCount.incrementAndGet() > maxPendingAcquires) {
+                pendingAcquireCount.decrementAndGet();
+                task.promise.tryFailure(new IllegalStateException("Too many outstanding acquire operations"));
+                return;
+            }
+            task.queued = true;
+            pending.add(task);
+            pendingCount = pending.size();
+            if (acquireTimeoutNanos != -1) {
+                long timeoutNanos = Math.max(0, acquireTimeoutNanos - (System.nanoTime() - task.startNanos));
+                task.timeoutFuture = loop.schedule(task, timeoutNanos, TimeUnit.NANOSECONDS);
+            }
+            // A Channel or a permit may have become available right before the acquire was added, in which case it
+            // was not signalled, so try again.
+            runPending();
+        }
+
+        /**
+         * Tries to serve the acquire with an idle {@link Channel} of this sub-pool, a new connection or an idle
+         * {@link Channel} of another sub-pool, in this order. Returns {@code false} if none is available.
+         */
+        private boolean tryAcquire(AcquireTask task) {
+            assert loop.inEventLoop();
+
+            Channel ch = idle.pollLast();
+            if (ch != null) {
+                task.served();
+                checkHealth(ch, task);
+                return true;
+            }
+            if (permits.tryAcquire(index)) {
+                task.served();
+                connect(task);
+                return true;
+            }
+            for (int i = 1; i < subPools.length; i++) {
+                SubPool other = subPools[(index + i) % subPools.length];
+                ch = other.idle.pollFirst();
+                if (ch != null) {
+                    task.served();
+                    other.checkHealthLater(ch, task);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void runPendingLater(final int remaining) {
+            if (loop.inEventLoop()) {
+                runPending(remaining);
+            } else {
+                try {
+                    loop.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            runPending(remaining);
+                        }
+                    });
+                } catch (RejectedExecutionException ignore) {
+                    // The EventLoop is shutting down, so are its pending acquires. Let the other sub-pools use the
+                    // Channel or permit.
+                    signalPendingAcquires(index + 1, remaining);
+                }
+            }
+        }
+
+        private void runPending(int remaining) {
+            if (!runPending()) {
+                signalPendingAcquires(index + 1, remaining);
+            }
+        }
+
+        /**
+         * Runs the pending acquires until one can not be served. Returns {@code true} if at least one was served.
+         */
+        private boolean runPending() {
+            assert loop.inEventLoop();
+
+            boolean served = false;
+            for (;;) {
+                // Remove the task before trying as it may complete right away and the listener of the promise may
+                // acquire again.
+                // The task stays counted as pending until tryAcquire(...) actually serves it.
+                AcquireTask task = pending.poll();
+                if (task == null) {
+                    break;
+                }
+                if (!tryAcquire(task)) {
+                    pending.addFirst(task);
+                    break;
+                }
+                served = true;
+                pendingCount = pending.size();
+            }
+            pendingCount = pending.size();
+            return served;
+        }
+
+        private void connect(final AcquireTask task) {
+            assert loop.inEventLoop();
+
+            ChannelFuture f;
+            try {
+                f = connectChannel(bootstrap.clone(loop));
+            } catch (Throwable cause) {
+                releasePermit();
+                task.promise.tryFailure(cause);
+                return;
+            }
+            if (f.isDone()) {
+                notifyConnect(f, task);
+            } else {
+                f.addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) {
+                        notifyConnect(future, task);
+                    }
+                });
+            }
+        }
+
+        private void notifyConnect(ChannelFuture future, AcquireTask task) {
+            if (future.isSuccess()) {
+                acquired(future.channel(), task);
+            } else {
+                // May not be called by the EventLoop if the Channel could not be registered.
+                releasePermit();
+                task.promise.tryFailure(future.cause());
+            }
+        }
+
+        void checkHealthLater(final Channel ch, final AcquireTask task) {
+            if (loop.inEventLoop()) {
+                checkHealth(ch, task);
+                return;
+            }
+            try {
+                loop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        checkHealth(ch, task);
+                    }
+                });
+            } catch (Throwable cause) {
+                closeChannel(ch);
+                releasePermit();
+                task.promise.tryFailure(cause);
+            }
+        }
+
+        private void checkHealth(final Channel ch, final AcquireTask task) {
+            assert loop.inEventLoop();
+
+            try {
+                Future<Boolean> f = healthCheck.isHealthy(ch);
+                if (f.isDone()) {
+                    notifyHealthCheck(f, ch, task);
+                } else {
+                    f.addListener(new FutureListener<Boolean>() {
+                        @Override
+                        public void operationComplete(Future<Boolean> future) {
+                            notifyHealthCheck(future, ch, task);
+                        }
+                    });
+                }
+            } catch (Throwable cause) {
+                closeChannel(ch);
+                releasePermit();
+                task.promise.tryFailure(cause);
+            }
+        }
+
+        private void notifyHealthCheck(Future<Boolean> future, Channel ch, AcquireTask task) {
+            assert loop.inEventLoop();
+
+            if (future.isSuccess() && future.getNow()) {
+                acquired(ch, task);
+            } else {
+                closeChannel(ch);
+                releasePermit();
+                task.subPool.retry(task);
+            }
+        }
+
+        private void retry(final AcquireTask task) {
+            try {
+                acquire(task);
+            } catch (Throwable cause) {
+                task.promise.tryFailure(cause);
+            }
+        }
+
+        private void acquired(Channel ch, AcquireTask task) {
+            assert loop.inEventLoop();
+
+            try {
+                ch.attr(POOL_KEY).set(PerEventLoopChannelPool.this);
+                handler.channelAcquired(ch);
+            } catch (Throwable cause) {
+                closeChannel(ch);
+                releasePermit();
+                task.promise.tryFailure(cause);
+                return;
+            }
+            if (task.promise.trySuccess(ch)) {
+                acquireLatency.record(System.nanoTime() - task.startNanos);
+            } else {
+                // Promise was completed in the meantime (like cancelled), just release the channel again
+                release(ch);
+            }
+        }
+
+        void release0(final Channel ch, final Promise<Void> promise) {
+            assert loop.inEventLoop();
+
+            // Remove the POOL_KEY attribute from the Channel and check if it was acquired from this pool, if not fail.
+            if (ch.attr(POOL_KEY).getAndSet(null) != PerEventLoopChannelPool.this) {
+                closeAndFail(ch,
+                             // Better include a stacktrace here as this is an user error.
+                             new IllegalArgumentException(
+                                     "Channel " + ch + " was not acquired from this ChannelPool"),
+                             promise);
+                return;
+            }
+            try {
+                Future<Boolean> f = healthCheck.isHealthy(ch);
+                if (f.isDone()) {
+                    notifyRelease(f, ch, promise);
+                } else {
+                    f.addListener(new FutureListener<Boolean>() {
+                        @Override
+                        public void operationComplete(Future<Boolean> future) {
+                            notifyRelease(future, ch, promise);
+                        }
+                    });
+                }
+            } catch (Throwable cause) {
+                closeChannel(ch);
+                releasePermit();
+                promise.tryFailure(cause);
+            }
+        }
+
+        private void notifyRelease(Future<Boolean> future, Channel ch, Promise<Void> promise) {
+            assert loop.inEventLoop();
+
+            try {
+                handler.channelReleased(ch);
+            } catch (Throwable cause) {
+                closeChannel(ch);
+                releasePermit();
+                promise.tryFailure(cause);
+                return;
+            }
+            if (closed) {
+                // Since the pool is closed, we have no choice but to close the channel
+                closeChannel(ch);
+                promise.tryFailure(new IllegalStateException("PerEventLoopChannelPool was closed"));
+                return;
+            }
+            if (!future.isSuccess() || !future.getNow()) {
+                closeChannel(ch);
+                releasePermit();
+                promise.trySuccess(null);
+                return;
+            }
+            idle.offerLast(ch);
+            if (closed && idle.remove(ch)) {
+                // The pool was closed concurrently and may have missed this Channel.
+                ch.close();
+            }
+            promise.trySuccess(null);
+            signalPendingAcquires(index);
+        }
+
+        private void releasePermit() {
+            permits.release(index);
+            signalPendingAcquires(index);
+        }
+
+        /**
+         * Fails the pending acquires and closes the idle {@link Channel}s. Must not be called by an
+         * {@link EventLoop}.
+         */
+        void close() {
+            try {
+                loop.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (;;) {
+                            AcquireTask task = pending.poll();
+                            if (task == null) {
+                                break;
+                            }
+                            task.dequeued();
+                            task.promise.tryFailure(new ClosedChannelException());
+                        }
+                        pendingCount = 0;
+                    }
+                }).awaitUninterruptibly();
+            } catch (RejectedExecutionException ignore) {
+                // The EventLoop is shutting down, so are its pending acquires.
+            }
+            for (;;) {
+                Channel ch = idle.pollFirst();
+                if (ch == null) {
+                    break;
+                }
+                // Just ignore any errors that are reported back from close().
+                ch.close().awaitUninterruptibly();
+            }
+        }
+    }
+
+    private final class AcquireTask implements Runnable {
+        final SubPool subPool;
+        final Promise<Channel> promise;
+        final long startNanos = System.nanoTime();
+        ScheduledFuture<?> timeoutFuture;
+        // Whether this acquire is counted in pendingAcquireCount. Only accessed by the EventLoop of the sub-pool.
+        boolean queued;
+
+        AcquireTask(SubPool subPool, Promise<Channel> promise) {
+            this.subPool = subPool;
+            this.promise = promise;
+        }
+
+        /**
+         * Called right before a {@link Channel} or permit is handed to this acquire, so the pending count is already
+         * updated if the promise is completed right away.
+         */
+        void served() {
+            if (queued) {
+                dequeued();
+            }
+        }
+
+        void dequeued() {
+            queued = false;
+            pendingAcquireCount.decrementAndGet();
+            cancelTimeout();
+        }
+
+        private void cancelTimeout() {
+            // Cancel the timeout if one was scheduled
+            ScheduledFuture<?> timeoutFuture = this.timeoutFuture;
+            if (timeoutFuture != null) {
+                timeoutFuture.cancel(false);
+                this.timeoutFuture = null;
+            }
+        }
+
+        // Called by the EventLoop of the sub-pool once the acquire timed out.
+        @Override
+        public void run() {
+            if (subPool.pending.remove(this)) {
+                subPool.pendingCount = subPool.pending.size();
+                dequeued();
+                promise.tryFailure(new TimeoutException(
+                        "Acquire operation took longer then configured maximum time") {
+                    @Override
+                    public Throwable fillInStackTrace() {
+                        return this;
+                    }
+                });
+            }
+        }
+    }
+}
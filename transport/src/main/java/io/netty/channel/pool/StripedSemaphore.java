@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A counting semaphore whose permits are spread over a number of stripes, so threads that mostly use their own
+ * stripe do not contend on the same counter. A permit is taken from another stripe if the own one is exhausted and
+ * is returned to the stripe of the thread that releases it.
+ */
+final class StripedSemaphore {
+
+    // Keep every stripe on its own cache line.
+    private static final int PADDING = 16;
+
+    private final AtomicIntegerArray permits;
+    private final int stripes;
+
+    StripedSemaphore(int stripes, int permits) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("stripes: " + stripes + " (expected: >= 1)");
+        }
+        if (permits < 0) {
+            throw new IllegalArgumentException("permits: " + permits + " (expected: >= 0)");
+        }
+        this.stripes = stripes;
+        this.permits = new AtomicIntegerArray(stripes * PADDING);
+        for (int i = 0; i < stripes; i++) {
+            this.permits.set(i * PADDING, permits / stripes + (i < permits % stripes ? 1 : 0));
+        }
+    }
+
+    /**
+     * Takes a permit, starting with the given stripe. Returns {@code false} if no permit is left.
+     */
+    boolean tryAcquire(int stripe) {
+        for (int i = 0; i < stripes; i++) {
+            int index = (stripe + i) % stripes * PADDING;
+            for (;;) {
+                int available = permits.get(index);
+                if (available == 0) {
+                    break;
+                }
+                if (permits.compareAndSet(index, available, available - 1)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a permit to the given stripe.
+     */
+    void release(int stripe) {
+        permits.getAndIncrement(stripe % stripes * PADDING);
+    }
+
+    /**
+     * Returns the number of permits that are left, which may be stale by the time it is returned.
+     */
+    int availablePermits() {
+        int available = 0;
+        for (int i = 0; i < stripes; i++) {
+            available += permits.get(i * PADDING);
+        }
+        return available;
+    }
+}
@@ -26,6 +26,8 @@ import org.junit.Test;
 
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.RejectedExecutionException;
@@ -149,6 +151,88 @@ public class ChannelOutboundBufferTest {
         buf.release();
     }
 
+    @Test
+    public void testWrapAroundAndGrow() throws Exception {
+        TestChannel channel = new TestChannel();
+        ChannelOutboundBuffer buffer = new ChannelOutboundBuffer(channel);
+
+        for (int i = 0; i < 5; i++) {
+            buffer.addMessage(copyInt(i), 4, channel.voidPromise());
+        }
+        buffer.addFlush();
+        assertRemove(buffer, 0, 1, 2);
+
+        // Wraps around the end of the arrays.
+        for (int i = 5; i < 11; i++) {
+            buffer.addMessage(copyInt(i), 4, channel.voidPromise());
+        }
+        buffer.addFlush();
+        // Grows the arrays while the messages wrap around and some of them are not flushed.
+        ChannelPromise cancelled = channel.newPromise();
+        buffer.addMessage(copyInt(-1), 4, cancelled);
+        for (int i = 11; i < 20; i++) {
+            buffer.addMessage(copyInt(i), 4, channel.voidPromise());
+        }
+        assertEquals(8, buffer.size());
+        assertTrue(cancelled.cancel(false));
+        buffer.addFlush();
+        assertEquals(18, buffer.size());
+
+        final List<Integer> values = new ArrayList<Integer>();
+        buffer.forEachFlushedMessage(new ChannelOutboundBuffer.MessageProcessor() {
+            @Override
+            public boolean processMessage(Object msg) {
+                values.add(((ByteBuf) msg).getInt(0));
+                return true;
+            }
+        });
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 3; i < 20; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, values);
+
+        // The cancelled message is still counted, but does not add a NIO buffer.
+        buffer.nioBuffers();
+        assertEquals(17, buffer.nioBufferCount());
+        assertEquals(17 * 4, buffer.nioBufferSize());
+
+        // Removes the messages 3 to 8 and half of 9.
+        buffer.removeBytes(6 * 4 + 2);
+        assertEquals(2, ((ByteBuf) buffer.current()).readerIndex());
+        buffer.nioBuffers();
+        assertEquals(11, buffer.nioBufferCount());
+        assertEquals(10 * 4 + 2, buffer.nioBufferSize());
+        assertTrue(buffer.remove());
+        assertRemove(buffer, 10, -1);
+        assertRemove(buffer, 11, 12, 13, 14, 15, 16, 17, 18, 19);
+        assertFalse(buffer.remove());
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.totalPendingWriteBytes());
+
+        // The buffer is usable again after it drained, with and without having grown before.
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 3; i++) {
+                buffer.addMessage(copyInt(i), 4, channel.voidPromise());
+            }
+            buffer.addFlush();
+            assertRemove(buffer, 0, 1, 2);
+            assertFalse(buffer.remove());
+            assertTrue(buffer.isEmpty());
+        }
+    }
+
+    private static void assertRemove(ChannelOutboundBuffer buffer, int... values) {
+        for (int value: values) {
+            ByteBuf buf = (ByteBuf) buffer.current();
+            assertEquals(value == -1 ? 0 : 4, buf.readableBytes());
+            if (value != -1) {
+                assertEquals(value, buf.getInt(buf.readerIndex()));
+            }
+            assertTrue(buffer.remove());
+        }
+    }
+
     private static void release(ChannelOutboundBuffer buffer) {
         for (;;) {
             if (!buffer.remove()) {
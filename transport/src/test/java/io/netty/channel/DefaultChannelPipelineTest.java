@@ -49,6 +49,7 @@ import org.junit.Test;
 import java.net.SocketAddress;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -1735,6 +1736,56 @@ public class DefaultChannelPipelineTest {
         skipHandler.assertSkipped();
     }
 
+    @Test
+    public void testSkippedHandlersAfterModification() {
+        final List<String> events = new ArrayList<String>();
+        EmbeddedChannel channel = new EmbeddedChannel(
+                new ChannelInboundHandlerAdapter(), new ChannelOutboundHandlerAdapter(), new ChannelDuplexHandler());
+        ChannelPipeline pipeline = channel.pipeline();
+        pipeline.addFirst("first", new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                events.add("write " + msg);
+                promise.setSuccess();
+            }
+        });
+
+        // Let the contexts look up the next ones interested in the events before the pipeline changes.
+        pipeline.fireChannelRead("1");
+        pipeline.write("1");
+        assertEquals(Collections.singletonList("write 1"), events);
+        assertEquals("1", channel.readInbound());
+
+        pipeline.addAfter("first", "read", new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                events.add("read " + msg);
+                ctx.fireChannelRead(msg);
+            }
+        });
+        pipeline.addLast("write", new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                events.add("write2 " + msg);
+                ctx.write(msg, promise);
+            }
+        });
+        events.clear();
+        pipeline.fireChannelRead("2");
+        pipeline.write("2");
+        assertEquals(Arrays.asList("read 2", "write2 2", "write 2"), events);
+        assertEquals("2", channel.readInbound());
+
+        pipeline.replace("read", "read2", new ChannelInboundHandlerAdapter());
+        pipeline.remove("write");
+        events.clear();
+        pipeline.fireChannelRead("3");
+        pipeline.write("3");
+        assertEquals(Collections.singletonList("write 3"), events);
+        assertEquals("3", channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
     @Test
     public void testWriteThrowsReleaseMessage() {
         testWriteThrowsReleaseMessage0(false);
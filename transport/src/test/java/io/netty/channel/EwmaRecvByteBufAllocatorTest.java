@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EwmaRecvByteBufAllocatorTest {
+    private final ByteBufAllocator alloc = UnpooledByteBufAllocator.DEFAULT;
+    private EmbeddedChannel channel;
+    private ChannelConfig config;
+    private RecvByteBufAllocator.BytesAvailableHandle handle;
+
+    @Before
+    public void setup() {
+        channel = new EmbeddedChannel();
+        config = channel.config();
+        EwmaRecvByteBufAllocator recvByteBufAllocator = new EwmaRecvByteBufAllocator(64, 2048, 65536);
+        handle = (RecvByteBufAllocator.BytesAvailableHandle) recvByteBufAllocator.newHandle();
+    }
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void followsSmallMessages() {
+        for (int i = 0; i < 32; i++) {
+            readLoop(100);
+        }
+        // The average is 100 plus a quarter of headroom.
+        int guess = handle.guess();
+        assertTrue("guess: " + guess, guess >= 125 && guess <= 130);
+
+        // Never goes below the minimum.
+        for (int i = 0; i < 32; i++) {
+            readLoop(1);
+        }
+        assertEquals(64, handle.guess());
+    }
+
+    @Test
+    public void rampUpWhenBufferIsFilled() {
+        handle.reset(config);
+        allocRead(2048, 2048);
+        allocRead(5120, 5120);
+        allocRead(12800, 12800);
+        allocRead(32000, 32000);
+        allocRead(65536, 65536);
+        allocRead(65536, 100);
+        handle.readComplete();
+    }
+
+    @Test
+    public void lastPartialReadDoesNotRampDown() {
+        handle.reset(config);
+        allocRead(2048, 2048);
+        allocRead(5120, 1);
+        handle.readComplete();
+
+        handle.reset(config);
+        allocRead(5120, 5000);
+        handle.readComplete();
+    }
+
+    @Test
+    public void sizeFromBytesAvailable() {
+        handle.reset(config);
+        handle.bytesAvailable(300);
+        // The buffer is sized exactly and filling it does not ramp up.
+        allocRead(300, 300);
+        handle.readComplete();
+        assertTrue(handle.guess() < 2048);
+
+        // More bytes than the maximum are read in several reads.
+        handle.reset(config);
+        handle.bytesAvailable(100000);
+        allocRead(65536, 65536);
+        allocRead(34464, 34464);
+        handle.readComplete();
+
+        // The hint only lasts for one read loop.
+        handle.reset(config);
+        assertEquals(65536, handle.guess());
+    }
+
+    private void readLoop(int bytes) {
+        handle.reset(config);
+        ByteBuf buf = handle.allocate(alloc);
+        try {
+            handle.attemptedBytesRead(buf.writableBytes());
+            handle.lastBytesRead(bytes);
+            handle.readComplete();
+        } finally {
+            buf.release();
+        }
+    }
+
+    private void allocRead(int expectedSize, int lastRead) {
+        ByteBuf buf = handle.allocate(alloc);
+        try {
+            assertEquals(expectedSize, buf.capacity());
+            handle.attemptedBytesRead(buf.writableBytes());
+            handle.lastBytesRead(lastRead);
+        } finally {
+            buf.release();
+        }
+    }
+}
@@ -28,6 +28,7 @@ import io.netty.channel.socket.ServerSocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.util.IntSupplier;
 import io.netty.util.concurrent.DefaultEventExecutorChooserFactory;
+import io.netty.util.concurrent.DefaultEventExecutorMetrics;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.RejectedExecutionHandlers;
@@ -191,6 +192,60 @@ public class NioEventLoopTest extends AbstractEventLoopTest {
         }
     }
 
+    @Test(timeout = 3000)
+    public void testMetrics() throws Exception {
+        NioEventLoopGroup group = new NioEventLoopGroup(1);
+        group.enableMetrics(1);
+        NioEventLoop loop = (NioEventLoop) group.next();
+        DefaultEventExecutorMetrics metrics = (DefaultEventExecutorMetrics) loop.metrics();
+
+        try {
+            Channel channel = new NioServerSocketChannel();
+            loop.register(channel).syncUninterruptibly();
+            channel.bind(new InetSocketAddress(0)).syncUninterruptibly();
+
+            SocketChannel selectableChannel = SocketChannel.open();
+            selectableChannel.configureBlocking(false);
+            selectableChannel.connect(channel.localAddress());
+
+            final CountDownLatch latch = new CountDownLatch(1);
+
+            loop.register(selectableChannel, SelectionKey.OP_CONNECT, new NioTask<SocketChannel>() {
+                @Override
+                public void channelReady(SocketChannel ch, SelectionKey key) {
+                    latch.countDown();
+                }
+
+                @Override
+                public void channelUnregistered(SocketChannel ch, Throwable cause) {
+                }
+            });
+
+            latch.await();
+            // The timings are recorded after the I/O events were processed and the tasks were run.
+            loop.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).syncUninterruptibly();
+            loop.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).syncUninterruptibly();
+
+            assertTrue(metrics.waitTime().count() > 0);
+            assertTrue(metrics.ioTime().count() > 0);
+            assertTrue(metrics.taskTime().count() > 0);
+            assertTrue(metrics.taskRunTime().count() > 0);
+
+            selectableChannel.close();
+            channel.close().syncUninterruptibly();
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
     @SuppressWarnings("deprecation")
     @Test
     public void testTaskRemovalOnShutdownThrowsNoUnsupportedOperationException() throws Exception {
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static io.netty.channel.pool.ChannelPoolTestUtils.getLocalAddrId;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PerEventLoopChannelPoolTest {
+    private static EventLoopGroup group;
+    private static EventLoop loopA;
+    private static EventLoop loopB;
+
+    private LocalAddress addr;
+    private Channel sc;
+    private Bootstrap cb;
+
+    @BeforeClass
+    public static void createEventLoop() {
+        group = new DefaultEventLoopGroup(2);
+        Iterator<EventExecutor> loops = group.iterator();
+        loopA = (EventLoop) loops.next();
+        loopB = (EventLoop) loops.next();
+    }
+
+    @AfterClass
+    public static void destroyEventLoop() {
+        if (group != null) {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Before
+    public void startServer() {
+        addr = new LocalAddress(getLocalAddrId());
+        cb = new Bootstrap();
+        cb.remoteAddress(addr);
+        cb.group(group)
+          .channel(LocalChannel.class);
+
+        ServerBootstrap sb = new ServerBootstrap();
+        sb.group(group)
+          .channel(LocalServerChannel.class)
+          .childHandler(new ChannelInitializer<LocalChannel>() {
+              @Override
+              public void initChannel(LocalChannel ch) throws Exception {
+                  ch.pipeline().addLast(new ChannelInboundHandlerAdapter());
+              }
+          });
+        sc = sb.bind(addr).syncUninterruptibly().channel();
+    }
+
+    @After
+    public void stopServer() {
+        sc.close().syncUninterruptibly();
+    }
+
+    @Test
+    public void testAcquireFromCallerEventLoop() throws Exception {
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        PerEventLoopChannelPool pool = new PerEventLoopChannelPool(cb, handler, 4);
+
+        Channel channelA = acquire(pool, loopA).syncUninterruptibly().getNow();
+        Channel channelB = acquire(pool, loopB).syncUninterruptibly().getNow();
+        assertSame(loopA, channelA.eventLoop());
+        assertSame(loopB, channelB.eventLoop());
+        assertEquals(2, pool.openChannelCount());
+
+        pool.release(channelA).syncUninterruptibly();
+        pool.release(channelB).syncUninterruptibly();
+        assertEquals(2, pool.idleChannelCount());
+
+        // Each EventLoop gets its own Channel back.
+        assertSame(channelB, acquire(pool, loopB).syncUninterruptibly().getNow());
+        assertSame(channelA, acquire(pool, loopA).syncUninterruptibly().getNow());
+        assertEquals(2, handler.channelCount());
+        assertEquals(4, handler.acquiredCount());
+        assertEquals(2, handler.releasedCount());
+        assertEquals(2, pool.acquireLatency(loopA).count());
+        assertEquals(2, pool.acquireLatency(loopB).count());
+
+        pool.release(channelA).syncUninterruptibly();
+        pool.release(channelB).syncUninterruptibly();
+        pool.close();
+        assertEquals(0, pool.idleChannelCount());
+        assertFalse(channelA.isOpen());
+        assertFalse(channelB.isOpen());
+    }
+
+    @Test
+    public void testStealFromOtherEventLoop() throws Exception {
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        PerEventLoopChannelPool pool = new PerEventLoopChannelPool(cb, handler, 1);
+
+        Channel channel = acquire(pool, loopA).syncUninterruptibly().getNow();
+        pool.release(channel).syncUninterruptibly();
+
+        // The maximum is reached, so the idle Channel of the other EventLoop is used.
+        Channel channel2 = acquire(pool, loopB).syncUninterruptibly().getNow();
+        assertSame(channel, channel2);
+        assertSame(loopA, channel2.eventLoop());
+        assertEquals(1, handler.channelCount());
+        assertEquals(1, pool.openChannelCount());
+
+        // Wait for the Channel to be released.
+        Future<Channel> future = acquire(pool, loopB);
+        assertFalse(future.await(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, pool.pendingAcquireCount());
+        pool.release(channel2).syncUninterruptibly();
+        assertSame(channel, future.syncUninterruptibly().getNow());
+        assertEquals(0, pool.pendingAcquireCount());
+
+        pool.release(channel).syncUninterruptibly();
+        pool.close();
+    }
+
+    @Test
+    public void testClosedChannelIsReplaced() throws Exception {
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        PerEventLoopChannelPool pool = new PerEventLoopChannelPool(cb, handler, 1);
+
+        Channel channel = acquire(pool, loopA).syncUninterruptibly().getNow();
+        Future<Channel> future = acquire(pool, loopB);
+        assertFalse(future.await(100, TimeUnit.MILLISECONDS));
+
+        // Releasing a closed Channel frees its permit, so the pending acquire makes a new connection.
+        channel.close().syncUninterruptibly();
+        pool.release(channel).syncUninterruptibly();
+        Channel channel2 = future.syncUninterruptibly().getNow();
+        assertNotSame(channel, channel2);
+        assertSame(loopB, channel2.eventLoop());
+        assertEquals(2, handler.channelCount());
+        assertEquals(1, pool.openChannelCount());
+
+        pool.release(channel2).syncUninterruptibly();
+        pool.close();
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void testAcquireTimeout() throws Exception {
+        PerEventLoopChannelPool pool = new PerEventLoopChannelPool(cb, new CountingChannelPoolHandler(),
+                ChannelHealthChecker.ACTIVE, 1, Integer.MAX_VALUE, 100);
+        Channel channel = acquire(pool, loopA).syncUninterruptibly().getNow();
+        try {
+            acquire(pool, loopB).syncUninterruptibly();
+        } finally {
+            assertEquals(0, pool.pendingAcquireCount());
+            pool.release(channel).syncUninterruptibly();
+            pool.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testSignalPassedOnWhenPendingAcquireTimedOut() throws Exception {
+        EventLoopGroup loopGroup = new DefaultEventLoopGroup(3);
+        try {
+            Iterator<EventExecutor> loops = loopGroup.iterator();
+            final EventLoop releasingLoop = (EventLoop) loops.next();
+            final EventLoop timeoutLoop = (EventLoop) loops.next();
+            EventLoop waitingLoop = (EventLoop) loops.next();
+            // Pending acquires time out right away. An expired timeout is queued behind the tasks that are already
+            // queued once the EventLoop looks for its next task, which is used below to order the tasks.
+            final PerEventLoopChannelPool pool = new PerEventLoopChannelPool(cb.clone(loopGroup),
+                    new CountingChannelPoolHandler(), ChannelHealthChecker.ACTIVE, 1, Integer.MAX_VALUE, 0);
+            final Channel channel = acquire(pool, releasingLoop).syncUninterruptibly().getNow();
+            assertSame(releasingLoop, channel.eventLoop());
+
+            // Keep waitingLoop busy until the signal was passed on to it, so its acquire does not time out before.
+            final CountDownLatch signalPassedOn = new CountDownLatch(1);
+            final Promise<Future<Channel>> waitingAcquire = ImmediateEventExecutor.INSTANCE.newPromise();
+            waitingLoop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    waitingAcquire.setSuccess(pool.acquire());
+                    try {
+                        signalPassedOn.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            Future<Channel> waitingFuture = waitingAcquire.syncUninterruptibly().getNow();
+
+            Future<Channel> timedOutFuture = timeoutLoop.submit(new Callable<Future<Channel>>() {
+                @Override
+                public Future<Channel> call() {
+                    Future<Channel> future = pool.acquire();
+                    // Queued before the timeout of the acquire, which is queued before the signal sent once the
+                    // Channel is released. So timeoutLoop is signalled but finds nothing to serve once it runs.
+                    timeoutLoop.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            pool.release(channel).syncUninterruptibly();
+                            // The signal is sent by the task that completed the release.
+                            releasingLoop.submit(new Runnable() {
+                                @Override
+                                public void run() {
+                                    // NOOP
+                                }
+                            }).syncUninterruptibly();
+                            // Runs after the signal, which passed it on to waitingLoop.
+                            timeoutLoop.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    signalPassedOn.countDown();
+                                }
+                            });
+                        }
+                    });
+                    return future;
+                }
+            }).syncUninterruptibly().getNow();
+
+            assertTrue(timedOutFuture.await().cause() instanceof TimeoutException);
+            assertSame(channel, waitingFuture.syncUninterruptibly().getNow());
+            assertEquals(0, pool.pendingAcquireCount());
+
+            pool.release(channel).syncUninterruptibly();
+            pool.close();
+        } finally {
+            loopGroup.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testTooManyPendingAcquires() throws Exception {
+        PerEventLoopChannelPool pool = new PerEventLoopChannelPool(cb, new CountingChannelPoolHandler(),
+                ChannelHealthChecker.ACTIVE, 1, 1, -1);
+        Channel channel = acquire(pool, loopA).syncUninterruptibly().getNow();
+        Future<Channel> future = acquire(pool, loopA);
+        Future<Channel> future2 = acquire(pool, loopB).await();
+        assertTrue(future2.cause() instanceof IllegalStateException);
+        assertFalse(future.isDone());
+
+        pool.close();
+        assertTrue(future.await().cause() instanceof ClosedChannelException);
+        channel.close().syncUninterruptibly();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReleaseDifferentPool() throws Exception {
+        PerEventLoopChannelPool pool = new PerEventLoopChannelPool(cb, new CountingChannelPoolHandler(), 1);
+        PerEventLoopChannelPool pool2 = new PerEventLoopChannelPool(cb, new CountingChannelPoolHandler(), 1);
+        Channel channel = acquire(pool, loopA).syncUninterruptibly().getNow();
+        try {
+            pool2.release(channel).syncUninterruptibly();
+        } finally {
+            assertFalse(channel.isOpen());
+            pool.close();
+            pool2.close();
+        }
+    }
+
+    private static Future<Channel> acquire(final ChannelPool pool, EventLoop loop) throws Exception {
+        return loop.submit(new Callable<Future<Channel>>() {
+            @Override
+            public Future<Channel> call() {
+                return pool.acquire();
+            }
+        }).syncUninterruptibly().getNow();
+    }
+}
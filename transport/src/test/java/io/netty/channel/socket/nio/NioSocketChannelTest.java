@@ -281,6 +281,60 @@ public class NioSocketChannelTest extends AbstractNioChannelTest<NioSocketChanne
         }
     }
 
+    @Test(timeout = 5000)
+    public void testSharedReadBuffer() throws Exception {
+        NioEventLoopGroup group = new NioEventLoopGroup(1);
+        ServerSocket socket = new ServerSocket();
+        socket.bind(new InetSocketAddress(0));
+        Socket accepted = null;
+        try {
+            final LinkedBlockingQueue<ByteBuf> received = new LinkedBlockingQueue<ByteBuf>();
+            Bootstrap cb = new Bootstrap();
+            cb.group(group).channel(NioSocketChannel.class);
+            cb.option(ChannelOption.SHARED_READ_BUFFER, true);
+            cb.handler(new ChannelInboundHandlerAdapter() {
+                @Override
+                public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                    received.add((ByteBuf) msg);
+                }
+            });
+            Channel channel = cb.connect(socket.getLocalSocketAddress()).syncUninterruptibly().channel();
+            assertEquals(Boolean.TRUE, channel.config().getOption(ChannelOption.SHARED_READ_BUFFER));
+
+            accepted = socket.accept();
+            byte[] bytes = new byte[100000];
+            PlatformDependent.threadLocalRandom().nextBytes(bytes);
+            accepted.getOutputStream().write(bytes);
+            accepted.getOutputStream().flush();
+
+            ByteBuf all = Unpooled.buffer();
+            while (all.readableBytes() < bytes.length) {
+                ByteBuf buf = received.take();
+                // Every read is copied into a buffer of its own that is no bigger than the bytes that were read.
+                assertEquals(buf.readableBytes(), buf.capacity());
+                all.writeBytes(buf);
+                buf.release();
+            }
+            assertEquals(Unpooled.wrappedBuffer(bytes), all);
+            all.release();
+            channel.close().syncUninterruptibly();
+        } finally {
+            if (accepted != null) {
+                try {
+                    accepted.close();
+                } catch (IOException ignore) {
+                    // ignore
+                }
+            }
+            try {
+                socket.close();
+            } catch (IOException ignore) {
+                // ignore
+            }
+            group.shutdownGracefully();
+        }
+    }
+
     @Override
     protected NioSocketChannel newNioChannel() {
         return new NioSocketChannel();